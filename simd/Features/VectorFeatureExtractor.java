@@ -0,0 +1,69 @@
+package Features;
+
+import Game.Board;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Calculates the features of many boards at once with the Vector API: every
+ * lane of a vector is a different board. Needs the jdk.incubator.vector module,
+ * see {@link FeatureExtractor#create()}.
+ */
+
+public class VectorFeatureExtractor implements FeatureExtractor {
+    // The widest byte vector the CPU supports
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public void extract(BoardStore store, BoardFeatures features) {
+        byte[] cells = store.getCells();
+        byte[] heights = features.heights();
+        byte[] holes = features.holes();
+        byte[] rowFill = features.rowFill();
+        int[] fullRows = features.fullRows();
+        int capacity = store.getCapacity();
+        // The capacity is a multiple of the alignment, so whole vectors always fit
+        int size = Math.min(capacity, (store.getSize() + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length());
+
+        features.clearFullRows();
+
+        for(int b = 0; b < size; b += SPECIES.length()) {
+            // Heights and holes, going down each column
+            for(int x = 0; x < Board.COLS; x++) {
+                ByteVector height = ByteVector.zero(SPECIES);
+                ByteVector holeCount = ByteVector.zero(SPECIES);
+                VectorMask<Byte> seen = SPECIES.maskAll(false);
+                for(int y = 0; y < Board.ROWS; y++) {
+                    ByteVector tile = ByteVector.fromArray(SPECIES, cells, (y * Board.COLS + x) * capacity + b);
+                    VectorMask<Byte> occupied = tile.compare(VectorOperators.NE, (byte)0);
+
+                    // The first occupied tile from the top sets the height, empty tiles below it are holes
+                    height = height.blend((byte)(Board.ROWS - y), occupied.andNot(seen));
+                    holeCount = holeCount.add((byte)1, seen.andNot(occupied));
+                    seen = seen.or(occupied);
+                }
+                height.intoArray(heights, x * capacity + b);
+                holeCount.intoArray(holes, x * capacity + b);
+            }
+
+            // Fill count of each row, tiles are stored as 0 or 1 so they can be added up
+            for(int y = 0; y < Board.ROWS; y++) {
+                ByteVector fill = ByteVector.zero(SPECIES);
+                for(int x = 0; x < Board.COLS; x++) {
+                    fill = fill.add(ByteVector.fromArray(SPECIES, cells, (y * Board.COLS + x) * capacity + b));
+                }
+                fill.intoArray(rowFill, y * capacity + b);
+
+                // Full rows are rare, so set their bits one lane at a time
+                long full = fill.compare(VectorOperators.EQ, (byte)Board.COLS).toLong();
+                while(full != 0) {
+                    int lane = Long.numberOfTrailingZeros(full);
+                    fullRows[b + lane] |= 1 << y;
+                    full &= full - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package Bots;
+
+import Game.Engine;
+
+/**
+ * A player that decides where each piece goes. A bot keeps scratch state,
+ * so every game thread needs its own instance.
+ */
+
+public interface Bot {
+    /**
+     * Chooses where to put the current piece of the game
+     * @param engine The game
+     * @return The placement of the current piece
+     */
+    Placement choose(Engine engine);
+
+    /**
+     * Creates a bot by its name
+     * @param name The name of the bot: "heuristic", "random" or "search"
+     * @param seed The seed used by bots that make random choices
+     * @return The new bot
+     */
+    static Bot create(String name, long seed) {
+        switch(name) {
+            case "heuristic":
+                return new HeuristicBot();
+            case "random":
+                return new RandomBot(seed);
+            case "search":
+                return new SearchBot();
+            default:
+                throw new IllegalArgumentException("Unknown bot: " + name);
+        }
+    }
+}
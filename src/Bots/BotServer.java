@@ -0,0 +1,143 @@
+package Bots;
+
+import Game.Board;
+import Pieces.Piece;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The other end of the {@link ExternalBot} protocol: reads frames from standard
+ * input and answers every position with the move of the heuristic bot. It is
+ * an example for bots in other languages and measures what the pipes cost,
+ * since the heuristic itself takes a few microseconds:
+ *
+ *     java -cp out Bots.ExternalMatch -- java -cp out Bots.BotServer
+ *
+ * Standard output only carries frames; errors go to standard error.
+ */
+
+public class BotServer {
+    private final InputStream in;
+    private final OutputStream out;
+    // Pieces by their id in the hello frame
+    private Piece[] pieces;
+    // The board of the last position
+    private final Board board = new Board();
+    private final HeuristicBot bot = new HeuristicBot();
+    // Frame that is being read or written
+    private final byte[] frame = new byte[ExternalBot.POSITION_HEADER + ExternalBot.MAX_QUEUE + 2 * Board.ROWS];
+
+    private BotServer(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Reads the hello frame and finds the pieces it names
+     */
+    private void readHello() throws IOException {
+        readFully(5);
+        if(frame[0] != ExternalBot.HELLO || frame[1] != ExternalBot.VERSION) {
+            throw new IOException("Expected a hello frame of version " + ExternalBot.VERSION);
+        }
+        if(frame[2] != Board.COLS || frame[3] != Board.ROWS) {
+            throw new IOException("Unsupported board size " + frame[2] + "x" + frame[3]);
+        }
+        pieces = new Piece[frame[4] & 0xff];
+        for(int i = 0; i < pieces.length; i++) {
+            readFully(1);
+            int length = frame[0] & 0xff;
+            readFully(length + 1 + 4 * Piece.ROTATIONS);
+            String name = new String(frame, 0, length, StandardCharsets.US_ASCII);
+            for(Piece piece : Piece.values()) {
+                if(piece.getName().equals(name)) {
+                    pieces[i] = piece;
+                }
+            }
+            if(pieces[i] == null) {
+                throw new IOException("Unknown piece " + name + ", start with the same -Dtetris.pieces as the game");
+            }
+        }
+    }
+
+    /**
+     * Answers positions until the game quits
+     */
+    private void serve() throws IOException {
+        while(true) {
+            int type = in.read();
+            switch(type) {
+                case ExternalBot.NEW_GAME:
+                    readFully(4);
+                    break;
+                case ExternalBot.POSITION:
+                    answer();
+                    break;
+                case ExternalBot.QUIT:
+                case -1:
+                    return;
+                default:
+                    throw new IOException("Unknown frame type " + type);
+            }
+        }
+    }
+
+    // Reads the rest of a position frame and writes the move
+    private void answer() throws IOException {
+        readFully(ExternalBot.POSITION_HEADER - 1);
+        Piece piece = pieces[frame[4] & 0xff];
+        int col = frame[5];
+        int row = frame[6];
+        int rotation = frame[7];
+        int queue = frame[8] & 0xff;
+        readFully(queue + 2 * Board.ROWS);
+        for(int y = 0; y < Board.ROWS; y++) {
+            board.setRow(y, (frame[queue + 2 * y] & 0xff) << 8 | frame[queue + 2 * y + 1] & 0xff, piece);
+        }
+
+        Placement placement = bot.choose(board, piece, col, row, rotation);
+        byte[] inputs = placement.getInputs();
+        int count = inputs == null ? 0 : Math.min(inputs.length, 255);
+        frame[0] = ExternalBot.MOVE;
+        frame[1] = (byte)placement.getCol();
+        frame[2] = (byte)placement.getRotation();
+        frame[3] = (byte)count;
+        if(count > 0) {
+            System.arraycopy(inputs, 0, frame, ExternalBot.MOVE_HEADER, count);
+        }
+        out.write(frame, 0, ExternalBot.MOVE_HEADER + count);
+        out.flush();
+    }
+
+    // Reads bytes into the start of the frame
+    private void readFully(int length) throws IOException {
+        int offset = 0;
+        while(offset < length) {
+            int read = in.read(frame, offset, length - offset);
+            if(read < 0) {
+                throw new EOFException("The game closed the pipe in the middle of a frame");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Serves the protocol on standard input and output
+     * @param args Not used
+     */
+    public static void main(String[] args) throws IOException {
+        BotServer server = new BotServer(new BufferedInputStream(new FileInputStream(FileDescriptor.in), 1 << 16),
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 12));
+        server.readHello();
+        server.serve();
+    }
+}
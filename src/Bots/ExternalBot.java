@@ -0,0 +1,256 @@
+package Bots;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bot that runs in another process and speaks a binary protocol over its
+ * standard input and output, so bots written in any language can play. The
+ * game sends a frame for every piece and waits for the move; the move is
+ * played with the same inputs as the keys of the player, so an external bot
+ * can't do anything a player couldn't.
+ *
+ * Frames, integers big-endian, ids are indexes into the pieces of the hello frame:
+ *   Hello, once:   'H', version u8, columns u8, rows u8, piece count u8, then per piece:
+ *                  name length u8, name (ASCII), dimension u8, four rotations as u32 tile
+ *                  masks where bit y * dimension + x is set for a tile
+ *   New game:      'N', game number u32
+ *   Position:      'P', pieces placed u32, piece id u8, column s8, row s8, rotation u8,
+ *                  queue length u8, queue ids (the next piece first), then one u16 per row,
+ *                  top row first, where bit x is set if column x is occupied
+ *   Quit:          'Q', then the game closes the pipe
+ * The bot answers every position with:
+ *   Move:          'M', column s8, rotation u8, input count u8, inputs (the INPUT_ constants
+ *                  of {@link Engine}). Without inputs the piece is rotated clockwise to the
+ *                  rotation, then moved to the column.
+ *
+ * A frame goes out in one write from a reused buffer, so a round trip costs two
+ * pipe writes and two wakeups. The time from sending a position to reading its
+ * move is recorded for every move.
+ */
+
+public class ExternalBot implements Bot, Closeable {
+    // Version of the protocol, sent in the hello frame
+    public static final int VERSION = 1;
+    // Frame types
+    public static final byte HELLO = 'H';
+    public static final byte NEW_GAME = 'N';
+    public static final byte POSITION = 'P';
+    public static final byte QUIT = 'Q';
+    public static final byte MOVE = 'M';
+    // Most pieces of the queue, the next piece included
+    public static final int MAX_QUEUE = 255;
+    // Size of the fixed part of a position frame, without the queue and rows
+    public static final int POSITION_HEADER = 1 + 4 + 1 + 1 + 1 + 1 + 1;
+    // Size of the fixed part of a move frame, without the inputs
+    public static final int MOVE_HEADER = 4;
+
+    private final Process process;
+    private final OutputStream out;
+    private final InputStream in;
+    // Frame that is being written, reused for every position
+    private final byte[] frame;
+    // Move that is being read
+    private final byte[] move = new byte[MOVE_HEADER + 255];
+    // Pieces after the next piece
+    private final Piece[] queue;
+
+    // Round trip of every move in nanoseconds
+    private long[] latencies = new long[1024];
+    private int moves;
+
+    /**
+     * Starts an external bot and sends it the hello frame
+     * @param command The program and its arguments
+     * @param queueLength The number of upcoming pieces sent with every position, the next piece included
+     */
+    public ExternalBot(List<String> command, int queueLength) throws IOException {
+        if(queueLength < 1 || queueLength > MAX_QUEUE) {
+            throw new IllegalArgumentException("Queue length must be 1 to " + MAX_QUEUE);
+        }
+        this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        this.out = process.getOutputStream();
+        this.in = process.getInputStream();
+        this.frame = new byte[POSITION_HEADER + queueLength + 2 * Board.ROWS];
+        this.queue = new Piece[queueLength - 1];
+        sendHello();
+    }
+
+    // Describes the board and the pieces
+    private void sendHello() throws IOException {
+        byte[] hello = new byte[5 + Piece.count() * (2 + 255 + 1 + 4 * Piece.ROTATIONS)];
+        int n = 0;
+        hello[n++] = HELLO;
+        hello[n++] = VERSION;
+        hello[n++] = Board.COLS;
+        hello[n++] = Board.ROWS;
+        hello[n++] = (byte)Piece.count();
+        for(Piece piece : Piece.values()) {
+            byte[] name = piece.getName().getBytes(StandardCharsets.US_ASCII);
+            hello[n++] = (byte)name.length;
+            System.arraycopy(name, 0, hello, n, name.length);
+            n += name.length;
+            hello[n++] = (byte)piece.getDimension();
+            for(int rotation = 0; rotation < Piece.ROTATIONS; rotation++) {
+                n = putInt(hello, n, piece.getTileMask(rotation));
+            }
+        }
+        out.write(hello, 0, n);
+        out.flush();
+    }
+
+    /**
+     * Tells the bot that a new game starts, the frame goes out with the first position
+     * @param game The number of the game
+     */
+    public void newGame(int game) {
+        try {
+            frame[0] = NEW_GAME;
+            putInt(frame, 1, game);
+            out.write(frame, 0, 5);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Placement choose(Engine engine) {
+        int n = 0;
+        frame[n++] = POSITION;
+        n = putInt(frame, n, engine.getPieces());
+        frame[n++] = (byte)engine.getPieceType().getIndex();
+        frame[n++] = (byte)engine.getPieceCol();
+        frame[n++] = (byte)engine.getPieceRow();
+        frame[n++] = (byte)engine.getPieceRotation();
+        frame[n++] = (byte)(queue.length + 1);
+        frame[n++] = (byte)engine.getNextPieceType().getIndex();
+        engine.peekPieces(queue);
+        for(Piece piece : queue) {
+            frame[n++] = (byte)piece.getIndex();
+        }
+        Board board = engine.getBoard();
+        for(int y = 0; y < Board.ROWS; y++) {
+            int row = board.getRowMask(y);
+            frame[n++] = (byte)(row >>> 8);
+            frame[n++] = (byte)row;
+        }
+
+        try {
+            long start = System.nanoTime();
+            out.write(frame, 0, n);
+            out.flush();
+            readFully(move, 0, MOVE_HEADER);
+            if(move[0] != MOVE) {
+                throw new IOException("Expected a move frame, got " + (move[0] & 0xff));
+            }
+            int count = move[3] & 0xff;
+            readFully(move, MOVE_HEADER, count);
+            recordLatency(System.nanoTime() - start);
+
+            byte[] inputs = null;
+            if(count > 0) {
+                inputs = Arrays.copyOfRange(move, MOVE_HEADER, MOVE_HEADER + count);
+                for(byte input : inputs) {
+                    if(input < 0 || input >= Engine.INPUT_COUNT) {
+                        throw new IOException("Unknown input in move: " + input);
+                    }
+                }
+            }
+            return new Placement(move[1], move[2] & 3, inputs);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reads bytes until the buffer is filled
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while(length > 0) {
+            int read = in.read(buffer, offset, length);
+            if(read < 0) {
+                throw new EOFException("External bot closed its output");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private static int putInt(byte[] buffer, int n, int value) {
+        buffer[n] = (byte)(value >>> 24);
+        buffer[n + 1] = (byte)(value >>> 16);
+        buffer[n + 2] = (byte)(value >>> 8);
+        buffer[n + 3] = (byte)value;
+        return n + 4;
+    }
+
+    private void recordLatency(long nanos) {
+        if(moves == latencies.length) {
+            latencies = Arrays.copyOf(latencies, moves * 2);
+        }
+        latencies[moves++] = nanos;
+    }
+
+    /**
+     * Gets the number of moves the bot made
+     * @return The number of moves
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets a percentile of the round trips of the moves
+     * @param percentile The percentile, 0 to 100
+     * @return The round trip in nanoseconds, 0 if there were no moves
+     */
+    public long getLatency(double percentile) {
+        if(moves == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, moves);
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(percentile / 100 * moves);
+        return sorted[Math.max(0, Math.min(moves, rank) - 1)];
+    }
+
+    /**
+     * Gets the average round trip of the moves
+     * @return The average in nanoseconds, 0 if there were no moves
+     */
+    public double getMeanLatency() {
+        long sum = 0;
+        for(int i = 0; i < moves; i++) {
+            sum += latencies[i];
+        }
+        return moves == 0 ? 0 : (double)sum / moves;
+    }
+
+    /**
+     * Sends the quit frame and waits for the process to end
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(QUIT);
+            out.close();
+        } catch(IOException e) {
+            // The bot is gone already
+        }
+        try {
+            process.waitFor();
+        } catch(InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
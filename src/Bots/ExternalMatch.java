@@ -0,0 +1,118 @@
+package Bots;
+
+import Game.Engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays games with a bot in another process, see {@link ExternalBot}, and
+ * reports its scores and the round trip of its moves. Every bot plays the same
+ * seeds, so bots in different languages can be compared on one machine:
+ *
+ *     java -cp out Bots.ExternalMatch --games 100 -- ./my-bot --depth 2
+ */
+
+public class ExternalMatch {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: ExternalMatch [--games N] [--seed S] [--max-pieces M] [--queue Q] "
+            + "-- COMMAND [ARGS...]";
+
+    // Number of games to play
+    private int games = 10;
+    // Seed of the first game, game i uses seed + i
+    private long seed = 0;
+    // Games are stopped after this many pieces
+    private int maxPieces = 2000;
+    // Number of upcoming pieces sent with every position
+    private int queue = 5;
+    // The program of the bot and its arguments
+    private List<String> command;
+
+    /**
+     * Plays the games and prints the report
+     */
+    private void play() throws IOException {
+        long totalScore = 0;
+        long totalPieces = 0;
+        long start;
+        long nanos;
+        ExternalBot bot = new ExternalBot(command, queue);
+        try {
+            Engine engine = new Engine();
+            start = System.nanoTime();
+            for(int game = 0; game < games; game++) {
+                engine.setSeed(seed + game);
+                engine.reset();
+                bot.newGame(game);
+                while(!engine.isGameOver() && engine.getPieces() < maxPieces) {
+                    bot.choose(engine).apply(engine);
+                }
+                totalScore += engine.getScore();
+                totalPieces += engine.getPieces();
+                System.out.printf("game %d: score %d, %d lines, %d pieces%n", game, engine.getScore(),
+                        engine.getLines(), engine.getPieces());
+            }
+            nanos = System.nanoTime() - start;
+        } finally {
+            bot.close();
+        }
+
+        System.out.printf("%d games, average score %.1f, average pieces %.1f%n", games,
+                (double)totalScore / Math.max(1, games), (double)totalPieces / Math.max(1, games));
+        System.out.printf("%d moves in %.2f s, %.0f moves per second%n", bot.getMoves(), nanos / 1e9,
+                bot.getMoves() / (nanos / 1e9));
+        System.out.printf("Round trip per move: mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, "
+                + "max %.1f us%n", bot.getMeanLatency() / 1e3, bot.getLatency(50) / 1e3, bot.getLatency(90) / 1e3,
+                bot.getLatency(99) / 1e3, bot.getLatency(99.9) / 1e3, bot.getLatency(100) / 1e3);
+    }
+
+    /**
+     * Plays games with an external bot from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException {
+        ExternalMatch match = new ExternalMatch();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--")) {
+                    match.command = Arrays.asList(args).subList(i + 1, args.length);
+                    break;
+                }
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch(args[i - 1]) {
+                    case "--games":
+                        match.games = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        match.seed = Long.parseLong(value);
+                        break;
+                    case "--max-pieces":
+                        match.maxPieces = Integer.parseInt(value);
+                        break;
+                    case "--queue":
+                        match.queue = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if(match.command == null || match.command.isEmpty()) {
+                throw new IllegalArgumentException("Missing the command of the bot");
+            }
+            if(match.games < 0 || match.maxPieces < 1 || match.queue < 1 || match.queue > ExternalBot.MAX_QUEUE) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        match.play();
+    }
+}
@@ -0,0 +1,112 @@
+package Bots;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+/**
+ * Tries every position the current piece can reach, see {@link Pathfinder},
+ * and keeps the placement whose resulting board scores best on a
+ * weighted sum of aggregate height, cleared lines, holes and bumpiness.
+ */
+
+public class HeuristicBot implements Bot {
+    // Weight of the sum of the column heights
+    private static final double HEIGHT_WEIGHT = -0.510066;
+    // Weight of the number of cleared lines
+    private static final double LINES_WEIGHT = 0.760666;
+    // Weight of the number of holes
+    private static final double HOLES_WEIGHT = -0.35663;
+    // Weight of the sum of height differences between neighbouring columns
+    private static final double BUMPINESS_WEIGHT = -0.184483;
+
+    // Board used to try out placements
+    private Board scratch;
+    // Board of the engine, every placement starts from it
+    private Board.Snapshot start;
+    // Finds the reachable placements
+    private Pathfinder pathfinder;
+
+    /**
+     * Creates a new heuristic bot
+     */
+    public HeuristicBot() {
+        this.scratch = new Board();
+        this.start = new Board.Snapshot();
+        this.pathfinder = new Pathfinder();
+    }
+
+    @Override
+    public Placement choose(Engine engine) {
+        return choose(engine.getBoard(), engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow(),
+                engine.getPieceRotation());
+    }
+
+    /**
+     * Chooses where to put a piece on a board that doesn't belong to a game
+     * @param board The board
+     * @param piece The piece
+     * @param col The column of the piece
+     * @param row The row of the piece
+     * @param rotation The rotation of the piece
+     * @return The placement of the piece
+     */
+    public Placement choose(Board board, Piece piece, int col, int row, int rotation) {
+        int count = pathfinder.search(board, piece, col, row, rotation);
+
+        // Every placement branches from the same snapshot and copies only the rows it changes
+        scratch.copyFrom(board);
+        scratch.saveTo(start);
+
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int best = -1;
+        for(int i = 0; i < count; i++) {
+            scratch.restoreFrom(start);
+            scratch.addPiece(piece, pathfinder.getCol(i), pathfinder.getRow(i), pathfinder.getRotation(i));
+            double score = evaluate(scratch, scratch.checkLines());
+            if(score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+
+        // Nowhere to go, just let the piece fall
+        if(best < 0) {
+            return new Placement(col, rotation);
+        }
+        return new Placement(pathfinder.getCol(best), pathfinder.getRotation(best), pathfinder.getPath(best));
+    }
+
+    /**
+     * Scores a board, higher is better
+     * @param board The board
+     * @param cleared The number of lines cleared by the last placement
+     * @return The score of the board
+     */
+    public static double evaluate(Board board, int cleared) {
+        int aggregateHeight = 0;
+        int holes = 0;
+        int bumpiness = 0;
+        int previousHeight = -1;
+
+        for(int x = 0; x < Board.COLS; x++) {
+            int height = board.getColumnHeight(x);
+            aggregateHeight += height;
+
+            // Every empty tile below the top of the column is a hole
+            for(int y = Board.ROWS - height + 1; y < Board.ROWS; y++) {
+                if(!board.isOccupied(x, y)) {
+                    holes++;
+                }
+            }
+
+            if(previousHeight >= 0) {
+                bumpiness += Math.abs(height - previousHeight);
+            }
+            previousHeight = height;
+        }
+
+        return HEIGHT_WEIGHT * aggregateHeight + LINES_WEIGHT * cleared
+                + HOLES_WEIGHT * holes + BUMPINESS_WEIGHT * bumpiness;
+    }
+}
@@ -0,0 +1,213 @@
+package Bots;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import java.util.Arrays;
+
+/**
+ * Finds every position where a piece can be added to the board, together with
+ * the shortest sequence of inputs that gets it there. The search is a breadth
+ * first search over (column, row, rotation) states using the same moves as the
+ * player: left, right, both rotations (with the edge nudging of
+ * {@link Engine#rotatePiece(int)}) and down. Pieces can therefore be slid under
+ * overhangs. Gravity is not simulated, so the inputs are assumed to be faster
+ * than the falling piece.
+ *
+ * The buffers are reused between searches, so a pathfinder must not be
+ * shared between threads.
+ */
+
+public class Pathfinder {
+    // How far a piece can stick out of the board to the left or the top
+    private static final int OFFSET = maxDimension();
+    // Number of column values a state can have
+    private static final int COL_SPAN = Board.COLS + OFFSET;
+    // Number of row values a state can have
+    private static final int ROW_SPAN = Board.ROWS + OFFSET;
+    // Number of states
+    private static final int STATE_COUNT = 4 * ROW_SPAN * COL_SPAN;
+
+    // Bit set of visited states
+    private final long[] visited = new long[(STATE_COUNT + 63) >> 6];
+    // Queue of states to expand
+    private final int[] queue = new int[STATE_COUNT];
+    // State each state was reached from
+    private final int[] parent = new int[STATE_COUNT];
+    // Input used to reach each state
+    private final byte[] input = new byte[STATE_COUNT];
+    // Number of inputs needed to reach each state
+    private final int[] depth = new int[STATE_COUNT];
+
+    // States where the piece can't move down anymore
+    private final int[] locks = new int[STATE_COUNT];
+    // Number of lock states found by the last search
+    private int lockCount;
+
+    /**
+     * Finds all the positions where the piece can be added to the board
+     * @param board The board
+     * @param piece The piece
+     * @param col The column where the piece starts
+     * @param row The row where the piece starts
+     * @param rotation The rotation the piece starts with
+     * @return The number of positions found
+     */
+    public int search(Board board, Piece piece, int col, int row, int rotation) {
+        Arrays.fill(visited, 0L);
+        lockCount = 0;
+
+        if(!board.isValidAndEmpty(piece, col, row, rotation)) {
+            return 0;
+        }
+
+        int start = encode(col, row, rotation);
+        visit(start, start, -1, 0);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+
+        while(head < tail) {
+            int state = queue[head++];
+            int c = colOf(state);
+            int r = rowOf(state);
+            int rot = rotationOf(state);
+            int d = depth[state] + 1;
+
+            // Left and right
+            if(board.isValidAndEmpty(piece, c - 1, r, rot)) {
+                tail = enqueue(encode(c - 1, r, rot), state, Engine.INPUT_LEFT, d, tail);
+            }
+            if(board.isValidAndEmpty(piece, c + 1, r, rot)) {
+                tail = enqueue(encode(c + 1, r, rot), state, Engine.INPUT_RIGHT, d, tail);
+            }
+
+            // Rotations, moved away from the edges like the game does
+            int cw = (rot == 3) ? 0 : rot + 1;
+            int cwCol = Board.fitColumn(piece, c, cw);
+            int cwRow = Board.fitRow(piece, r, cw);
+            if(board.isValidAndEmpty(piece, cwCol, cwRow, cw)) {
+                tail = enqueue(encode(cwCol, cwRow, cw), state, Engine.INPUT_ROTATE_CW, d, tail);
+            }
+            int ccw = (rot == 0) ? 3 : rot - 1;
+            int ccwCol = Board.fitColumn(piece, c, ccw);
+            int ccwRow = Board.fitRow(piece, r, ccw);
+            if(board.isValidAndEmpty(piece, ccwCol, ccwRow, ccw)) {
+                tail = enqueue(encode(ccwCol, ccwRow, ccw), state, Engine.INPUT_ROTATE_CCW, d, tail);
+            }
+
+            // Down, or the piece is added to the board here
+            if(board.isValidAndEmpty(piece, c, r + 1, rot)) {
+                tail = enqueue(encode(c, r + 1, rot), state, Engine.INPUT_DOWN, d, tail);
+            } else {
+                locks[lockCount++] = state;
+            }
+        }
+        return lockCount;
+    }
+
+    // Adds a state to the queue if it wasn't visited yet
+    private int enqueue(int state, int from, int move, int d, int tail) {
+        if((visited[state >> 6] & (1L << state)) != 0) {
+            return tail;
+        }
+        visit(state, from, move, d);
+        queue[tail] = state;
+        return tail + 1;
+    }
+
+    // Marks a state as visited and remembers how it was reached
+    private void visit(int state, int from, int move, int d) {
+        visited[state >> 6] |= 1L << state;
+        parent[state] = from;
+        input[state] = (byte)move;
+        depth[state] = d;
+    }
+
+    /**
+     * Gets the number of positions found by the last search
+     * @return The number of positions
+     */
+    public int getCount() {
+        return lockCount;
+    }
+
+    /**
+     * Gets the column of a position found by the last search
+     * @param index The index of the position
+     * @return The column
+     */
+    public int getCol(int index) {
+        return colOf(locks[index]);
+    }
+
+    /**
+     * Gets the row of a position found by the last search
+     * @param index The index of the position
+     * @return The row
+     */
+    public int getRow(int index) {
+        return rowOf(locks[index]);
+    }
+
+    /**
+     * Gets the rotation of a position found by the last search
+     * @param index The index of the position
+     * @return The rotation
+     */
+    public int getRotation(int index) {
+        return rotationOf(locks[index]);
+    }
+
+    /**
+     * Gets the number of inputs needed to reach a position
+     * @param index The index of the position
+     * @return The number of inputs
+     */
+    public int getPathLength(int index) {
+        return depth[locks[index]];
+    }
+
+    /**
+     * Gets the shortest sequence of inputs that moves the piece from the start
+     * to a position. After these inputs one more down input adds the piece to the board.
+     * @param index The index of the position
+     * @return The inputs, see the INPUT_ constants of {@link Engine}
+     */
+    public byte[] getPath(int index) {
+        int state = locks[index];
+        byte[] path = new byte[depth[state]];
+        for(int i = path.length - 1; i >= 0; i--) {
+            path[i] = input[state];
+            state = parent[state];
+        }
+        return path;
+    }
+
+    // Packs a position into a state number
+    private static int encode(int col, int row, int rotation) {
+        return (rotation * ROW_SPAN + row + OFFSET) * COL_SPAN + col + OFFSET;
+    }
+
+    private static int colOf(int state) {
+        return state % COL_SPAN - OFFSET;
+    }
+
+    private static int rowOf(int state) {
+        return (state / COL_SPAN) % ROW_SPAN - OFFSET;
+    }
+
+    private static int rotationOf(int state) {
+        return state / (COL_SPAN * ROW_SPAN);
+    }
+
+    // Gets the largest dimension of all pieces
+    private static int maxDimension() {
+        int max = 0;
+        for(Piece piece : Piece.values()) {
+            max = Math.max(max, piece.getDimension());
+        }
+        return max;
+    }
+}
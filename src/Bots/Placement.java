@@ -0,0 +1,91 @@
+package Bots;
+
+import Game.Engine;
+
+/**
+ * Where a bot wants to put the current piece, and optionally the
+ * inputs that get it there
+ */
+
+public class Placement {
+    // The column of the piece
+    private final int col;
+    // The rotation of the piece
+    private final int rotation;
+    // The inputs that move the piece to its place, or null to rotate first and then move
+    private final byte[] inputs;
+
+    /**
+     * Creates a new placement that is reached by rotating the piece first,
+     * then moving it to the column and dropping it
+     * @param col The column of the piece
+     * @param rotation The rotation of the piece
+     */
+    public Placement(int col, int rotation) {
+        this(col, rotation, null);
+    }
+
+    /**
+     * Creates a new placement that is reached with the given inputs
+     * @param col The column of the piece
+     * @param rotation The rotation of the piece
+     * @param inputs The inputs, see the INPUT_ constants of {@link Engine}
+     */
+    public Placement(int col, int rotation, byte[] inputs) {
+        this.col = col;
+        this.rotation = rotation;
+        this.inputs = inputs;
+    }
+
+    /**
+     * Moves the current piece of the game to this placement and adds it to the board
+     * @param engine The game
+     */
+    public void apply(Engine engine) {
+        int pieces = engine.getPieces();
+        move(engine);
+        if(engine.getPieces() == pieces) {
+            engine.drop();
+        }
+    }
+
+    /**
+     * Moves the current piece of the game to this placement, leaving it to gravity
+     * to add it to the board
+     * @param engine The game
+     */
+    public void move(Engine engine) {
+        if(inputs == null) {
+            engine.moveTo(col, rotation);
+        } else {
+            int pieces = engine.getPieces();
+            for(int i = 0; i < inputs.length && engine.getPieces() == pieces; i++) {
+                engine.applyInput(inputs[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the column of the piece
+     * @return The column
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Gets the rotation of the piece
+     * @return The rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Gets the inputs that move the piece to its place
+     * @return The inputs, or null if the piece is rotated first and then moved
+     */
+    public byte[] getInputs() {
+        return inputs;
+    }
+}
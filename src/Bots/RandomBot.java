@@ -0,0 +1,36 @@
+package Bots;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import java.util.Random;
+
+/**
+ * Puts every piece at a random column with a random rotation.
+ * Useful as a baseline and for stressing the rules.
+ */
+
+public class RandomBot implements Bot {
+    // Random number generator used to choose placements
+    private Random random;
+
+    /**
+     * Creates a new random bot
+     * @param seed The seed of the random number generator
+     */
+    public RandomBot(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Placement choose(Engine engine) {
+        Piece piece = engine.getPieceType();
+        int rotation = random.nextInt(4);
+
+        // Pick a column where the piece stays inside the board
+        int min = -piece.getLeftEmpty(rotation);
+        int max = Board.COLS - piece.getDimension() + piece.getRightEmpty(rotation) - 1;
+        return new Placement(min + random.nextInt(max - min + 1), rotation);
+    }
+}
@@ -0,0 +1,112 @@
+package Bots;
+
+import Game.Engine;
+
+/**
+ * Plays a game with the {@link SearchBot} the way the terminal game does, with
+ * the time for every piece taken from the speed of the game, and prints the
+ * depth and the nodes per second of every piece. A piece whose search ended
+ * more than a frame after its deadline would have missed a tick of the game;
+ * they are counted.
+ */
+
+public class SearchBench {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: SearchBench [--pieces N] [--seed S] [--threads T] "
+            + "[--gravity ROWS_PER_SECOND]";
+    // The frame and the drop cooldown of the game loops
+    private static final long FRAME_NANOS = 1000000000L / 50L;
+    private static final int DROP_COOLDOWN = 25;
+
+    // Number of pieces to place
+    private int pieces = 20;
+    // Seed of the game
+    private long seed = 0;
+    // Number of workers of the bot
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Rows per second the pieces fall, 0 for the speed of the level
+    private float gravity = 0;
+
+    /**
+     * Plays the pieces and prints a line for each
+     */
+    private void run() {
+        SearchBot bot = new SearchBot(0, threads);
+        Engine engine = new Engine();
+        engine.setSeed(seed);
+        engine.reset();
+
+        long depths = 0;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        long maxLate = Long.MIN_VALUE;
+        int missed = 0;
+        int played = 0;
+        while(!engine.isGameOver() && played < pieces) {
+            float speed = gravity > 0 ? gravity : engine.getGameSpeed();
+            long budget = SearchBot.getBudgetNanos(speed, DROP_COOLDOWN, FRAME_NANOS);
+            long start = System.nanoTime();
+            Placement placement = bot.choose(engine, start + budget);
+            long late = System.nanoTime() - start - budget;
+            placement.apply(engine);
+
+            played++;
+            depths += bot.getDepth();
+            totalNodes += bot.getNodes();
+            totalNanos += bot.getNanos();
+            maxLate = Math.max(maxLate, late);
+            if(late > FRAME_NANOS) {
+                missed++;
+            }
+            System.out.printf("piece %d at %.2f rows/s: budget %.1f ms, depth %d%s, %d nodes, %.0fk nodes/s, "
+                    + "%.3f ms past the deadline%n", played, speed, budget / 1e6, bot.getDepth(),
+                    bot.isPartial() ? "+" : "", bot.getNodes(), bot.getNodes() * 1e6 / Math.max(1, bot.getNanos()),
+                    late / 1e6);
+        }
+
+        System.out.printf("%d pieces with %d threads, score %d: average depth %.2f, %.0fk nodes/s, "
+                + "at most %.3f ms past the deadline, %d missed ticks%n", played, threads, engine.getScore(),
+                (double)depths / Math.max(1, played), totalNodes * 1e6 / Math.max(1, totalNanos), maxLate / 1e6, missed);
+    }
+
+    /**
+     * Runs the benchmark from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) {
+        SearchBench bench = new SearchBench();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch(args[i - 1]) {
+                    case "--pieces":
+                        bench.pieces = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        bench.seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        bench.threads = Integer.parseInt(value);
+                        break;
+                    case "--gravity":
+                        bench.gravity = Float.parseFloat(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if(bench.pieces < 0 || bench.threads < 1 || bench.gravity < 0) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        bench.run();
+    }
+}
@@ -0,0 +1,391 @@
+package Bots;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks ahead over the next pieces with iterative deepening until a deadline.
+ * Depth 1 places the current piece like {@link HeuristicBot}, every further
+ * depth also places the next piece of the queue, dropped straight down from
+ * where it spawns, and a line of placements is scored by the heuristic on the
+ * last board with all the lines it cleared. Depth 1 always completes, so a
+ * move is ready whatever the deadline; every later depth starts with the best
+ * move of the depth before, and a depth stopped by the deadline still counts
+ * if that move was searched to the end.
+ *
+ * The moves of the current piece are handed out to workers of the common
+ * fork/join pool, so the search goes deeper with more cores. The workers check
+ * the deadline before every node and stop within one node of it.
+ *
+ * Moves depend on the speed of the machine, so games of this bot can't be
+ * replayed from their seed.
+ */
+
+public class SearchBot implements Bot {
+    // Deepest search: the current piece, the next piece and the pieces after it
+    public static final int MAX_DEPTH = 6;
+    // Time for a piece when the bot isn't told a deadline (-Dtetris.search.millis)
+    private static final long DEFAULT_BUDGET_NANOS = Long.getLong("tetris.search.millis", 10L) * 1000000L;
+    // Value of a line of placements that loses the game
+    private static final double LOST = -1e9;
+
+    /**
+     * The scratch state of one worker
+     */
+    private final class Worker implements Runnable {
+        // Board after each placement of the line that is searched
+        private final Board[] boards = new Board[MAX_DEPTH];
+        // Nodes searched since the search started
+        private long nodes;
+
+        Worker() {
+            for(int i = 0; i < MAX_DEPTH; i++) {
+                boards[i] = new Board();
+            }
+        }
+
+        @Override
+        public void run() {
+            int k;
+            while((k = nextMove.getAndIncrement()) < rootCount) {
+                int move = order[k];
+                if(depth > 1 && isStopped()) {
+                    return;
+                }
+                boards[0].copyFrom(root);
+                boards[0].addPiece(pieces[0], rootPaths.getCol(move), rootPaths.getRow(move),
+                        rootPaths.getRotation(move));
+                nodes++;
+                double value = search(1, boards[0].checkLines());
+                if(Double.isNaN(value)) {
+                    return;
+                }
+                values[move] = value;
+            }
+        }
+
+        /**
+         * Places the piece of a ply in every column and rotation
+         * @param ply The number of pieces placed so far
+         * @param cleared The lines cleared by the pieces placed so far
+         * @return The best value, NaN if the deadline passed
+         */
+        private double search(int ply, int cleared) {
+            Board parent = boards[ply - 1];
+            if(ply == depth) {
+                return HeuristicBot.evaluate(parent, cleared);
+            }
+
+            Piece piece = pieces[ply];
+            int row = piece.getSpawnRow();
+            double best = LOST;
+            for(int rotation = 0; rotation < Piece.ROTATIONS; rotation++) {
+                if(isRepeated(piece, rotation)) {
+                    continue;
+                }
+                for(int col = -piece.getLeftEmpty(rotation); col < Board.COLS; col++) {
+                    if(!parent.isValidAndEmpty(piece, col, row, rotation)) {
+                        continue;
+                    }
+                    if(isStopped()) {
+                        return Double.NaN;
+                    }
+                    Board child = boards[ply];
+                    child.copyFrom(parent);
+                    child.addPiece(piece, col, row + parent.getDropDistance(piece, col, row, rotation), rotation);
+                    nodes++;
+                    double value = search(ply + 1, cleared + child.checkLines());
+                    if(Double.isNaN(value)) {
+                        return Double.NaN;
+                    }
+                    best = Math.max(best, value);
+                }
+            }
+            return best;
+        }
+    }
+
+    // Time for a piece when choose is called without a deadline
+    private final long budgetNanos;
+    private final Worker[] workers;
+
+    // The position, copied from the game when the search starts
+    private final Board root = new Board();
+    private final Piece[] pieces = new Piece[MAX_DEPTH];
+    private final Piece[] queue = new Piece[MAX_DEPTH - 2];
+    private int col;
+    private int rotation;
+
+    // Placements of the current piece and the inputs that get there
+    private final Pathfinder rootPaths = new Pathfinder();
+    private int rootCount;
+    // Moves in the order they are searched, the best of the last depth first
+    private int[] order = new int[0];
+    // Value of every move at the depth that is searched, NaN until it is done
+    private double[] values = new double[0];
+    // Next entry of the order to hand out
+    private final AtomicInteger nextMove = new AtomicInteger();
+    // Depth that is searched
+    private int depth;
+
+    // Time the search must end
+    private volatile long deadline;
+    // Set to end the search before the deadline
+    private volatile boolean stopped;
+    // The running search, null if none was started
+    private ForkJoinTask<?> task;
+
+    // Results of the last search
+    private int best;
+    private int completedDepth;
+    private boolean partial;
+    private long nodes;
+    private long nanos;
+
+    /**
+     * Creates a new search bot that takes 10 ms per piece and uses every core
+     */
+    public SearchBot() {
+        this(DEFAULT_BUDGET_NANOS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new search bot
+     * @param budgetNanos The time for a piece when {@link #choose(Engine)} is called
+     * @param threads The number of workers that search at the same time
+     */
+    public SearchBot(long budgetNanos, int threads) {
+        this.budgetNanos = budgetNanos;
+        this.workers = new Worker[Math.max(1, threads)];
+        for(int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+        }
+    }
+
+    /**
+     * Gets the time the bot has for a piece of a game that runs in real time.
+     * A new piece falls its first row one gravity cycle after it spawns, and
+     * the drop key works again after the drop cooldown, so a player would have
+     * moved the piece by the earlier of both. One frame is kept back, the game
+     * loop plays the move on the first frame after the deadline.
+     * @param rowsPerSecond The speed of the game, see {@link Engine#getGameSpeed()}
+     * @param dropCooldownFrames The frames after a lock during which the drop key doesn't work
+     * @param frameNanos The length of a frame of the game loop
+     * @return The time in nanoseconds, 0 if only depth 1 fits
+     */
+    public static long getBudgetNanos(float rowsPerSecond, int dropCooldownFrames, long frameNanos) {
+        long row = (long)(1e9 / rowsPerSecond);
+        return Math.max(0, Math.min(row, dropCooldownFrames * frameNanos) - frameNanos);
+    }
+
+    @Override
+    public Placement choose(Engine engine) {
+        return choose(engine, System.nanoTime() + budgetNanos);
+    }
+
+    /**
+     * Searches on the current thread and the workers until the deadline
+     * @param engine The game
+     * @param deadline The System.nanoTime() the search must end by
+     * @return The placement of the current piece
+     */
+    public Placement choose(Engine engine, long deadline) {
+        cancel();
+        prepare(engine, deadline);
+        run();
+        return getPlacement();
+    }
+
+    /**
+     * Starts a search on the workers and returns at once, the game keeps running
+     * while the bot thinks. Stops the search that was still running.
+     * @param engine The game, it is copied
+     * @param deadline The System.nanoTime() the search must end by
+     */
+    public void start(Engine engine, long deadline) {
+        cancel();
+        prepare(engine, deadline);
+        task = ForkJoinPool.commonPool().submit(this::run);
+    }
+
+    /**
+     * Checks to see if the search that was started searched every depth
+     * @return If the search ended before its deadline
+     */
+    public boolean isDone() {
+        return task == null || task.isDone();
+    }
+
+    /**
+     * Ends the search that was started and gets its move. Waits at most for the
+     * workers to finish the node they are at.
+     * @return The placement of the current piece
+     */
+    public Placement take() {
+        cancel();
+        return getPlacement();
+    }
+
+    // Stops the running search and waits for it
+    private void cancel() {
+        if(task != null) {
+            stopped = true;
+            task.join();
+            task = null;
+        }
+    }
+
+    // Copies the position of the game and finds the moves of the current piece
+    private void prepare(Engine engine, long deadline) {
+        this.deadline = deadline;
+        this.stopped = false;
+        root.copyFrom(engine.getBoard());
+        pieces[0] = engine.getPieceType();
+        pieces[1] = engine.getNextPieceType();
+        engine.peekPieces(queue);
+        System.arraycopy(queue, 0, pieces, 2, queue.length);
+        col = engine.getPieceCol();
+        rotation = engine.getPieceRotation();
+
+        rootCount = rootPaths.search(root, pieces[0], col, engine.getPieceRow(), rotation);
+        if(order.length < rootCount) {
+            order = new int[rootCount];
+            values = new double[rootCount];
+        }
+        for(int i = 0; i < rootCount; i++) {
+            order[i] = i;
+        }
+        best = -1;
+        completedDepth = 0;
+        partial = false;
+        nodes = 0;
+        for(Worker worker : workers) {
+            worker.nodes = 0;
+        }
+    }
+
+    // Deepens the search until the deadline or the last piece
+    private void run() {
+        long start = System.nanoTime();
+        for(depth = 1; depth <= MAX_DEPTH && rootCount > 0; depth++) {
+            Arrays.fill(values, 0, rootCount, Double.NaN);
+            nextMove.set(0);
+
+            // The first worker runs here, joining the others runs them here too if no other thread took them
+            ForkJoinTask<?>[] forked = new ForkJoinTask<?>[workers.length - 1];
+            for(int i = 1; i < workers.length; i++) {
+                forked[i - 1] = ForkJoinTask.adapt(workers[i]).fork();
+            }
+            workers[0].run();
+            for(ForkJoinTask<?> worker : forked) {
+                worker.join();
+            }
+
+            // The best move of the last depth comes first, a stopped depth counts if it was searched
+            int done = 0;
+            int bestHere = -1;
+            for(int k = 0; k < rootCount; k++) {
+                int move = order[k];
+                if(!Double.isNaN(values[move])) {
+                    done++;
+                    if(bestHere < 0 || values[move] > values[bestHere]) {
+                        bestHere = move;
+                    }
+                }
+            }
+            if(done == rootCount) {
+                best = bestHere;
+                completedDepth = depth;
+                sortOrder();
+            } else {
+                if(!Double.isNaN(values[order[0]])) {
+                    best = bestHere;
+                    partial = true;
+                }
+                break;
+            }
+            if(isStopped()) {
+                break;
+            }
+        }
+
+        for(Worker worker : workers) {
+            nodes += worker.nodes;
+        }
+        nanos = System.nanoTime() - start;
+    }
+
+    // Sorts the moves by their value, best first
+    private void sortOrder() {
+        for(int i = 1; i < rootCount; i++) {
+            int move = order[i];
+            int j = i;
+            while(j > 0 && values[order[j - 1]] < values[move]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = move;
+        }
+    }
+
+    private boolean isStopped() {
+        return stopped || System.nanoTime() - deadline > 0;
+    }
+
+    // Checks to see if a rotation has the same tiles as an earlier one, like every rotation of the O piece
+    private static boolean isRepeated(Piece piece, int rotation) {
+        for(int earlier = 0; earlier < rotation; earlier++) {
+            if(piece.getTileMask(earlier) == piece.getTileMask(rotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Gets the move of the last search
+    private Placement getPlacement() {
+        // Nowhere to go, just let the piece fall
+        if(best < 0) {
+            return new Placement(col, rotation);
+        }
+        return new Placement(rootPaths.getCol(best), rootPaths.getRotation(best), rootPaths.getPath(best));
+    }
+
+    /**
+     * Gets the deepest depth the last search completed
+     * @return The depth, 0 if the piece had nowhere to go
+     */
+    public int getDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Checks to see if the move of the last search comes from a depth the deadline stopped
+     * @return If the move was found one depth deeper than {@link #getDepth()}
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Gets the number of placements the last search tried
+     * @return The number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets how long the last search ran
+     * @return The time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,120 @@
+package Features;
+
+import Game.Board;
+
+import java.util.Arrays;
+
+/**
+ * The features of every board of a {@link BoardStore}, laid out the same
+ * way as the store: one run of values per column or row, one value per board.
+ */
+
+public class BoardFeatures {
+    // Number of boards the features are kept for
+    private final int capacity;
+    // heights[x * capacity + board] is the height of column x
+    private final byte[] heights;
+    // holes[x * capacity + board] is the number of empty tiles below the top of column x
+    private final byte[] holes;
+    // rowFill[y * capacity + board] is the number of occupied tiles of row y
+    private final byte[] rowFill;
+    // fullRows[board] has bit y set if row y is full
+    private final int[] fullRows;
+
+    /**
+     * Creates features for the boards of a store
+     * @param store The store
+     */
+    public BoardFeatures(BoardStore store) {
+        this.capacity = store.getCapacity();
+        this.heights = new byte[Board.COLS * capacity];
+        this.holes = new byte[Board.COLS * capacity];
+        this.rowFill = new byte[Board.ROWS * capacity];
+        this.fullRows = new int[capacity];
+    }
+
+    /**
+     * Gets the height of a column
+     * @param index The index of the board
+     * @param x The column
+     * @return The height, 0 if the column is empty
+     */
+    public int getHeight(int index, int x) {
+        return heights[x * capacity + index];
+    }
+
+    /**
+     * Gets the number of holes of a column
+     * @param index The index of the board
+     * @param x The column
+     * @return The number of empty tiles below the top of the column
+     */
+    public int getHoles(int index, int x) {
+        return holes[x * capacity + index];
+    }
+
+    /**
+     * Gets the number of occupied tiles of a row
+     * @param index The index of the board
+     * @param y The row
+     * @return The number of occupied tiles
+     */
+    public int getRowFill(int index, int y) {
+        return rowFill[y * capacity + index];
+    }
+
+    /**
+     * Gets the full rows of a board
+     * @param index The index of the board
+     * @return Bit mask where bit y is set if row y is full
+     */
+    public int getFullRows(int index) {
+        return fullRows[index];
+    }
+
+    /**
+     * Checks to see if two sets of features are equal for the first boards
+     * @param other The other features
+     * @param count The number of boards to compare
+     * @return If the features are equal
+     */
+    public boolean matches(BoardFeatures other, int count) {
+        for(int i = 0; i < count; i++) {
+            if(fullRows[i] != other.fullRows[i]) {
+                return false;
+            }
+            for(int x = 0; x < Board.COLS; x++) {
+                if(getHeight(i, x) != other.getHeight(i, x) || getHoles(i, x) != other.getHoles(i, x)) {
+                    return false;
+                }
+            }
+            for(int y = 0; y < Board.ROWS; y++) {
+                if(getRowFill(i, y) != other.getRowFill(i, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    byte[] heights() {
+        return heights;
+    }
+
+    byte[] holes() {
+        return holes;
+    }
+
+    byte[] rowFill() {
+        return rowFill;
+    }
+
+    int[] fullRows() {
+        return fullRows;
+    }
+
+    // Clears the full row masks before they are filled in again
+    void clearFullRows() {
+        Arrays.fill(fullRows, 0);
+    }
+}
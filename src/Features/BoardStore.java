@@ -0,0 +1,101 @@
+package Features;
+
+import Game.Board;
+
+import java.util.Arrays;
+
+/**
+ * Stores the occupancy of many boards as a struct of arrays: for every tile of
+ * the board there is one run of bytes, one byte per board. Looking at the same
+ * tile of consecutive boards is then a sequential read, which lets the feature
+ * extractors process many boards at once.
+ */
+
+public class BoardStore {
+    // Boards are stored in groups of this size, so vector loops never need a tail
+    public static final int ALIGNMENT = 64;
+
+    // Number of boards the store can hold, a multiple of ALIGNMENT
+    private final int capacity;
+    // Number of boards in the store
+    private int size;
+    // cells[(y * COLS + x) * capacity + board] is 1 if the tile is occupied, else 0
+    private final byte[] cells;
+
+    /**
+     * Creates a new store
+     * @param capacity The number of boards the store can hold
+     */
+    public BoardStore(int capacity) {
+        this.capacity = (capacity + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        this.cells = new byte[Board.ROWS * Board.COLS * this.capacity];
+    }
+
+    /**
+     * Copies a board into the store
+     * @param index The index of the board in the store
+     * @param board The board
+     */
+    public void set(int index, Board board) {
+        for(int y = 0; y < Board.ROWS; y++) {
+            for(int x = 0; x < Board.COLS; x++) {
+                cells[(y * Board.COLS + x) * capacity + index] = (byte)(board.isOccupied(x, y) ? 1 : 0);
+            }
+        }
+        size = Math.max(size, index + 1);
+    }
+
+    /**
+     * Adds a board at the end of the store
+     * @param board The board
+     * @return The index of the board
+     */
+    public int add(Board board) {
+        int index = size;
+        set(index, board);
+        return index;
+    }
+
+    /**
+     * Removes every board from the store
+     */
+    public void clear() {
+        Arrays.fill(cells, (byte)0);
+        size = 0;
+    }
+
+    /**
+     * Checks to see if a tile of a board is occupied
+     * @param index The index of the board
+     * @param x The column
+     * @param y The row
+     * @return If the tile is occupied
+     */
+    public boolean isOccupied(int index, int x, int y) {
+        return cells[(y * Board.COLS + x) * capacity + index] != 0;
+    }
+
+    /**
+     * Gets the raw occupancy array
+     * @return The cells, see the layout above
+     */
+    public byte[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Gets the number of boards the store can hold
+     * @return The capacity, a multiple of ALIGNMENT
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of boards in the store
+     * @return The number of boards
+     */
+    public int getSize() {
+        return size;
+    }
+}
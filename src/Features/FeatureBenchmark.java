@@ -0,0 +1,74 @@
+package Features;
+
+import Bots.Bot;
+import Game.Engine;
+
+/**
+ * Compares the speed of the scalar and the vector feature extractors on
+ * boards taken from random games, and checks that both give the same results.
+ */
+
+public class FeatureBenchmark {
+    // Number of times each extractor runs before it is timed
+    private static final int WARMUP_RUNS = 200;
+
+    /**
+     * Runs the benchmark
+     * @param args Number of boards and number of timed runs
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        BoardStore store = fill(count);
+
+        FeatureExtractor scalar = new ScalarFeatureExtractor();
+        BoardFeatures scalarFeatures = new BoardFeatures(store);
+        report("scalar", scalar, store, scalarFeatures, runs);
+
+        FeatureExtractor vector = FeatureExtractor.createVector();
+        if(vector == null) {
+            System.out.println("vector: not available (compile the simd sources and run with --add-modules jdk.incubator.vector)");
+            return;
+        }
+        BoardFeatures vectorFeatures = new BoardFeatures(store);
+        report("vector", vector, store, vectorFeatures, runs);
+
+        if(!vectorFeatures.matches(scalarFeatures, store.getSize())) {
+            System.out.println("MISMATCH between scalar and vector features");
+            System.exit(1);
+        }
+    }
+
+    // Fills a store with boards from games played by a random bot
+    private static BoardStore fill(int count) {
+        BoardStore store = new BoardStore(count);
+        Engine engine = new Engine();
+        Bot bot = Bot.create("random", 0);
+        engine.setSeed(0);
+        engine.reset();
+
+        while(store.getSize() < count) {
+            if(engine.isGameOver()) {
+                engine.reset();
+            }
+            bot.choose(engine).apply(engine);
+            store.add(engine.getBoard());
+        }
+        return store;
+    }
+
+    // Times an extractor and prints the number of boards per second
+    private static void report(String name, FeatureExtractor extractor, BoardStore store, BoardFeatures features, int runs) {
+        for(int i = 0; i < WARMUP_RUNS; i++) {
+            extractor.extract(store, features);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < runs; i++) {
+            extractor.extract(store, features);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %.1f million boards/sec%n", name, (double)store.getSize() * runs / seconds / 1e6);
+    }
+}
@@ -0,0 +1,38 @@
+package Features;
+
+/**
+ * Calculates the column heights, holes, row fill counts and full rows of
+ * every board in a {@link BoardStore}
+ */
+
+public interface FeatureExtractor {
+    /**
+     * Calculates the features of the boards of a store
+     * @param store The boards
+     * @param features Where the features are written
+     */
+    void extract(BoardStore store, BoardFeatures features);
+
+    /**
+     * Creates the fastest extractor that is available. The vector extractor needs
+     * the optional simd sources and the jdk.incubator.vector module, otherwise the
+     * scalar extractor is used.
+     * @return The extractor
+     */
+    static FeatureExtractor create() {
+        FeatureExtractor vector = createVector();
+        return vector != null ? vector : new ScalarFeatureExtractor();
+    }
+
+    /**
+     * Creates the vector extractor
+     * @return The extractor, or null if it isn't available
+     */
+    static FeatureExtractor createVector() {
+        try {
+            return (FeatureExtractor)Class.forName("Features.VectorFeatureExtractor").getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
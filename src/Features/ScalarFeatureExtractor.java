@@ -0,0 +1,62 @@
+package Features;
+
+import Game.Board;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the features without the Vector API. Used when the vector
+ * extractor is not available. The loops go over the boards innermost, so the
+ * store is read sequentially.
+ */
+
+public class ScalarFeatureExtractor implements FeatureExtractor {
+
+    @Override
+    public void extract(BoardStore store, BoardFeatures features) {
+        byte[] cells = store.getCells();
+        byte[] heights = features.heights();
+        byte[] holes = features.holes();
+        byte[] rowFill = features.rowFill();
+        int[] fullRows = features.fullRows();
+        int capacity = store.getCapacity();
+        int size = store.getSize();
+
+        // Heights and holes, going down each column
+        for(int x = 0; x < Board.COLS; x++) {
+            int out = x * capacity;
+            Arrays.fill(heights, out, out + size, (byte)0);
+            Arrays.fill(holes, out, out + size, (byte)0);
+            for(int y = 0; y < Board.ROWS; y++) {
+                int in = (y * Board.COLS + x) * capacity;
+                for(int b = 0; b < size; b++) {
+                    if(cells[in + b] != 0) {
+                        if(heights[out + b] == 0) {
+                            heights[out + b] = (byte)(Board.ROWS - y);
+                        }
+                    } else if(heights[out + b] != 0) {
+                        holes[out + b]++;
+                    }
+                }
+            }
+        }
+
+        // Fill count of each row, tiles are stored as 0 or 1 so they can be added up
+        Arrays.fill(fullRows, 0, size, 0);
+        for(int y = 0; y < Board.ROWS; y++) {
+            int out = y * capacity;
+            Arrays.fill(rowFill, out, out + size, (byte)0);
+            for(int x = 0; x < Board.COLS; x++) {
+                int in = (y * Board.COLS + x) * capacity;
+                for(int b = 0; b < size; b++) {
+                    rowFill[out + b] += cells[in + b];
+                }
+            }
+            for(int b = 0; b < size; b++) {
+                if(rowFill[out + b] == Board.COLS) {
+                    fullRows[b] |= 1 << y;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package Game;
+
+/**
+ * Moves the piece sideways while a direction key is held, independent of the
+ * key repeat of the operating system. The first press moves the piece one column.
+ * After the delayed auto shift (DAS) the piece keeps moving one column every
+ * auto repeat rate (ARR) ticks; an ARR of 0 moves it to the wall at once.
+ */
+
+public class AutoShift {
+    // Ticks a key has to be held before the piece starts moving by itself
+    private final int delay;
+    // Ticks between two automatic moves, 0 to move to the wall at once
+    private final int repeat;
+
+    // Direction that is being charged: -1 left, 1 right, 0 none
+    private int direction;
+    // Ticks the key of the direction has been held
+    private int charge;
+
+    /**
+     * Creates a new auto shift
+     * @param delay Ticks a key has to be held before the piece starts moving by itself
+     * @param repeat Ticks between two automatic moves, 0 to move to the wall at once
+     */
+    public AutoShift(int delay, int repeat) {
+        this.delay = delay;
+        this.repeat = repeat;
+    }
+
+    /**
+     * Moves the piece for one tick
+     * @param engine The game
+     * @param leftPresses Number of times left was pressed since the last tick
+     * @param leftHeld If left is held down
+     * @param rightPresses Number of times right was pressed since the last tick
+     * @param rightHeld If right is held down
+     */
+    public void update(Engine engine, int leftPresses, boolean leftHeld, int rightPresses, boolean rightHeld) {
+        // A new press moves one column and starts charging that direction
+        boolean pressed = false;
+        for(int i = 0; i < leftPresses; i++) {
+            engine.moveLeft();
+            direction = -1;
+            charge = 0;
+            pressed = true;
+        }
+        for(int i = 0; i < rightPresses; i++) {
+            engine.moveRight();
+            direction = 1;
+            charge = 0;
+            pressed = true;
+        }
+
+        // When the key is released, fall back to the other key if it is still held
+        boolean held = direction < 0 ? leftHeld : direction > 0 && rightHeld;
+        if(!held) {
+            direction = leftHeld ? -1 : rightHeld ? 1 : 0;
+            charge = 0;
+            return;
+        }
+        if(pressed) {
+            return;
+        }
+
+        charge++;
+        if(charge < delay) {
+            return;
+        }
+        if(repeat == 0) {
+            engine.shiftToWall(direction);
+        } else if((charge - delay) % repeat == 0) {
+            if(direction < 0) {
+                engine.moveLeft();
+            } else {
+                engine.moveRight();
+            }
+        }
+    }
+
+    /**
+     * Gets the direction that is being charged
+     * @return -1 for left, 1 for right, 0 for none
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the number of ticks the direction has been held
+     * @return The number of ticks
+     */
+    public int getCharge() {
+        return charge;
+    }
+
+    /**
+     * Puts back a direction and charge, to take a game back to an earlier tick
+     * @param direction The direction, see {@link #getDirection()}
+     * @param charge The charge, see {@link #getCharge()}
+     */
+    public void restore(int direction, int charge) {
+        this.direction = direction;
+        this.charge = charge;
+    }
+
+    /**
+     * Forgets the direction that is being charged
+     */
+    public void reset() {
+        direction = 0;
+        charge = 0;
+    }
+}
@@ -0,0 +1,292 @@
+package Game;
+
+import Pieces.Piece;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Steps many independent games at once, for training agents. Every call of
+ * {@link #step(int[])} applies one action per game and writes the observations
+ * into a direct buffer that is reused, so stepping doesn't allocate.
+ *
+ * Observation layout of game i, starting at i * OBSERVATION_SIZE:
+ * <pre>
+ *   0..219  board, row by row: 0 if empty, else piece id + 1
+ *   220     current piece id
+ *   221     next piece id
+ *   222     column of the current piece (signed)
+ *   223     row of the current piece (signed)
+ *   224     rotation of the current piece
+ *   225     1 if the game ended in this step (the game was reset), else 0
+ *   226-227 unused
+ *   228     score gained in this step (int, native byte order)
+ * </pre>
+ */
+
+public class BatchEnvironment implements AutoCloseable {
+    // Action: do nothing
+    public static final int ACTION_NONE = 0;
+    // Action: move one column to the left
+    public static final int ACTION_LEFT = 1;
+    // Action: move one column to the right
+    public static final int ACTION_RIGHT = 2;
+    // Action: rotate clockwise
+    public static final int ACTION_ROTATE_CW = 3;
+    // Action: rotate anti-clockwise
+    public static final int ACTION_ROTATE_CCW = 4;
+    // Action: move one row down
+    public static final int ACTION_DOWN = 5;
+    // Action: drop the piece until it is added to the board
+    public static final int ACTION_DROP = 6;
+    // Number of different actions
+    public static final int ACTION_COUNT = 7;
+
+    // Number of bytes of one observation
+    public static final int OBSERVATION_SIZE = 232;
+    // Offsets inside one observation
+    private static final int CURRENT_OFFSET = Board.ROWS * Board.COLS;
+    private static final int NEXT_OFFSET = CURRENT_OFFSET + 1;
+    private static final int COL_OFFSET = CURRENT_OFFSET + 2;
+    private static final int ROW_OFFSET = CURRENT_OFFSET + 3;
+    private static final int ROTATION_OFFSET = CURRENT_OFFSET + 4;
+    private static final int DONE_OFFSET = CURRENT_OFFSET + 5;
+    private static final int REWARD_OFFSET = CURRENT_OFFSET + 8;
+
+    // The games
+    private final Engine[] engines;
+    // Number of steps taken by each game in the current piece
+    private final int[] ticks;
+    // Every this many steps the piece moves down one row
+    private final int stepsPerGravity;
+    // The observations of all games
+    private final ByteBuffer observations;
+
+    // Pool that steps the games
+    private final ForkJoinPool pool;
+    // Task that steps every chunk
+    private final StepAll root;
+    // Actions of the current step
+    private int[] actions;
+
+    /**
+     * Creates a new environment
+     * @param count The number of games
+     * @param seed The seed of the first game, game i uses seed + i
+     * @param stepsPerGravity Every this many steps the piece moves down one row
+     * @param threads The number of threads that step the games
+     */
+    public BatchEnvironment(int count, long seed, int stepsPerGravity, int threads) {
+        this.engines = new Engine[count];
+        this.ticks = new int[count];
+        this.stepsPerGravity = stepsPerGravity;
+        this.observations = ByteBuffer.allocateDirect(count * OBSERVATION_SIZE).order(ByteOrder.nativeOrder());
+        for(int i = 0; i < count; i++) {
+            engines[i] = new Engine();
+            engines[i].setSeed(seed + i);
+        }
+
+        // Split the games into a few chunks per thread, so the threads stay busy
+        this.pool = new ForkJoinPool(threads);
+        int chunkCount = Math.min(count, threads * 4);
+        StepChunk[] chunks = new StepChunk[chunkCount];
+        for(int c = 0; c < chunkCount; c++) {
+            chunks[c] = new StepChunk(count * c / chunkCount, count * (c + 1) / chunkCount);
+        }
+        this.root = new StepAll(chunks);
+
+        reset();
+    }
+
+    /**
+     * Resets every game and writes the first observations
+     */
+    public void reset() {
+        for(int i = 0; i < engines.length; i++) {
+            engines[i].reset();
+            ticks[i] = 0;
+            writeObservation(i, 0, false);
+        }
+    }
+
+    /**
+     * Applies one action to every game, moves the pieces down when gravity is due and
+     * writes the new observations. Games that end are reset right away.
+     * @param actions One ACTION_ constant per game
+     */
+    public void step(int[] actions) {
+        if(actions.length != engines.length) {
+            throw new IllegalArgumentException("Expected " + engines.length + " actions, got " + actions.length);
+        }
+        this.actions = actions;
+        root.reinitialize();
+        pool.invoke(root);
+    }
+
+    // Steps the games from start to end
+    private void stepRange(int start, int end) {
+        for(int i = start; i < end; i++) {
+            Engine engine = engines[i];
+            int score = engine.getScore();
+            int pieces = engine.getPieces();
+
+            applyAction(engine, actions[i]);
+
+            // Gravity, unless the action already added the piece to the board
+            if(engine.getPieces() == pieces && ++ticks[i] >= stepsPerGravity) {
+                ticks[i] = 0;
+                engine.step();
+            }
+            if(engine.getPieces() != pieces) {
+                ticks[i] = 0;
+            }
+
+            int reward = engine.getScore() - score;
+            boolean done = engine.isGameOver();
+            if(done) {
+                engine.reset();
+            }
+            writeObservation(i, reward, done);
+        }
+    }
+
+    // Applies an action to a game
+    private static void applyAction(Engine engine, int action) {
+        switch(action) {
+            case ACTION_NONE:
+                break;
+            case ACTION_LEFT:
+                engine.moveLeft();
+                break;
+            case ACTION_RIGHT:
+                engine.moveRight();
+                break;
+            case ACTION_ROTATE_CW:
+                engine.rotateClockwise();
+                break;
+            case ACTION_ROTATE_CCW:
+                engine.rotateAntiClockwise();
+                break;
+            case ACTION_DOWN:
+                engine.step();
+                break;
+            case ACTION_DROP:
+                engine.drop();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+
+    // Writes the observation of a game
+    private void writeObservation(int index, int reward, boolean done) {
+        Engine engine = engines[index];
+        Board board = engine.getBoard();
+        int base = index * OBSERVATION_SIZE;
+
+        for(int y = 0; y < Board.ROWS; y++) {
+            int rowBase = base + y * Board.COLS;
+            for(int x = 0; x < Board.COLS; x++) {
+                Piece tile = board.getTile(x, y);
+                observations.put(rowBase + x, (byte)(tile == null ? 0 : tile.getIndex() + 1));
+            }
+        }
+        observations.put(base + CURRENT_OFFSET, (byte)engine.getPieceType().getIndex());
+        observations.put(base + NEXT_OFFSET, (byte)engine.getNextPieceType().getIndex());
+        observations.put(base + COL_OFFSET, (byte)engine.getPieceCol());
+        observations.put(base + ROW_OFFSET, (byte)engine.getPieceRow());
+        observations.put(base + ROTATION_OFFSET, (byte)engine.getPieceRotation());
+        observations.put(base + DONE_OFFSET, (byte)(done ? 1 : 0));
+        observations.putInt(base + REWARD_OFFSET, reward);
+    }
+
+    /**
+     * Gets the buffer the observations are written to. The same buffer is
+     * used for every step.
+     * @return The observations of all games
+     */
+    public ByteBuffer getObservations() {
+        return observations;
+    }
+
+    /**
+     * Gets the number of games
+     * @return The number of games
+     */
+    public int getCount() {
+        return engines.length;
+    }
+
+    /**
+     * Stops the threads of the environment
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Steps every chunk in parallel
+    @SuppressWarnings("serial")
+    private static class StepAll extends RecursiveAction {
+        private final StepChunk[] chunks;
+
+        StepAll(StepChunk[] chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            for(StepChunk chunk : chunks) {
+                chunk.reinitialize();
+            }
+            invokeAll(chunks);
+        }
+    }
+
+    // Steps a range of games
+    @SuppressWarnings("serial")
+    private class StepChunk extends RecursiveAction {
+        private final int start;
+        private final int end;
+
+        StepChunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            stepRange(start, end);
+        }
+    }
+
+    /**
+     * Measures the throughput with random actions
+     * @param args Number of games, number of steps and number of threads
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        try(BatchEnvironment env = new BatchEnvironment(count, 0, 4, threads)) {
+            int[] actions = new int[count];
+            Random random = new Random(0);
+            env.reset();
+
+            long start = System.nanoTime();
+            for(int s = 0; s < steps; s++) {
+                for(int i = 0; i < count; i++) {
+                    actions[i] = random.nextInt(ACTION_COUNT);
+                }
+                env.step(actions);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games x %d steps on %d threads: %.0f env-steps/sec%n",
+                    count, steps, threads, (double)count * steps / seconds);
+        }
+    }
+}
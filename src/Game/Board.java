@@ -0,0 +1,399 @@
+package Game;
+
+import Pieces.Piece;
+
+/**
+ * The game board: keeps track of the tiles that were placed and
+ * contains the rules for placing pieces and clearing lines.
+ *
+ * Rows are copied on write: a {@link Snapshot} shares the row arrays of the
+ * board, and the board copies a row only when it changes after the snapshot was
+ * taken. Taking a snapshot or going back to one copies 22 references, and every
+ * snapshot only keeps alive the rows that changed since.
+ */
+
+public class Board {
+    // Number of columns on game board
+    public static final int COLS = 10;
+    // Total number of rows on game board
+    public static final int ROWS = 22;
+
+    // Row mask of a full row
+    private static final int FULL_ROW = (1 << COLS) - 1;
+    // Mask with a bit for every row
+    private static final int ALL_ROWS = (1 << ROWS) - 1;
+
+    /**
+     * The tiles of a board at one moment. Can be filled again to reuse it.
+     */
+    public static final class Snapshot {
+        private final Piece[][] pieces = new Piece[ROWS][];
+        private final int[] rows = new int[ROWS];
+        private int clearedRows;
+    }
+
+    private Piece[][] pieces;
+    // Occupied tiles of each row, bit x is set if column x is occupied
+    private int[] rows;
+    // Rows whose arrays belong only to this board, other rows are shared and copied before they change
+    private int ownedRows;
+    // Bit mask of the rows removed by the last checkLines call
+    private int clearedRows;
+
+    /**
+     * Creates a new empty board
+     */
+    public Board() {
+        this.pieces = new Piece[ROWS][COLS];
+        this.rows = new int[ROWS];
+        this.ownedRows = ALL_ROWS;
+    }
+
+    /**
+     * Resets the board and clears every tile
+     */
+    public void clear() {
+        for(int i = 0; i < ROWS; i++) {
+            if((ownedRows >>> i & 1) == 0) {
+                pieces[i] = new Piece[COLS];
+            } else {
+                for(int j = 0; j < COLS; j++) {
+                    pieces[i][j] = null;
+                }
+            }
+            rows[i] = 0;
+        }
+        ownedRows = ALL_ROWS;
+        clearedRows = 0;
+    }
+
+    /**
+     * Makes this board a copy of another board
+     * @param other The board to copy
+     */
+    public void copyFrom(Board other) {
+        for(int i = 0; i < ROWS; i++) {
+            if((ownedRows >>> i & 1) == 0) {
+                pieces[i] = other.pieces[i].clone();
+            } else {
+                System.arraycopy(other.pieces[i], 0, pieces[i], 0, COLS);
+            }
+        }
+        System.arraycopy(other.rows, 0, rows, 0, ROWS);
+        ownedRows = ALL_ROWS;
+        clearedRows = other.clearedRows;
+    }
+
+    /**
+     * Saves the tiles of the board. The rows are shared until the board changes them.
+     * @param snapshot The snapshot to fill
+     */
+    public void saveTo(Snapshot snapshot) {
+        System.arraycopy(pieces, 0, snapshot.pieces, 0, ROWS);
+        System.arraycopy(rows, 0, snapshot.rows, 0, ROWS);
+        snapshot.clearedRows = clearedRows;
+        ownedRows = 0;
+    }
+
+    /**
+     * Puts back the tiles of a snapshot. The rows are shared until the board changes them.
+     * @param snapshot The snapshot, which stays unchanged
+     */
+    public void restoreFrom(Snapshot snapshot) {
+        System.arraycopy(snapshot.pieces, 0, pieces, 0, ROWS);
+        System.arraycopy(snapshot.rows, 0, rows, 0, ROWS);
+        clearedRows = snapshot.clearedRows;
+        ownedRows = 0;
+    }
+
+    /**
+     * Checks to see if the tile is already occupied
+     * @param x The x coordinate to check
+     * @param y The y coordinate to check
+     * @return Whether or not the tile is occupied
+     */
+    public boolean isOccupied(int x, int y) {
+        return (rows[y] >>> x & 1) != 0;
+    }
+
+    /**
+     * Gets the occupied tiles of a row
+     * @param y The row
+     * @return Bit mask where bit x is set if column x is occupied
+     */
+    public int getRowMask(int y) {
+        return rows[y];
+    }
+
+    /**
+     * Sets the tiles of a row from a row mask
+     * @param y The row
+     * @param mask Bit mask where bit x is set if column x is occupied
+     * @param piece The piece whose color the occupied tiles get
+     */
+    public void setRow(int y, int mask, Piece piece) {
+        for(int x = 0; x < COLS; x++) {
+            setTile(x, y, (mask >>> x & 1) != 0 ? piece : null);
+        }
+    }
+
+    /**
+     * Gets the piece that the tile belongs to
+     * @param x The column
+     * @param y The row
+     * @return The piece, or null if the tile is empty
+     */
+    public Piece getTile(int x, int y) {
+        return pieces[y][x];
+    }
+
+    /**
+     * Determines whether or not a piece can be placed at the coordinates.
+     * @param piece The piece
+     * @param x The x coordinate of the piece
+     * @param y The y coordinate of the piece
+     * @param rotation The rotation of the piece
+     * @return Whether or not the position is valid
+     */
+    public boolean isValidAndEmpty(Piece piece, int x, int y, int rotation) {
+
+        // Ensure the piece is in a valid column.
+        if(x < -piece.getLeftEmpty(rotation) || x + piece.getDimension() - piece.getRightEmpty(rotation) >= COLS) {
+            return false;
+        }
+
+        // Ensure the piece is in a valid row.
+        if(y < -piece.getAboveEmpty(rotation) || y + piece.getDimension() - piece.getBelowEmpty(rotation) >= ROWS) {
+            return false;
+        }
+
+        // Checks if collides with any other tile, one row of the piece at a time
+        int last = piece.getDimension() - piece.getBelowEmpty(rotation);
+        for(int row = piece.getAboveEmpty(rotation); row <= last; row++) {
+            int mask = piece.getRowMask(row, rotation);
+            if((rows[y + row] & (x >= 0 ? mask << x : mask >>> -x)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates how far a piece can fall without checking every row on the way:
+     * below every tile that has no tile of the piece under it, the empty tiles of
+     * the board are counted, the smallest count is the distance.
+     * @param piece The piece, at a valid position
+     * @param x The x coordinate of the piece
+     * @param y The y coordinate of the piece
+     * @param rotation The rotation of the piece
+     * @return The number of rows the piece can move down, 0 if it rests on the stack or the floor
+     */
+    public int getDropDistance(Piece piece, int x, int y, int rotation) {
+        int distance = ROWS;
+        int dimension = piece.getDimension();
+        for(int col = 0; col < dimension; col++) {
+            for(int row = 0; row < dimension; row++) {
+                // Only a tile with no tile of the piece below it can hit something
+                if(!piece.isTile(col, row, rotation) || row + 1 < dimension && piece.isTile(col, row + 1, rotation)) {
+                    continue;
+                }
+                int below = y + row + 1;
+                while(below < ROWS && below - (y + row) <= distance && !isOccupied(x + col, below)) {
+                    below++;
+                }
+                distance = Math.min(distance, below - (y + row) - 1);
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Sometimes pieces will need to be moved when rotated to avoid clipping
+     * out of the board (the I piece is a good example of this). Calculates the
+     * column of a rotated piece, moved away from the left or right edge if needed.
+     * @param piece The piece
+     * @param x The column of the piece before the rotation
+     * @param rotation The new rotation of the piece
+     * @return The column of the rotated piece
+     */
+    public static int fitColumn(Piece piece, int x, int rotation) {
+        int left = piece.getLeftEmpty(rotation);
+        int right = piece.getRightEmpty(rotation);
+
+        // If the piece is too far to the left or right, move the piece away from the edges
+        if(x < -left) {
+            return x - (x - left);
+        }
+        else if(x + piece.getDimension() - right >= COLS) {
+            return x - ((x + piece.getDimension() - right) - COLS + 1);
+        }
+        return x;
+    }
+
+    /**
+     * Calculates the row of a rotated piece, moved away from the top or
+     * bottom edge if needed.
+     * @param piece The piece
+     * @param y The row of the piece before the rotation
+     * @param rotation The new rotation of the piece
+     * @return The row of the rotated piece
+     */
+    public static int fitRow(Piece piece, int y, int rotation) {
+        int top = piece.getAboveEmpty(rotation);
+        int bottom = piece.getBelowEmpty(rotation);
+
+        // If the piece is too far to the top or bottom, move the piece away from the edges
+        if(y < -top) {
+            return y - (y - top);
+        } else if(y + piece.getDimension() - bottom >= ROWS) {
+            return y - ((y + piece.getDimension() - bottom) - ROWS + 1);
+        }
+        return y;
+    }
+
+    /**
+     * Puts a tile to desired x and y coordinate
+     * @param x The column
+     * @param y The row
+     * @param type The type of tile you want to create
+     */
+    private void setTile(int  x, int y, Piece type) {
+        if((ownedRows >>> y & 1) == 0) {
+            pieces[y] = pieces[y].clone();
+            ownedRows |= 1 << y;
+        }
+        pieces[y][x] = type;
+        if(type != null) {
+            rows[y] |= 1 << x;
+        } else {
+            rows[y] &= ~(1 << x);
+        }
+    }
+
+    /**
+     * Adds a piece to the game board
+     * Note: Doesn't check for existing pieces, and will overwrite them if they exist
+     * @param piece The piece to add
+     * @param x The x coordinate where to add
+     * @param y The y coordinate where to add
+     * @param rotation The rotation of the piece
+     */
+    public void addPiece(Piece piece, int x, int y, int rotation) {
+        for(int col = 0; col < piece.getDimension(); col++) {
+            for(int row = 0; row < piece.getDimension(); row++) {
+                if(piece.isTile(col, row, rotation)) {
+                    setTile(col + x, row + y, piece);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pushes the stack up and fills the bottom rows, leaving one hole per row
+     * @param count The number of rows to add
+     * @param hole The empty column of the new rows
+     * @param piece The piece whose color the new tiles get
+     * @return If occupied tiles were pushed off the top of the board
+     */
+    public boolean addGarbage(int count, int hole, Piece piece) {
+        count = Math.min(count, ROWS);
+        boolean overflow = false;
+        for(int row = 0; row < count; row++) {
+            overflow |= rows[row] != 0;
+        }
+
+        // Move every row up, only the references move and the rows keep their owner
+        for(int row = 0; row < ROWS - count; row++) {
+            pieces[row] = pieces[row + count];
+            rows[row] = rows[row + count];
+        }
+        ownedRows = ownedRows >>> count;
+        for(int row = ROWS - count; row < ROWS; row++) {
+            Piece[] tiles = new Piece[COLS];
+            for(int col = 0; col < COLS; col++) {
+                tiles[col] = col == hole ? null : piece;
+            }
+            pieces[row] = tiles;
+            rows[row] = FULL_ROW & ~(1 << hole);
+            ownedRows |= 1 << row;
+        }
+        return overflow;
+    }
+
+    /**
+     * Checks if line is complete or not. If complete, remove line
+     * @param line The row to check
+     * @return Whether or not this row is full
+     */
+    private boolean checkLine(int line) {
+        if(rows[line] != FULL_ROW) {
+            return false;
+        }
+
+        // move every line, above complete line, one down. Only the references move
+        for(int row = line - 1; row >= 0; row--) {
+            pieces[row + 1] = pieces[row];
+            rows[row + 1] = rows[row];
+        }
+
+        // The moved rows keep their owner, but the top row now shares its array with the row below it
+        int above = (1 << line) - 1;
+        ownedRows = (ownedRows & ~(above | 1 << line)) | (ownedRows & above) << 1;
+        if(line > 0) {
+            ownedRows &= ~3;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the board to see if any lines have been completed, and
+     * removes them from the game
+     * @return The number of lines that were cleared
+     */
+    public int checkLines() {
+        int completedLines = 0;
+        clearedRows = 0;
+        for(int row = 0; row < ROWS; row++) {
+            if(checkLine(row)) {
+                completedLines++;
+                clearedRows |= 1 << row;
+            }
+        }
+        return completedLines;
+    }
+
+    /**
+     * Gets the rows removed by the last call of {@link #checkLines()}
+     * @return Bit mask where bit n is set if row n was cleared
+     */
+    public int getClearedRows() {
+        return clearedRows;
+    }
+
+    /**
+     * Gets the height of a column, measured from the bottom of the board
+     * to its highest occupied tile
+     * @param x The column
+     * @return The height of the column, 0 if empty
+     */
+    public int getColumnHeight(int x) {
+        for(int y = 0; y < ROWS; y++) {
+            if(isOccupied(x, y)) {
+                return ROWS - y;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the height of the highest column
+     * @return The height of the stack
+     */
+    public int getMaxHeight() {
+        int max = 0;
+        for(int x = 0; x < COLS; x++) {
+            max = Math.max(max, getColumnHeight(x));
+        }
+        return max;
+    }
+}
@@ -1,18 +1,20 @@
 package Game;
 
 /**
- * This class is responsible for the clock cycles of the game.
+ * This class is responsible for the clock cycles of the game. Time is kept in
+ * whole nanoseconds, so no fraction of a cycle is lost to rounding, however long
+ * the game runs.
  */
 
 public class Clock {
-    // The number of milliseconds that make up a cycle
-    private float millisPerCycle;
+    // The number of nanoseconds that make up a cycle
+    private long nanosPerCycle;
     // The last time the clock was updated
-    private float lastUpdate;
+    private long lastUpdate;
     // The number of elapsed cycles
-    private float elapsedCycles;
+    private long elapsedCycles;
     // The amount of excess time until next elapsed cycle
-    private float excessCycles;
+    private long excessCycles;
     // If game is paused or not
     private boolean isPaused;
 
@@ -30,7 +32,7 @@ public class Clock {
      * @param cyclesPerSec The number of cycles per second
      */
     public void setCyclesPerSec(float cyclesPerSec) {
-        this.millisPerCycle = (1.0f / cyclesPerSec) * 1000;
+        this.nanosPerCycle = Math.max(1L, Math.round(1e9 / cyclesPerSec));
     }
 
     /**
@@ -39,7 +41,7 @@ public class Clock {
      */
     public void reset() {
         this.elapsedCycles = 0;
-        this.excessCycles = 0.0f;
+        this.excessCycles = 0L;
         this.lastUpdate = getCurrentTime();
         this.isPaused = false;
     }
@@ -51,12 +53,12 @@ public class Clock {
     public void update() {
         //Get the current time and calculate the delta time
         long currUpdate = getCurrentTime();
-        float delta = (float)(currUpdate - lastUpdate) + excessCycles;
+        long delta = currUpdate - lastUpdate + excessCycles;
 
         //Update the number of elapsed and excess cycles if we're not paused
         if(!isPaused) {
-            this.elapsedCycles += (int)Math.floor(delta / millisPerCycle);
-            this.excessCycles = delta % millisPerCycle;
+            this.elapsedCycles += delta / nanosPerCycle;
+            this.excessCycles = delta % nanosPerCycle;
         }
 
         //Set the last update time to current update time
@@ -65,10 +67,16 @@ public class Clock {
 
     /**
      * Pauses or unpauses the clock. While paused the clock will not update
-     * elapsed cycles or excess cycles.
+     * elapsed cycles or excess cycles. Unpausing starts counting from now, so
+     * the time spent paused doesn't elapse as cycles, even if the clock wasn't
+     * updated during the pause.
      * @param pause If clock is paused or not
      */
     public void setPaused(boolean pause) {
+        if(isPaused && !pause) {
+            this.excessCycles = 0L;
+            this.lastUpdate = getCurrentTime();
+        }
         this.isPaused = pause;
     }
 
@@ -85,6 +93,18 @@ public class Clock {
         return false;
     }
 
+    /**
+     * Takes all cycles that have elapsed at once. Cycles past the maximum are
+     * dropped, so a long stall doesn't turn into a burst afterwards.
+     * @param max The most cycles to take
+     * @return The number of cycles taken, 0 if none elapsed
+     */
+    public int takeElapsedCycles(int max) {
+        int cycles = (int)Math.min(elapsedCycles, max);
+        this.elapsedCycles = 0;
+        return cycles;
+    }
+
     /**
      * Check to see if cycle has elapsed or not.
      * Doesn't decrement.
@@ -95,12 +115,12 @@ public class Clock {
     }
 
     /**
-     * Calculates the current time in milliseconds.
+     * Calculates the current time in nanoseconds.
      * More accurate than {@code System.getCurrentTimeMillis()}
-     * @return The current time in milliseconds
+     * @return The current time in nanoseconds
      */
     private static final long getCurrentTime() {
-        return (System.nanoTime() / 1000000L);
+        return System.nanoTime();
     }
 
 
@@ -0,0 +1,621 @@
+package Game;
+
+import Pieces.Piece;
+
+import java.util.Random;
+
+/**
+ * The rules of the game: spawning, moving, rotating and locking pieces,
+ * clearing lines and keeping score. Doesn't depend on Swing, so it can be
+ * used by the window as well as by headless simulations.
+ */
+
+public class Engine {
+    // Input: move one column to the left
+    public static final int INPUT_LEFT = 0;
+    // Input: move one column to the right
+    public static final int INPUT_RIGHT = 1;
+    // Input: rotate clockwise
+    public static final int INPUT_ROTATE_CW = 2;
+    // Input: rotate anti-clockwise
+    public static final int INPUT_ROTATE_CCW = 3;
+    // Input: move one row down
+    public static final int INPUT_DOWN = 4;
+    // Number of different inputs
+    public static final int INPUT_COUNT = 5;
+
+    // The number of possible pieces
+    private static final int TYPE_COUNT = Piece.count();
+    // Constants of the piece generator, the linear congruential generator of java.util.Random
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    /**
+     * The state of a game at one moment, see {@link #saveTo(Snapshot)}. The board
+     * rows are shared with the engine, so a snapshot is cheap to take and to keep.
+     * The piece generator is saved too, so a game that goes back gets the same
+     * pieces again.
+     */
+    public static final class Snapshot {
+        private final Board.Snapshot board = new Board.Snapshot();
+        private boolean isGameOver;
+        private int level;
+        private int score;
+        private int lines;
+        private int pieces;
+        private Piece currentPiece;
+        private Piece nextPiece;
+        private int currentCol;
+        private int currentRow;
+        private int currentRotation;
+        private float gameSpeed;
+        private long seed;
+
+        /**
+         * Gets the number of pieces that were added to the board when the snapshot was taken
+         * @return The number of pieces
+         */
+        public int getPieces() {
+            return pieces;
+        }
+    }
+
+    // The game board
+    private Board board;
+
+    // Event bus where the game events are published
+    private EventBus events;
+
+    // State of the piece generator. It is java.util.Random's generator, so a seed
+    // deals the same pieces as before, but its state can be saved in a snapshot
+    private long seed;
+
+    // If game is over or not
+    private boolean isGameOver;
+
+    // Current level
+    private int level;
+    // Current score
+    private int score;
+    // Number of cleared lines
+    private int lines;
+    // Number of pieces added to the board
+    private int pieces;
+
+    // The current piece
+    private Piece currentPiece;
+    // The next piece
+    private Piece nextPiece;
+
+    // The current column of the piece
+    private int currentCol;
+    // The current row of the piece
+    private int currentRow;
+    // The current rotation of the piece
+    private int currentRotation;
+
+    // Speed of the game
+    private float gameSpeed;
+
+    // Increased on every change of the game state
+    private int version;
+
+    /**
+     * Creates a new engine that doesn't publish events
+     */
+    public Engine() {
+        this(new EventBus());
+    }
+
+    /**
+     * Creates a new engine
+     * @param events The event bus where the game events are published
+     */
+    public Engine(EventBus events) {
+        this.board = new Board();
+        this.events = events;
+        this.gameSpeed = 1.0f;
+        setSeed(new Random().nextLong());
+    }
+
+    /**
+     * Sets the seed of the piece generator. The same seed always
+     * produces the same sequence of pieces.
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        this.seed = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Gets the pieces a game with the given seed spawns, without playing it.
+     * The pieces don't depend on where the player puts them.
+     * @param seed The seed
+     * @param count The number of pieces
+     * @return The pieces in the order they spawn
+     */
+    public static Piece[] pieceSequence(long seed, int count) {
+        Random random = new Random(seed);
+        Piece[] sequence = new Piece[count];
+        for(int i = 0; i < count; i++) {
+            sequence[i] = Piece.get(random.nextInt(TYPE_COUNT));
+        }
+        return sequence;
+    }
+
+    /**
+     * Gets the points for clearing lines with one piece
+     * @param cleared The number of cleared lines, at least 1
+     * @return The points
+     */
+    public static int scoreFor(int cleared) {
+        return 50 << cleared;
+    }
+
+    /**
+     * Saves the state of the game
+     * @param snapshot The snapshot to fill
+     */
+    public void saveTo(Snapshot snapshot) {
+        board.saveTo(snapshot.board);
+        snapshot.isGameOver = isGameOver;
+        snapshot.level = level;
+        snapshot.score = score;
+        snapshot.lines = lines;
+        snapshot.pieces = pieces;
+        snapshot.currentPiece = currentPiece;
+        snapshot.nextPiece = nextPiece;
+        snapshot.currentCol = currentCol;
+        snapshot.currentRow = currentRow;
+        snapshot.currentRotation = currentRotation;
+        snapshot.gameSpeed = gameSpeed;
+        snapshot.seed = seed;
+    }
+
+    /**
+     * Puts the game back into the state of a snapshot
+     * @param snapshot The snapshot, which stays unchanged
+     */
+    public void restoreFrom(Snapshot snapshot) {
+        board.restoreFrom(snapshot.board);
+        this.isGameOver = snapshot.isGameOver;
+        this.level = snapshot.level;
+        this.score = snapshot.score;
+        this.lines = snapshot.lines;
+        this.pieces = snapshot.pieces;
+        this.currentPiece = snapshot.currentPiece;
+        this.nextPiece = snapshot.nextPiece;
+        this.currentCol = snapshot.currentCol;
+        this.currentRow = snapshot.currentRow;
+        this.currentRotation = snapshot.currentRotation;
+        this.gameSpeed = snapshot.gameSpeed;
+        this.seed = snapshot.seed;
+        version++;
+        events.publish(GameEvent.Type.REWIND, currentPiece, currentCol, currentRow, currentRotation, pieces, 0);
+    }
+
+    /**
+     * Resets the game and spawns the first piece
+     */
+    public void reset() {
+        this.level = 1;
+        this.score = 0;
+        this.lines = 0;
+        this.pieces = 0;
+        this.gameSpeed = 1.0f;
+        this.nextPiece = randomPiece();
+        this.isGameOver = false;
+        board.clear();
+        version++;
+        spawnPiece();
+    }
+
+    /**
+     * Moves the current piece one row down. If it can't move, the piece is
+     * added to the board, full lines are cleared and the next piece is spawned.
+     * @return If the piece was added to the board
+     */
+    public boolean step() {
+        version++;
+
+        // Check to see if the piece's position can move down to the next row.
+        if(board.isValidAndEmpty(currentPiece, currentCol, currentRow + 1, currentRotation)) {
+            //Increment the current row if it's safe to do so.
+            currentRow++;
+            events.publish(GameEvent.Type.MOVE, currentPiece, currentCol, currentRow, currentRotation);
+            return false;
+        }
+
+        /*
+         * We've either reached the bottom of the board, or landed on another piece, so
+         * we need to add the piece to the board.
+         */
+        board.addPiece(currentPiece, currentCol, currentRow, currentRotation);
+        pieces++;
+        events.publish(GameEvent.Type.LOCK, currentPiece, currentCol, currentRow, currentRotation);
+
+        /*
+         * Check to see if adding the new piece resulted in any cleared lines. If so,
+         * increase the player's score. (Up to 4 lines can be cleared in a single go;
+         * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]).
+         */
+        int cleared = board.checkLines();
+        if(cleared > 0) {
+            score += scoreFor(cleared);
+            lines += cleared;
+            events.publish(GameEvent.Type.LINES_CLEARED, currentPiece, currentCol, currentRow, currentRotation,
+                    cleared, board.getClearedRows());
+        }
+
+        // As the game goes on, the speed of the game will increase
+        gameSpeed += 0.035f;
+
+        /*
+         * Update the difficulty level. This has no effect on the game, and is only
+         * used in the "Level" string in the SidePanel.
+         */
+        int newLevel = (int)(gameSpeed * 1.70f);
+        if(newLevel > level) {
+            events.publish(GameEvent.Type.LEVEL_UP, currentPiece, currentCol, currentRow, currentRotation, newLevel, 0);
+        }
+        level = newLevel;
+
+        /*
+         * Spawn a new piece to control.
+         */
+        spawnPiece();
+        return true;
+    }
+
+    /**
+     * Moves the current piece several rows down at once, the way gravity faster
+     * than a row per tick does. A piece that can't move is added to the board
+     * like {@link #step()} does; a piece that lands on the way stops there, it
+     * is added by the next call, so a piece can still be moved after landing.
+     * @param rows The number of rows to move, at least 1
+     * @return If the piece was added to the board
+     */
+    public boolean fall(int rows) {
+        int distance = board.getDropDistance(currentPiece, currentCol, currentRow, currentRotation);
+        if(distance == 0) {
+            return step();
+        }
+        version++;
+        currentRow += Math.min(rows, distance);
+        events.publish(GameEvent.Type.MOVE, currentPiece, currentCol, currentRow, currentRotation);
+        return false;
+    }
+
+    /**
+     * Drops the current piece until it is added to the board
+     */
+    public void drop() {
+        while(!isGameOver && !step()) {
+            // keep falling
+        }
+    }
+
+    //Spawns a new piece
+    private void spawnPiece() {
+        this.currentPiece = nextPiece;
+        this.currentCol = currentPiece.getSpawnColumn();
+        this.currentRow = currentPiece.getSpawnRow();
+        this.currentRotation = 0;
+        this.nextPiece = randomPiece();
+
+        // If the player has lost, end game
+        if(!board.isValidAndEmpty(currentPiece, currentCol, currentRow, currentRotation)) {
+            this.isGameOver = true;
+            events.publish(GameEvent.Type.GAME_OVER, currentPiece, currentCol, currentRow, currentRotation, score, 0);
+        } else {
+            events.publish(GameEvent.Type.SPAWN, currentPiece, currentCol, currentRow, currentRotation);
+        }
+    }
+
+    /**
+     * Gets the pieces that spawn after the next piece, without drawing them
+     * @param queue The array to fill, in the order the pieces spawn
+     */
+    public void peekPieces(Piece[] queue) {
+        long saved = seed;
+        for(int i = 0; i < queue.length; i++) {
+            queue[i] = randomPiece();
+        }
+        seed = saved;
+    }
+
+    // Draws a piece the way Random.nextInt(TYPE_COUNT) does
+    private Piece randomPiece() {
+        int r = nextBits(31);
+        int m = TYPE_COUNT - 1;
+        if((TYPE_COUNT & m) == 0) {
+            r = (int)((TYPE_COUNT * (long)r) >> 31);
+        } else {
+            for(int u = r; u - (r = u % TYPE_COUNT) + m < 0; u = nextBits(31)) {
+                // Rejected, the value would favor the first pieces
+            }
+        }
+        return Piece.get(r);
+    }
+
+    // Advances the piece generator and gets its high bits
+    private int nextBits(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int)(seed >>> (48 - bits));
+    }
+
+    /**
+     * Adds rows with a hole to the bottom of the board, sent by an opponent. The
+     * current piece is pushed up if the stack moves into it; the game is lost if
+     * it can't move up far enough or tiles are pushed off the board.
+     * @param count The number of rows
+     * @param hole The empty column of the rows
+     * @param piece The piece whose color the new tiles get
+     */
+    public void addGarbage(int count, int hole, Piece piece) {
+        if(isGameOver || count <= 0) {
+            return;
+        }
+        boolean overflow = board.addGarbage(count, hole, piece);
+        version++;
+
+        int row = currentRow;
+        while(row > currentRow - count && !board.isValidAndEmpty(currentPiece, currentCol, row, currentRotation)) {
+            row--;
+        }
+        if(overflow || !board.isValidAndEmpty(currentPiece, currentCol, row, currentRotation)) {
+            this.isGameOver = true;
+            events.publish(GameEvent.Type.GAME_OVER, currentPiece, currentCol, currentRow, currentRotation, score, 0);
+        } else if(row != currentRow) {
+            currentRow = row;
+            events.publish(GameEvent.Type.MOVE, currentPiece, currentCol, currentRow, currentRotation);
+        }
+    }
+
+    /**
+     * Moves the current piece one column to the left
+     * @return If the piece was moved
+     */
+    public boolean moveLeft() {
+        return moveColumn(-1);
+    }
+
+    /**
+     * Moves the current piece one column to the right
+     * @return If the piece was moved
+     */
+    public boolean moveRight() {
+        return moveColumn(1);
+    }
+
+    // Moves the current piece with the given number of columns if the new position is valid
+    private boolean moveColumn(int offset) {
+        if(!board.isValidAndEmpty(currentPiece, currentCol + offset, currentRow, currentRotation)) {
+            return false;
+        }
+        currentCol += offset;
+        version++;
+        events.publish(GameEvent.Type.MOVE, currentPiece, currentCol, currentRow, currentRotation);
+        return true;
+    }
+
+    /**
+     * Moves the current piece as far as it can go towards a wall
+     * @param direction -1 for the left wall, 1 for the right wall
+     * @return The number of columns the piece moved
+     */
+    public int shiftToWall(int direction) {
+        // The column where the piece touches the wall follows from its empty columns
+        int wall = direction < 0 ? -currentPiece.getLeftEmpty(currentRotation)
+                : Board.COLS - currentPiece.getDimension() + currentPiece.getRightEmpty(currentRotation) - 1;
+        int start = currentCol;
+        while(currentCol != wall && board.isValidAndEmpty(currentPiece, currentCol + direction, currentRow, currentRotation)) {
+            currentCol += direction;
+        }
+        if(currentCol != start) {
+            version++;
+            events.publish(GameEvent.Type.MOVE, currentPiece, currentCol, currentRow, currentRotation);
+        }
+        return Math.abs(currentCol - start);
+    }
+
+    /**
+     * Rotates the current piece clockwise
+     * @return If the piece was rotated
+     */
+    public boolean rotateClockwise() {
+        return rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
+    }
+
+    /**
+     * Rotates the current piece anti-clockwise
+     * @return If the piece was rotated
+     */
+    public boolean rotateAntiClockwise() {
+        return rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
+    }
+
+    /**
+     * Rotates a piece
+     * @param newRotation The rotation of the new piece.
+     * @return If the piece was rotated
+     */
+    public boolean rotatePiece(int newRotation) {
+        // The rotated piece may need to be moved away from the edges of the board
+        int newColumn = Board.fitColumn(currentPiece, currentCol, newRotation);
+        int newRow = Board.fitRow(currentPiece, currentRow, newRotation);
+
+        // Check to see if the new position is acceptable valid
+        if(board.isValidAndEmpty(currentPiece, newColumn, newRow, newRotation)) {
+            currentRotation = newRotation;
+            currentRow = newRow;
+            currentCol = newColumn;
+            version++;
+            events.publish(GameEvent.Type.ROTATE, currentPiece, currentCol, currentRow, currentRotation);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies one input to the current piece
+     * @param input One of the INPUT_ constants
+     * @return If the piece moved. A down input that can't move the piece adds it to the board
+     */
+    public boolean applyInput(int input) {
+        switch(input) {
+            case INPUT_LEFT:
+                return moveLeft();
+            case INPUT_RIGHT:
+                return moveRight();
+            case INPUT_ROTATE_CW:
+                return rotateClockwise();
+            case INPUT_ROTATE_CCW:
+                return rotateAntiClockwise();
+            case INPUT_DOWN:
+                return !step();
+            default:
+                throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    /**
+     * Rotates and moves the current piece towards the given rotation and column,
+     * stopping at the first move that is not possible
+     * @param col The target column
+     * @param rotation The target rotation
+     * @return If the piece reached the target
+     */
+    public boolean moveTo(int col, int rotation) {
+        while(currentRotation != rotation) {
+            if(!rotateClockwise()) {
+                return false;
+            }
+        }
+        while(currentCol < col) {
+            if(!moveRight()) {
+                return false;
+            }
+        }
+        while(currentCol > col) {
+            if(!moveLeft()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the version of the game state. The version changes every time the
+     * board, the piece or the score changes.
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the game board
+     * @return The board
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Gets the event bus of the game
+     * @return The event bus
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Checks to see if game is over or not
+     * @return If game is over or not
+     */
+    public boolean isGameOver() {
+        return isGameOver;
+    }
+
+    /**
+     * Gets the current score
+     * @return The score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the current level
+     * @return The level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the number of cleared lines
+     * @return The number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the number of pieces that were added to the board
+     * @return The number of pieces
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Gets the speed of the game in rows per second
+     * @return The game speed
+     */
+    public float getGameSpeed() {
+        return gameSpeed;
+    }
+
+    /**
+     * Gets the current piece type
+     * @return The piece type
+     */
+    public Piece getPieceType() {
+        return currentPiece;
+    }
+
+    /**
+     * Gets the next piece type
+     * @return The next piece
+     */
+    public Piece getNextPieceType() {
+        return nextPiece;
+    }
+
+    /**
+     * Gets the column of the current piece
+     * @return The column
+     */
+    public int getPieceCol() {
+        return currentCol;
+    }
+
+    /**
+     * Gets the row of the current piece
+     * @return The row
+     */
+    public int getPieceRow() {
+        return currentRow;
+    }
+
+    /**
+     * Gets the rotation of the current piece
+     * @return The rotation
+     */
+    public int getPieceRotation() {
+        return currentRotation;
+    }
+}
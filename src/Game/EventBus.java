@@ -0,0 +1,138 @@
+package Game;
+
+import Pieces.Piece;
+
+/**
+ * Collects game events into a preallocated ring buffer and hands them to
+ * the listeners in batches. Publishing an event doesn't allocate.
+ */
+
+public class EventBus {
+    // Default number of events the buffer can hold
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // The ring buffer
+    private final GameEvent[] events;
+    // capacity - 1, used to wrap indexes
+    private final int mask;
+
+    // The listeners of the bus
+    private volatile GameListener[] listeners = new GameListener[0];
+
+    // Sequence of the next published event
+    private long head;
+    // Sequence of the next event to dispatch
+    private long tail;
+
+    /**
+     * Creates a new event bus with the default capacity
+     */
+    public EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new event bus
+     * @param capacity The number of events the buffer holds, rounded up to a power of two
+     */
+    public EventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.events = new GameEvent[size];
+        this.mask = size - 1;
+        for(int i = 0; i < size; i++) {
+            events[i] = new GameEvent();
+        }
+    }
+
+    /**
+     * Adds a listener to the bus
+     * @param listener The listener
+     */
+    public synchronized void subscribe(GameListener listener) {
+        GameListener[] copy = new GameListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, copy, 0, listeners.length);
+        copy[listeners.length] = listener;
+        listeners = copy;
+    }
+
+    /**
+     * Removes a listener from the bus
+     * @param listener The listener
+     */
+    public synchronized void unsubscribe(GameListener listener) {
+        for(int i = 0; i < listeners.length; i++) {
+            if(listeners[i] == listener) {
+                GameListener[] copy = new GameListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, copy, 0, i);
+                System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+                listeners = copy;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks to see if anybody listens to the bus
+     * @return If the bus has listeners
+     */
+    public boolean hasListeners() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * Publishes an event about a piece
+     * @param type The type of the event
+     * @param piece The piece
+     * @param col The column of the piece
+     * @param row The row of the piece
+     * @param rotation The rotation of the piece
+     */
+    public void publish(GameEvent.Type type, Piece piece, int col, int row, int rotation) {
+        publish(type, piece, col, row, rotation, 0, 0);
+    }
+
+    /**
+     * Publishes an event. If the buffer is full, the pending events
+     * are dispatched first.
+     * @param type The type of the event
+     * @param piece The piece
+     * @param col The column of the piece
+     * @param row The row of the piece
+     * @param rotation The rotation of the piece
+     * @param value The value of the event
+     * @param rowMask The bit mask of cleared rows
+     */
+    public void publish(GameEvent.Type type, Piece piece, int col, int row, int rotation, int value, int rowMask) {
+        // Nobody is listening, so there is nothing to record
+        if(listeners.length == 0) {
+            return;
+        }
+        record(type, piece, col, row, rotation, value, rowMask);
+    }
+
+    // Writes an event into the ring buffer
+    private synchronized void record(GameEvent.Type type, Piece piece, int col, int row, int rotation, int value, int rowMask) {
+        if(head - tail > mask) {
+            flush();
+        }
+        events[(int)(head & mask)].set(head, type, piece, col, row, rotation, value, rowMask);
+        head++;
+    }
+
+    /**
+     * Dispatches every pending event to the listeners
+     */
+    public synchronized void flush() {
+        if(head == tail) {
+            return;
+        }
+
+        for(GameListener listener : listeners) {
+            for(long seq = tail; seq < head; seq++) {
+                listener.onEvent(events[(int)(seq & mask)]);
+            }
+            listener.onBatchEnd();
+        }
+        tail = head;
+    }
+}
@@ -0,0 +1,327 @@
+package Game;
+
+import Pieces.Piece;
+
+import java.util.Random;
+
+/**
+ * Feeds random inputs into the game rules as fast as possible and checks after
+ * every step that the rules still hold:
+ * <ul>
+ *   <li>the current piece is inside the board and doesn't overlap the stack</li>
+ *   <li>no full rows are left on the board after a piece was added</li>
+ *   <li>the score goes up by 50 &lt;&lt; cleared lines, and only when lines were cleared</li>
+ *   <li>the board matches a reference board that uses the original per-tile rules</li>
+ *   <li>placement checks give the same answer on both boards</li>
+ *   <li>taking back pieces restores the board exactly as it was</li>
+ * </ul>
+ * The reference board makes sure that optimized versions of {@link Board}
+ * behave exactly like the original code.
+ */
+
+public class Fuzzer implements GameListener {
+    // Number of recent inputs printed when a check fails
+    private static final int HISTORY = 32;
+    // Action: toggle pause, no input or gravity is applied while paused
+    private static final int ACTION_PAUSE = Engine.INPUT_COUNT;
+    // Action: drop the piece until it is added to the board
+    private static final int ACTION_DROP = Engine.INPUT_COUNT + 1;
+    // Action: let gravity move the piece
+    private static final int ACTION_GRAVITY = Engine.INPUT_COUNT + 2;
+    // Number of actions picked at random
+    private static final int ACTION_COUNT = Engine.INPUT_COUNT + 3;
+    // Action: take back the last piece, picked once in UNDO_ODDS steps
+    private static final int ACTION_UNDO = Engine.INPUT_COUNT + 3;
+    private static final int UNDO_ODDS = 64;
+    // Number of pieces that can be taken back
+    private static final int UNDO_DEPTH = 16;
+
+    private final long seed;
+    private final Random random;
+    private final Engine engine;
+    private final ReferenceBoard reference = new ReferenceBoard();
+    private final History undos = new History(UNDO_DEPTH);
+    // Copies of the reference board at each recorded spawn, by piece count
+    private final Piece[][][] savedReference = new Piece[UNDO_DEPTH][Board.ROWS][Board.COLS];
+
+    // If the game is paused
+    private boolean paused;
+    // Number of steps taken
+    private long steps;
+    // Recent actions, for the failure report
+    private final int[] history = new int[HISTORY];
+
+    // Lines cleared by the reference board for the last added piece
+    private int referenceCleared;
+
+    /**
+     * Creates a new fuzzer
+     * @param seed The seed of the inputs and the pieces
+     */
+    public Fuzzer(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.engine = new Engine();
+        engine.getEvents().subscribe(this);
+        engine.setSeed(seed);
+        engine.reset();
+        engine.getEvents().flush();
+        record();
+    }
+
+    /**
+     * Mirrors every added piece on the reference board
+     * @param event The event
+     */
+    @Override
+    public void onEvent(GameEvent event) {
+        if(event.getType() == GameEvent.Type.LOCK) {
+            reference.addPiece(event.getPiece(), event.getCol(), event.getRow(), event.getRotation());
+            referenceCleared = reference.checkLines();
+        } else if(event.getType() == GameEvent.Type.LINES_CLEARED) {
+            check(event.getRowMask() == reference.clearedRows, "cleared rows differ from the reference");
+        }
+    }
+
+    /**
+     * Takes one random step and checks the rules
+     */
+    public void step() {
+        int action = random.nextInt(UNDO_ODDS) == 0 ? ACTION_UNDO : random.nextInt(ACTION_COUNT);
+        history[(int)(steps % HISTORY)] = action;
+        steps++;
+
+        // A lost game is taken back or started again
+        if(engine.isGameOver()) {
+            if(random.nextBoolean() || !undo()) {
+                restart();
+            }
+            return;
+        }
+        if(action == ACTION_UNDO) {
+            undo();
+            return;
+        }
+
+        int score = engine.getScore();
+        int lines = engine.getLines();
+        int pieces = engine.getPieces();
+        int version = engine.getVersion();
+
+        probe();
+
+        if(action == ACTION_PAUSE) {
+            paused = !paused;
+        } else if(!paused) {
+            if(action == ACTION_DROP) {
+                engine.drop();
+            } else if(action == ACTION_GRAVITY) {
+                engine.step();
+            } else {
+                engine.applyInput(action);
+            }
+        }
+        engine.getEvents().flush();
+
+        if(paused) {
+            check(engine.getVersion() == version, "the game changed while paused");
+        }
+
+        // Lines and score only change when a piece was added
+        int cleared = engine.getLines() - lines;
+        if(engine.getPieces() == pieces) {
+            check(cleared == 0 && engine.getScore() == score, "score changed without adding a piece");
+        } else {
+            check(cleared == referenceCleared, "cleared " + cleared + " lines, the reference cleared " + referenceCleared);
+            check(engine.getScore() - score == (cleared > 0 ? 50 << cleared : 0), "wrong score for " + cleared + " lines");
+            checkBoard();
+            if(!engine.isGameOver()) {
+                record();
+            }
+        }
+
+        if(engine.isGameOver()) {
+            return;
+        }
+        check(engine.getBoard().isValidAndEmpty(engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow(),
+                engine.getPieceRotation()), "the current piece is out of bounds or overlaps the stack");
+    }
+
+    // Takes back the last piece and checks that the board is the one of its spawn
+    private boolean undo() {
+        if(!undos.undo(engine)) {
+            return false;
+        }
+        engine.getEvents().flush();
+        paused = false;
+        int slot = engine.getPieces() % UNDO_DEPTH;
+        for(int y = 0; y < Board.ROWS; y++) {
+            System.arraycopy(savedReference[slot][y], 0, reference.pieces[y], 0, Board.COLS);
+        }
+        checkBoard();
+        check(!engine.isGameOver(), "still game over after taking back a piece");
+        check(engine.getBoard().isValidAndEmpty(engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow(),
+                engine.getPieceRotation()), "the piece that was taken back doesn't fit");
+        return true;
+    }
+
+    // Records the spawn of the current piece
+    private void record() {
+        undos.record(engine);
+        int slot = engine.getPieces() % UNDO_DEPTH;
+        for(int y = 0; y < Board.ROWS; y++) {
+            System.arraycopy(reference.pieces[y], 0, savedReference[slot][y], 0, Board.COLS);
+        }
+    }
+
+    // Compares placement checks of random positions around the current piece
+    private void probe() {
+        if(engine.isGameOver()) {
+            return;
+        }
+        Piece piece = Piece.get(random.nextInt(Piece.count()));
+        int col = engine.getPieceCol() + random.nextInt(7) - 3;
+        int row = engine.getPieceRow() + random.nextInt(7) - 3;
+        int rotation = random.nextInt(4);
+        check(engine.getBoard().isValidAndEmpty(piece, col, row, rotation) == reference.isValidAndEmpty(piece, col, row, rotation),
+                "placement check of " + piece + " at " + col + "," + row + " rotation " + rotation + " differs from the reference");
+    }
+
+    // Checks the board against the reference board and looks for full rows
+    private void checkBoard() {
+        Board board = engine.getBoard();
+        for(int y = 0; y < Board.ROWS; y++) {
+            boolean full = true;
+            for(int x = 0; x < Board.COLS; x++) {
+                check(board.getTile(x, y) == reference.pieces[y][x], "tile " + x + "," + y + " differs from the reference");
+                full &= board.isOccupied(x, y);
+            }
+            check(!full, "row " + y + " is full after checkLines");
+        }
+    }
+
+    // Starts a new game on both boards
+    private void restart() {
+        paused = false;
+        engine.reset();
+        engine.getEvents().flush();
+        reference.clear();
+        undos.clear();
+        record();
+    }
+
+    // Reports a broken rule and stops
+    private void check(boolean condition, String message) {
+        if(condition) {
+            return;
+        }
+        StringBuilder recent = new StringBuilder();
+        for(long i = Math.max(0, steps - HISTORY); i < steps; i++) {
+            recent.append(history[(int)(i % HISTORY)]).append(' ');
+        }
+        throw new IllegalStateException("Seed " + seed + ", step " + steps + ": " + message + "\nRecent actions: " + recent);
+    }
+
+    /**
+     * Gets the number of steps taken
+     * @return The number of steps
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * The board rules exactly as GamePanel had them, used as the reference
+     */
+    private static class ReferenceBoard {
+        private final Piece[][] pieces = new Piece[Board.ROWS][Board.COLS];
+        private int clearedRows;
+
+        void clear() {
+            for(int i = 0; i < Board.ROWS; i++) {
+                for(int j = 0; j < Board.COLS; j++) {
+                    pieces[i][j] = null;
+                }
+            }
+        }
+
+        boolean isValidAndEmpty(Piece piece, int x, int y, int rotation) {
+            if(x < -piece.getLeftEmpty(rotation) || x + piece.getDimension() - piece.getRightEmpty(rotation) >= Board.COLS) {
+                return false;
+            }
+            if(y < -piece.getAboveEmpty(rotation) || y + piece.getDimension() - piece.getBelowEmpty(rotation) >= Board.ROWS) {
+                return false;
+            }
+            for(int col = 0; col < piece.getDimension(); col++) {
+                for(int row = 0; row < piece.getDimension(); row++) {
+                    if(piece.isTile(col, row, rotation) && pieces[y + row][x + col] != null) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void addPiece(Piece piece, int x, int y, int rotation) {
+            for(int col = 0; col < piece.getDimension(); col++) {
+                for(int row = 0; row < piece.getDimension(); row++) {
+                    if(piece.isTile(col, row, rotation)) {
+                        pieces[row + y][col + x] = piece;
+                    }
+                }
+            }
+        }
+
+        int checkLines() {
+            int completedLines = 0;
+            clearedRows = 0;
+            for(int line = 0; line < Board.ROWS; line++) {
+                boolean full = true;
+                for(int col = 0; col < Board.COLS; col++) {
+                    full &= pieces[line][col] != null;
+                }
+                if(!full) {
+                    continue;
+                }
+                for(int row = line - 1; row >= 0; row--) {
+                    for(int col = 0; col < Board.COLS; col++) {
+                        pieces[row + 1][col] = pieces[row][col];
+                    }
+                }
+                completedLines++;
+                clearedRows |= 1 << line;
+            }
+            return completedLines;
+        }
+    }
+
+    /**
+     * Runs the fuzzer
+     * @param args Number of seconds and the first seed
+     */
+    public static void main(String[] args) {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        long total = 0;
+        int games = 0;
+        try {
+            // A new seed every million steps, so a failure can be replayed quickly
+            while(System.nanoTime() < end) {
+                Fuzzer fuzzer = new Fuzzer(seed + games++);
+                while(fuzzer.getSteps() < 1000000 && System.nanoTime() < end) {
+                    fuzzer.step();
+                }
+                total += fuzzer.getSteps();
+            }
+        } catch(IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d steps over %d seeds starting at %d, %.0f steps/sec, no rule broken%n",
+                total, games, seed, total / elapsed);
+    }
+}
@@ -0,0 +1,128 @@
+package Game;
+
+import Pieces.Piece;
+
+/**
+ * A single game event. Events live inside the ring buffer of an {@link EventBus}
+ * and are reused, so listeners must copy any value they want to keep.
+ */
+
+public class GameEvent {
+    /**
+     * The kinds of events the game emits
+     */
+    public enum Type {
+        // A new piece was spawned
+        SPAWN,
+        // The current piece moved one column or one row
+        MOVE,
+        // The current piece was rotated
+        ROTATE,
+        // The current piece was added to the board
+        LOCK,
+        // One or more lines were cleared
+        LINES_CLEARED,
+        // The level went up
+        LEVEL_UP,
+        // The game is over
+        GAME_OVER,
+        // The game went back to a snapshot, value is the number of pieces on the board
+        REWIND
+    }
+
+    // Sequence number of the event
+    private long sequence;
+    // Type of the event
+    private Type type;
+    // The piece the event is about
+    private Piece piece;
+    // The column of the piece
+    private int col;
+    // The row of the piece
+    private int row;
+    // The rotation of the piece
+    private int rotation;
+    // Number of cleared lines, new level, final score or piece count, depending on the type
+    private int value;
+    // Bit mask of the cleared rows (bit n = row n)
+    private int rowMask;
+
+    /**
+     * Fills the event with new values
+     */
+    void set(long sequence, Type type, Piece piece, int col, int row, int rotation, int value, int rowMask) {
+        this.sequence = sequence;
+        this.type = type;
+        this.piece = piece;
+        this.col = col;
+        this.row = row;
+        this.rotation = rotation;
+        this.value = value;
+        this.rowMask = rowMask;
+    }
+
+    /**
+     * Gets the sequence number of the event
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the type of the event
+     * @return The type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the piece the event is about
+     * @return The piece
+     */
+    public Piece getPiece() {
+        return piece;
+    }
+
+    /**
+     * Gets the column of the piece
+     * @return The column
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Gets the row of the piece
+     * @return The row
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the rotation of the piece
+     * @return The rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Gets the value of the event: the number of cleared lines for LINES_CLEARED,
+     * the new level for LEVEL_UP and the final score for GAME_OVER
+     * @return The value
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the cleared rows of a LINES_CLEARED event
+     * @return Bit mask where bit n is set if row n was cleared
+     */
+    public int getRowMask() {
+        return rowMask;
+    }
+}
@@ -0,0 +1,20 @@
+package Game;
+
+/**
+ * Receives the events of a game from an {@link EventBus}
+ */
+
+public interface GameListener {
+    /**
+     * Called for every event of a batch. The event object is reused
+     * after this call returns.
+     * @param event The event
+     */
+    void onEvent(GameEvent event);
+
+    /**
+     * Called once after the last event of a batch
+     */
+    default void onBatchEnd() {
+    }
+}
@@ -0,0 +1,118 @@
+package Game;
+
+import Metrics.Counter;
+import Metrics.Gauge;
+import Metrics.Histogram;
+import Metrics.MetricRegistry;
+import Pieces.Piece;
+
+/**
+ * The metrics of the game: counts of games, pieces and cleared lines from the
+ * events of the engine, the latency of game updates and painting, and the speed
+ * and level of the current game. Recording only adds to striped counters, so it
+ * can stay on in every game.
+ */
+
+public class GameMetrics implements GameListener {
+    // Upper bounds of the latency buckets in seconds, 10 us to 50 ms
+    private static final double[] LATENCY_BUCKETS = {
+            0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05
+    };
+    // Upper bounds of the level buckets
+    private static final double[] LEVEL_BUCKETS = {1, 2, 3, 5, 10, 15, 20, 30, 50, 100};
+
+    // The engine whose speed and level are shown
+    private final Engine engine;
+
+    private final Counter gamesStarted;
+    private final Counter gamesFinished;
+    private final Counter piecesLocked;
+    // Number of clears by the number of lines cleared at once, index 0 is unused
+    private final Counter[] lineClears;
+    private final Histogram updateLatency;
+    private final Histogram paintLatency;
+    private final Gauge gameSpeed;
+    private final Gauge level;
+    private final Histogram finalLevel;
+
+    /**
+     * Registers the metrics of a game
+     * @param registry Where the metrics are registered
+     * @param engine The engine of the game
+     */
+    public GameMetrics(MetricRegistry registry, Engine engine) {
+        this.engine = engine;
+        this.gamesStarted = registry.counter("tetris_games_started_total", "Games started");
+        this.gamesFinished = registry.counter("tetris_games_finished_total", "Games that ended with a game over");
+        this.piecesLocked = registry.counter("tetris_pieces_locked_total", "Pieces locked into the board");
+
+        // A piece clears at most as many lines as it is high
+        int maxLines = 1;
+        for(int i = 0; i < Piece.count(); i++) {
+            maxLines = Math.max(maxLines, Piece.get(i).getDimension());
+        }
+        this.lineClears = new Counter[maxLines + 1];
+        for(int lines = 1; lines <= maxLines; lines++) {
+            lineClears[lines] = registry.counter("tetris_line_clears_total",
+                    "Line clears by the number of lines cleared at once", "lines=\"" + lines + "\"");
+        }
+
+        this.updateLatency = registry.histogram("tetris_update_seconds",
+                "Time of one game update, moving the piece down and locking it", LATENCY_BUCKETS);
+        this.paintLatency = registry.histogram("tetris_paint_seconds", "Time of painting a panel", LATENCY_BUCKETS);
+        this.gameSpeed = registry.gauge("tetris_game_speed", "Game updates per second of the current game");
+        this.level = registry.gauge("tetris_level", "Level of the current game");
+        this.finalLevel = registry.histogram("tetris_game_level", "Level reached by finished games", LEVEL_BUCKETS);
+    }
+
+    @Override
+    public void onEvent(GameEvent event) {
+        switch(event.getType()) {
+            case LOCK:
+                piecesLocked.increment();
+                break;
+            case LINES_CLEARED:
+                int lines = event.getValue();
+                if(lines > 0 && lines < lineClears.length) {
+                    lineClears[lines].increment();
+                }
+                break;
+            case GAME_OVER:
+                gamesFinished.increment();
+                finalLevel.observe(engine.getLevel());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onBatchEnd() {
+        // Speed and level only change with events, so they're up to date after every batch
+        gameSpeed.set(engine.getGameSpeed());
+        level.set(engine.getLevel());
+    }
+
+    /**
+     * Counts a new game
+     */
+    public void recordGameStarted() {
+        gamesStarted.increment();
+    }
+
+    /**
+     * Records the time of one game update
+     * @param nanos The time in nanoseconds
+     */
+    public void recordUpdate(long nanos) {
+        updateLatency.observeNanos(nanos);
+    }
+
+    /**
+     * Records the time of painting a panel
+     * @param nanos The time in nanoseconds
+     */
+    public void recordPaint(long nanos) {
+        paintLatency.observeNanos(nanos);
+    }
+}
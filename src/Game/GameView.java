@@ -0,0 +1,94 @@
+package Game;
+
+import Pieces.Piece;
+
+/**
+ * Everything the panels need to draw a game. Implemented by the window for
+ * live games and by the replay exporter for recorded games.
+ */
+
+public interface GameView {
+    /**
+     * Checks to see if game is paused or not
+     * @return If game is paused or not
+     */
+    boolean isPaused();
+
+    /**
+     * Checks to see if game is over or not
+     * @return If game is over or not
+     */
+    boolean isGameOver();
+
+    /**
+     * Checks to see if we're on the title screen
+     * @return If no game was started yet
+     */
+    boolean isNewGame();
+
+    /**
+     * Checks to see if pieces can be taken back
+     * @return If the game runs in practice mode
+     */
+    boolean isPractice();
+
+    /**
+     * Gets the current score
+     * @return The score
+     */
+    int getScore();
+
+    /**
+     * Gets the best score on the leaderboard
+     * @return The best score
+     */
+    int getBestScore();
+
+    /**
+     * Gets the current level
+     * @return The level
+     */
+    int getLevel();
+
+    /**
+     * Gets the current type of piece we're using
+     * @return The piece type
+     */
+    Piece getPieceType();
+
+    /**
+     * Gets the next type of piece we're using
+     * @return The next piece
+     */
+    Piece getNextPieceType();
+
+    /**
+     * Gets the column of the current piece
+     * @return The column
+     */
+    int getPieceCol();
+
+    /**
+     * Gets the row of the current piece
+     * @return The row
+     */
+    int getPieceRow();
+
+    /**
+     * Gets the rotation of the current piece
+     * @return The rotation
+     */
+    int getPieceRotation();
+
+    /**
+     * Gets the game board
+     * @return The board
+     */
+    Board getBoard();
+
+    /**
+     * Gets the timings shown by the performance overlay
+     * @return The statistics
+     */
+    PerformanceStats getPerformance();
+}
@@ -0,0 +1,269 @@
+package Game;
+
+import Bots.Bot;
+import Panels.BoardGrid;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays many bot games at a watchable speed and shows them all in one window,
+ * see {@link BoardGrid}. A lost game stays on screen for a moment and is then
+ * replaced by a game with the next seed. With --bench the grid is drawn without
+ * a window, every board changing every frame, to measure the frame rate.
+ */
+
+public class GridWatch {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: GridWatch [--games N] [--columns C] [--tile T] [--bot heuristic|random|search] "
+            + "[--seed S] [--pps P] [--fps F] [--threads T] [--bench FRAMES]";
+    // How long a lost game stays on screen
+    private static final long LOST_NANOS = 2000000000L;
+
+    // Number of games on screen
+    private int games = 100;
+    // Boards per row, 0 to pick a nearly square grid
+    private int columns = 0;
+    // Size of a tile in pixels
+    private int tileSize = 4;
+    // Name of the bot that plays the games
+    private String botName = "heuristic";
+    // Seed of the first game, every new game takes the next seed
+    private long seed = 0;
+    // Pieces placed per second in every game
+    private double piecesPerSecond = 4;
+    // Frames drawn per second
+    private int fps = 60;
+    // Number of threads that play the games
+    private int threads = 1;
+    // Frames to draw without a window, 0 to open the window
+    private int benchFrames = 0;
+
+    // Seed of the next new game
+    private final AtomicLong nextSeed = new AtomicLong();
+
+    /**
+     * One game on the grid
+     */
+    private final class Table {
+        private final int index;
+        private final Engine engine = new Engine();
+        private Bot bot;
+        // When the next piece is placed, or the game is replaced after it was lost
+        private long due;
+
+        private Table(int index, long now) {
+            this.index = index;
+            start(now);
+        }
+
+        // Starts a new game on this table
+        private void start(long now) {
+            long gameSeed = nextSeed.getAndIncrement();
+            bot = Bot.create(botName, gameSeed);
+            engine.setSeed(gameSeed);
+            engine.reset();
+            // Spread the games over the interval so they don't all move in the same frame
+            due = now + (long)(1e9 / piecesPerSecond * index / games);
+        }
+
+        // Places a piece if one is due
+        private void play(long now, BoardGrid grid) {
+            if(now - due < 0) {
+                return;
+            }
+            if(engine.isGameOver()) {
+                start(now);
+            } else {
+                bot.choose(engine).apply(engine);
+                due += engine.isGameOver() ? LOST_NANOS : (long)(1e9 / piecesPerSecond);
+            }
+            grid.publish(index, engine);
+        }
+    }
+
+    /**
+     * Plays the games and shows them until the window is closed
+     */
+    private void watch() {
+        BoardGrid grid = new BoardGrid(games, columns, tileSize);
+        Table[] tables = createTables(System.nanoTime(), grid);
+
+        JFrame frame = new JFrame("Tetris - " + games + " games");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(new JScrollPane(grid));
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+
+        // Every thread plays its own share of the tables
+        for(int t = 0; t < threads; t++) {
+            int first = t;
+            Thread thread = new Thread(() -> {
+                while(true) {
+                    long now = System.nanoTime();
+                    for(int i = first; i < games; i += threads) {
+                        tables[i].play(now, grid);
+                    }
+                    try {
+                        Thread.sleep(1);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "grid-player-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long frameNanos = 1000000000L / fps;
+        long next = System.nanoTime();
+        long second = next;
+        int frames = 0;
+        long redrawn = 0;
+        long renderNanos = 0;
+        while(true) {
+            long start = System.nanoTime();
+            redrawn += grid.render();
+            renderNanos += System.nanoTime() - start;
+            frames++;
+
+            if(start - second >= 1000000000L) {
+                String title = String.format("Tetris - %d games, %d fps, %.1f boards/frame, %.2f ms/frame", games, frames,
+                        (double)redrawn / frames, renderNanos / 1e6 / frames);
+                SwingUtilities.invokeLater(() -> frame.setTitle(title));
+                second = start;
+                frames = 0;
+                redrawn = 0;
+                renderNanos = 0;
+            }
+
+            next += frameNanos;
+            long sleep = next - System.nanoTime();
+            if(sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1000000L, (int)(sleep % 1000000L));
+                } catch(InterruptedException e) {
+                    return;
+                }
+            } else {
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Draws frames without a window, every game places a piece every frame so
+     * every board is redrawn every frame
+     */
+    private void bench() {
+        BoardGrid grid = new BoardGrid(games, columns, tileSize);
+        Table[] tables = createTables(0, grid);
+        BufferedImage screen = new BufferedImage(grid.getImage().getWidth(), grid.getImage().getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = screen.createGraphics();
+        grid.setSize(grid.getPreferredSize());
+
+        long renderNanos = 0;
+        long blitNanos = 0;
+        long redrawn = 0;
+        for(int f = 0; f < benchFrames; f++) {
+            for(Table table : tables) {
+                table.due = 0;
+                table.play(0, grid);
+            }
+            long start = System.nanoTime();
+            redrawn += grid.render();
+            long rendered = System.nanoTime();
+            grid.paint(g);
+            blitNanos += System.nanoTime() - rendered;
+            renderNanos += rendered - start;
+        }
+        g.dispose();
+
+        double frameMillis = (renderNanos + blitNanos) / 1e6 / benchFrames;
+        System.out.printf("%d boards of %dx%d pixels, %d frames, %.1f boards redrawn per frame%n", games,
+                Board.COLS * tileSize, (Board.ROWS - 2) * tileSize, benchFrames, (double)redrawn / benchFrames);
+        System.out.printf("render %.3f ms + copy %.3f ms per frame, %.0f fps%n", renderNanos / 1e6 / benchFrames,
+                blitNanos / 1e6 / benchFrames, 1000 / frameMillis);
+    }
+
+    // Creates the tables and hands in their first boards
+    private Table[] createTables(long now, BoardGrid grid) {
+        nextSeed.set(seed);
+        Table[] tables = new Table[games];
+        for(int i = 0; i < games; i++) {
+            tables[i] = new Table(i, now);
+            grid.publish(i, tables[i].engine);
+        }
+        return tables;
+    }
+
+    /**
+     * Shows the games from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) {
+        GridWatch watch = new GridWatch();
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--games":
+                        watch.games = Integer.parseInt(value);
+                        break;
+                    case "--columns":
+                        watch.columns = Integer.parseInt(value);
+                        break;
+                    case "--tile":
+                        watch.tileSize = Integer.parseInt(value);
+                        break;
+                    case "--bot":
+                        watch.botName = value;
+                        break;
+                    case "--seed":
+                        watch.seed = Long.parseLong(value);
+                        break;
+                    case "--pps":
+                        watch.piecesPerSecond = Double.parseDouble(value);
+                        break;
+                    case "--fps":
+                        watch.fps = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        watch.threads = Integer.parseInt(value);
+                        break;
+                    case "--bench":
+                        watch.benchFrames = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(watch.games < 1 || watch.tileSize < 1 || watch.piecesPerSecond <= 0 || watch.fps < 1 || watch.threads < 1) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+            // Fail early on an unknown bot name
+            Bot.create(watch.botName, 0);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if(watch.columns <= 0) {
+            // Boards are twice as high as wide, so twice as many columns as rows makes a square
+            watch.columns = (int)Math.ceil(Math.sqrt(watch.games * 2.0));
+        }
+
+        if(watch.benchFrames > 0) {
+            watch.bench();
+        } else {
+            watch.watch();
+        }
+    }
+}
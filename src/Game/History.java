@@ -0,0 +1,80 @@
+package Game;
+
+/**
+ * Remembers the last pieces of a game so they can be taken back. A snapshot of
+ * the game is recorded every time a piece spawns; the snapshots are kept in a
+ * ring buffer, so only the last few pieces can be taken back and the oldest
+ * snapshot is reused for the newest one. Snapshots share the unchanged rows of
+ * the board, so keeping them costs memory for the rows that changed only.
+ */
+
+public class History {
+    // Recorded snapshots, the oldest is overwritten when the buffer is full
+    private final Engine.Snapshot[] snapshots;
+    // Index of the newest snapshot
+    private int newest = -1;
+    // Number of recorded snapshots
+    private int size;
+
+    /**
+     * Creates a new history
+     * @param capacity The number of snapshots kept
+     */
+    public History(int capacity) {
+        if(capacity < 2) {
+            throw new IllegalArgumentException("A history needs room for at least 2 snapshots");
+        }
+        this.snapshots = new Engine.Snapshot[capacity];
+        for(int i = 0; i < capacity; i++) {
+            snapshots[i] = new Engine.Snapshot();
+        }
+    }
+
+    /**
+     * Records the state of a game, called right after a piece spawned
+     * @param engine The game
+     */
+    public void record(Engine engine) {
+        newest = (newest + 1) % snapshots.length;
+        size = Math.min(size + 1, snapshots.length);
+        engine.saveTo(snapshots[newest]);
+    }
+
+    /**
+     * Takes back the last piece that was added to the board: the game goes back
+     * to the moment that piece spawned. Also takes back a game over.
+     * @param engine The game
+     * @return If there was a piece to take back
+     */
+    public boolean undo(Engine engine) {
+        // The newest snapshot is the spawn of the current piece, go one further back
+        if(size > 0 && snapshots[newest].getPieces() == engine.getPieces()) {
+            if(size == 1) {
+                return false;
+            }
+            newest = (newest + snapshots.length - 1) % snapshots.length;
+            size--;
+        }
+        if(size == 0) {
+            return false;
+        }
+        engine.restoreFrom(snapshots[newest]);
+        return true;
+    }
+
+    /**
+     * Forgets every snapshot, called when a new game starts
+     */
+    public void clear() {
+        newest = -1;
+        size = 0;
+    }
+
+    /**
+     * Gets the number of recorded snapshots
+     * @return The number of snapshots
+     */
+    public int size() {
+        return size;
+    }
+}
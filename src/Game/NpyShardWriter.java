@@ -0,0 +1,172 @@
+package Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes fixed-size records into memory-mapped files in the NumPy .npy format,
+ * a one-dimensional array of a structured dtype that numpy.load can map
+ * directly. Records are written in place into the mapped file, so there is no
+ * copy or serialization between the caller and the page cache. A new file is
+ * started once a file reaches its size; the last file is cut to the records
+ * that were written when the writer is closed. No file is made without records.
+ *
+ * Records stay writable after the writer moved on to the next file, as long as
+ * the caller keeps the buffer they were written to.
+ */
+
+public class NpyShardWriter implements Closeable {
+    // Start of every .npy file, followed by version 1.0
+    private static final byte[] MAGIC = {(byte)0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+    // Digits reserved for the number of records, so the header keeps its size when the count changes
+    private static final int COUNT_WIDTH = 19;
+    // The header is padded to a multiple of this
+    private static final int HEADER_ALIGNMENT = 64;
+
+    // Directory of the files
+    private final Path dir;
+    // Start of the file names, followed by the number of the file
+    private final String prefix;
+    // NumPy description of a record
+    private final String descr;
+    // Size of a record in bytes
+    private final int recordSize;
+    // Size of the header in bytes
+    private final int headerSize;
+    // Number of records per file
+    private final int capacity;
+
+    // Number of the current file
+    private int shard = -1;
+    // The current file, null before the first record and after closing
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // Number of records in the current file
+    private int count;
+    // Number of records in all files
+    private long total;
+
+    /**
+     * Creates a new writer, the first file is created with the first record
+     * @param dir The directory of the files
+     * @param prefix Start of the file names, the files are called prefix-00000.npy and so on
+     * @param descr NumPy description of a record, like [('a', '&lt;i4'), ('b', '|u1')]
+     * @param recordSize Size of a record in bytes, must match the description
+     * @param shardBytes Size of a file, at most 2 GB
+     */
+    public NpyShardWriter(Path dir, String prefix, String descr, int recordSize, long shardBytes) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.descr = descr;
+        this.recordSize = recordSize;
+        this.headerSize = header(0).length;
+        long records = (Math.min(shardBytes, Integer.MAX_VALUE) - headerSize) / recordSize;
+        if(records < 1) {
+            throw new IllegalArgumentException("Files of " + shardBytes + " bytes can't hold a record");
+        }
+        this.capacity = (int)records;
+    }
+
+    /**
+     * Adds a record. Moves on to a new file if the current one is full.
+     * @return The offset of the record in {@link #getBuffer()}; the caller writes the fields there
+     */
+    public int append() throws IOException {
+        if(buffer == null || count == capacity) {
+            nextShard();
+        }
+        total++;
+        return headerSize + count++ * recordSize;
+    }
+
+    /**
+     * Gets the file of the last added record
+     * @return The mapped file, little-endian
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the number of added records
+     * @return The number of records in all files
+     */
+    public long getCount() {
+        return total;
+    }
+
+    // Finishes the current file and maps the next one
+    private void nextShard() throws IOException {
+        finishShard();
+        shard++;
+        Path file = dir.resolve(String.format("%s-%05d.npy", prefix, shard));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + (long)capacity * recordSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        putHeader(capacity);
+        count = 0;
+    }
+
+    // Writes the number of records into the header of the current file and cuts it to its records
+    private void finishShard() throws IOException {
+        if(buffer == null) {
+            return;
+        }
+        if(count < capacity) {
+            putHeader(count);
+        }
+        buffer.force();
+        if(count < capacity) {
+            channel.truncate(headerSize + (long)count * recordSize);
+        }
+        channel.close();
+        channel = null;
+        buffer = null;
+    }
+
+    // Writes the header of the current file
+    private void putHeader(int records) {
+        byte[] header = header(records);
+        for(int i = 0; i < header.length; i++) {
+            buffer.put(i, header[i]);
+        }
+    }
+
+    // Makes the header of a file with the given number of records
+    private byte[] header(int records) {
+        StringBuilder text = new StringBuilder();
+        text.append("{'descr': ").append(descr).append(", 'fortran_order': False, 'shape': (").append(records).append(",), }");
+        for(int i = Integer.toString(records).length(); i < COUNT_WIDTH; i++) {
+            text.append(' ');
+        }
+        // Magic, version and length come first, the text ends with a newline
+        int length = MAGIC.length + 2 + text.length() + 1;
+        int padded = (length + HEADER_ALIGNMENT - 1) / HEADER_ALIGNMENT * HEADER_ALIGNMENT;
+        for(int i = length; i < padded; i++) {
+            text.append(' ');
+        }
+        text.append('\n');
+
+        ByteBuffer header = ByteBuffer.allocate(padded).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putShort((short)text.length());
+        header.put(text.toString().getBytes(StandardCharsets.US_ASCII));
+        return header.array();
+    }
+
+    /**
+     * Finishes the last file
+     */
+    @Override
+    public void close() throws IOException {
+        finishShard();
+    }
+}
@@ -0,0 +1,214 @@
+package Game;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Collects frame timings and JVM statistics for the performance overlay.
+ * Recording a value only adds to a few counters; once per second the counters
+ * are turned into the lines shown by the overlay, so painting the overlay
+ * doesn't allocate either.
+ */
+
+public class PerformanceStats {
+    // Length of one sample window in nanoseconds
+    private static final long SAMPLE_NANOS = 1000000000L;
+
+    // Garbage collectors of the JVM
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    // Thread statistics of the JVM, null if allocated bytes can't be measured
+    private final com.sun.management.ThreadMXBean threads;
+    // Id of the thread that runs the game loop
+    private final long gameThreadId;
+    // Also gets the paint times, null if there are no metrics
+    private final GameMetrics metrics;
+
+    // If the overlay is shown
+    private volatile boolean visible;
+    // The lines of the overlay
+    private volatile String[] lines = new String[0];
+
+    // Start of the current window
+    private long windowStart;
+    // Totals of the current window, written by the game loop
+    private long ticks;
+    private long tickNanos;
+    private long maxTickNanos;
+    private long sleeps;
+    private long sleepErrorNanos;
+    private long maxSleepErrorNanos;
+    // Totals of the current window, written by the painting thread
+    private long frames;
+    private long paintNanos;
+    private long maxPaintNanos;
+    // JVM counters at the start of the window
+    private long gcCount;
+    private long gcMillis;
+    private long allocatedBytes;
+
+    /**
+     * Creates new statistics for the game loop running on the current thread
+     */
+    public PerformanceStats() {
+        this(null);
+    }
+
+    /**
+     * Creates new statistics for the game loop running on the current thread
+     * @param metrics The metrics that also get the paint times, null for none
+     */
+    public PerformanceStats(GameMetrics metrics) {
+        this.gameThreadId = Thread.currentThread().getId();
+        this.metrics = metrics;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            this.threads = (com.sun.management.ThreadMXBean)bean;
+        } else {
+            this.threads = null;
+        }
+        this.windowStart = System.nanoTime();
+        this.gcCount = getGcCount();
+        this.gcMillis = getGcMillis();
+        this.allocatedBytes = getAllocatedBytes();
+    }
+
+    /**
+     * Records the duration of one logic tick
+     * @param nanos The duration in nanoseconds
+     */
+    public void recordTick(long nanos) {
+        ticks++;
+        tickNanos += nanos;
+        maxTickNanos = Math.max(maxTickNanos, nanos);
+    }
+
+    /**
+     * Records how much longer a frame cap sleep took than asked for
+     * @param requestedNanos The time the loop asked to sleep
+     * @param actualNanos The time the loop really slept
+     */
+    public void recordSleep(long requestedNanos, long actualNanos) {
+        long error = actualNanos - requestedNanos;
+        sleeps++;
+        sleepErrorNanos += error;
+        maxSleepErrorNanos = Math.max(maxSleepErrorNanos, error);
+    }
+
+    /**
+     * Records the duration of painting a panel
+     * @param nanos The duration in nanoseconds
+     * @param frame If this paint finishes a frame
+     */
+    public synchronized void recordPaint(long nanos, boolean frame) {
+        if(metrics != null) {
+            metrics.recordPaint(nanos);
+        }
+        if(frame) {
+            frames++;
+        }
+        paintNanos += nanos;
+        maxPaintNanos = Math.max(maxPaintNanos, nanos);
+    }
+
+    /**
+     * Turns the counters into the lines of the overlay once the window is over.
+     * Called by the game loop.
+     * @return If new lines were made
+     */
+    public boolean sample() {
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if(elapsed < SAMPLE_NANOS) {
+            return false;
+        }
+        double seconds = elapsed / 1e9;
+
+        long frameCount;
+        long paintTotal;
+        long paintMax;
+        synchronized(this) {
+            frameCount = frames;
+            paintTotal = paintNanos;
+            paintMax = maxPaintNanos;
+            frames = 0;
+            paintNanos = 0;
+            maxPaintNanos = 0;
+        }
+
+        long newGcCount = getGcCount();
+        long newGcMillis = getGcMillis();
+        long newAllocated = getAllocatedBytes();
+
+        lines = new String[] {
+                String.format("FPS %.1f", frameCount / seconds),
+                String.format("tick %.3f ms (max %.3f)", average(tickNanos, ticks) / 1e6, maxTickNanos / 1e6),
+                String.format("paint %.3f ms (max %.3f)", average(paintTotal, frameCount) / 1e6, paintMax / 1e6),
+                String.format("sleep error %.3f ms (max %.3f)", average(sleepErrorNanos, sleeps) / 1e6, maxSleepErrorNanos / 1e6),
+                String.format("GC %d (%d ms)", newGcCount - gcCount, newGcMillis - gcMillis),
+                threads == null ? "alloc n/a" : String.format("alloc %.1f KB/s", (newAllocated - allocatedBytes) / 1024.0 / seconds)
+        };
+
+        windowStart = now;
+        ticks = 0;
+        tickNanos = 0;
+        maxTickNanos = 0;
+        sleeps = 0;
+        sleepErrorNanos = 0;
+        maxSleepErrorNanos = 0;
+        gcCount = newGcCount;
+        gcMillis = newGcMillis;
+        allocatedBytes = newAllocated;
+        return true;
+    }
+
+    private static double average(long total, long count) {
+        return count == 0 ? 0.0 : (double)total / count;
+    }
+
+    private long getGcCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private long getGcMillis() {
+        long millis = 0;
+        for(GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private long getAllocatedBytes() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(gameThreadId);
+    }
+
+    /**
+     * Shows or hides the overlay
+     * @param visible If the overlay is shown
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * Checks to see if the overlay is shown
+     * @return If the overlay is shown
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Gets the lines of the overlay
+     * @return The lines of the last sample
+     */
+    public String[] getLines() {
+        return lines;
+    }
+}
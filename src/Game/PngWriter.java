@@ -0,0 +1,119 @@
+package Game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes images with a palette as PNG files. The frames of a replay are large
+ * areas of a few colors that compress well without filtering the rows, and a low
+ * deflate level already finds the repeated rows; this is many times faster than
+ * ImageIO and the files are smaller. Keeps its buffers between images, one writer
+ * per thread.
+ */
+
+final class PngWriter {
+    // Start of every PNG file
+    private static final byte[] SIGNATURE = {(byte)137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    // Compresses about twice as well as the fastest level, in the same time
+    private static final int LEVEL = 3;
+
+    private final Deflater deflater = new Deflater(LEVEL);
+    private final CRC32 crc = new CRC32();
+    // Rows of the image, each starting with its filter type
+    private byte[] raw = new byte[0];
+    // Compressed rows
+    private byte[] compressed = new byte[0];
+    // Colors of the palette, 3 bytes each
+    private final byte[] paletteBytes = new byte[256 * 3];
+    // Image header
+    private final byte[] header = new byte[13];
+    // Length and type of a chunk
+    private final byte[] chunkHeader = new byte[8];
+    // Checksum of a chunk
+    private final byte[] checksum = new byte[4];
+
+    /**
+     * Writes an image
+     * @param pixels The palette index of every pixel, row by row
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param palette The colors of the palette, 0xRRGGBB
+     * @param colors The number of colors in the palette, at most 256
+     * @param file The file
+     */
+    void write(byte[] pixels, int width, int height, int[] palette, int colors, Path file) throws IOException {
+        int rawSize = (width + 1) * height;
+        if(raw.length < rawSize) {
+            raw = new byte[rawSize];
+            compressed = new byte[rawSize + (rawSize >> 3) + 64];
+        }
+        // Every row starts with filter type 0, no filter
+        for(int y = 0; y < height; y++) {
+            raw[y * (width + 1)] = 0;
+            System.arraycopy(pixels, y * width, raw, y * (width + 1) + 1, width);
+        }
+        deflater.reset();
+        deflater.setInput(raw, 0, rawSize);
+        deflater.finish();
+        int compressedSize = 0;
+        while(!deflater.finished()) {
+            if(compressedSize == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+        }
+
+        for(int i = 0; i < colors; i++) {
+            paletteBytes[i * 3] = (byte)(palette[i] >> 16);
+            paletteBytes[i * 3 + 1] = (byte)(palette[i] >> 8);
+            paletteBytes[i * 3 + 2] = (byte)palette[i];
+        }
+
+        try(OutputStream out = Files.newOutputStream(file)) {
+            out.write(SIGNATURE);
+
+            // 8 bits per pixel, color type 3 (palette), default compression, filter and no interlacing
+            putInt(header, 0, width);
+            putInt(header, 4, height);
+            header[8] = 8;
+            header[9] = 3;
+            header[10] = 0;
+            header[11] = 0;
+            header[12] = 0;
+            writeChunk(out, "IHDR", header, 13);
+            writeChunk(out, "PLTE", paletteBytes, colors * 3);
+            writeChunk(out, "IDAT", compressed, compressedSize);
+            writeChunk(out, "IEND", header, 0);
+        }
+    }
+
+    // Writes a chunk: length, type, data and the CRC of type and data
+    private void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        putInt(chunkHeader, 0, length);
+        for(int i = 0; i < 4; i++) {
+            chunkHeader[4 + i] = (byte)type.charAt(i);
+        }
+        out.write(chunkHeader);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(chunkHeader, 4, 4);
+        crc.update(data, 0, length);
+        putInt(checksum, 0, (int)crc.getValue());
+        out.write(checksum);
+    }
+
+    // Writes an int in big-endian order
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte)(value >>> 24);
+        buffer[offset + 1] = (byte)(value >>> 16);
+        buffer[offset + 2] = (byte)(value >>> 8);
+        buffer[offset + 3] = (byte)value;
+    }
+}
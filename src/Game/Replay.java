@@ -0,0 +1,388 @@
+package Game;
+
+import Pieces.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded game: the events of the game, each stamped with the frame it
+ * happened in. The file starts with a header
+ * <pre>
+ *   int  magic "TRP1"
+ *   int  version
+ *   int  length of a frame in milliseconds
+ *   int  number of pieces in the set, followed by their names (modified UTF-8)
+ * </pre>
+ * followed by one record per event, all numbers big-endian:
+ * <pre>
+ *   int  frame
+ *   byte type, piece, column, row, rotation
+ *   int  value
+ *   int  row mask
+ * </pre>
+ * A {@link Player} rebuilds the board, the pieces and the score from the events,
+ * so a replay doesn't depend on the piece generator of the game.
+ */
+
+public class Replay {
+    // Start of every replay file
+    public static final int MAGIC = 0x54525031;
+    // Version of the file format
+    public static final int VERSION = 1;
+    // Size of one event in bytes
+    private static final int RECORD_SIZE = 17;
+
+    // Length of a frame in milliseconds
+    private final int frameMillis;
+    // Number of events
+    private final int count;
+
+    // The events, one entry per event
+    private final int[] frames;
+    private final GameEvent.Type[] types;
+    private final Piece[] pieces;
+    private final byte[] cols;
+    private final byte[] rows;
+    private final byte[] rotations;
+    private final int[] values;
+    // Piece that spawns after a spawn or a rewind, null if the replay doesn't show it
+    private final Piece[] nextPieces;
+
+    private Replay(int frameMillis, int count) {
+        this.frameMillis = frameMillis;
+        this.count = count;
+        this.frames = new int[count];
+        this.types = new GameEvent.Type[count];
+        this.pieces = new Piece[count];
+        this.cols = new byte[count];
+        this.rows = new byte[count];
+        this.rotations = new byte[count];
+        this.values = new int[count];
+        this.nextPieces = new Piece[count];
+    }
+
+    /**
+     * Reads a replay file. The pieces are looked up by name in the loaded piece set.
+     * @param file The file
+     * @return The replay
+     */
+    public static Replay load(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if(buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a replay");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException(file + " has unsupported version " + version);
+        }
+        int frameMillis = buffer.getInt();
+
+        // Every name takes at least its two length bytes
+        int setSize = buffer.getInt();
+        if(setSize < 0 || setSize > buffer.remaining() / 2) {
+            throw new IOException(file + " has a piece table of " + setSize + " pieces");
+        }
+        Piece[] set = new Piece[setSize];
+        for(int i = 0; i < set.length; i++) {
+            if(buffer.remaining() < 2 || buffer.remaining() - 2 < (buffer.getShort(buffer.position()) & 0xffff)) {
+                throw new IOException(file + " ends inside its piece table");
+            }
+            String name = readUtf(buffer);
+            for(int j = 0; j < Piece.count(); j++) {
+                if(Piece.get(j).getName().equals(name)) {
+                    set[i] = Piece.get(j);
+                }
+            }
+            if(set[i] == null) {
+                throw new IOException(file + " uses piece " + name + ", which isn't in the loaded piece set");
+            }
+        }
+
+        GameEvent.Type[] allTypes = GameEvent.Type.values();
+        Replay replay = new Replay(frameMillis, buffer.remaining() / RECORD_SIZE);
+        for(int i = 0; i < replay.count; i++) {
+            replay.frames[i] = buffer.getInt();
+            int type = buffer.get() & 0xff;
+            int piece = buffer.get() & 0xff;
+            if(type >= allTypes.length) {
+                throw new IOException(file + " has unknown event type " + type + " in record " + i);
+            }
+            if(piece >= set.length) {
+                throw new IOException(file + " has piece " + piece + " in record " + i + ", its piece table has "
+                        + set.length);
+            }
+            replay.types[i] = allTypes[type];
+            replay.pieces[i] = set[piece];
+            replay.cols[i] = buffer.get();
+            replay.rows[i] = buffer.get();
+            replay.rotations[i] = buffer.get();
+            if(replay.rotations[i] < 0 || replay.rotations[i] >= Piece.ROTATIONS) {
+                throw new IOException(file + " has rotation " + replay.rotations[i] + " in record " + i);
+            }
+            replay.values[i] = buffer.getInt();
+            buffer.getInt();
+        }
+
+        // The next piece isn't part of the events, it's the piece of the next spawn
+        Piece next = null;
+        for(int i = replay.count - 1; i >= 0; i--) {
+            GameEvent.Type type = replay.types[i];
+            if(type == GameEvent.Type.SPAWN || type == GameEvent.Type.GAME_OVER) {
+                replay.nextPieces[i] = next;
+                next = replay.pieces[i];
+            } else if(type == GameEvent.Type.REWIND) {
+                // What would have spawned before going back is unknown
+                replay.nextPieces[i] = next;
+                next = null;
+            }
+        }
+        return replay;
+    }
+
+    // Reads a string written by DataOutput.writeUTF, the names are plain ASCII
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the length of a frame
+     * @return The length in milliseconds
+     */
+    public int getFrameMillis() {
+        return frameMillis;
+    }
+
+    /**
+     * Gets the number of frames, up to and including the frame of the last event
+     * @return The number of frames
+     */
+    public int getFrameCount() {
+        return count == 0 ? 0 : frames[count - 1] + 1;
+    }
+
+    /**
+     * Gets the number of events
+     * @return The number of events
+     */
+    public int getEventCount() {
+        return count;
+    }
+
+    /**
+     * Plays a replay back, one frame after the other
+     */
+    public class Player {
+        // The tiles that were placed
+        private final Board board = new Board();
+        // State at the spawn of every piece, by number of pieces placed, used to go back
+        private final List<Spawn> spawns = new ArrayList<>();
+
+        // Index of the next event to apply
+        private int position;
+        // Increased every time an event is applied
+        private int version;
+
+        private Piece currentPiece;
+        private Piece nextPiece;
+        private int currentCol;
+        private int currentRow;
+        private int currentRotation;
+        private int score;
+        private int level = 1;
+        private int lines;
+        private int placed;
+        private boolean isGameOver;
+
+        /**
+         * Applies the events up to and including a frame
+         * @param frame The frame
+         */
+        public void advanceTo(int frame) {
+            while(position < count && frames[position] <= frame) {
+                apply(position++);
+            }
+        }
+
+        // Applies one event
+        private void apply(int i) {
+            version++;
+            switch(types[i]) {
+                case SPAWN:
+                case MOVE:
+                case ROTATE:
+                    currentPiece = pieces[i];
+                    currentCol = cols[i];
+                    currentRow = rows[i];
+                    currentRotation = rotations[i];
+                    if(types[i] == GameEvent.Type.SPAWN) {
+                        nextPiece = nextPieces[i];
+                        saveSpawn();
+                    }
+                    break;
+                case LOCK:
+                    board.addPiece(pieces[i], cols[i], rows[i], rotations[i]);
+                    board.checkLines();
+                    placed++;
+                    break;
+                case LINES_CLEARED:
+                    lines += values[i];
+                    score += Engine.scoreFor(values[i]);
+                    break;
+                case LEVEL_UP:
+                    level = values[i];
+                    break;
+                case GAME_OVER:
+                    isGameOver = true;
+                    score = values[i];
+                    break;
+                case REWIND:
+                    restoreSpawn(values[i]);
+                    currentPiece = pieces[i];
+                    currentCol = cols[i];
+                    currentRow = rows[i];
+                    currentRotation = rotations[i];
+                    nextPiece = nextPieces[i];
+                    isGameOver = false;
+                    break;
+            }
+        }
+
+        // Remembers the state at the spawn of the current piece
+        private void saveSpawn() {
+            while(spawns.size() > placed) {
+                spawns.remove(spawns.size() - 1);
+            }
+            Spawn spawn = new Spawn();
+            board.saveTo(spawn.board);
+            spawn.score = score;
+            spawn.level = level;
+            spawn.lines = lines;
+            spawns.add(spawn);
+        }
+
+        // Goes back to the spawn of a piece
+        private void restoreSpawn(int pieces) {
+            if(pieces >= spawns.size()) {
+                return;
+            }
+            Spawn spawn = spawns.get(pieces);
+            board.restoreFrom(spawn.board);
+            score = spawn.score;
+            level = spawn.level;
+            lines = spawn.lines;
+            placed = pieces;
+        }
+
+        /**
+         * Gets the version of the state, it changes every time an event is applied
+         * @return The version
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Checks to see if every event was applied
+         * @return If the replay is over
+         */
+        public boolean isFinished() {
+            return position == count;
+        }
+
+        /**
+         * Gets the board
+         * @return The board
+         */
+        public Board getBoard() {
+            return board;
+        }
+
+        /**
+         * Gets the current piece
+         * @return The piece, null before the first spawn
+         */
+        public Piece getPieceType() {
+            return currentPiece;
+        }
+
+        /**
+         * Gets the next piece
+         * @return The piece, null if the replay doesn't show it
+         */
+        public Piece getNextPieceType() {
+            return nextPiece;
+        }
+
+        /**
+         * Gets the column of the current piece
+         * @return The column
+         */
+        public int getPieceCol() {
+            return currentCol;
+        }
+
+        /**
+         * Gets the row of the current piece
+         * @return The row
+         */
+        public int getPieceRow() {
+            return currentRow;
+        }
+
+        /**
+         * Gets the rotation of the current piece
+         * @return The rotation
+         */
+        public int getPieceRotation() {
+            return currentRotation;
+        }
+
+        /**
+         * Gets the score
+         * @return The score
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Gets the level
+         * @return The level
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Gets the number of cleared lines
+         * @return The number of lines
+         */
+        public int getLines() {
+            return lines;
+        }
+
+        /**
+         * Checks to see if the game is over
+         * @return If the game is over
+         */
+        public boolean isGameOver() {
+            return isGameOver;
+        }
+    }
+
+    // State of the game at the spawn of a piece
+    private static final class Spawn {
+        private final Board.Snapshot board = new Board.Snapshot();
+        private int score;
+        private int level;
+        private int lines;
+    }
+}
@@ -0,0 +1,618 @@
+package Game;
+
+import Panels.GamePanel;
+import Panels.SidePanel;
+import Pieces.Piece;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a replay into a PNG sequence or an animated GIF, without a window and
+ * much faster than real time.
+ *
+ * The export is a pipeline. One thread plays the replay and takes a snapshot of
+ * every frame; the snapshots share the board rows, so this is cheap. Several
+ * threads draw the snapshots with the drawing code of the panels, and either
+ * write them as PNG files or hand them to the thread that writes the GIF in
+ * order. Frames and their images come from a fixed pool, so the queues between
+ * the stages are bounded and no image is allocated per frame. PNG files are
+ * written with {@link PngWriter}. A GIF only gets a new frame when the game
+ * changed, unchanged frames make the previous one last longer, and a frame
+ * only stores the rectangle that differs from the frame before it.
+ */
+
+public class ReplayExporter {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: ReplayExporter <replay> <out.gif|directory> [--fps F] [--threads T]";
+    // Time the last frame of a GIF is shown, in milliseconds
+    private static final int END_MILLIS = 3000;
+    // Width of an exported frame
+    private static final int WIDTH = GamePanel.PANEL_WIDTH + SidePanel.PANEL_WIDTH;
+    // Height of an exported frame
+    private static final int HEIGHT = GamePanel.PANEL_HEIGHT;
+
+    /**
+     * One picture: the state of the game at one moment and the images it's drawn into
+     */
+    private static final class Frame implements Comparable<Frame> {
+        // State of the game
+        private final Board.Snapshot board = new Board.Snapshot();
+        private Piece piece;
+        private Piece next;
+        private int col;
+        private int row;
+        private int rotation;
+        private int score;
+        private int level;
+        private boolean isGameOver;
+
+        // Position in the output and time the frame is shown
+        private int index;
+        private int startFrame;
+        private int millis;
+
+        // The drawn frame
+        private final BufferedImage image;
+        // The drawn frame with a palette, for smaller files that encode faster
+        private final byte[] indexed;
+        private final int[] palette = new int[256];
+        // Number of colors in the palette, 0 if the frame has too many colors for a palette
+        private int colors;
+
+        private Frame(int width, int height) {
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.indexed = new byte[width * height];
+        }
+
+        @Override
+        public int compareTo(Frame other) {
+            return Integer.compare(index, other.index);
+        }
+    }
+
+    // Handed to the drawing threads after the last frame
+    private static final Frame END = new Frame(1, 1);
+
+    /**
+     * Shows a frame to the panels, every drawing thread has its own
+     */
+    private static final class FrameView implements GameView {
+        private final Board board = new Board();
+        private final PerformanceStats performance;
+        private final int bestScore;
+        private Frame frame;
+
+        private FrameView(PerformanceStats performance, int bestScore) {
+            this.performance = performance;
+            this.bestScore = bestScore;
+        }
+
+        private void show(Frame frame) {
+            this.frame = frame;
+            board.restoreFrom(frame.board);
+        }
+
+        @Override
+        public boolean isPaused() {
+            return false;
+        }
+
+        @Override
+        public boolean isGameOver() {
+            return frame.isGameOver;
+        }
+
+        @Override
+        public boolean isNewGame() {
+            return frame.piece == null;
+        }
+
+        @Override
+        public boolean isPractice() {
+            return false;
+        }
+
+        @Override
+        public int getScore() {
+            return frame.score;
+        }
+
+        @Override
+        public int getBestScore() {
+            return bestScore;
+        }
+
+        @Override
+        public int getLevel() {
+            return frame.level;
+        }
+
+        @Override
+        public Piece getPieceType() {
+            return frame.piece;
+        }
+
+        @Override
+        public Piece getNextPieceType() {
+            return frame.next;
+        }
+
+        @Override
+        public int getPieceCol() {
+            return frame.col;
+        }
+
+        @Override
+        public int getPieceRow() {
+            return frame.row;
+        }
+
+        @Override
+        public int getPieceRotation() {
+            return frame.rotation;
+        }
+
+        @Override
+        public Board getBoard() {
+            return board;
+        }
+
+        @Override
+        public PerformanceStats getPerformance() {
+            return performance;
+        }
+    }
+
+    private final Replay replay;
+    private final Path out;
+    private final boolean gif;
+    private final int threads;
+    // Replay frames per exported frame
+    private final int step;
+
+    // Frames that are free to be filled
+    private final BlockingQueue<Frame> free;
+    // Frames that wait to be drawn
+    private final BlockingQueue<Frame> pending;
+    // Drawn frames that wait to be written to the GIF
+    private final BlockingQueue<Frame> drawn;
+    // Pixels of the changed rectangle of a GIF frame
+    private final byte[] region = new byte[WIDTH * HEIGHT];
+
+    // Runs the player and the drawing threads
+    private ExecutorService pool;
+    // First error of any stage, stops the export
+    private volatile Throwable failure;
+    // Thread that waits for the export
+    private Thread mainThread;
+
+    // Number of exported frames
+    private int frameCount;
+    // Final score of the game, shown as the best score
+    private int finalScore;
+
+    /**
+     * Creates a new exporter
+     * @param replay The replay
+     * @param out A file ending in .gif, or a directory for the PNG files
+     * @param fps Frames per second of the export
+     * @param threads The number of drawing threads
+     */
+    public ReplayExporter(Replay replay, Path out, int fps, int threads) {
+        this.replay = replay;
+        this.out = out;
+        this.gif = out.getFileName().toString().toLowerCase().endsWith(".gif");
+        this.threads = threads;
+        this.step = Math.max(1, Math.round(1000.0f / fps / replay.getFrameMillis()));
+
+        int frames = threads * 2 + 2;
+        this.free = new ArrayBlockingQueue<>(frames);
+        this.pending = new ArrayBlockingQueue<>(frames + threads);
+        this.drawn = new ArrayBlockingQueue<>(frames + threads);
+        for(int i = 0; i < frames; i++) {
+            free.add(new Frame(WIDTH, HEIGHT));
+        }
+
+        // The best score shown is the final score of the game
+        Replay.Player player = replay.new Player();
+        player.advanceTo(replay.getFrameCount());
+        this.finalScore = player.getScore();
+    }
+
+    /**
+     * Exports the replay
+     * @return The number of exported frames
+     */
+    public int export() throws IOException, InterruptedException {
+        if(gif) {
+            Files.deleteIfExists(out);
+        } else {
+            Files.createDirectories(out);
+        }
+
+        mainThread = Thread.currentThread();
+        pool = Executors.newFixedThreadPool(threads + 1);
+        PerformanceStats performance = new PerformanceStats();
+        pool.execute(() -> run(this::play));
+        for(int i = 0; i < threads; i++) {
+            FrameView view = new FrameView(performance, finalScore);
+            pool.execute(() -> run(() -> draw(view)));
+        }
+        pool.shutdown();
+
+        try {
+            if(gif) {
+                writeGif();
+            }
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch(InterruptedException e) {
+            if(failure == null) {
+                throw e;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if(failure != null) {
+            throw new IOException("Export failed", failure);
+        }
+        return frameCount;
+    }
+
+    /**
+     * A stage of the pipeline
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    // Runs a stage, the first error stops every stage
+    private void run(Stage stage) {
+        try {
+            stage.run();
+        } catch(Throwable e) {
+            synchronized(this) {
+                if(failure == null) {
+                    failure = e;
+                    pool.shutdownNow();
+                    mainThread.interrupt();
+                }
+            }
+        }
+    }
+
+    // Plays the replay and hands a snapshot of every exported frame to the drawing threads
+    private void play() throws InterruptedException {
+        Replay.Player player = replay.new Player();
+        int end = replay.getFrameCount();
+        int frameMillis = replay.getFrameMillis();
+        Frame current = null;
+        int version = -1;
+        int index = 0;
+
+        for(int time = 0; time < end; time += step) {
+            player.advanceTo(time);
+            // A GIF only needs a new frame when something changed
+            if(gif && current != null && player.getVersion() == version) {
+                continue;
+            }
+            if(current != null) {
+                current.millis = (time - current.startFrame) * frameMillis;
+                pending.put(current);
+            }
+            current = free.take();
+            fill(current, player, index++, time);
+            version = player.getVersion();
+        }
+        if(current != null) {
+            current.millis = (end - current.startFrame) * frameMillis + (gif ? END_MILLIS : 0);
+            pending.put(current);
+        }
+        frameCount = index;
+
+        for(int i = 0; i < threads; i++) {
+            pending.put(END);
+        }
+    }
+
+    // Copies the state of the player into a frame
+    private static void fill(Frame frame, Replay.Player player, int index, int time) {
+        player.getBoard().saveTo(frame.board);
+        frame.piece = player.getPieceType();
+        frame.next = player.getNextPieceType();
+        frame.col = player.getPieceCol();
+        frame.row = player.getPieceRow();
+        frame.rotation = player.getPieceRotation();
+        frame.score = player.getScore();
+        frame.level = player.getLevel();
+        frame.isGameOver = player.isGameOver();
+        frame.index = index;
+        frame.startFrame = time;
+    }
+
+    // Draws frames, and writes them if the export is a PNG sequence
+    private void draw(FrameView view) throws IOException, InterruptedException {
+        GamePanel game = new GamePanel(view);
+        SidePanel side = new SidePanel(view);
+        PngWriter png = new PngWriter();
+        while(true) {
+            Frame frame = pending.take();
+            if(frame == END) {
+                drawn.put(END);
+                return;
+            }
+
+            view.show(frame);
+            Graphics2D g = frame.image.createGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            Graphics panel = g.create(0, 0, GamePanel.PANEL_WIDTH, HEIGHT);
+            game.draw(panel);
+            panel.dispose();
+            panel = g.create(GamePanel.PANEL_WIDTH, 0, SidePanel.PANEL_WIDTH, HEIGHT);
+            side.draw(panel);
+            panel.dispose();
+            g.dispose();
+            index(frame);
+
+            if(gif) {
+                drawn.put(frame);
+            } else {
+                Path file = out.resolve(String.format("frame-%06d.png", frame.index));
+                if(frame.colors > 0) {
+                    png.write(frame.indexed, WIDTH, HEIGHT, frame.palette, frame.colors, file);
+                } else {
+                    ImageIO.write(frame.image, "png", file.toFile());
+                }
+                free.put(frame);
+            }
+        }
+    }
+
+    // Writes the drawn frames to the GIF in order
+    private void writeGif() throws IOException, InterruptedException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try(ImageOutputStream stream = ImageIO.createImageOutputStream(out.toFile())) {
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+
+            // Pixels of the last written frame, only the part that changed since is written
+            int[] previous = new int[WIDTH * HEIGHT];
+            // Drawn pixels have no alpha, so the first frame differs everywhere
+            Arrays.fill(previous, -1);
+            PriorityQueue<Frame> waiting = new PriorityQueue<>();
+            int next = 0;
+            int ended = 0;
+            while(ended < threads) {
+                Frame frame = drawn.take();
+                if(frame == END) {
+                    ended++;
+                    continue;
+                }
+                waiting.add(frame);
+                while(!waiting.isEmpty() && waiting.peek().index == next) {
+                    Frame first = waiting.poll();
+                    writeGifFrame(writer, first, previous);
+                    free.put(first);
+                    next++;
+                }
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Writes the part of a frame that differs from the previous frame to the GIF
+    private void writeGifFrame(ImageWriter writer, Frame frame, int[] previous) throws IOException {
+        int[] pixels = ((DataBufferInt)frame.image.getRaster().getDataBuffer()).getData();
+        int left = WIDTH;
+        int right = 0;
+        int top = HEIGHT;
+        int bottom = 0;
+        for(int y = 0; y < HEIGHT; y++) {
+            int row = y * WIDTH;
+            for(int x = 0; x < WIDTH; x++) {
+                if(pixels[row + x] != previous[row + x]) {
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        System.arraycopy(pixels, 0, previous, 0, pixels.length);
+        // Nothing visible changed, a single pixel still carries the delay
+        if(left > right) {
+            left = right = top = bottom = 0;
+        }
+
+        BufferedImage image;
+        if(frame.colors > 0) {
+            // The GIF writer ignores the offset of a subimage, so the rectangle is copied
+            int width = right - left + 1;
+            int height = bottom - top + 1;
+            for(int y = 0; y < height; y++) {
+                System.arraycopy(frame.indexed, (top + y) * WIDTH + left, region, y * width, width);
+            }
+            WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(region, width * height),
+                    width, height, width, 1, new int[] {0}, null);
+            image = new BufferedImage(new IndexColorModel(8, Math.max(frame.colors, 2), frame.palette, 0, false, -1,
+                    DataBuffer.TYPE_BYTE), raster, false, null);
+        } else {
+            // Too many colors for a palette, the writer reduces the colors of the whole frame
+            left = 0;
+            top = 0;
+            image = frame.image;
+        }
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode)metadata.getAsTree(format);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("transparentColorIndex", "0");
+        control.setAttribute("delayTime", Integer.toString(Math.max(2, frame.millis / 10)));
+
+        IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(left));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(top));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+
+        // Every frame has its own palette; without a local table the writer would use its default global one
+        if(frame.colors > 0) {
+            int size = 2;
+            while(size < frame.colors) {
+                size <<= 1;
+            }
+            IIOMetadataNode table = child(root, "LocalColorTable");
+            table.setAttribute("sizeOfLocalColorTable", Integer.toString(size));
+            table.setAttribute("sortFlag", "FALSE");
+            while(table.hasChildNodes()) {
+                table.removeChild(table.getFirstChild());
+            }
+            for(int i = 0; i < size; i++) {
+                int color = i < frame.colors ? frame.palette[i] : 0;
+                IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+                entry.setAttribute("index", Integer.toString(i));
+                entry.setAttribute("red", Integer.toString(color >> 16 & 0xff));
+                entry.setAttribute("green", Integer.toString(color >> 8 & 0xff));
+                entry.setAttribute("blue", Integer.toString(color & 0xff));
+                table.appendChild(entry);
+            }
+        }
+
+        // Loop forever
+        if(frame.index == 0) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] {1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), param);
+    }
+
+    // Gets a child of a metadata node, adding it if it doesn't exist
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for(int i = 0; i < parent.getLength(); i++) {
+            if(parent.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode)parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    /**
+     * Gives every color of the drawn frame a palette entry. The panels only use a
+     * few colors, so a frame rarely has more than 256.
+     * @param frame The drawn frame, its colors are set to 0 if it has too many colors
+     */
+    private static void index(Frame frame) {
+        int[] pixels = ((DataBufferInt)frame.image.getRaster().getDataBuffer()).getData();
+        int[] palette = frame.palette;
+        int size = 0;
+        int lastColor = 0;
+        int lastIndex = -1;
+        for(int i = 0; i < pixels.length; i++) {
+            int color = pixels[i] & 0xffffff;
+            if(color != lastColor || lastIndex < 0) {
+                lastIndex = -1;
+                for(int j = 0; j < size; j++) {
+                    if(palette[j] == color) {
+                        lastIndex = j;
+                        break;
+                    }
+                }
+                if(lastIndex < 0) {
+                    if(size == palette.length) {
+                        frame.colors = 0;
+                        return;
+                    }
+                    palette[size] = color;
+                    lastIndex = size++;
+                }
+                lastColor = color;
+            }
+            frame.indexed[i] = (byte)lastIndex;
+        }
+        frame.colors = size;
+    }
+
+    /**
+     * Exports a replay from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        if(args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        int fps = 25;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for(int i = 2; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch(args[i]) {
+                    case "--fps":
+                        fps = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        Replay replay = Replay.load(Paths.get(args[0]));
+        ReplayExporter exporter = new ReplayExporter(replay, Paths.get(args[1]), fps, threads);
+        int frames = exporter.export();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d events, %.1f s of game, %d frames in %.3f s, %.1f frames/sec%n", replay.getEventCount(),
+                replay.getFrameCount() * replay.getFrameMillis() / 1000.0, frames, seconds, frames / seconds);
+    }
+}
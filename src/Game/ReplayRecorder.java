@@ -0,0 +1,88 @@
+package Game;
+
+import Pieces.Piece;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the events of one game to a replay file, see {@link Replay} for the
+ * format. Subscribe the recorder before the game is reset so the first spawn is
+ * recorded, and close it once the game is over.
+ */
+
+public class ReplayRecorder implements GameListener, Closeable {
+    // The replay file
+    private final DataOutputStream out;
+    // Length of a frame in nanoseconds, 0 if every event gets its own frame
+    private final long frameNanos;
+    // Time the recording started
+    private final long startNanos;
+    // Number of recorded events
+    private int count;
+    // Set once writing failed, nothing is written after that
+    private boolean failed;
+
+    /**
+     * Creates a new recorder
+     * @param file The replay file, replaced if it exists
+     * @param frameMillis Length of a frame in milliseconds
+     * @param realTime If events are stamped with the frame they happened in; if not,
+     *                 every event gets its own frame, which suits games played by bots
+     */
+    public ReplayRecorder(Path file, int frameMillis, boolean realTime) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        this.frameNanos = realTime ? frameMillis * 1000000L : 0L;
+        this.startNanos = System.nanoTime();
+
+        out.writeInt(Replay.MAGIC);
+        out.writeInt(Replay.VERSION);
+        out.writeInt(frameMillis);
+        out.writeInt(Piece.count());
+        for(int i = 0; i < Piece.count(); i++) {
+            out.writeUTF(Piece.get(i).getName());
+        }
+    }
+
+    @Override
+    public void onEvent(GameEvent event) {
+        if(failed) {
+            return;
+        }
+        try {
+            out.writeInt(frameNanos == 0 ? count : (int)((System.nanoTime() - startNanos) / frameNanos));
+            out.writeByte(event.getType().ordinal());
+            out.writeByte(event.getPiece().getIndex());
+            out.writeByte(event.getCol());
+            out.writeByte(event.getRow());
+            out.writeByte(event.getRotation());
+            out.writeInt(event.getValue());
+            out.writeInt(event.getRowMask());
+            count++;
+            // The game may end with the program, so don't keep the end of the game in the buffer
+            if(event.getType() == GameEvent.Type.GAME_OVER) {
+                out.flush();
+            }
+        } catch(IOException e) {
+            failed = true;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the number of recorded events
+     * @return The number of events
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,281 @@
+package Game;
+
+import Bots.Bot;
+import Bots.Placement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays games with a bot on every core and writes one record per placed piece
+ * into .npy shards, to build training data. Every thread writes its own shards
+ * with a {@link NpyShardWriter}, so the threads never wait for each other.
+ *
+ * Record layout, 64 bytes, little-endian:
+ * <pre>
+ *   0   rows         uint16[22]  board before the placement, bit x of row y is column x, row 0 is the top
+ *   44  final_score  int32       score at the end of the game
+ *   48  game         uint32      game number, the game was played with seed + game
+ *   52  moves_left   uint32      placements after this one until the game ended
+ *   56  piece        uint8       current piece, index in the piece set
+ *   57  next         uint8       next piece
+ *   58  col          int8        column the piece was locked in
+ *   59  row          int8        row the piece was locked in
+ *   60  rotation     uint8       rotation the piece was locked in
+ *   61  lines        uint8       lines cleared by the placement
+ *   62  done         uint8       1 if the game was lost after the placement
+ *   63  height       uint8       height of the stack before the placement
+ * </pre>
+ * A game that reaches the piece limit ends without a loss, so its last record
+ * has moves_left 0 and done 0. So does the game that writes the last of the
+ * --positions records: a record is reserved before it is written, so the
+ * threads write exactly that many.
+ */
+
+public class SelfPlay {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: SelfPlay --out DIR [--positions N] [--bot heuristic|random|search] [--seed S] "
+            + "[--threads T] [--max-pieces P] [--shard-mb M]";
+
+    // Size of a record in bytes
+    public static final int RECORD_SIZE = 64;
+    // NumPy description of a record
+    public static final String DESCR = "[('rows', '<u2', (" + Board.ROWS + ",)), ('final_score', '<i4'), "
+            + "('game', '<u4'), ('moves_left', '<u4'), ('piece', '|u1'), ('next', '|u1'), ('col', '|i1'), "
+            + "('row', '|i1'), ('rotation', '|u1'), ('lines', '|u1'), ('done', '|u1'), ('height', '|u1')]";
+    // Offsets inside a record
+    private static final int ROWS_OFFSET = 0;
+    private static final int FINAL_SCORE_OFFSET = ROWS_OFFSET + Board.ROWS * 2;
+    private static final int GAME_OFFSET = FINAL_SCORE_OFFSET + 4;
+    private static final int MOVES_LEFT_OFFSET = GAME_OFFSET + 4;
+    private static final int PIECE_OFFSET = MOVES_LEFT_OFFSET + 4;
+    private static final int NEXT_OFFSET = PIECE_OFFSET + 1;
+    private static final int COL_OFFSET = PIECE_OFFSET + 2;
+    private static final int ROW_OFFSET = PIECE_OFFSET + 3;
+    private static final int ROTATION_OFFSET = PIECE_OFFSET + 4;
+    private static final int LINES_OFFSET = PIECE_OFFSET + 5;
+    private static final int DONE_OFFSET = PIECE_OFFSET + 6;
+    private static final int HEIGHT_OFFSET = PIECE_OFFSET + 7;
+
+    // Name of the bot that plays the games
+    private String botName = "heuristic";
+    // Number of records to write
+    private long positions = 1000000;
+    // Seed of the first game, game i uses seed + i
+    private long seed = 0;
+    // Number of threads that play games
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Games are stopped after this many pieces
+    private int maxPieces = 2000;
+    // Size of a shard file
+    private long shardBytes = 256L << 20;
+    // Directory of the shards
+    private String out;
+
+    // Number of the next game to play
+    private final AtomicInteger nextGame = new AtomicInteger();
+    // Number of records reserved by the threads, can go past the number of records to write
+    private final AtomicLong reserved = new AtomicLong();
+    // Number of written records
+    private final AtomicLong written = new AtomicLong();
+    // Number of games with at least one record
+    private final AtomicInteger games = new AtomicInteger();
+
+    /**
+     * Plays games until enough records are written
+     */
+    public void run() throws IOException, InterruptedException {
+        Path dir = Paths.get(out);
+        Files.createDirectories(dir);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger failures = new AtomicInteger();
+        for(int t = 0; t < threads; t++) {
+            Worker worker = new Worker(new NpyShardWriter(dir, String.format("selfplay-t%02d", t), DESCR, RECORD_SIZE, shardBytes));
+            pool.execute(() -> {
+                try {
+                    worker.run();
+                } catch(IOException e) {
+                    failures.incrementAndGet();
+                    e.printStackTrace();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if(failures.get() > 0) {
+            throw new IOException(failures.get() + " threads failed to write their shards");
+        }
+    }
+
+    /**
+     * Plays games on one thread and writes their records
+     */
+    private final class Worker implements GameListener {
+        private final EventBus events = new EventBus();
+        private final Engine engine = new Engine(events);
+        private final NpyShardWriter writer;
+
+        // Where the records of the current game are, to fill in the end of the game
+        private ByteBuffer[] gameBuffers = new ByteBuffer[256];
+        private int[] gameOffsets = new int[256];
+
+        // Where the last piece was locked and how many lines it cleared
+        private int lockCol;
+        private int lockRow;
+        private int lockRotation;
+        private int cleared;
+
+        private Worker(NpyShardWriter writer) {
+            this.writer = writer;
+            events.subscribe(this);
+        }
+
+        @Override
+        public void onEvent(GameEvent event) {
+            if(event.getType() == GameEvent.Type.LOCK) {
+                lockCol = event.getCol();
+                lockRow = event.getRow();
+                lockRotation = event.getRotation();
+            } else if(event.getType() == GameEvent.Type.LINES_CLEARED) {
+                cleared = event.getValue();
+            }
+        }
+
+        private void run() throws IOException {
+            try {
+                while(reserved.get() < positions) {
+                    play(nextGame.getAndIncrement());
+                }
+            } finally {
+                writer.close();
+            }
+        }
+
+        // Plays one game, every placement becomes a record
+        private void play(int game) throws IOException {
+            Bot bot = Bot.create(botName, seed + game);
+            engine.setSeed(seed + game);
+            engine.reset();
+            events.flush();
+
+            int moves = 0;
+            // The record is reserved last, so it is only taken when it gets written
+            while(!engine.isGameOver() && engine.getPieces() < maxPieces && reserved.getAndIncrement() < positions) {
+                Placement placement = bot.choose(engine);
+
+                int offset = writer.append();
+                ByteBuffer buffer = writer.getBuffer();
+                Board board = engine.getBoard();
+                int height = 0;
+                for(int y = 0; y < Board.ROWS; y++) {
+                    int mask = board.getRowMask(y);
+                    buffer.putShort(offset + ROWS_OFFSET + y * 2, (short)mask);
+                    if(mask != 0 && height == 0) {
+                        height = Board.ROWS - y;
+                    }
+                }
+                buffer.putInt(offset + GAME_OFFSET, game);
+                buffer.put(offset + PIECE_OFFSET, (byte)engine.getPieceType().getIndex());
+                buffer.put(offset + NEXT_OFFSET, (byte)engine.getNextPieceType().getIndex());
+                buffer.put(offset + HEIGHT_OFFSET, (byte)height);
+
+                cleared = 0;
+                placement.apply(engine);
+                events.flush();
+
+                buffer.put(offset + COL_OFFSET, (byte)lockCol);
+                buffer.put(offset + ROW_OFFSET, (byte)lockRow);
+                buffer.put(offset + ROTATION_OFFSET, (byte)lockRotation);
+                buffer.put(offset + LINES_OFFSET, (byte)cleared);
+                buffer.put(offset + DONE_OFFSET, (byte)(engine.isGameOver() ? 1 : 0));
+
+                if(moves == gameBuffers.length) {
+                    gameBuffers = Arrays.copyOf(gameBuffers, moves * 2);
+                    gameOffsets = Arrays.copyOf(gameOffsets, moves * 2);
+                }
+                gameBuffers[moves] = buffer;
+                gameOffsets[moves] = offset;
+                moves++;
+            }
+
+            // The outcome is only known now, the records may be in earlier shards
+            int score = engine.getScore();
+            for(int i = 0; i < moves; i++) {
+                gameBuffers[i].putInt(gameOffsets[i] + FINAL_SCORE_OFFSET, score);
+                gameBuffers[i].putInt(gameOffsets[i] + MOVES_LEFT_OFFSET, moves - 1 - i);
+                gameBuffers[i] = null;
+            }
+            written.addAndGet(moves);
+            if(moves > 0) {
+                games.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Generates a data set from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws Exception {
+        SelfPlay selfPlay = new SelfPlay();
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--out":
+                        selfPlay.out = value;
+                        break;
+                    case "--positions":
+                        selfPlay.positions = Long.parseLong(value);
+                        break;
+                    case "--bot":
+                        selfPlay.botName = value;
+                        break;
+                    case "--seed":
+                        selfPlay.seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        selfPlay.threads = Integer.parseInt(value);
+                        break;
+                    case "--max-pieces":
+                        selfPlay.maxPieces = Integer.parseInt(value);
+                        break;
+                    case "--shard-mb":
+                        selfPlay.shardBytes = Long.parseLong(value) << 20;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(selfPlay.out == null) {
+                throw new IllegalArgumentException("Missing --out");
+            }
+            // Fail early on an unknown bot name
+            Bot.create(selfPlay.botName, 0);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        selfPlay.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long records = selfPlay.written.get();
+        System.out.printf("%d games, %d positions in %.3f s%n", selfPlay.games.get(), records, seconds);
+        System.out.printf("%.1f positions/sec, %.1f MB/sec%n", records / seconds, records * RECORD_SIZE / seconds / 1e6);
+    }
+}
@@ -0,0 +1,206 @@
+package Game;
+
+import Bots.Bot;
+import Bots.Placement;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many games with a bot without opening a window, writes the
+ * statistics of every game to a CSV file and prints the throughput.
+ */
+
+public class Simulator {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: Simulator [--games N] [--bot heuristic|random|search] [--seed S] "
+            + "[--threads T] [--max-pieces P] [--out stats.csv] [--replays DIR]";
+    // Length of a replay frame in milliseconds, every event of a bot game gets its own frame
+    private static final int REPLAY_FRAME_MILLIS = 20;
+
+    // Name of the bot that plays the games
+    private String botName = "heuristic";
+    // Number of games to play
+    private int games = 100;
+    // Seed of the first game, game i uses seed + i
+    private long seed = 0;
+    // Number of threads that play games
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Games are stopped after this many pieces
+    private int maxPieces = 10000;
+    // The CSV file to write
+    private String out = "stats.csv";
+    // Directory where every game is recorded, not recorded if null
+    private String replays;
+
+    // Statistics of every game
+    private int[] scores;
+    private int[] lines;
+    private int[] pieces;
+    private int[] maxHeights;
+    private long[] nanos;
+
+    /**
+     * Plays all the games
+     */
+    public void run() throws InterruptedException {
+        scores = new int[games];
+        lines = new int[games];
+        pieces = new int[games];
+        maxHeights = new int[games];
+        nanos = new long[games];
+
+        // Every thread takes the next game that nobody is playing yet
+        AtomicInteger nextGame = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                Engine engine = new Engine();
+                int game;
+                while((game = nextGame.getAndIncrement()) < games) {
+                    play(engine, game);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Plays one game and records its statistics
+     * @param engine The engine to play with
+     * @param game The index of the game
+     */
+    private void play(Engine engine, int game) {
+        long start = System.nanoTime();
+        Bot bot = Bot.create(botName, seed + game);
+
+        ReplayRecorder recorder = null;
+        if(replays != null) {
+            try {
+                recorder = new ReplayRecorder(Paths.get(replays, "game-" + game + ".replay"), REPLAY_FRAME_MILLIS, false);
+                engine.getEvents().subscribe(recorder);
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        engine.setSeed(seed + game);
+        engine.reset();
+
+        int maxHeight = 0;
+        while(!engine.isGameOver() && engine.getPieces() < maxPieces) {
+            Placement placement = bot.choose(engine);
+            placement.apply(engine);
+            maxHeight = Math.max(maxHeight, engine.getBoard().getMaxHeight());
+        }
+
+        if(recorder != null) {
+            engine.getEvents().flush();
+            engine.getEvents().unsubscribe(recorder);
+            try {
+                recorder.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        scores[game] = engine.getScore();
+        lines[game] = engine.getLines();
+        pieces[game] = engine.getPieces();
+        maxHeights[game] = maxHeight;
+        nanos[game] = System.nanoTime() - start;
+    }
+
+    /**
+     * Writes the statistics of every game to the CSV file
+     */
+    public void writeCsv() throws IOException {
+        try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8))) {
+            writer.println("game,seed,score,lines,pieces,max_height,millis");
+            for(int i = 0; i < games; i++) {
+                writer.println(i + "," + (seed + i) + "," + scores[i] + "," + lines[i] + "," + pieces[i] + ","
+                        + maxHeights[i] + "," + (nanos[i] / 1000000L));
+            }
+        }
+    }
+
+    /**
+     * Gets the total number of pieces placed in all games
+     * @return The number of pieces
+     */
+    public long getTotalPieces() {
+        long total = 0;
+        for(int count : pieces) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Runs the simulation from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws Exception {
+        Simulator simulator = new Simulator();
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--games":
+                        simulator.games = Integer.parseInt(value);
+                        break;
+                    case "--bot":
+                        simulator.botName = value;
+                        break;
+                    case "--seed":
+                        simulator.seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        simulator.threads = Integer.parseInt(value);
+                        break;
+                    case "--max-pieces":
+                        simulator.maxPieces = Integer.parseInt(value);
+                        break;
+                    case "--out":
+                        simulator.out = value;
+                        break;
+                    case "--replays":
+                        simulator.replays = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            // Fail early on an unknown bot name
+            Bot.create(simulator.botName, 0);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if(simulator.replays != null) {
+            Files.createDirectories(Paths.get(simulator.replays));
+        }
+
+        long start = System.nanoTime();
+        simulator.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.writeCsv();
+
+        long totalPieces = simulator.getTotalPieces();
+        System.out.printf("%d games, %d pieces in %.3f s%n", simulator.games, totalPieces, seconds);
+        System.out.printf("%.1f games/sec, %.1f pieces/sec%n", simulator.games / seconds, totalPieces / seconds);
+    }
+}
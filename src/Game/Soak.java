@@ -0,0 +1,478 @@
+package Game;
+
+import Bots.Bot;
+import Bots.Placement;
+import Metrics.MetricRegistry;
+import Panels.GamePanel;
+import Panels.SidePanel;
+import Panels.TerminalRenderer;
+import Pieces.Piece;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plays marathon bot games without a window for as long as asked, ticking and
+ * painting like the game loop does, one paint per tick, and watches the heap.
+ * Every tick plays one input of the bot's way to its placement, or lets the
+ * piece fall a row.
+ * The bytes allocated by the game thread are measured around every tick and
+ * every paint. Once a second (--report) a line shows the allocation per tick
+ * and per paint, the collections and the heap after the last collection. After
+ * the warmup, a window that allocates more per tick or per paint than its
+ * budget, or a heap after collection that grew more than allowed since the
+ * warmup, ends the soak with exit code 1, so an allocation on the hot path is
+ * caught by a run and not by stutters.
+ *
+ * The bot's search isn't part of a tick, its allocation is only shown.
+ */
+
+public class Soak {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: Soak [--minutes M] [--bot heuristic|random|search] [--seed S] "
+            + "[--paint swing|terminal] [--warmup SECONDS] [--report SECONDS] [--tick-budget BYTES] "
+            + "[--paint-budget BYTES] [--heap-growth-mb MB]";
+    // Ticks between two looks at the clock
+    private static final int CLOCK_TICKS = 1024;
+
+    // How long to play
+    private double minutes = 10;
+    // Name of the bot that plays the games
+    private String botName = "heuristic";
+    // Seed of the first game, every new game takes the next seed
+    private long seed = 0;
+    // What paints the game: the Swing panels into an image or the terminal renderer into nothing
+    private String paint = "swing";
+    // Seconds before the budgets are checked, while classes load and code is compiled
+    private double warmupSeconds = 30;
+    // Seconds between two reports
+    private double reportSeconds = 60;
+    // Most bytes a tick may allocate on average over a report window
+    private double tickBudget = 64;
+    // Most bytes a paint may allocate on average over a report window
+    private double paintBudget = 1024;
+    // Most megabytes the heap after collection may grow after the warmup
+    private double heapGrowthMb = 32;
+
+    // Thread statistics of the JVM
+    private final com.sun.management.ThreadMXBean threads;
+    private final long threadId = Thread.currentThread().getId();
+    // Bytes a pair of reads of the allocation counter allocates itself, taken off every measurement
+    private final long probeBytes;
+    // Names of the memory pools of the heap
+    private final Set<String> heapPools = new HashSet<>();
+    // Bytes used in the heap right after the last collection, -1 before the first
+    private volatile long heapAfterGc = -1;
+
+    private final EventBus events = new EventBus();
+    private final Engine engine = new Engine(events);
+    private final PerformanceStats performance = new PerformanceStats();
+    private Bot bot;
+    // Inputs of the bot's placement still to play, one per tick, null if the piece was moved at once
+    private byte[] plan;
+    private int planned;
+
+    // Counters of the current report window
+    private long ticks;
+    private long tickBytes;
+    private long paints;
+    private long paintBytes;
+    private long botBytes;
+    private int games;
+
+    private Soak() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM can't measure the bytes allocated by a thread");
+        }
+        this.threads = (com.sun.management.ThreadMXBean)bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long least = Long.MAX_VALUE;
+        for(int i = 0; i < 1000; i++) {
+            long before = allocated();
+            least = Math.min(least, allocated() - before);
+        }
+        this.probeBytes = least;
+
+        // The old generation's own collection usage only changes with a full collection, so the heap is summed
+        // from the usage after every collection the collectors report
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if(collector instanceof NotificationEmitter) {
+                ((NotificationEmitter)collector).addNotificationListener(this::collected, null, null);
+            }
+        }
+    }
+
+    // Takes the heap after a collection, the listener runs on a thread of the JVM, not on the game thread
+    private void collected(Notification notification, Object handback) {
+        if(!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                (CompositeData)notification.getUserData());
+        long used = 0;
+        for(Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if(heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        heapAfterGc = used;
+    }
+
+    // Gets the bytes the game thread allocated so far
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Something that draws the game once per tick
+     */
+    private interface Painter {
+        void paint() throws IOException;
+    }
+
+    // Paints the game panel and the side panel into an image, like the window does
+    private Painter swingPainter(GameView view) {
+        GamePanel game = new GamePanel(view);
+        SidePanel side = new SidePanel(view);
+        BufferedImage image = new BufferedImage(GamePanel.PANEL_WIDTH + SidePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D gameGraphics = image.createGraphics();
+        Graphics2D sideGraphics = (Graphics2D)gameGraphics.create(GamePanel.PANEL_WIDTH, 0, SidePanel.PANEL_WIDTH,
+                GamePanel.PANEL_HEIGHT);
+        // The game panel moves the origin, it is put back after every paint
+        AffineTransform origin = gameGraphics.getTransform();
+        return () -> {
+            gameGraphics.setTransform(origin);
+            gameGraphics.setColor(Color.BLACK);
+            gameGraphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            game.draw(gameGraphics);
+            side.draw(sideGraphics);
+        };
+    }
+
+    /**
+     * Plays until the time is up or a budget is broken
+     * @return If every budget was kept
+     */
+    private boolean run() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        GameMetrics metrics = new GameMetrics(registry, engine);
+        events.subscribe(metrics);
+        View view = new View();
+        Painter painter;
+        if(paint.equals("terminal")) {
+            TerminalRenderer renderer = new TerminalRenderer(OutputStream.nullOutputStream());
+            painter = () -> renderer.render(view);
+        } else {
+            painter = swingPainter(view);
+        }
+
+        System.out.printf("Soak of %.1f minutes, %s bot, %s paint, budgets %.0f bytes per tick and %.0f per paint "
+                + "after %.0f s%n", minutes, botName, paint, tickBudget, paintBudget, warmupSeconds);
+        System.out.println("   time      ticks  B/tick  B/paint  B/piece(bot)  games  GCs  GC ms  heap after GC");
+
+        long start = System.nanoTime();
+        long end = start + (long)(minutes * 60e9);
+        long warmupEnd = start + (long)(warmupSeconds * 1e9);
+        long nextReport = start + (long)(reportSeconds * 1e9);
+        long windowStart = start;
+        long gcCount = getGcCount();
+        long gcMillis = getGcMillis();
+        // Heap after collection at the end of the warmup, -1 until then
+        long heapBaseline = -1;
+        long totalTicks = 0;
+        // Piece count the bot last moved a piece at, -1 to move the first piece of a game
+        int pieces = -1;
+        int windowPieces = 0;
+
+        newGame(metrics);
+        while(true) {
+            for(int i = 0; i < CLOCK_TICKS; i++) {
+                // The bot picks the place of a new piece before the tick
+                if(engine.getPieces() != pieces) {
+                    long before = allocated();
+                    Placement placement = bot.choose(engine);
+                    plan = placement.getInputs();
+                    planned = 0;
+                    if(plan == null) {
+                        placement.move(engine);
+                    }
+                    botBytes += allocated() - before - probeBytes;
+                    pieces = engine.getPieces();
+                    windowPieces++;
+                }
+
+                long before = allocated();
+                tick(metrics);
+                long ticked = allocated();
+                painter.paint();
+                long painted = allocated();
+                tickBytes += ticked - before - probeBytes;
+                paintBytes += painted - ticked - probeBytes;
+                ticks++;
+                paints++;
+
+                if(engine.isGameOver()) {
+                    newGame(metrics);
+                    pieces = -1;
+                }
+            }
+
+            long now = System.nanoTime();
+            if(now - nextReport < 0 && now - end < 0) {
+                continue;
+            }
+            nextReport += (long)(reportSeconds * 1e9);
+
+            long newGcCount = getGcCount();
+            long newGcMillis = getGcMillis();
+            long heap = heapAfterGc;
+            totalTicks += ticks;
+            double perTick = (double)tickBytes / Math.max(1, ticks);
+            double perPaint = (double)paintBytes / Math.max(1, paints);
+            System.out.printf("%6.0f s %10d %7.1f %8.1f %13.0f %6d %4d %6d %11.1f MB%n", (now - start) / 1e9,
+                    totalTicks, perTick, perPaint, (double)botBytes / Math.max(1, windowPieces), games,
+                    newGcCount - gcCount, newGcMillis - gcMillis, Math.max(0, heap) / 1048576.0);
+
+            // The budgets only hold once the warmup is over, the window must have started after it
+            if(windowStart - warmupEnd >= 0) {
+                if(perTick > tickBudget) {
+                    System.out.printf("FAIL: %.1f bytes allocated per tick, the budget is %.0f%n", perTick, tickBudget);
+                    return false;
+                }
+                if(perPaint > paintBudget) {
+                    System.out.printf("FAIL: %.1f bytes allocated per paint, the budget is %.0f%n", perPaint,
+                            paintBudget);
+                    return false;
+                }
+                // The baseline is the first heap after a collection that was seen after the warmup
+                if(heapBaseline < 0) {
+                    heapBaseline = heap;
+                } else if(heap - heapBaseline > heapGrowthMb * 1048576) {
+                    System.out.printf("FAIL: the heap after collection grew %.1f MB since the warmup, %.0f MB are "
+                            + "allowed%n", (heap - heapBaseline) / 1048576.0, heapGrowthMb);
+                    return false;
+                }
+            }
+
+            if(now - end >= 0) {
+                System.out.println("PASS");
+                return true;
+            }
+            windowStart = now;
+            gcCount = newGcCount;
+            gcMillis = newGcMillis;
+            ticks = 0;
+            tickBytes = 0;
+            paints = 0;
+            paintBytes = 0;
+            botBytes = 0;
+            windowPieces = 0;
+            games = 0;
+        }
+    }
+
+    // One tick of the game loop: the next input of the bot, like a key press, or else the piece falls a row
+    private void tick(GameMetrics metrics) {
+        long start = System.nanoTime();
+        if(plan != null && planned < plan.length) {
+            engine.applyInput(plan[planned++]);
+        } else {
+            engine.step();
+        }
+        metrics.recordUpdate(System.nanoTime() - start);
+        events.flush();
+        performance.recordTick(System.nanoTime() - start);
+        performance.sample();
+    }
+
+    // Starts the next game of the marathon
+    private void newGame(GameMetrics metrics) {
+        bot = Bot.create(botName, seed);
+        engine.setSeed(seed++);
+        engine.reset();
+        metrics.recordGameStarted();
+        games++;
+    }
+
+    private long getGcCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private long getGcMillis() {
+        long millis = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * What the painters draw, the game that is played
+     */
+    private final class View implements GameView {
+        @Override
+        public boolean isPaused() {
+            return false;
+        }
+
+        @Override
+        public boolean isGameOver() {
+            return engine.isGameOver();
+        }
+
+        @Override
+        public boolean isNewGame() {
+            return false;
+        }
+
+        @Override
+        public boolean isPractice() {
+            return false;
+        }
+
+        @Override
+        public int getScore() {
+            return engine.getScore();
+        }
+
+        @Override
+        public int getBestScore() {
+            return engine.getScore();
+        }
+
+        @Override
+        public int getLevel() {
+            return engine.getLevel();
+        }
+
+        @Override
+        public Piece getPieceType() {
+            return engine.getPieceType();
+        }
+
+        @Override
+        public Piece getNextPieceType() {
+            return engine.getNextPieceType();
+        }
+
+        @Override
+        public int getPieceCol() {
+            return engine.getPieceCol();
+        }
+
+        @Override
+        public int getPieceRow() {
+            return engine.getPieceRow();
+        }
+
+        @Override
+        public int getPieceRotation() {
+            return engine.getPieceRotation();
+        }
+
+        @Override
+        public Board getBoard() {
+            return engine.getBoard();
+        }
+
+        @Override
+        public PerformanceStats getPerformance() {
+            return performance;
+        }
+    }
+
+    /**
+     * Runs the soak from the command line, exits with 1 if a budget was broken
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException {
+        // The panels paint into an image, no display is needed
+        System.setProperty("java.awt.headless", System.getProperty("java.awt.headless", "true"));
+        Soak soak = new Soak();
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--minutes":
+                        soak.minutes = Double.parseDouble(value);
+                        break;
+                    case "--bot":
+                        soak.botName = value;
+                        break;
+                    case "--seed":
+                        soak.seed = Long.parseLong(value);
+                        break;
+                    case "--paint":
+                        if(!value.equals("swing") && !value.equals("terminal")) {
+                            throw new IllegalArgumentException("Unknown paint: " + value);
+                        }
+                        soak.paint = value;
+                        break;
+                    case "--warmup":
+                        soak.warmupSeconds = Double.parseDouble(value);
+                        break;
+                    case "--report":
+                        soak.reportSeconds = Double.parseDouble(value);
+                        break;
+                    case "--tick-budget":
+                        soak.tickBudget = Double.parseDouble(value);
+                        break;
+                    case "--paint-budget":
+                        soak.paintBudget = Double.parseDouble(value);
+                        break;
+                    case "--heap-growth-mb":
+                        soak.heapGrowthMb = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(soak.minutes <= 0 || soak.reportSeconds <= 0 || soak.warmupSeconds < 0) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+            // Fail early on an unknown bot name
+            Bot.create(soak.botName, 0);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if(!soak.run()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package Game;
+
+import Bots.Bot;
+import Bots.SearchBot;
+import Panels.TerminalRenderer;
+import Pieces.Piece;
+import Scores.ScoreEntry;
+import Scores.ScoreStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game in a terminal, drawn by {@link TerminalRenderer}, for machines
+ * without a display, for example over SSH. The terminal is switched to read
+ * single keys without echo while the game runs. Terminals don't report when a
+ * key is released, so every key press, including the repeats of a held key,
+ * moves the piece once, and S or the down arrow drops the piece by one row.
+ * With --bot a bot plays instead, and a lost game is followed by a new one.
+ * The search bot thinks on other threads while the game keeps running, until
+ * the piece would start to fall.
+ * With --bench a bot game is drawn into a counter instead of the terminal, with
+ * the piece falling a row every frame, to measure the bytes sent per frame.
+ */
+
+public class TerminalGame implements GameView {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: TerminalGame [--bot heuristic|random|search] [--seed S] [--gravity ROWS_PER_SECOND] "
+            + "[--bench FRAMES]";
+    // The number of nanoseconds per frame
+    private static final long FRAME_NANOS = 1000000000L / 50L;
+    // Frames until the user can drop the next piece
+    private static final int DROP_COOLDOWN = 25;
+    // Most rows a piece falls in one frame, the height of the board (20G)
+    private static final int MAX_ROWS_PER_FRAME = 20;
+    // How long a lost bot game stays on screen
+    private static final long LOST_NANOS = 2000000000L;
+    // Key code of the arrows, after the escape sequence is read
+    private static final int ARROW_UP = 0x100;
+    private static final int ARROW_DOWN = 0x101;
+    private static final int ARROW_RIGHT = 0x102;
+    private static final int ARROW_LEFT = 0x103;
+
+    private final Engine engine = new Engine();
+    private final PerformanceStats performance = new PerformanceStats();
+    private final TerminalRenderer renderer;
+    // The clock of the game
+    private final Clock logicTimer = new Clock(1.0f);
+
+    // If game is paused or not
+    private boolean isPaused;
+    // If no game was started yet
+    private boolean isNewGame = true;
+    // Cooldown until the user can drop the piece
+    private int dropCooldown;
+    // Set to end the game loop
+    private volatile boolean running = true;
+
+    // Keys read from the terminal, handed from the reading thread to the game loop
+    private final BlockingQueue<Integer> keys = new ArrayBlockingQueue<>(256);
+
+    // Plays instead of the user, null if the user plays
+    private Bot bot;
+    // Name of the bot, null if the user plays
+    private String botName;
+    // Piece count the bot last moved a piece at
+    private int botPieces = -1;
+    // Time the search for the current piece must end, 0 if the bot isn't searching
+    private long searchDeadline;
+    // Seed of the first game, every new game takes the next seed
+    private long seed = System.nanoTime();
+    // Rows per second the pieces fall, 0 for the speed of the level
+    private float gravity = 0;
+    // Frames to draw into a counter, 0 to play in the terminal
+    private int benchFrames = 0;
+
+    // Leaderboard where the results of finished games are kept, null if it couldn't be opened
+    private ScoreStore scores;
+    // Best score on the leaderboard
+    private int bestScore;
+
+    private TerminalGame(OutputStream out) {
+        this.renderer = new TerminalRenderer(out);
+    }
+
+    // Opens the leaderboard of the window game, the game still works without it
+    private void openScores() {
+        try {
+            this.scores = new ScoreStore(Paths.get(System.getProperty("tetris.scores",
+                    Paths.get(System.getProperty("user.home"), ".tetris").toString())));
+            this.bestScore = scores.getBestScore();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs the game loop until X is pressed
+     */
+    private void run() throws IOException, InterruptedException {
+        renderer.setControlsVisible(botName == null);
+        // When the piece last fell, a lost game stays on screen for a while after that
+        long lostAt = 0;
+        while(running) {
+            long start = System.nanoTime();
+            Integer key;
+            while((key = keys.poll()) != null) {
+                handleKey(key);
+            }
+
+            // The clock isn't updated while idle, unpausing it starts counting from then
+            if(!isIdle()) {
+                logicTimer.update();
+                int rows = logicTimer.takeElapsedCycles(MAX_ROWS_PER_FRAME);
+                if(rows > 0) {
+                    updateGame(rows);
+                    lostAt = start;
+                }
+                if(dropCooldown > 0) {
+                    dropCooldown--;
+                }
+                playBot();
+            } else if(bot != null && isGameOver() && start - lostAt > LOST_NANOS) {
+                resetGame();
+            }
+
+            performance.recordTick(System.nanoTime() - start);
+            performance.sample();
+            renderer.render(this);
+
+            // Nothing moves on the title screen, while paused or after game over, so sleep until a key is pressed
+            if(isIdle() && botName == null) {
+                key = performance.isVisible() ? keys.poll(1, TimeUnit.SECONDS) : keys.take();
+            } else {
+                key = keys.poll(FRAME_NANOS - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            }
+            if(key != null) {
+                handleKey(key);
+            }
+        }
+    }
+
+    // Applies a key of the user
+    private void handleKey(int key) {
+        switch(key) {
+            // Show or hide the performance overlay
+            case 'f':
+                performance.setVisible(!performance.isVisible());
+                return;
+
+            // Draw everything again, in case something else wrote to the terminal
+            case 'r':
+                renderer.invalidate();
+                return;
+
+            case 'x':
+                running = false;
+                return;
+
+            // Pause or unpause game
+            case 'p':
+                if(!isGameOver() && !isNewGame) {
+                    isPaused = !isPaused;
+                    logicTimer.setPaused(isPaused);
+                }
+                return;
+
+            // Start game
+            case '\r':
+            case '\n':
+                if(isGameOver() || isNewGame) {
+                    resetGame();
+                }
+                return;
+        }
+
+        if(isIdle() || bot != null) {
+            return;
+        }
+        switch(key) {
+            case 'a':
+            case ARROW_LEFT:
+                engine.moveLeft();
+                break;
+
+            case 'd':
+            case ARROW_RIGHT:
+                engine.moveRight();
+                break;
+
+            case 'q':
+                engine.rotateAntiClockwise();
+                break;
+
+            case 'e':
+            case ARROW_UP:
+                engine.rotateClockwise();
+                break;
+
+            // Every press drops the piece by a row, the repeats of a held key keep it falling
+            case 's':
+            case ARROW_DOWN:
+                if(dropCooldown == 0) {
+                    updateGame(1);
+                }
+                break;
+        }
+    }
+
+    // Lets the bot move a new piece to its place, gravity drops it
+    private void playBot() {
+        if(bot == null || engine.isGameOver()) {
+            return;
+        }
+        if(engine.getPieces() != botPieces) {
+            botPieces = engine.getPieces();
+            if(bot instanceof SearchBot) {
+                // The search runs on the workers, the frames go on until its deadline
+                searchDeadline = System.nanoTime() + SearchBot.getBudgetNanos(getSpeed(), DROP_COOLDOWN, FRAME_NANOS);
+                ((SearchBot)bot).start(engine, searchDeadline);
+            } else {
+                bot.choose(engine).move(engine);
+            }
+        } else if(searchDeadline != 0) {
+            SearchBot search = (SearchBot)bot;
+            if(search.isDone() || System.nanoTime() - searchDeadline >= 0) {
+                searchDeadline = 0;
+                search.take().move(engine);
+                renderer.setStatus("Search", String.format("  Depth: %d%s", search.getDepth(), search.isPartial() ? "+" : ""),
+                        String.format("  Nodes/s: %.0fk", search.getNodes() * 1e6 / Math.max(1, search.getNanos())));
+            }
+        }
+    }
+
+    /**
+     * Updates the game
+     * @param rows The number of rows the piece falls
+     */
+    private void updateGame(int rows) {
+        // Move the piece down, nothing else to do if it didn't land yet
+        if(!engine.fall(rows)) {
+            return;
+        }
+
+        // If the player has lost, pause the game
+        if(engine.isGameOver()) {
+            logicTimer.setPaused(true);
+            recordScore(engine.getScore());
+            return;
+        }
+
+        // As the game goes on, the speed of the game will increase
+        logicTimer.setCyclesPerSec(getSpeed());
+        logicTimer.reset();
+
+        // Set the drop cooldown so the next piece doesn't automatically right after the user placed a piece
+        dropCooldown = DROP_COOLDOWN;
+    }
+
+    // Gets the rows per second the piece falls
+    private float getSpeed() {
+        return gravity > 0 ? gravity : engine.getGameSpeed();
+    }
+
+    // Checks to see if the game waits for the player
+    private boolean isIdle() {
+        return isPaused || isNewGame || isGameOver();
+    }
+
+    // Adds the result of a finished game to the leaderboard, bot games don't count
+    private void recordScore(int score) {
+        if(bot != null) {
+            return;
+        }
+        bestScore = Math.max(bestScore, score);
+        if(scores == null) {
+            return;
+        }
+        try {
+            scores.add(new ScoreEntry(System.getProperty("user.name", "player"), score,
+                    engine.getLevel(), engine.getLines(), System.currentTimeMillis()));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Resets the game
+    private void resetGame() {
+        this.isNewGame = false;
+        if(botName != null) {
+            bot = Bot.create(botName, seed);
+            engine.setSeed(seed++);
+        }
+        engine.reset();
+        botPieces = -1;
+        searchDeadline = 0;
+        dropCooldown = 0;
+        logicTimer.reset();
+        logicTimer.setCyclesPerSec(getSpeed());
+    }
+
+    // Reads keys from the terminal and hands them to the game loop
+    private void readKeys(InputStream in) {
+        // 0 outside of an escape sequence, 1 after the escape, 2 after the bracket
+        int escape = 0;
+        try {
+            int b;
+            while((b = in.read()) >= 0) {
+                int key = b;
+                if(escape == 1) {
+                    escape = b == '[' ? 2 : 0;
+                    continue;
+                } else if(escape == 2) {
+                    escape = 0;
+                    if(b < 'A' || b > 'D') {
+                        continue;
+                    }
+                    key = ARROW_UP + b - 'A';
+                } else if(b == 0x1b) {
+                    escape = 1;
+                    continue;
+                }
+                keys.offer(Character.toLowerCase(key));
+            }
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        // The terminal is gone
+        running = false;
+        keys.offer((int)'x');
+    }
+
+    /**
+     * Draws a bot game into a counter, the piece falls a row every frame
+     */
+    private void bench() throws IOException {
+        resetGame();
+        long totalBytes = 0;
+        int maxBytes = 0;
+        long nanos = 0;
+        for(int f = 0; f < benchFrames; f++) {
+            playBot();
+            updateGame(1);
+            if(engine.isGameOver()) {
+                resetGame();
+            }
+            long start = System.nanoTime();
+            int sent = renderer.render(this);
+            nanos += System.nanoTime() - start;
+            if(f > 0) {
+                totalBytes += sent;
+                maxBytes = Math.max(maxBytes, sent);
+            }
+        }
+        renderer.invalidate();
+        int full = renderer.render(this);
+
+        double perFrame = (double)totalBytes / Math.max(1, benchFrames - 1);
+        System.out.printf("%d frames, %.1f bytes per frame (max %d), a full screen is %d bytes%n", benchFrames,
+                perFrame, maxBytes, full);
+        System.out.printf("%.1f us per frame, %.1f KB/s at 50 frames per second%n", nanos / 1e3 / benchFrames,
+                perFrame * 50 / 1024);
+    }
+
+    // Runs stty on the terminal and gets its output
+    private static String stty(String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "stty";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command)
+                .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/tty")))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        process.getInputStream().transferTo(output);
+        if(process.waitFor() != 0) {
+            throw new IOException("stty failed, is this a terminal?");
+        }
+        return output.toString(StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Checks to see if game is paused or not
+     * @return If game is paused or not
+     */
+    @Override
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /**
+     * Checks to see if game is over or not
+     * @return If game is over or not
+     */
+    @Override
+    public boolean isGameOver() {
+        return engine.isGameOver();
+    }
+
+    /**
+     * Checks to see if we're on the title screen
+     * @return If no game was started yet
+     */
+    @Override
+    public boolean isNewGame() {
+        return isNewGame;
+    }
+
+    /**
+     * Checks to see if pieces can be taken back
+     * @return Never, there is no practice mode in the terminal
+     */
+    @Override
+    public boolean isPractice() {
+        return false;
+    }
+
+    /**
+     * Gets the current score
+     * @return The score
+     */
+    @Override
+    public int getScore() {
+        return engine.getScore();
+    }
+
+    /**
+     * Gets the best score on the leaderboard
+     * @return The best score
+     */
+    @Override
+    public int getBestScore() {
+        return Math.max(bestScore, engine.getScore());
+    }
+
+    /**
+     * Gets the current level
+     * @return The level
+     */
+    @Override
+    public int getLevel() {
+        return engine.getLevel();
+    }
+
+    /**
+     * Gets the current type of piece we're using
+     * @return The piece type
+     */
+    @Override
+    public Piece getPieceType() {
+        return engine.getPieceType();
+    }
+
+    /**
+     * Gets the next type of piece we're using
+     * @return The next piece
+     */
+    @Override
+    public Piece getNextPieceType() {
+        return engine.getNextPieceType();
+    }
+
+    /**
+     * Gets the column of the current piece
+     * @return The column
+     */
+    @Override
+    public int getPieceCol() {
+        return engine.getPieceCol();
+    }
+
+    /**
+     * Gets the row of the current piece
+     * @return The row
+     */
+    @Override
+    public int getPieceRow() {
+        return engine.getPieceRow();
+    }
+
+    /**
+     * Gets the rotation of the current piece
+     * @return The rotation
+     */
+    @Override
+    public int getPieceRotation() {
+        return engine.getPieceRotation();
+    }
+
+    /**
+     * Gets the board
+     * @return The board
+     */
+    @Override
+    public Board getBoard() {
+        return engine.getBoard();
+    }
+
+    /**
+     * Gets the timings of the game loop
+     * @return The performance stats
+     */
+    @Override
+    public PerformanceStats getPerformance() {
+        return performance;
+    }
+
+    /**
+     * Plays the game in the terminal
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Frames go straight to the terminal, one write each, not through the buffer of System.out
+        OutputStream terminal = new FileOutputStream(FileDescriptor.out);
+        TerminalGame game = new TerminalGame(terminal);
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--bot":
+                        // Fail early on an unknown bot name
+                        Bot.create(value, 0);
+                        game.botName = value;
+                        break;
+                    case "--seed":
+                        game.seed = Long.parseLong(value);
+                        break;
+                    case "--gravity":
+                        game.gravity = Float.parseFloat(value);
+                        break;
+                    case "--bench":
+                        game.benchFrames = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(game.gravity < 0 || game.benchFrames < 0) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if(game.benchFrames > 0) {
+            TerminalGame bench = new TerminalGame(OutputStream.nullOutputStream());
+            bench.botName = game.botName == null ? "heuristic" : game.botName;
+            bench.seed = game.seed;
+            bench.benchFrames = game.benchFrames;
+            bench.bench();
+            return;
+        }
+
+        // Read single keys without echo, and put the terminal back however the game ends
+        String saved = stty("-g");
+        stty("-icanon", "-echo", "min", "1");
+        Thread restore = new Thread(() -> {
+            try {
+                game.renderer.close();
+                stty(saved);
+            } catch(IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(restore);
+
+        if(game.botName == null) {
+            game.openScores();
+        } else {
+            game.resetGame();
+        }
+        Thread reader = new Thread(() -> game.readKeys(System.in), "terminal-keys");
+        reader.setDaemon(true);
+        reader.start();
+        game.run();
+        System.exit(0);
+    }
+}
@@ -1,24 +1,56 @@
 package Game;
 
+import Metrics.MetricRegistry;
+import Metrics.MetricsServer;
 import Pieces.Piece;
 import Panels.GamePanel;
 import Panels.SidePanel;
+import Scores.ScoreEntry;
+import Scores.ScoreStore;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Random;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class contains the main method, starts the game and reads user input.
  */
 
-public class Tetris extends JFrame {
+public class Tetris extends JFrame implements GameView {
     // The number of milliseconds per frame
     private static final long FRAME_TIME = 1000L / 50L;
-    // The number of possible pieces
-    private static final int TYPE_COUNT = Piece.values().length;
+    // Most rows a piece falls in one frame, the height of the board (20G)
+    private static final int MAX_ROWS_PER_FRAME = 20;
+    // Milliseconds a direction key has to be held before the piece keeps moving (-Dtetris.das),
+    // rounded to the nearest frame of 20 ms
+    private static final long DAS_MILLIS = Long.getLong("tetris.das", 167L);
+    // Milliseconds between automatic moves, 0 moves to the wall at once (-Dtetris.arr), rounded to
+    // the nearest frame of 20 ms, at least one frame
+    private static final long ARR_MILLIS = Long.getLong("tetris.arr", 33L);
+    // If the loop sleeps while idle and repaints only on changes, -Dtetris.loop=fixed repaints every frame
+    private static final boolean EVENT_LOOP = !"fixed".equals(System.getProperty("tetris.loop"));
+    // If pieces can be taken back with Z, scores aren't kept in this mode (-Dtetris.practice=true)
+    private static final boolean PRACTICE = Boolean.getBoolean("tetris.practice");
+    // Number of pieces that can be taken back in practice mode (-Dtetris.undo)
+    private static final int UNDO_DEPTH = Integer.getInteger("tetris.undo", 64);
+    // Directory where every game is recorded, not recorded if null (-Dtetris.replays)
+    private static final String REPLAY_DIR = System.getProperty("tetris.replays");
+    // Port of the Prometheus metrics endpoint, not served if null (-Dtetris.metrics.port)
+    private static final Integer METRICS_PORT = Integer.getInteger("tetris.metrics.port");
+    // Address the metrics endpoint listens on, only this machine by default (-Dtetris.metrics.host)
+    private static final String METRICS_HOST = System.getProperty("tetris.metrics.host", "127.0.0.1");
 
     // GamePanel instance
     private GamePanel game;
@@ -29,37 +61,61 @@ public class Tetris extends JFrame {
     private boolean isPaused;
     // If we have new game is started or not
     private boolean isNewGame;
-    // If game is over or not
-    private boolean isGameOver;
 
-    // Current level
-    private int level;
-    // Current score
-    private int score;
-
-    // Random number generator, used to get random pieces to spawn
-    private Random random;
+    // The rules of the game
+    private Engine engine;
 
     // The clock of the game
     private Clock logicTimer;
 
-    // The current piece
-    private Piece currentPiece;
-    // The next piece
-    private Piece nextPiece;
-
-    // The current column of the piece
-    private int currentCol;
-    // The current row of the piece
-    private int currentRow;
-    // The curretn rotation of the piece
-    private int currentRotation;
-
     // Cooldown until the user can drop the piece
     private int dropCooldown;
 
-    // Speed of the game
-    private float gameSpeed;
+    /*
+     * Key state, written by the key listener and read by the game loop, which
+     * applies the moves and rotations on the next tick.
+     */
+    private volatile boolean leftHeld;
+    private volatile boolean rightHeld;
+    private final AtomicInteger leftPresses = new AtomicInteger();
+    private final AtomicInteger rightPresses = new AtomicInteger();
+    private final AtomicInteger clockwisePresses = new AtomicInteger();
+    private final AtomicInteger antiClockwisePresses = new AtomicInteger();
+    private final AtomicInteger undoPresses = new AtomicInteger();
+    // Set when the window loses the focus, the releases of the held keys won't arrive
+    private final AtomicBoolean focusLost = new AtomicBoolean();
+
+    // Moves the piece while a direction key is held
+    private AutoShift autoShift;
+
+    // Snapshots of the last pieces, null if not in practice mode
+    private History history;
+
+    // The game loop waits on this lock while the game is idle
+    private final Object wakeLock = new Object();
+    // Set by the key listener to wake up the game loop
+    private boolean wakeRequested;
+    // Set by the key listener when the screen has to be repainted
+    private volatile boolean repaintRequested = true;
+    // Version of the game state that was painted last
+    private int paintedVersion;
+
+    // Timings shown by the performance overlay
+    private PerformanceStats performance;
+
+    // Counters and latencies served to monitoring
+    private GameMetrics metrics;
+
+    // Event bus where the game events are published
+    private EventBus events;
+
+    // Records the current game, null if games aren't recorded
+    private ReplayRecorder recorder;
+
+    // Leaderboard where the results of finished games are kept, null if it couldn't be opened
+    private ScoreStore scores;
+    // Best score on the leaderboard
+    private int bestScore;
 
     /**
      * Creates a new Tetris instance. Sets up the window's properties,
@@ -74,6 +130,41 @@ public class Tetris extends JFrame {
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setResizable(false);
 
+        // Initialize the event bus and the game rules
+        this.events = new EventBus();
+        this.engine = new Engine(events);
+        MetricRegistry registry = new MetricRegistry();
+        this.metrics = new GameMetrics(registry, engine);
+        events.subscribe(metrics);
+        this.performance = new PerformanceStats(metrics);
+        this.history = PRACTICE ? new History(UNDO_DEPTH + 1) : null;
+        this.autoShift = new AutoShift(framesFor(DAS_MILLIS), ARR_MILLIS == 0 ? 0 : framesFor(ARR_MILLIS));
+
+        // Open the leaderboard, the game still works without it
+        try {
+            this.scores = new ScoreStore(Paths.get(System.getProperty("tetris.scores",
+                    Paths.get(System.getProperty("user.home"), ".tetris").toString())));
+            this.bestScore = scores.getBestScore();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+
+        // Serve the metrics, the game still works without them
+        if(METRICS_PORT != null) {
+            try {
+                new MetricsServer(new InetSocketAddress(METRICS_HOST, METRICS_PORT), registry);
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Keep the result of every finished game, practice games don't count
+        events.subscribe(event -> {
+            if(event.getType() == GameEvent.Type.GAME_OVER && !PRACTICE) {
+                recordScore(event.getValue());
+            }
+        });
+
         // Initialize GamePanel and SidePanel
         this.game = new GamePanel(this);
         this.side = new SidePanel(this);
@@ -97,37 +188,42 @@ public class Tetris extends JFrame {
                         }
                         break;
 
-                    // Move left
+                    // Move left, repeats of the operating system are ignored
                     case KeyEvent.VK_A:
-                        if (!isPaused && game.isValidAndEmpty(currentPiece, currentCol - 1, currentRow, currentRotation)) {
-                            currentCol--;
+                        if (!leftHeld) {
+                            leftHeld = true;
+                            leftPresses.incrementAndGet();
                         }
                         break;
 
                     // Move Right
                     case KeyEvent.VK_D:
-                        if (!isPaused && game.isValidAndEmpty(currentPiece, currentCol + 1, currentRow, currentRotation)) {
-                            currentCol++;
+                        if (!rightHeld) {
+                            rightHeld = true;
+                            rightPresses.incrementAndGet();
                         }
                         break;
 
                     // Rotate anti-clockwise
                     case KeyEvent.VK_Q:
-                        if (!isPaused) {
-                            rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
-                        }
+                        antiClockwisePresses.incrementAndGet();
                         break;
 
                     // Rotate clockwise
                     case KeyEvent.VK_E:
-                        if (!isPaused) {
-                            rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
+                        clockwisePresses.incrementAndGet();
+                        break;
+
+                    // Take back the last piece in practice mode
+                    case KeyEvent.VK_Z:
+                        if (PRACTICE) {
+                            undoPresses.incrementAndGet();
                         }
                         break;
 
                     // Pause or unpause game
                     case KeyEvent.VK_ESCAPE:
-                        if (!isGameOver && !isNewGame) {
+                        if (!isGameOver() && !isNewGame) {
                             isPaused = !isPaused;
                             logicTimer.setPaused(isPaused);
                         }
@@ -135,22 +231,52 @@ public class Tetris extends JFrame {
 
                     // Start game
                     case KeyEvent.VK_ENTER:
-                        if (isGameOver || isNewGame) {
+                        if (isGameOver() || isNewGame) {
                             resetGame();
                         }
                         break;
 
+                    // Show or hide the performance overlay
+                    case KeyEvent.VK_F3:
+                        performance.setVisible(!performance.isVisible());
+                        break;
+
                 }
+                wakeUp();
             }
 
             @Override
             public void keyReleased(KeyEvent e) {
-                if (e.getKeyCode() == KeyEvent.VK_S) {
+                switch (e.getKeyCode()) {
+
                     // When drop is released, set the timer back to initial gameSpeed
-                        logicTimer.setCyclesPerSec(gameSpeed);
+                    case KeyEvent.VK_S:
+                        logicTimer.setCyclesPerSec(engine.getGameSpeed());
                         logicTimer.reset();
+                        break;
+
+                    case KeyEvent.VK_A:
+                        leftHeld = false;
+                        break;
+
+                    case KeyEvent.VK_D:
+                        rightHeld = false;
+                        break;
+
                 }
+                wakeUp();
+            }
+        });
+
+        // Keys held while switching to another window are never released here, so let them go
+        addWindowFocusListener(new WindowAdapter() {
 
+            @Override
+            public void windowLostFocus(WindowEvent e) {
+                leftHeld = false;
+                rightHeld = false;
+                focusLost.set(true);
+                wakeUp();
             }
         });
 
@@ -164,24 +290,47 @@ public class Tetris extends JFrame {
      */
     private void startGame() {
         // Initialization
-        this.random = new Random();
         this.isNewGame = true;
-        this.gameSpeed = 1.0f;
 
         // Setup timer
-        this.logicTimer = new Clock(gameSpeed);
+        this.logicTimer = new Clock(engine.getGameSpeed());
         logicTimer.setPaused(true);
 
         while(true) {
             //Get the time that the frame started
             long start = System.nanoTime();
 
+            // Nothing moves on the title screen, while paused or after game over, so sleep until a key is pressed
+            if(EVENT_LOOP && isIdle()) {
+                // Drops the presses made while idle, except for an undo after game over
+                processInput();
+                if(!isIdle()) {
+                    continue;
+                }
+                events.flush();
+                if(performance.sample() && performance.isVisible()) {
+                    repaintRequested = true;
+                }
+                if(hasChanged()) {
+                    renderGame();
+                }
+                // The overlay still updates once per sample
+                waitForInput(performance.isVisible() ? 1000L : 0L);
+                continue;
+            }
+
+            // Apply the keys pressed since the last frame
+            processInput();
+
             //Update the logic timer
             logicTimer.update();
 
-            // If a cycle has elapsed on the timer, we can update the game and move our current piece down
-            if(logicTimer.hasElapsedCycle()) {
-                updateGame();
+            // Every cycle elapsed on the timer moves the piece a row down, at high speeds several per frame
+            int rows = logicTimer.takeElapsedCycles(MAX_ROWS_PER_FRAME);
+            if(rows > 0) {
+                long updateStart = System.nanoTime();
+                updateGame(rows);
+                metrics.recordUpdate(System.nanoTime() - updateStart);
             }
 
             //Decrement the drop cool down
@@ -189,14 +338,23 @@ public class Tetris extends JFrame {
                 dropCooldown--;
             }
 
-            // Display the window to the user
-            renderGame();
+            // Hand the events of this frame to the listeners
+            events.flush();
+            performance.recordTick(System.nanoTime() - start);
+            performance.sample();
+
+            // Display the window to the user, if anything changed. The overlay is repainted every frame
+            if(!EVENT_LOOP || performance.isVisible() || hasChanged()) {
+                renderGame();
+            }
 
             // Cap frame rate
             long delta = (System.nanoTime() - start) / 1000000L;
             if(delta < FRAME_TIME) {
                 try {
+                    long sleepStart = System.nanoTime();
                     Thread.sleep(FRAME_TIME - delta);
+                    performance.recordSleep((FRAME_TIME - delta) * 1000000L, System.nanoTime() - sleepStart);
                 } catch(Exception e) {
                     e.printStackTrace();
                 }
@@ -204,136 +362,195 @@ public class Tetris extends JFrame {
         }
     }
 
+    // Converts milliseconds to the nearest number of frames, at least one
+    private static int framesFor(long millis) {
+        return (int)Math.max(1, (millis + FRAME_TIME / 2) / FRAME_TIME);
+    }
+
+    /**
+     * Applies the rotations and moves of the player
+     */
+    private void processInput() {
+        // Presses are used up even when they can't be applied
+        int clockwise = clockwisePresses.getAndSet(0);
+        int antiClockwise = antiClockwisePresses.getAndSet(0);
+        int left = leftPresses.getAndSet(0);
+        int right = rightPresses.getAndSet(0);
+        int undo = undoPresses.getAndSet(0);
+        if(focusLost.getAndSet(false)) {
+            autoShift.reset();
+        }
+
+        if(undo > 0 && history != null && !isPaused && !isNewGame) {
+            undo(undo);
+        }
+
+        if(isPaused || isNewGame || isGameOver()) {
+            autoShift.reset();
+            return;
+        }
+
+        for(int i = 0; i < clockwise; i++) {
+            engine.rotateClockwise();
+        }
+        for(int i = 0; i < antiClockwise; i++) {
+            engine.rotateAntiClockwise();
+        }
+        autoShift.update(engine, left, leftHeld, right, rightHeld);
+    }
+
     /**
      * Updates the game
+     * @param rows The number of rows the piece falls
      */
-    private void updateGame() {
-        // Check to see if the piece's position can move down to the next row.
-        if(game.isValidAndEmpty(currentPiece, currentCol, currentRow + 1, currentRotation)) {
-            //Increment the current row if it's safe to do so.
-            currentRow++;
+    private void updateGame(int rows) {
+        // Move the piece down, nothing else to do if it didn't land yet
+        if(!engine.fall(rows)) {
+            return;
         }
-        else {
-            /*
-             * We've either reached the bottom of the board, or landed on another piece, so
-             * we need to add the piece to the board.
-             */
-            game.addPiece(currentPiece, currentCol, currentRow, currentRotation);
-
-            /*
-             * Check to see if adding the new piece resulted in any cleared lines. If so,
-             * increase the player's score. (Up to 4 lines can be cleared in a single go;
-             * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]).
-             */
-            int cleared = game.checkLines();
-            if(cleared > 0) {
-                score += 50 << cleared;
-            }
 
-            // As the game goes on, the speed of the game will increase
-            gameSpeed += 0.035f;
-            logicTimer.setCyclesPerSec(gameSpeed);
-            logicTimer.reset();
+        // If the player has lost, pause the game
+        if(engine.isGameOver()) {
+            logicTimer.setPaused(true);
+            return;
+        }
 
+        if(history != null) {
+            history.record(engine);
+        }
+
+        // As the game goes on, the speed of the game will increase
+        logicTimer.setCyclesPerSec(engine.getGameSpeed());
+        logicTimer.reset();
 
-            // Set the drop cooldown so the next piece doesn't automatically right after the user placed a piece
-            dropCooldown = 25;
+        // Set the drop cooldown so the next piece doesn't automatically right after the user placed a piece
+        dropCooldown = 25;
+    }
+
+
+    // Checks to see if the game waits for the player
+    private boolean isIdle() {
+        return isPaused || isNewGame || isGameOver();
+    }
 
-            /*
-             * Update the difficulty level. This has no effect on the game, and is only
-             * used in the "Level" string in the SidePanel.
-             */
-            level = (int)(gameSpeed * 1.70f);
+    // Checks to see if the screen differs from the game state
+    private boolean hasChanged() {
+        return repaintRequested || paintedVersion != engine.getVersion();
+    }
 
-            /*
-             * Spawn a new piece to control.
-             */
-            spawnPiece();
+    // Wakes up the game loop
+    private void wakeUp() {
+        repaintRequested = true;
+        synchronized(wakeLock) {
+            wakeRequested = true;
+            wakeLock.notifyAll();
         }
     }
 
+    // Blocks until the key listener wakes up the game loop or the timeout (0 for none) expires
+    private void waitForInput(long timeoutMillis) {
+        synchronized(wakeLock) {
+            if(!wakeRequested) {
+                try {
+                    wakeLock.wait(timeoutMillis);
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            wakeRequested = false;
+        }
+    }
 
     // Repaints GamePanel and SidePanel
     private void renderGame() {
+        repaintRequested = false;
+        paintedVersion = engine.getVersion();
         game.repaint();
         side.repaint();
     }
 
 
-     // Resets the game
-    private void resetGame() {
-        this.level = 1;
-        this.score = 0;
-        this.gameSpeed = 1.0f;
-        this.nextPiece = Piece.values()[random.nextInt(TYPE_COUNT)];
-        this.isNewGame = false;
-        this.isGameOver = false;
-        game.clear();
-        logicTimer.reset();
-        logicTimer.setCyclesPerSec(gameSpeed);
-        spawnPiece();
-    }
-
-    //Spawns a new piece
-    private void spawnPiece() {
-        this.currentPiece = nextPiece;
-        this.currentCol = currentPiece.getSpawnColumn();
-        this.currentRow = currentPiece.getSpawnRow();
-        this.currentRotation = 0;
-        this.nextPiece =  Piece.values()[random.nextInt(TYPE_COUNT)];
-
-        // If the player has lost, end game and pause it
-        if(!game.isValidAndEmpty(currentPiece, currentCol, currentRow, currentRotation)) {
-            this.isGameOver = true;
-            logicTimer.setPaused(true);
+    // Adds the result of a finished game to the leaderboard
+    private void recordScore(int score) {
+        bestScore = Math.max(bestScore, score);
+        if(scores == null) {
+            return;
+        }
+        try {
+            scores.add(new ScoreEntry(System.getProperty("user.name", "player"), score,
+                    engine.getLevel(), engine.getLines(), System.currentTimeMillis()));
+        } catch(IOException e) {
+            e.printStackTrace();
         }
     }
 
-    /**
-     * Rotates a piece
-     * @param newRotation The rotation of the new piece.
-     */
-    private void rotatePiece(int newRotation) {
-        /*
-         * Sometimes pieces will need to be moved when rotated to avoid clipping
-         * out of the board (the I piece is a good example of this). Here we store
-         * a temporary row and column in case we need to move the tile as well.
-         */
-        int newColumn = currentCol;
-        int newRow = currentRow;
+    // Takes back pieces in practice mode
+    private void undo(int count) {
+        boolean undone = false;
+        for(int i = 0; i < count; i++) {
+            undone |= history.undo(engine);
+        }
+        if(!undone) {
+            return;
+        }
 
-        int left = currentPiece.getLeftEmpty(newRotation);
-        int right = currentPiece.getRightEmpty(newRotation);
-        int top = currentPiece.getAboveEmpty(newRotation);
-        int bottom = currentPiece.getBelowEmpty(newRotation);
+        // The piece starts falling again from its spawn, also after a game over
+        autoShift.reset();
+        logicTimer.setPaused(false);
+        logicTimer.setCyclesPerSec(engine.getGameSpeed());
+        logicTimer.reset();
+        dropCooldown = 25;
+    }
 
-        // If the current piece is too far to the left or right, move the piece away from the edges
-        if(currentCol < -left) {
-            newColumn -= currentCol - left;
+    // Starts recording a new game, the recording of the last game is closed
+    private void startRecording() {
+        if(REPLAY_DIR == null) {
+            return;
         }
-        else if(currentCol + currentPiece.getDimension() - right >= GamePanel.COLS) {
-            newColumn -= (currentCol + currentPiece.getDimension() - right) - GamePanel.COLS + 1;
+        try {
+            if(recorder != null) {
+                events.unsubscribe(recorder);
+                recorder.close();
+                recorder = null;
+            }
+            Path dir = Paths.get(REPLAY_DIR);
+            Files.createDirectories(dir);
+            String name = "game-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".replay";
+            recorder = new ReplayRecorder(dir.resolve(name), (int)FRAME_TIME, true);
+            events.subscribe(recorder);
+        } catch(IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        // If the current piece is too far to the top or bottom, move the piece away from the edges
-        if(currentRow < -top) {
-            newRow -= currentRow - top;
-        } else if(currentRow + currentPiece.getDimension() - bottom >= GamePanel.ROWS) {
-            newRow -= (currentRow + currentPiece.getDimension() - bottom) - GamePanel.ROWS + 1;
+     // Resets the game
+    private void resetGame() {
+        this.isNewGame = false;
+        metrics.recordGameStarted();
+        startRecording();
+        engine.reset();
+        if(history != null) {
+            history.clear();
+            history.record(engine);
         }
+        logicTimer.reset();
+        logicTimer.setCyclesPerSec(engine.getGameSpeed());
+    }
 
-        // Check to see if the new position is acceptable valid
-        if(game.isValidAndEmpty(currentPiece, newColumn, newRow, newRotation)) {
-            currentRotation = newRotation;
-            currentRow = newRow;
-            currentCol = newColumn;
-        }
+    /**
+     * Checks to see if pieces can be taken back
+     * @return If the game runs in practice mode
+     */
+    @Override
+    public boolean isPractice() {
+        return PRACTICE;
     }
 
     /**
      * Checks to see if game is paused or not
      * @return If game is paused or not
      */
+    @Override
     public boolean isPaused() {
         return isPaused;
     }
@@ -342,14 +559,16 @@ public class Tetris extends JFrame {
      * Checks to see if game is over or not
      * @return If game is over or not
      */
+    @Override
     public boolean isGameOver() {
-        return isGameOver;
+        return engine.isGameOver();
     }
 
     /**
      * Checks to see if player has started a new game or not
      * @return If new game started or not
      */
+    @Override
     public boolean isNewGame() {
         return isNewGame;
     }
@@ -358,56 +577,98 @@ public class Tetris extends JFrame {
      * Gets the current score
      * @return The score
      */
+    @Override
     public int getScore() {
-        return score;
+        return engine.getScore();
+    }
+
+    /**
+     * Gets the best score on the leaderboard
+     * @return The best score
+     */
+    @Override
+    public int getBestScore() {
+        return bestScore;
     }
 
     /**
      * Gets the current level
      * @return The level
      */
+    @Override
     public int getLevel() {
-        return level;
+        return engine.getLevel();
     }
 
     /**
      * Gets the current piece type
      * @return The piece type
      */
+    @Override
     public Piece getPieceType() {
-        return currentPiece;
+        return engine.getPieceType();
     }
 
     /**
      * Gets the next piece type
      * @return The next piece
      */
+    @Override
     public Piece getNextPieceType() {
-        return nextPiece;
+        return engine.getNextPieceType();
     }
 
     /**
      * Gets the column of the current piece
      * @return The column
      */
+    @Override
     public int getPieceCol() {
-        return currentCol;
+        return engine.getPieceCol();
     }
 
     /**
      * Gets the row of the current piece
      * @return The row
      */
+    @Override
     public int getPieceRow() {
-        return currentRow;
+        return engine.getPieceRow();
     }
 
     /**
      * Gets the rotation of the current piece
      * @return The rotation
      */
+    @Override
     public int getPieceRotation() {
-        return currentRotation;
+        return engine.getPieceRotation();
+    }
+
+    /**
+     * Gets the game board
+     * @return The board
+     */
+    @Override
+    public Board getBoard() {
+        return engine.getBoard();
+    }
+
+    /**
+     * Gets the event bus of the game
+     * @return The event bus
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Gets the statistics of the performance overlay
+     * @return The statistics
+     */
+    @Override
+    public PerformanceStats getPerformance() {
+        return performance;
     }
 
     /**
@@ -0,0 +1,220 @@
+package Game;
+
+import Pieces.Piece;
+
+/**
+ * One player's game, stepped one tick at a time from that tick's input only.
+ * Gravity, the drop cooldown and the auto shift count whole ticks and gravity
+ * is kept in integer milli-rows, so the same seed and the same inputs always
+ * give the same game, on every machine and however often a tick is played
+ * again. This is what lets a versus game predict the opponent and go back when
+ * the prediction was wrong.
+ *
+ * The input of a tick is a set of held keys. A press is a key that is held in
+ * this tick but wasn't in the tick before, so repeating the last input is a
+ * safe guess of what the opponent does next.
+ */
+
+public class TickGame {
+    // Input: the left key is held
+    public static final int LEFT = 1;
+    // Input: the right key is held
+    public static final int RIGHT = 1 << 1;
+    // Input: the rotate clockwise key is held
+    public static final int ROTATE_CW = 1 << 2;
+    // Input: the rotate anti-clockwise key is held
+    public static final int ROTATE_CCW = 1 << 3;
+    // Input: the soft drop key is held
+    public static final int SOFT_DROP = 1 << 4;
+
+    // Ticks per second, the frame rate of the window
+    public static final int TICKS_PER_SECOND = 50;
+    // Milli-rows gravity has to build up to move the piece one row
+    private static final int ROW = 1000 * TICKS_PER_SECOND;
+    // Gravity of the first piece in milli-rows per second, the engine's starting speed
+    private static final int BASE_SPEED = 1000;
+    // Gravity gained per placed piece in milli-rows per second, the engine's speed increase
+    private static final int SPEED_PER_PIECE = 35;
+    // Gravity while soft dropping in milli-rows per second
+    private static final int SOFT_DROP_SPEED = 25000;
+    // Highest gravity in milli-rows per second, the height of the board every tick (20G)
+    private static final int MAX_SPEED = 20 * ROW;
+    // Ticks after a lock during which soft drop doesn't work
+    private static final int DROP_COOLDOWN = 25;
+
+    /**
+     * The state of a game at one tick. The board rows are shared, so a snapshot
+     * is cheap to take.
+     */
+    public static final class Snapshot {
+        private final Engine.Snapshot engine = new Engine.Snapshot();
+        private int gravity;
+        private int dropCooldown;
+        private int previousInput;
+        private int shiftDirection;
+        private int shiftCharge;
+        private int pendingGarbage;
+    }
+
+    private final Engine engine;
+    private final AutoShift autoShift;
+
+    // Milli-rows of gravity built up since the piece last moved down
+    private int gravity;
+    // Ticks until soft drop works again
+    private int dropCooldown;
+    // The input of the last tick, to tell presses from held keys
+    private int previousInput;
+    // Rows an opponent sent that are added after the next lock
+    private int pendingGarbage;
+
+    /**
+     * Creates a new game and spawns the first piece
+     * @param seed The seed of the piece generator
+     * @param delay Ticks a direction is held before the piece starts moving by itself
+     * @param repeat Ticks between two automatic moves, 0 to move to the wall at once
+     */
+    public TickGame(long seed, int delay, int repeat) {
+        this.engine = new Engine();
+        this.autoShift = new AutoShift(delay, repeat);
+        engine.setSeed(seed);
+        engine.reset();
+    }
+
+    /**
+     * Plays one tick
+     * @param input The held keys, a combination of the input constants
+     * @return The number of lines cleared in this tick
+     */
+    public int tick(int input) {
+        int pressed = input & ~previousInput;
+        if((previousInput & SOFT_DROP) != 0 && (input & SOFT_DROP) == 0) {
+            // Letting go of soft drop starts the fall of the next row over
+            gravity = 0;
+        }
+        previousInput = input;
+        if(engine.isGameOver()) {
+            return 0;
+        }
+
+        if((pressed & ROTATE_CW) != 0) {
+            engine.rotateClockwise();
+        }
+        if((pressed & ROTATE_CCW) != 0) {
+            engine.rotateAntiClockwise();
+        }
+        autoShift.update(engine, (pressed & LEFT) != 0 ? 1 : 0, (input & LEFT) != 0,
+                (pressed & RIGHT) != 0 ? 1 : 0, (input & RIGHT) != 0);
+
+        boolean softDrop = (input & SOFT_DROP) != 0 && dropCooldown == 0;
+        gravity += softDrop ? SOFT_DROP_SPEED : Math.min(MAX_SPEED, BASE_SPEED + SPEED_PER_PIECE * engine.getPieces());
+        int cleared = 0;
+        if(gravity >= ROW) {
+            // Past a row per tick the piece falls several rows at once
+            int rows = gravity / ROW;
+            gravity %= ROW;
+            int lines = engine.getLines();
+            Piece locked = engine.getPieceType();
+            if(engine.fall(rows)) {
+                cleared = engine.getLines() - lines;
+                gravity = 0;
+                dropCooldown = DROP_COOLDOWN;
+
+                // Cleared lines cancel rows that are still on their way, the rest arrive in the color of the locked piece
+                pendingGarbage -= Math.min(cleared, pendingGarbage);
+                if(pendingGarbage > 0) {
+                    engine.addGarbage(pendingGarbage, holeFor(engine.getPieces()), locked);
+                    pendingGarbage = 0;
+                }
+            }
+        }
+
+        if(dropCooldown > 0) {
+            dropCooldown--;
+        }
+        return cleared;
+    }
+
+    // Picks the empty column of garbage rows, it only depends on the number of pieces so both players agree
+    private static int holeFor(int pieces) {
+        return (int)(((pieces + 1) * 0x9E3779B9L & 0xffffffffL) % Board.COLS);
+    }
+
+    /**
+     * Queues rows sent by an opponent, they are added after the next lock
+     * @param rows The number of rows
+     */
+    public void sendGarbage(int rows) {
+        pendingGarbage += rows;
+    }
+
+    /**
+     * Saves the state of the game
+     * @param snapshot The snapshot to fill
+     */
+    public void saveTo(Snapshot snapshot) {
+        engine.saveTo(snapshot.engine);
+        snapshot.gravity = gravity;
+        snapshot.dropCooldown = dropCooldown;
+        snapshot.previousInput = previousInput;
+        snapshot.shiftDirection = autoShift.getDirection();
+        snapshot.shiftCharge = autoShift.getCharge();
+        snapshot.pendingGarbage = pendingGarbage;
+    }
+
+    /**
+     * Puts the game back into the state of a snapshot
+     * @param snapshot The snapshot, which stays unchanged
+     */
+    public void restoreFrom(Snapshot snapshot) {
+        engine.restoreFrom(snapshot.engine);
+        this.gravity = snapshot.gravity;
+        this.dropCooldown = snapshot.dropCooldown;
+        this.previousInput = snapshot.previousInput;
+        autoShift.restore(snapshot.shiftDirection, snapshot.shiftCharge);
+        this.pendingGarbage = snapshot.pendingGarbage;
+    }
+
+    /**
+     * Gets a hash of the whole state of the game, equal on two machines that
+     * played the same ticks with the same inputs
+     * @return The hash
+     */
+    public long checksum() {
+        Board board = engine.getBoard();
+        long hash = 17;
+        for(int y = 0; y < Board.ROWS; y++) {
+            hash = hash * 31 + board.getRowMask(y);
+        }
+        hash = hash * 31 + engine.getPieceType().getIndex();
+        hash = hash * 31 + engine.getNextPieceType().getIndex();
+        hash = hash * 31 + engine.getPieceCol();
+        hash = hash * 31 + engine.getPieceRow();
+        hash = hash * 31 + engine.getPieceRotation();
+        hash = hash * 31 + engine.getScore();
+        hash = hash * 31 + engine.getPieces();
+        hash = hash * 31 + (engine.isGameOver() ? 1 : 0);
+        hash = hash * 31 + gravity;
+        hash = hash * 31 + dropCooldown;
+        hash = hash * 31 + previousInput;
+        hash = hash * 31 + autoShift.getDirection();
+        hash = hash * 31 + autoShift.getCharge();
+        return hash * 31 + pendingGarbage;
+    }
+
+    /**
+     * Gets the game
+     * @return The engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the rows an opponent sent that weren't added yet
+     * @return The number of rows
+     */
+    public int getPendingGarbage() {
+        return pendingGarbage;
+    }
+}
@@ -0,0 +1,438 @@
+package Game;
+
+import Bots.HeuristicBot;
+import Bots.Placement;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A game of two players with rollback: the local player's input is played at
+ * once and the remote player's input is guessed, by repeating the last input
+ * that arrived. When the real input of an earlier tick arrives and differs from
+ * the guess, both games go back to the snapshot of that tick and play the ticks
+ * up to now again. Nothing waits for the link, so the local player never feels
+ * its delay; only the remote player's piece can jump back.
+ *
+ * Both games are {@link TickGame}s, stepped from inputs and tick numbers only,
+ * so both machines get the same games from the same inputs. Cleared lines send
+ * rows to the opponent, which is why going back always replays both games.
+ */
+
+public class Versus {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: Versus [--ticks N] [--delay D] [--jitter J] [--loss P] [--seed S]";
+
+    // Most ticks the game runs ahead of the last known remote input, it waits beyond that
+    public static final int MAX_ROLLBACK = 12;
+    // Ticks of inputs and snapshots that are kept, more than a rollback and the inputs in flight
+    static final int HISTORY = 128;
+    // No tick has to be played again
+    private static final int NONE = Integer.MAX_VALUE;
+
+    // The seed both games were started with
+    private final long seed;
+    // Index of the local player, the other player is remote
+    private final int local;
+    private final int remote;
+    private final TickGame[] players = new TickGame[2];
+
+    // Inputs of both players by tick, the remote inputs after the last known one are guesses
+    private final byte[][] inputs = new byte[2][HISTORY];
+    // Snapshots of both games at the start of each tick
+    private final TickGame.Snapshot[][] states = new TickGame.Snapshot[2][HISTORY];
+
+    // The next tick to play
+    private int tick;
+    // The last tick whose remote input is known, -1 if none is
+    private int confirmed = -1;
+    // The first tick that was played with a wrong guess, NONE if every guess was right
+    private int mispredicted = NONE;
+
+    // Statistics
+    private long rollbacks;
+    private long replayedTicks;
+    private int deepestRollback;
+    private long replayNanos;
+    private long slowestReplayNanos;
+
+    /**
+     * Creates a new game
+     * @param seed The seed of both piece generators, both players get the same pieces
+     * @param local Index of the local player, 0 or 1
+     * @param delay Ticks a direction is held before the piece starts moving by itself
+     * @param repeat Ticks between two automatic moves, 0 to move to the wall at once
+     */
+    public Versus(long seed, int local, int delay, int repeat) {
+        this.seed = seed;
+        this.local = local;
+        this.remote = 1 - local;
+        for(int p = 0; p < 2; p++) {
+            players[p] = new TickGame(seed, delay, repeat);
+            for(int i = 0; i < HISTORY; i++) {
+                states[p][i] = new TickGame.Snapshot();
+            }
+        }
+    }
+
+    /**
+     * Checks to see if the next tick can be played. The game waits once it is too
+     * far ahead of the remote player, so a rollback never goes further back than
+     * {@link #MAX_ROLLBACK} ticks.
+     * @return If the next tick can be played
+     */
+    public boolean canAdvance() {
+        return tick - confirmed <= MAX_ROLLBACK;
+    }
+
+    /**
+     * Plays the next tick with the input of the local player
+     * @param input The held keys of the local player, see {@link TickGame}
+     */
+    public void advance(int input) {
+        if(!canAdvance()) {
+            throw new IllegalStateException("Tick " + tick + " is too far ahead of remote tick " + confirmed);
+        }
+        rollback();
+        inputs[local][tick % HISTORY] = (byte)input;
+        if(tick > confirmed) {
+            inputs[remote][tick % HISTORY] = guess();
+        }
+        play(tick);
+        tick++;
+    }
+
+    /**
+     * Takes the input of the remote player for one tick. Inputs have to arrive in
+     * order, others are ignored; the link sends every input until it was acknowledged.
+     * @param remoteTick The tick
+     * @param input The held keys of the remote player
+     * @return If the input was new
+     */
+    public boolean receive(int remoteTick, int input) {
+        if(remoteTick != confirmed + 1 || remoteTick >= tick + HISTORY - MAX_ROLLBACK) {
+            return false;
+        }
+        byte value = (byte)input;
+        if(remoteTick < tick && inputs[remote][remoteTick % HISTORY] != value) {
+            mispredicted = Math.min(mispredicted, remoteTick);
+        }
+        inputs[remote][remoteTick % HISTORY] = value;
+        confirmed = remoteTick;
+        return true;
+    }
+
+    /**
+     * Replays the ticks that were played with a wrong guess, so the games show
+     * the latest known inputs. Called by {@link #advance(int)}, and before drawing.
+     */
+    public void rollback() {
+        if(mispredicted == NONE) {
+            return;
+        }
+        long start = System.nanoTime();
+        int from = mispredicted;
+        mispredicted = NONE;
+
+        // The guesses after the last known input change with it
+        byte last = guess();
+        for(int t = confirmed + 1; t < tick; t++) {
+            inputs[remote][t % HISTORY] = last;
+        }
+        for(int p = 0; p < 2; p++) {
+            players[p].restoreFrom(states[p][from % HISTORY]);
+        }
+        for(int t = from; t < tick; t++) {
+            play(t);
+        }
+
+        long nanos = System.nanoTime() - start;
+        rollbacks++;
+        replayedTicks += tick - from;
+        deepestRollback = Math.max(deepestRollback, tick - from);
+        replayNanos += nanos;
+        slowestReplayNanos = Math.max(slowestReplayNanos, nanos);
+    }
+
+    // Guesses the input of the remote player: the keys held in the last known tick stay held
+    private byte guess() {
+        return confirmed < 0 ? 0 : inputs[remote][confirmed % HISTORY];
+    }
+
+    // Saves both games and plays one tick of both, the rows the players send arrive with their next lock
+    private void play(int t) {
+        int slot = t % HISTORY;
+        for(int p = 0; p < 2; p++) {
+            players[p].saveTo(states[p][slot]);
+        }
+        int cleared0 = players[0].tick(inputs[0][slot]);
+        int cleared1 = players[1].tick(inputs[1][slot]);
+        players[1].sendGarbage(garbageFor(cleared0));
+        players[0].sendGarbage(garbageFor(cleared1));
+    }
+
+    /**
+     * Gets the number of rows a player sends for clearing lines with one piece:
+     * one less than the lines, or all of them for four lines or more
+     * @param cleared The number of cleared lines
+     * @return The number of rows
+     */
+    public static int garbageFor(int cleared) {
+        return cleared >= 4 ? cleared : Math.max(0, cleared - 1);
+    }
+
+    /**
+     * Gets the input the local player played in a tick, for the link to send
+     * @param localTick A tick less than {@link #HISTORY} ticks ago
+     * @return The held keys
+     */
+    public int getLocalInput(int localTick) {
+        return inputs[local][localTick % HISTORY];
+    }
+
+    /**
+     * Gets the game of a player
+     * @param player 0 or 1
+     * @return The game
+     */
+    public TickGame getPlayer(int player) {
+        return players[player];
+    }
+
+    /**
+     * Gets the index of the local player
+     * @return 0 or 1
+     */
+    public int getLocal() {
+        return local;
+    }
+
+    /**
+     * Gets the seed both games were started with
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the next tick to play
+     * @return The tick
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Gets the last tick whose remote input is known
+     * @return The tick, -1 if none is
+     */
+    public int getConfirmedTick() {
+        return confirmed;
+    }
+
+    /**
+     * Gets the number of times the games went back
+     * @return The number of rollbacks
+     */
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    /**
+     * Gets the number of ticks that were played again
+     * @return The number of ticks
+     */
+    public long getReplayedTicks() {
+        return replayedTicks;
+    }
+
+    /**
+     * Gets the most ticks one rollback played again
+     * @return The number of ticks
+     */
+    public int getDeepestRollback() {
+        return deepestRollback;
+    }
+
+    /**
+     * Gets the time spent going back and playing ticks again
+     * @return The time in nanoseconds
+     */
+    public long getReplayNanos() {
+        return replayNanos;
+    }
+
+    /**
+     * Gets the longest time one rollback took
+     * @return The time in nanoseconds
+     */
+    public long getSlowestReplayNanos() {
+        return slowestReplayNanos;
+    }
+
+    /**
+     * Steers pieces to the placements of the heuristic bot with the keys a person
+     * would use, to play the simulated games
+     */
+    private static final class Pilot {
+        private final HeuristicBot bot = new HeuristicBot();
+        // Where the current piece should go
+        private Placement target;
+        // Number of pieces when the target was chosen
+        private int targetPieces = -1;
+        // The last input, keys are let go between presses
+        private int last;
+
+        private int input(Engine engine, Random random) {
+            // Nobody is that fast, and two players that aren't equally fast don't play the same game
+            if(engine.isGameOver() || random.nextInt(4) == 0) {
+                return 0;
+            }
+            if(engine.getPieces() != targetPieces) {
+                target = bot.choose(engine);
+                targetPieces = engine.getPieces();
+            }
+            int input;
+            if(engine.getPieceRotation() != target.getRotation()) {
+                input = TickGame.ROTATE_CW;
+            } else if(engine.getPieceCol() < target.getCol()) {
+                input = TickGame.RIGHT;
+            } else if(engine.getPieceCol() > target.getCol()) {
+                input = TickGame.LEFT;
+            } else {
+                input = TickGame.SOFT_DROP;
+            }
+            // Taps need a tick without the key in between, soft drop is held
+            last = input == TickGame.SOFT_DROP || (last & input) == 0 ? input : 0;
+            return last;
+        }
+    }
+
+    /**
+     * Plays two simulated players, steered by the heuristic bot, against each
+     * other through links that delay, reorder and drop inputs, and checks that both sides end with the games of
+     * a reference that knew every input at once
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) {
+        int ticks = 30000;
+        int delay = 6;
+        int jitter = 3;
+        double loss = 0.05;
+        long seed = 0;
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--ticks":
+                        ticks = Integer.parseInt(value);
+                        break;
+                    case "--delay":
+                        delay = Integer.parseInt(value);
+                        break;
+                    case "--jitter":
+                        jitter = Integer.parseInt(value);
+                        break;
+                    case "--loss":
+                        loss = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Random random = new Random(seed);
+        Versus[] sides = {new Versus(seed, 0, 8, 2), new Versus(seed, 1, 8, 2)};
+        Versus reference = new Versus(seed, 0, 8, 2);
+        Pilot[] pilots = {new Pilot(), new Pilot()};
+        // Inputs in flight to each side: {arrival, tick, input}
+        List<ArrayDeque<int[]>> wires = Arrays.asList(new ArrayDeque<>(), new ArrayDeque<>());
+        // Last input each side sent that the other side acknowledged
+        int[] acked = {-1, -1};
+        int[][] played = new int[2][ticks];
+
+        long stalls = 0;
+        int now = 0;
+        while(sides[0].getConfirmedTick() < ticks - 1 || sides[1].getConfirmedTick() < ticks - 1) {
+            for(int s = 0; s < 2; s++) {
+                Versus side = sides[s];
+                // Deliver what arrived, a link sends every unacknowledged input again so loss only adds delay
+                for(Iterator<int[]> it = wires.get(s).iterator(); it.hasNext(); ) {
+                    int[] packet = it.next();
+                    if(packet[0] <= now) {
+                        side.receive(packet[1], packet[2]);
+                        it.remove();
+                    }
+                }
+                acked[1 - s] = side.getConfirmedTick();
+
+                if(side.getTick() < ticks) {
+                    if(side.canAdvance()) {
+                        // The player reacts to what it sees, which may still change when a rollback adds rows
+                        side.rollback();
+                        int input = pilots[s].input(side.getPlayer(s).getEngine(), random);
+                        played[s][side.getTick()] = input;
+                        side.advance(input);
+                    } else {
+                        stalls++;
+                    }
+                }
+                for(int t = acked[s] + 1; t < side.getTick(); t++) {
+                    if(random.nextDouble() >= loss) {
+                        int arrival = now + delay + (jitter > 0 ? random.nextInt(jitter + 1) : 0);
+                        wires.get(1 - s).add(new int[] {arrival, t, side.getLocalInput(t)});
+                    }
+                }
+            }
+            now++;
+        }
+        sides[0].rollback();
+        sides[1].rollback();
+
+        for(int t = 0; t < ticks; t++) {
+            reference.receive(t, played[1][t]);
+            reference.advance(played[0][t]);
+        }
+        boolean agree = true;
+        for(int p = 0; p < 2; p++) {
+            long expected = reference.getPlayer(p).checksum();
+            for(Versus side : sides) {
+                agree &= side.getPlayer(p).checksum() == expected;
+            }
+        }
+
+        for(int s = 0; s < 2; s++) {
+            Versus side = sides[s];
+            System.out.printf("side %d: %d rollbacks, %d ticks replayed, deepest %d, %.1f us per replayed tick, "
+                            + "slowest rollback %.1f us%n", s, side.getRollbacks(), side.getReplayedTicks(),
+                    side.getDeepestRollback(), side.getReplayNanos() / 1e3 / Math.max(1, side.getReplayedTicks()),
+                    side.getSlowestReplayNanos() / 1e3);
+        }
+        for(int p = 0; p < 2; p++) {
+            Engine engine = reference.getPlayer(p).getEngine();
+            System.out.printf("player %d: score %d, %d lines, %d pieces%s%n", p, engine.getScore(), engine.getLines(),
+                    engine.getPieces(), engine.isGameOver() ? ", lost" : "");
+        }
+        System.out.printf("%d ticks in %d steps, %d stalls%n", ticks, now, stalls);
+        if(!agree) {
+            System.err.println("The sides don't agree with the reference");
+            System.exit(1);
+        }
+        System.out.println("Both sides agree with the reference");
+    }
+}
@@ -0,0 +1,313 @@
+package Game;
+
+import Panels.GamePanel;
+import Panels.SidePanel;
+import Pieces.Piece;
+
+import javax.swing.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * The window of a versus game over the network: both boards side by side, the
+ * local player plays with the keys of the single player game. The game loop
+ * plays one tick of the {@link Versus} game per frame and sends and reads the
+ * inputs through a {@link VersusLink}; the games themselves never look at the
+ * clock, the loop only decides when the next tick is due.
+ */
+
+@SuppressWarnings("serial")
+public class VersusGame extends JFrame {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: VersusGame --host PORT [--seed S] | --connect HOST:PORT";
+    // Nanoseconds per tick
+    private static final long TICK_NANOS = 1000000000L / TickGame.TICKS_PER_SECOND;
+    // Most ticks played at once to catch up after a slow frame
+    private static final int MAX_CATCH_UP = 5;
+    // Delayed auto shift in milliseconds, shared with the single player game (-Dtetris.das), rounded to the nearest tick
+    private static final long DAS_MILLIS = Long.getLong("tetris.das", 167L);
+    // Auto repeat rate in milliseconds, 0 moves to the wall at once (-Dtetris.arr), rounded to the nearest tick
+    private static final long ARR_MILLIS = Long.getLong("tetris.arr", 33L);
+
+    private final VersusLink link;
+    // The game, null until both sides heard from each other
+    private volatile Versus versus;
+    private final PerformanceStats performance = new PerformanceStats();
+
+    // Keys that are held down
+    private volatile int held;
+    // Keys that were pressed since the last tick, so a tap shorter than a tick still counts
+    private volatile int tapped;
+
+    private VersusGame(VersusLink link) {
+        super("Tetris versus");
+        this.link = link;
+        setLayout(new BoxLayout(getContentPane(), BoxLayout.X_AXIS));
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setResizable(false);
+
+        for(int p = 0; p < 2; p++) {
+            PlayerView view = new PlayerView(p);
+            add(new GamePanel(view));
+            add(new SidePanel(view));
+        }
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                int key = keyFor(e.getKeyCode());
+                if(key != 0) {
+                    held |= key;
+                    tapped |= key;
+                } else if(e.getKeyCode() == KeyEvent.VK_F3) {
+                    performance.setVisible(!performance.isVisible());
+                }
+            }
+
+            @Override
+            public void keyReleased(KeyEvent e) {
+                held &= ~keyFor(e.getKeyCode());
+            }
+        });
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    // Gets the input of a key, 0 if the key isn't used
+    private static int keyFor(int keyCode) {
+        switch(keyCode) {
+            case KeyEvent.VK_A:
+                return TickGame.LEFT;
+            case KeyEvent.VK_D:
+                return TickGame.RIGHT;
+            case KeyEvent.VK_E:
+                return TickGame.ROTATE_CW;
+            case KeyEvent.VK_Q:
+                return TickGame.ROTATE_CCW;
+            case KeyEvent.VK_S:
+                return TickGame.SOFT_DROP;
+            default:
+                return 0;
+        }
+    }
+
+    // Gets the input of the next tick and forgets the taps
+    private int readInput() {
+        int taps = tapped;
+        tapped = 0;
+        return held | taps;
+    }
+
+    // Converts milliseconds to the nearest number of ticks, at least one
+    private static int ticksFor(long millis) {
+        return (int)Math.max(1, (millis * TickGame.TICKS_PER_SECOND + 500) / 1000);
+    }
+
+    /**
+     * Runs the game loop
+     */
+    private void run() throws IOException {
+        long next = System.nanoTime();
+        long lastTitle = next;
+        while(true) {
+            long start = System.nanoTime();
+            link.poll(versus);
+            if(versus == null && link.isConnected()) {
+                int delay = ticksFor(DAS_MILLIS);
+                int repeat = ARR_MILLIS == 0 ? 0 : ticksFor(ARR_MILLIS);
+                versus = new Versus(link.getSeed(), link.getPlayer(), delay, repeat);
+                next = start;
+            }
+
+            if(versus != null) {
+                // Play the ticks that are due, unless the other side is too far behind
+                int played = 0;
+                while(start - next >= 0 && played < MAX_CATCH_UP && versus.canAdvance()) {
+                    versus.advance(readInput());
+                    next += TICK_NANOS;
+                    played++;
+                }
+                if(start - next >= 0) {
+                    // Waiting for the other side or too far behind, the next tick is due a tick from now
+                    next = start + TICK_NANOS;
+                }
+                versus.rollback();
+            } else {
+                next = start + TICK_NANOS;
+            }
+            link.send(versus);
+            performance.recordTick(System.nanoTime() - start);
+            performance.sample();
+
+            if(start - lastTitle > 1000000000L) {
+                lastTitle = start;
+                updateTitle();
+            }
+            repaint();
+
+            long sleep = next - System.nanoTime();
+            if(sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1000000L, (int)(sleep % 1000000L));
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Shows the state of the link in the title
+    private void updateTitle() {
+        Versus game = versus;
+        String title;
+        if(game == null) {
+            title = "Tetris versus - waiting for the other player";
+        } else {
+            title = String.format("Tetris versus - you are player %d, %d ticks behind, %d rollbacks, deepest %d",
+                    game.getLocal() + 1, game.getTick() - 1 - game.getConfirmedTick(), game.getRollbacks(),
+                    game.getDeepestRollback());
+        }
+        SwingUtilities.invokeLater(() -> setTitle(title));
+    }
+
+    /**
+     * What the panels of one player draw
+     */
+    private final class PlayerView implements GameView {
+        private final int player;
+
+        private PlayerView(int player) {
+            this.player = player;
+        }
+
+        // Gets the game of the player, null before the game started
+        private Engine engine() {
+            Versus game = versus;
+            return game == null ? null : game.getPlayer(player).getEngine();
+        }
+
+        @Override
+        public boolean isPaused() {
+            return false;
+        }
+
+        @Override
+        public boolean isGameOver() {
+            Engine engine = engine();
+            return engine != null && engine.isGameOver();
+        }
+
+        @Override
+        public boolean isNewGame() {
+            return engine() == null;
+        }
+
+        @Override
+        public boolean isPractice() {
+            return false;
+        }
+
+        @Override
+        public int getScore() {
+            Engine engine = engine();
+            return engine == null ? 0 : engine.getScore();
+        }
+
+        // The best score of the match
+        @Override
+        public int getBestScore() {
+            Versus game = versus;
+            return game == null ? 0 : Math.max(game.getPlayer(0).getEngine().getScore(),
+                    game.getPlayer(1).getEngine().getScore());
+        }
+
+        @Override
+        public int getLevel() {
+            Engine engine = engine();
+            return engine == null ? 1 : engine.getLevel();
+        }
+
+        @Override
+        public Piece getPieceType() {
+            return engine().getPieceType();
+        }
+
+        @Override
+        public Piece getNextPieceType() {
+            Engine engine = engine();
+            return engine == null ? null : engine.getNextPieceType();
+        }
+
+        @Override
+        public int getPieceCol() {
+            return engine().getPieceCol();
+        }
+
+        @Override
+        public int getPieceRow() {
+            return engine().getPieceRow();
+        }
+
+        @Override
+        public int getPieceRotation() {
+            return engine().getPieceRotation();
+        }
+
+        @Override
+        public Board getBoard() {
+            return engine().getBoard();
+        }
+
+        @Override
+        public PerformanceStats getPerformance() {
+            return performance;
+        }
+    }
+
+    /**
+     * Entry-point of the versus game
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException {
+        VersusLink link = null;
+        try {
+            if(args.length < 2) {
+                throw new IllegalArgumentException("Missing --host or --connect");
+            }
+            long seed = new Random().nextLong();
+            for(int i = 2; i < args.length; i += 2) {
+                if(!args[i].equals("--seed") || i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+                seed = Long.parseLong(args[i + 1]);
+            }
+            switch(args[0]) {
+                case "--host":
+                    link = VersusLink.host(Integer.parseInt(args[1]), seed);
+                    break;
+                case "--connect":
+                    int colon = args[1].lastIndexOf(':');
+                    if(colon < 0) {
+                        throw new IllegalArgumentException("Missing port: " + args[1]);
+                    }
+                    link = VersusLink.connect(new InetSocketAddress(args[1].substring(0, colon),
+                            Integer.parseInt(args[1].substring(colon + 1))));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[0]);
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        VersusGame game = new VersusGame(link);
+        game.run();
+    }
+}
@@ -0,0 +1,176 @@
+package Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Carries the inputs of a {@link Versus} game between two machines over UDP.
+ * Every packet holds all the local inputs the other side didn't acknowledge
+ * yet, so a lost packet costs no more than the delay until the next one, and
+ * the last remote tick that arrived, which is the acknowledgement. Nothing is
+ * ever resent on a timer; a packet goes out every frame.
+ *
+ * Packet layout, big-endian: magic int, seed long, acknowledged tick int,
+ * first tick int, input count short, then one byte per input.
+ *
+ * The host waits for the first packet of the client and answers with the seed
+ * of the game; both start playing when they heard from each other.
+ */
+
+public class VersusLink implements Closeable {
+    // Start of every packet
+    private static final int MAGIC = 0x54565331;
+    // Size of the fixed part of a packet
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 2;
+    // Most inputs in one packet, older inputs the other side never acknowledged aren't needed anymore
+    private static final int WINDOW = Versus.HISTORY - Versus.MAX_ROLLBACK;
+
+    private final DatagramChannel channel;
+    // If this side waits for a client
+    private final boolean host;
+    // The other side, null until the host hears from the client
+    private SocketAddress peer;
+    // Seed of the game, known to the client once the host answered
+    private long seed;
+    private boolean hasSeed;
+    // The last local tick the other side has
+    private int acked = -1;
+
+    private final ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE + WINDOW);
+
+    private VersusLink(DatagramChannel channel, boolean host, SocketAddress peer, long seed) {
+        this.channel = channel;
+        this.host = host;
+        this.peer = peer;
+        this.seed = seed;
+        this.hasSeed = host;
+    }
+
+    /**
+     * Waits for a client on a port
+     * @param port The UDP port
+     * @param seed The seed of the game, sent to the client
+     * @return The link
+     */
+    public static VersusLink host(int port, long seed) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        return new VersusLink(channel, true, null, seed);
+    }
+
+    /**
+     * Connects to a host
+     * @param address The address and port of the host
+     * @return The link
+     */
+    public static VersusLink connect(InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(null);
+        channel.configureBlocking(false);
+        return new VersusLink(channel, false, address, 0);
+    }
+
+    /**
+     * Checks to see if both sides heard from each other
+     * @return If the game can start
+     */
+    public boolean isConnected() {
+        return peer != null && hasSeed;
+    }
+
+    /**
+     * Gets the seed of the game
+     * @return The seed, only known once connected
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the index of the player on this side: the host is player 0
+     * @return 0 or 1
+     */
+    public int getPlayer() {
+        return host ? 0 : 1;
+    }
+
+    /**
+     * Sends the local inputs the other side doesn't have yet, or a greeting before
+     * the game started
+     * @param game The game, null if it didn't start yet
+     */
+    public void send(Versus game) throws IOException {
+        if(peer == null) {
+            return;
+        }
+        int first = game == null ? 0 : Math.max(acked + 1, game.getTick() - WINDOW);
+        int count = game == null ? 0 : game.getTick() - first;
+
+        packet.clear();
+        packet.putInt(MAGIC);
+        packet.putLong(seed);
+        packet.putInt(game == null ? -1 : game.getConfirmedTick());
+        packet.putInt(first);
+        packet.putShort((short)count);
+        for(int i = 0; i < count; i++) {
+            packet.put((byte)game.getLocalInput(first + i));
+        }
+        packet.flip();
+        channel.send(packet, peer);
+    }
+
+    /**
+     * Reads every packet that arrived and hands the inputs to the game
+     * @param game The game, null if it didn't start yet
+     * @return The number of packets read
+     */
+    public int poll(Versus game) throws IOException {
+        int packets = 0;
+        while(true) {
+            packet.clear();
+            SocketAddress from = channel.receive(packet);
+            if(from == null) {
+                return packets;
+            }
+            packet.flip();
+            if(packet.remaining() < HEADER_SIZE || packet.getInt() != MAGIC) {
+                continue;
+            }
+            // The host takes the first client it hears from, after that only packets of the other side count
+            if(peer == null) {
+                peer = from;
+            } else if(!peer.equals(from)) {
+                continue;
+            }
+            packets++;
+
+            long packetSeed = packet.getLong();
+            if(!hasSeed) {
+                seed = packetSeed;
+                hasSeed = true;
+            }
+            acked = Math.max(acked, packet.getInt());
+            int first = packet.getInt();
+            int count = Math.min(packet.getShort() & 0xffff, packet.remaining());
+            if(game == null) {
+                continue;
+            }
+            for(int i = 0; i < count; i++) {
+                game.receive(first + i, packet.get());
+            }
+        }
+    }
+
+    /**
+     * Closes the socket
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
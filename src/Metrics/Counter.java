@@ -0,0 +1,39 @@
+package Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. Increments from different threads go to
+ * different cells of a {@link LongAdder}, so they don't contend.
+ */
+
+public final class Counter {
+    // The count
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the count
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count
+     * @param amount The amount, not negative
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * Gets the count
+     * @return The count
+     */
+    public long get() {
+        return count.sum();
+    }
+}
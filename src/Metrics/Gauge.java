@@ -0,0 +1,29 @@
+package Metrics;
+
+/**
+ * A value that can go up and down, like the current speed of the game
+ */
+
+public final class Gauge {
+    // The value
+    private volatile double value;
+
+    Gauge() {
+    }
+
+    /**
+     * Sets the value
+     * @param value The value
+     */
+    public void set(double value) {
+        this.value = value;
+    }
+
+    /**
+     * Gets the value
+     * @return The value
+     */
+    public double get() {
+        return value;
+    }
+}
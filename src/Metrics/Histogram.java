@@ -0,0 +1,85 @@
+package Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observed values in buckets with fixed upper bounds. Recording a value
+ * finds its bucket and adds to two adders, without locks or allocation; the
+ * buckets are only added up into the cumulative counts of the Prometheus
+ * format when they're read.
+ */
+
+public final class Histogram {
+    // Upper bounds of the buckets, ascending; values above the last bound go into one more bucket
+    private final double[] bounds;
+    // Number of values in each bucket, not cumulative
+    private final LongAdder[] counts;
+    // Sum of all values
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] bounds) {
+        for(int i = 1; i < bounds.length; i++) {
+            if(bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be ascending");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value
+     * @param value The value
+     */
+    public void observe(double value) {
+        int bucket = 0;
+        while(bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Records a duration in seconds
+     * @param nanos The duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        observe(nanos / (double)TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Gets the upper bounds of the buckets
+     * @return The bounds, without the last bucket for larger values
+     */
+    double[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Gets the number of values up to every bound
+     * @return The cumulative counts, one more than there are bounds; the last is the number of all values
+     */
+    long[] getCumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for(int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Gets the sum of all values
+     * @return The sum
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,151 @@
+package Metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of a program and their text in the Prometheus exposition format.
+ * Metrics are registered once at startup and then recorded to directly, the
+ * registry is only involved when the metrics are read.
+ */
+
+public class MetricRegistry {
+    /**
+     * All metrics with the same name, which only differ in their labels
+     */
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        // Labels of every metric, like lines="1", empty for none
+        private final List<String> labels = new ArrayList<>();
+        private final List<Object> metrics = new ArrayList<>();
+
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    // The families by name, in the order they were registered
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Registers a counter
+     * @param name The name, ending in _total
+     * @param help What is counted
+     * @return The counter
+     */
+    public Counter counter(String name, String help) {
+        return counter(name, help, "");
+    }
+
+    /**
+     * Registers a counter of a family of counters
+     * @param name The name, ending in _total
+     * @param help What is counted
+     * @param labels The labels of this counter, like lines="1"
+     * @return The counter
+     */
+    public Counter counter(String name, String help, String labels) {
+        Counter counter = new Counter();
+        register(name, help, "counter", labels, counter);
+        return counter;
+    }
+
+    /**
+     * Registers a gauge
+     * @param name The name
+     * @param help What is measured
+     * @return The gauge
+     */
+    public Gauge gauge(String name, String help) {
+        Gauge gauge = new Gauge();
+        register(name, help, "gauge", "", gauge);
+        return gauge;
+    }
+
+    /**
+     * Registers a histogram
+     * @param name The name, ending in the unit like _seconds
+     * @param help What is measured
+     * @param bounds The upper bounds of the buckets, ascending
+     * @return The histogram
+     */
+    public Histogram histogram(String name, String help, double... bounds) {
+        Histogram histogram = new Histogram(bounds);
+        register(name, help, "histogram", "", histogram);
+        return histogram;
+    }
+
+    // Adds a metric to its family
+    private synchronized void register(String name, String help, String type, String labels, Object metric) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if(!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        if(family.labels.contains(labels)) {
+            throw new IllegalArgumentException(name + "{" + labels + "} is already registered");
+        }
+        family.labels.add(labels);
+        family.metrics.add(metric);
+    }
+
+    /**
+     * Writes the current value of every metric in the Prometheus text format
+     * @param out Where the text is appended
+     */
+    public synchronized void write(StringBuilder out) {
+        for(Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for(int i = 0; i < family.metrics.size(); i++) {
+                Object metric = family.metrics.get(i);
+                String labels = family.labels.get(i);
+                if(metric instanceof Counter) {
+                    sample(out, family.name, labels, Long.toString(((Counter)metric).get()));
+                } else if(metric instanceof Gauge) {
+                    sample(out, family.name, labels, format(((Gauge)metric).get()));
+                } else {
+                    writeHistogram(out, family.name, labels, (Histogram)metric);
+                }
+            }
+        }
+    }
+
+    // Writes the buckets, the sum and the count of a histogram
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for(int i = 0; i < bounds.length; i++) {
+            sample(out, name + "_bucket", prefix + "le=\"" + format(bounds[i]) + "\"", Long.toString(counts[i]));
+        }
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", Long.toString(counts[bounds.length]));
+        sample(out, name + "_sum", labels, format(histogram.getSum()));
+        sample(out, name + "_count", labels, Long.toString(counts[bounds.length]));
+    }
+
+    // Writes one line: name, labels and value
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if(!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    // Formats a value the way Prometheus reads it
+    private static String format(double value) {
+        if(Double.isNaN(value)) {
+            return "NaN";
+        }
+        if(Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
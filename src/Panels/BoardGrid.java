@@ -0,0 +1,268 @@
+package Panels;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import javax.swing.JComponent;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws many games at once in a grid of small boards, to watch bot games or a
+ * tournament. Games hand in a compact copy of their board with
+ * {@link #publish(int, Engine)}, from any thread; {@link #render()} redraws only
+ * the boards that changed since they were last drawn. Boards are drawn straight
+ * into the pixels of an image: every row of tiles is built once as one line of
+ * pixels and copied for each pixel row of the tiles, instead of filling every
+ * tile on its own.
+ */
+
+@SuppressWarnings("serial")
+public class BoardGrid extends JComponent {
+    // Number of visible rows, the top rows of the board are hidden like in the game panel
+    private static final int VISIBLE_ROWS = 20;
+    // Number of hidden rows
+    private static final int HIDDEN_ROWS = Board.ROWS - VISIBLE_ROWS;
+    // Pixels between two boards
+    private static final int GAP = 4;
+    // Color of the background and the empty tiles
+    private static final int BACKGROUND = 0x000000;
+    // Color of the lines between tiles
+    private static final int GRID = 0x404040;
+    // Color of the outline of a board
+    private static final int OUTLINE = 0xffffff;
+
+    /**
+     * The last copy a game handed in
+     */
+    private static final class Slot {
+        // Tile of every visible cell, row after row: 0 if empty, else the index of the piece + 1
+        private final byte[] cells = new byte[VISIBLE_ROWS * Board.COLS];
+        // If the game is lost, its board is drawn darker
+        private boolean isGameOver;
+        // Increased on every change
+        private int version;
+        // Version of the engine the copy was made from
+        private int engineVersion = -1;
+        private Engine engine;
+    }
+
+    private final int boards;
+    private final int columns;
+    private final int tileSize;
+    // Size of a board in pixels, outline included
+    private final int boardWidth;
+    private final int boardHeight;
+
+    private final Slot[] slots;
+    // Version of every slot that is in the image
+    private final int[] drawnVersions;
+
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int stride;
+
+    // Colors of the pieces by tile value, and darker for lost games
+    private final int[] colors = new int[Piece.count() + 1];
+    private final int[] lostColors = new int[Piece.count() + 1];
+    // Scratch lines: the copy of a slot and the pixels of one row of tiles
+    private final byte[] cells = new byte[VISIBLE_ROWS * Board.COLS];
+    private final int[] line;
+    // The line between two rows of tiles, null if tiles are too small to part
+    private final int[] gridLine;
+
+    /**
+     * Creates a new grid
+     * @param boards The number of boards
+     * @param columns The number of boards per row of the grid
+     * @param tileSize The size of a tile in pixels, at least 1
+     */
+    public BoardGrid(int boards, int columns, int tileSize) {
+        this.boards = boards;
+        this.columns = columns;
+        this.tileSize = tileSize;
+        this.boardWidth = Board.COLS * tileSize + 2;
+        this.boardHeight = VISIBLE_ROWS * tileSize + 2;
+
+        this.slots = new Slot[boards];
+        this.drawnVersions = new int[boards];
+        for(int i = 0; i < boards; i++) {
+            slots[i] = new Slot();
+            drawnVersions[i] = -1;
+        }
+
+        int rows = (boards + columns - 1) / columns;
+        int width = columns * (boardWidth + GAP) + GAP;
+        int height = rows * (boardHeight + GAP) + GAP;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        this.stride = width;
+
+        for(int i = 0; i < Piece.count(); i++) {
+            int rgb = Piece.get(i).getColorPiece().getRGB() & 0xffffff;
+            colors[i + 1] = rgb;
+            lostColors[i + 1] = rgb >>> 1 & 0x7f7f7f;
+        }
+        colors[0] = BACKGROUND;
+        lostColors[0] = BACKGROUND;
+
+        // Tiles are parted by a line, gray on tiles big enough to show it, none on the smallest tiles
+        this.line = new int[Board.COLS * tileSize];
+        this.gridLine = tileSize >= 3 ? new int[Board.COLS * tileSize] : null;
+        if(gridLine != null) {
+            Arrays.fill(gridLine, tileSize >= 4 ? GRID : BACKGROUND);
+        }
+
+        drawOutlines();
+        setPreferredSize(new Dimension(width, height));
+    }
+
+    // Draws the outline of every board, which never changes
+    private void drawOutlines() {
+        for(int i = 0; i < boards; i++) {
+            int left = GAP + i % columns * (boardWidth + GAP);
+            int top = GAP + i / columns * (boardHeight + GAP);
+            Arrays.fill(pixels, top * stride + left, top * stride + left + boardWidth, OUTLINE);
+            int bottom = top + boardHeight - 1;
+            Arrays.fill(pixels, bottom * stride + left, bottom * stride + left + boardWidth, OUTLINE);
+            for(int y = top; y <= bottom; y++) {
+                pixels[y * stride + left] = OUTLINE;
+                pixels[y * stride + left + boardWidth - 1] = OUTLINE;
+            }
+        }
+    }
+
+    /**
+     * Hands in the state of a game, if it changed since the last call. Can be
+     * called from the thread that plays the game.
+     * @param index The board
+     * @param engine The game
+     * @return If the board changed
+     */
+    public boolean publish(int index, Engine engine) {
+        Slot slot = slots[index];
+        synchronized(slot) {
+            if(slot.engine == engine && slot.engineVersion == engine.getVersion()) {
+                return false;
+            }
+            slot.engine = engine;
+            slot.engineVersion = engine.getVersion();
+
+            Board board = engine.getBoard();
+            byte[] target = slot.cells;
+            for(int y = 0; y < VISIBLE_ROWS; y++) {
+                int row = y + HIDDEN_ROWS;
+                int mask = board.getRowMask(row);
+                for(int x = 0; x < Board.COLS; x++) {
+                    target[y * Board.COLS + x] = (mask >>> x & 1) == 0 ? 0 : (byte)(board.getTile(x, row).getIndex() + 1);
+                }
+            }
+
+            // The falling piece is part of the copy
+            Piece piece = engine.getPieceType();
+            if(piece != null && !engine.isGameOver()) {
+                int rotation = engine.getPieceRotation();
+                for(int row = 0; row < piece.getDimension(); row++) {
+                    int y = engine.getPieceRow() + row - HIDDEN_ROWS;
+                    if(y < 0 || y >= VISIBLE_ROWS) {
+                        continue;
+                    }
+                    for(int col = 0; col < piece.getDimension(); col++) {
+                        if(piece.isTile(col, row, rotation)) {
+                            target[y * Board.COLS + engine.getPieceCol() + col] = (byte)(piece.getIndex() + 1);
+                        }
+                    }
+                }
+            }
+            slot.isGameOver = engine.isGameOver();
+            slot.version++;
+            return true;
+        }
+    }
+
+    /**
+     * Redraws the boards that changed into the image and asks Swing to show it
+     * @return The number of redrawn boards
+     */
+    public int render() {
+        int redrawn = 0;
+        synchronized(image) {
+            for(int i = 0; i < boards; i++) {
+                Slot slot = slots[i];
+                boolean isGameOver;
+                synchronized(slot) {
+                    if(slot.version == drawnVersions[i]) {
+                        continue;
+                    }
+                    drawnVersions[i] = slot.version;
+                    System.arraycopy(slot.cells, 0, cells, 0, cells.length);
+                    isGameOver = slot.isGameOver;
+                }
+                drawBoard(i, isGameOver ? lostColors : colors);
+                redrawn++;
+            }
+        }
+        if(redrawn > 0) {
+            repaint();
+        }
+        return redrawn;
+    }
+
+    // Draws the scratch copy of a board, row of tiles after row of tiles
+    private void drawBoard(int index, int[] palette) {
+        int left = GAP + index % columns * (boardWidth + GAP) + 1;
+        int top = GAP + index / columns * (boardHeight + GAP) + 1;
+        int width = line.length;
+
+        int built = -1;
+        for(int y = 0; y < VISIBLE_ROWS; y++) {
+            // A row of tiles like the one above doesn't need a new line of pixels
+            int row = y * Board.COLS;
+            if(built < 0 || !sameRow(built, row)) {
+                for(int x = 0; x < Board.COLS; x++) {
+                    int start = x * tileSize;
+                    Arrays.fill(line, start, start + tileSize, palette[cells[row + x]]);
+                    if(gridLine != null) {
+                        line[start] = gridLine[0];
+                    }
+                }
+                built = row;
+            }
+
+            // The top pixel row of every tile is the line between tiles
+            int offset = (top + y * tileSize) * stride + left;
+            System.arraycopy(gridLine != null ? gridLine : line, 0, pixels, offset, width);
+            for(int py = 1; py < tileSize; py++) {
+                System.arraycopy(line, 0, pixels, offset + py * stride, width);
+            }
+        }
+    }
+
+    // Checks to see if two rows of the scratch copy have the same tiles
+    private boolean sameRow(int a, int b) {
+        for(int x = 0; x < Board.COLS; x++) {
+            if(cells[a + x] != cells[b + x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the image the boards are drawn into
+     * @return The image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        synchronized(image) {
+            g.drawImage(image, 0, 0, null);
+        }
+    }
+}
@@ -1,21 +1,23 @@
 package Panels;
 
 import Pieces.Piece;
-import Game.Tetris;
+import Game.Board;
+import Game.PerformanceStats;
+import Game.GameView;
 
 import javax.swing.JPanel;
 import java.awt.*;
 import java.awt.Graphics;
 
 /**
- * Displays game panel and handles things related to the game board
+ * Displays game panel and draws the game board
  */
 
 public class GamePanel extends JPanel {
     // Width of border around game board
     private static final int BORDER_WIDTH = 5;
     // Number of columns on game board
-    public static final int COLS = 10;
+    public static final int COLS = Board.COLS;
     // Number of visible rows
     private static final int VISIBLE_ROWS = 20;
     // Number of invisible rows
@@ -36,136 +38,40 @@ public class GamePanel extends JPanel {
     private static final Font LARGE_FONT = new Font("Tahoma", Font.BOLD, 16);
     //Small font
     private static final Font SMALL_FONT = new Font("Tahoma", Font.BOLD, 12);
-
-    private Tetris tetris;
-    private Piece[][] pieces;
+    // Font of the performance overlay
+    private static final Font HUD_FONT = new Font("Monospaced", Font.PLAIN, 11);
+    // Background of the performance overlay
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 170);
+    // Height of one line of the performance overlay
+    private static final int HUD_LINE_HEIGHT = 13;
+    // Alpha of the ghost piece
+    private static final int GHOST_ALPHA = 20;
+    // Colors of the ghosts by piece index, made once instead of on every paint. They are opaque, already
+    // blended with the black background: translucent fills allocate a raster per tile in software rendering
+    private static final Color[] GHOST_COLORS = ghostColors();
+
+    private GameView view;
 
     /**
      * Creates new GamePanel
-     * @param tetris The tetris game to use
+     * @param view The game to draw
      */
-    public GamePanel(Tetris tetris) {
-        this.tetris = tetris;
-        this.pieces = new Piece[ROWS][COLS];
+    public GamePanel(GameView view) {
+        this.view = view;
 
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setBackground(Color.BLACK);
     }
 
-    /**
-     * Resets the board and clears every tile
-     */
-    public void clear() {
-        for(int i = 0; i < ROWS; i++) {
-            for(int j = 0; j < COLS; j++) {
-                pieces[i][j] = null;
-            }
-        }
-    }
-
-    /**
-     * Checks to see if the tile is already occupied
-     * @param x The x coordinate to check
-     * @param y The y coordinate to check
-     * @return Whether or not the tile is occupied
-     */
-    private boolean isOccupied(int x, int y) {
-        return pieces[y][x] != null;
-    }
-
-    /**
-     * Determines whether or not a piece can be placed at the coordinates.
-     * @param piece The piece
-     * @param x The x coordinate of the piece
-     * @param y The y coordinate of the piece
-     * @param rotation The rotation of the piece
-     * @return Whether or not the position is valid
-     */
-    public boolean isValidAndEmpty(Piece piece, int x, int y, int rotation) {
-
-        // Ensure the piece is in a valid column.
-        if(x < -piece.getLeftEmpty(rotation) || x + piece.getDimension() - piece.getRightEmpty(rotation) >= COLS) {
-            return false;
-        }
-
-        // Ensure the piece is in a valid row.
-        if(y < -piece.getAboveEmpty(rotation) || y + piece.getDimension() - piece.getBelowEmpty(rotation) >= ROWS) {
-            return false;
-        }
-
-        // Checks if collides with any other tile
-        for(int col = 0; col < piece.getDimension(); col++) {
-            for(int row = 0; row < piece.getDimension(); row++) {
-                if(piece.isTile(col, row, rotation) && isOccupied(x + col, y + row)) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Puts a tile to desired x and y coordinate
-     * @param x The column
-     * @param y The row
-     * @param type The type of tile you want to create
-     */
-    private void setTile(int  x, int y, Piece type) {
-        pieces[y][x] = type;
-    }
-
-    /**
-     * Adds a piece to the game board
-     * Note: Doesn't check for existing pieces, and will overwrite them if they exist
-     * @param piece The piece to add
-     * @param x The x coordinate where to add
-     * @param y The y coordinate where to add
-     * @param rotation The rotation of the piece
-     */
-    public void addPiece(Piece piece, int x, int y, int rotation) {
-        for(int col = 0; col < piece.getDimension(); col++) {
-            for(int row = 0; row < piece.getDimension(); row++) {
-                if(piece.isTile(col, row, rotation)) {
-                    setTile(col + x, row + y, piece);
-                }
-            }
-        }
-    }
-
-    /**
-     * Checks if line is complete or not. If complete, remove line
-     * @param line The row to check
-     * @return Whether or not this row is full
-     */
-    private boolean checkLine(int line) {
-        for(int col = 0; col < COLS; col++) {
-            if(!isOccupied(col, line)) {
-                return false;
-            }
-        }
-
-        // move every line, above complete line, one down
-        for(int row = line - 1; row >= 0; row--) {
-            for(int col = 0; col < COLS; col++) {
-                setTile(col, row + 1,  pieces[row][col]);
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Checks the board to see if any lines have been completed, and
-     * removes them from the game
-     * @return The number of lines that were cleared
-     */
-    public int checkLines() {
-        int completedLines = 0;
-        for(int row = 0; row < ROWS; row++) {
-            if(checkLine(row)) {
-                completedLines++;
-            }
+    // Makes the colors of the ghosts, the piece colors at GHOST_ALPHA over black
+    private static Color[] ghostColors() {
+        Color[] colors = new Color[Piece.count()];
+        for(int i = 0; i < colors.length; i++) {
+            Color base = Piece.get(i).getColorPiece();
+            colors[i] = new Color(base.getRed() * GHOST_ALPHA / 255, base.getGreen() * GHOST_ALPHA / 255,
+                    base.getBlue() * GHOST_ALPHA / 255);
         }
-        return completedLines;
+        return colors;
     }
 
     /**
@@ -182,32 +88,44 @@ public class GamePanel extends JPanel {
 
     @Override
     public void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
+        draw(g);
+        view.getPerformance().recordPaint(System.nanoTime() - paintStart, true);
+    }
 
+    /**
+     * Draws the board on top of the background. Also used to draw the panel
+     * into an image without showing it.
+     * @param g The graphics object, its origin is moved
+     */
+    public void draw(Graphics g) {
         //This helps simplify the positioning of things.
         g.translate(BORDER_WIDTH, BORDER_WIDTH);
 
 
         // Draw the board differently depending on the current game state.
-        if(tetris.isPaused()) {
+        if(view.isPaused()) {
             g.setFont(LARGE_FONT);
             g.setColor(Color.WHITE);
             String msg = "PAUSED";
             g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, CENTER_Y);
-        } else if(tetris.isNewGame() || tetris.isGameOver()) {
+        } else if(view.isNewGame() || view.isGameOver()) {
             g.setFont(LARGE_FONT);
             g.setColor(Color.WHITE);
 
-            String msg = tetris.isNewGame() ? "TETRIS" : "GAME OVER";
+            String msg = view.isNewGame() ? "TETRIS" : "GAME OVER";
             g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 150);
             g.setFont(SMALL_FONT);
-            msg = "Press Enter to Play" + (tetris.isNewGame() ? "" : " Again");
+            msg = "Press Enter to Play" + (view.isNewGame() ? "" : " Again");
             g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 300);
         } else {
+            Board board = view.getBoard();
+
             // Draw tiles
             for(int x = 0; x < COLS; x++) {
                 for(int y = HIDDEN_ROWS; y < ROWS; y++) {
-                    Piece tile = pieces[y][x];
+                    Piece tile = board.getTile(x, y);
                     if(tile != null) {
                         drawTile(tile.getColorPiece(), x * TILE_SIZE, (y - HIDDEN_ROWS) * TILE_SIZE, g);
                     }
@@ -215,27 +133,17 @@ public class GamePanel extends JPanel {
             }
 
 
-            // Draw the current piece
-            Piece piece = tetris.getPieceType();
-            int pieceCol = tetris.getPieceCol();
-            int pieceRow = tetris.getPieceRow();
-            int rotation = tetris.getPieceRotation();
+            // The current piece
+            Piece piece = view.getPieceType();
+            int pieceCol = view.getPieceCol();
+            int pieceRow = view.getPieceRow();
+            int rotation = view.getPieceRotation();
 
-            // Draw the piece onto the board.
-            for(int col = 0; col < piece.getDimension(); col++) {
-                for(int row = 0; row < piece.getDimension(); row++) {
-                    if(pieceRow + row >= 2 && piece.isTile(col, row, rotation)) {
-                        drawTile(piece.getColorPiece(), (pieceCol + col) * TILE_SIZE, (pieceRow + row - HIDDEN_ROWS) * TILE_SIZE, g);
-                    }
-                }
-            }
-
-            // Draw the ghost (semi-transparent piece that shows where the current piece will land)
-            Color base = piece.getColorPiece();
-            base = new Color(base.getRed(), base.getGreen(), base.getBlue(), 20);
+            // Draw the ghost (a dark copy of the piece that shows where it will land), the piece is drawn over it
+            Color base = GHOST_COLORS[piece.getIndex()];
             for(int lowest = pieceRow; lowest < ROWS; lowest++) {
                 //If no collision is detected, try the next row.
-                if(isValidAndEmpty(piece, pieceCol, lowest, rotation)) {
+                if(board.isValidAndEmpty(piece, pieceCol, lowest, rotation)) {
                     continue;
                 }
 
@@ -254,6 +162,15 @@ public class GamePanel extends JPanel {
                 break;
             }
 
+            // Draw the piece onto the board.
+            for(int col = 0; col < piece.getDimension(); col++) {
+                for(int row = 0; row < piece.getDimension(); row++) {
+                    if(pieceRow + row >= 2 && piece.isTile(col, row, rotation)) {
+                        drawTile(piece.getColorPiece(), (pieceCol + col) * TILE_SIZE, (pieceRow + row - HIDDEN_ROWS) * TILE_SIZE, g);
+                    }
+                }
+            }
+
             // Draw the background grid above the pieces.
             g.setColor(Color.DARK_GRAY);
             for(int x = 0; x < COLS; x++) {
@@ -269,5 +186,25 @@ public class GamePanel extends JPanel {
          */
         g.setColor(Color.WHITE);
         g.drawRect(0, 0, TILE_SIZE * COLS, TILE_SIZE * VISIBLE_ROWS);
+
+        PerformanceStats performance = view.getPerformance();
+        if(performance.isVisible()) {
+            drawPerformance(performance.getLines(), g);
+        }
+    }
+
+    /**
+     * Draws the performance overlay in the top left corner
+     * @param lines The lines of the overlay
+     * @param g The graphics object
+     */
+    private void drawPerformance(String[] lines, Graphics g) {
+        g.setColor(HUD_BACKGROUND);
+        g.fillRect(0, 0, COLS * TILE_SIZE, lines.length * HUD_LINE_HEIGHT + 6);
+        g.setFont(HUD_FONT);
+        g.setColor(Color.GREEN);
+        for(int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 4, (i + 1) * HUD_LINE_HEIGHT);
+        }
     }
 }
@@ -2,7 +2,7 @@ package Panels;
 
 import Pieces.Piece;
 import Panels.GamePanel;
-import Game.Tetris;
+import Game.GameView;
 
 import javax.swing.*;
 import java.awt.*;
@@ -19,6 +19,8 @@ public class SidePanel extends JPanel {
     private static final Font TEXT_LARGE_FONT = new Font("Tahoma", Font.BOLD, 13);
     //offset between each string (number of pixels)
     private static final int TEXT_OFFSET = 25;
+    //offset between the lines of the controls (number of pixels)
+    private static final int CONTROLS_OFFSET = 20;
     //draw color: text and drawing colors
     private static final Color DRAW_COLOR = new Color(128, 192, 128); //greenish
     //nr pixels for small inset
@@ -43,15 +45,18 @@ public class SidePanel extends JPanel {
     //y coordinate of controls category
     private static final int CONTROLS_COORDINATE_Y = 300;
 
-    private Tetris tetris;
+    // Width of the panel
+    public static final int PANEL_WIDTH = 200;
+
+    private GameView view;
 
     /**
      * Creates new side panel and sets it's dimension and background color
-     * @param tetris The tetris game to use
+     * @param view The game to draw
      */
-    public SidePanel(Tetris tetris) {
-        this.tetris = tetris;
-        setPreferredSize(new Dimension(200, GamePanel.PANEL_HEIGHT));
+    public SidePanel(GameView view) {
+        this.view = view;
+        setPreferredSize(new Dimension(PANEL_WIDTH, GamePanel.PANEL_HEIGHT));
         setBackground(Color.BLACK);
     }
 
@@ -73,40 +78,56 @@ public class SidePanel extends JPanel {
      * @param g The graphics object
      */
     public void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
+        draw(g);
+        view.getPerformance().recordPaint(System.nanoTime() - paintStart, false);
+    }
 
+    /**
+     * Draws the stats, the controls and the next piece on top of the background.
+     * Also used to draw the panel into an image without showing it.
+     * @param g The graphics object
+     */
+    public void draw(Graphics g) {
         // Set color for text/drawing
         g.setColor(DRAW_COLOR);
 
         // Current y coordinate of string
         int offset;
 
-        // Draw Stats
+        // Draw the headings first and then the rest, every change of font makes Java2D look up the font again
         g.setFont(TEXT_LARGE_FONT);
-        g.drawString("Stats", SMALL_INSET, offset = STATS_COORDINATE_Y);
+        g.drawString("Stats", SMALL_INSET, STATS_COORDINATE_Y);
+        g.drawString("Controls", SMALL_INSET, CONTROLS_COORDINATE_Y);
+        g.drawString("Next Piece:", SMALL_INSET, 70);
+
+        // Draw Stats
         g.setFont(TEXT_SMALL_FONT);
-        g.drawString("Level: " + tetris.getLevel(), 30, offset += TEXT_OFFSET);
-        g.drawString("Score: " + tetris.getScore(), 30, offset += TEXT_OFFSET);
+        offset = STATS_COORDINATE_Y;
+        g.drawString("Level: " + view.getLevel(), 30, offset += TEXT_OFFSET);
+        g.drawString("Score: " + view.getScore(), 30, offset += TEXT_OFFSET);
+        g.drawString("Best: " + view.getBestScore(), 30, offset += TEXT_OFFSET);
 
         // Draw Controls
-        g.setFont(TEXT_LARGE_FONT);
-        g.drawString("Controls", SMALL_INSET, offset = CONTROLS_COORDINATE_Y);
-        g.setFont(TEXT_SMALL_FONT);
-        g.drawString("A - Move Left", LARGE_INSET, offset += TEXT_OFFSET);
-        g.drawString("D - Move Right", LARGE_INSET, offset += TEXT_OFFSET);
-        g.drawString("Q - Rotate Anticlockwise", LARGE_INSET, offset += TEXT_OFFSET);
-        g.drawString("E - Rotate Clockwise", LARGE_INSET, offset += TEXT_OFFSET);
-        g.drawString("S - Drop", LARGE_INSET, offset += TEXT_OFFSET);
-        g.drawString("P - Pause Game", LARGE_INSET, offset += TEXT_OFFSET);
+        offset = CONTROLS_COORDINATE_Y;
+        g.drawString("A - Move Left", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("D - Move Right", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("Q - Rotate Anticlockwise", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("E - Rotate Clockwise", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("S - Drop", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("P - Pause Game", LARGE_INSET, offset += CONTROLS_OFFSET);
+        g.drawString("F3 - Performance", LARGE_INSET, offset += CONTROLS_OFFSET);
+        if(view.isPractice()) {
+            g.drawString("Z - Undo Piece", LARGE_INSET, offset += CONTROLS_OFFSET);
+        }
 
         // Draw Preview Window
-        g.setFont(TEXT_LARGE_FONT);
-        g.drawString("Next Piece:", SMALL_INSET, 70);
         g.drawRect(PREVIEW_CENTER_X - PREVIEW_WINDOW_SIZE, PREVIEW_CENTER_Y - PREVIEW_WINDOW_SIZE, PREVIEW_WINDOW_SIZE * 2, PREVIEW_WINDOW_SIZE * 2);
 
         // Draw Preview of next piece
-        Piece piece = tetris.getNextPieceType();
-        if(!tetris.isGameOver() && piece != null) {
+        Piece piece = view.getNextPieceType();
+        if(!view.isGameOver() && piece != null) {
             // Get size properties
             int col = piece.getCol();
             int row = piece.getRow();
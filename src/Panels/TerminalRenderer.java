@@ -0,0 +1,461 @@
+package Panels;
+
+import Game.Board;
+import Game.GameView;
+import Game.PerformanceStats;
+import Pieces.Piece;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Draws a game as text with ANSI escape sequences, the same board and stats as
+ * {@link GamePanel} and {@link SidePanel}, so the game can be played in a
+ * terminal, also over SSH. Every frame is first drawn into a screen of cells;
+ * only the cells that differ from the screen sent last time are sent, each run
+ * of changed cells after one cursor move, with the colors only set when they
+ * change. A frame is sent with a single write, and a frame where nothing
+ * changed sends nothing at all.
+ *
+ * A cell is one long: the character in the low 16 bits, the text color in the
+ * next 24 bits and the background color in the top 24 bits, so comparing two
+ * cells is comparing two longs.
+ */
+
+public class TerminalRenderer {
+    // Number of visible rows, the top rows of the board are hidden like in the game panel
+    private static final int VISIBLE_ROWS = 20;
+    // Number of hidden rows
+    private static final int HIDDEN_ROWS = Board.ROWS - VISIBLE_ROWS;
+    // Characters per tile, two make a tile about square
+    private static final int TILE_WIDTH = 2;
+    // Column of the stats, right of the board
+    private static final int SIDE_COL = Board.COLS * TILE_WIDTH + 4;
+    // Size of the screen in characters
+    public static final int SCREEN_COLS = SIDE_COL + 34;
+    public static final int SCREEN_ROWS = VISIBLE_ROWS + 2;
+    // Size of the next piece preview in tiles
+    private static final int PREVIEW_TILE_COUNT = 5;
+    // Row of the controls, the performance overlay takes their place when shown
+    private static final int CONTROLS_ROW = 14;
+    // Unchanged cells that are sent again rather than moving the cursor over them, a move takes at least 6 bytes
+    private static final int MAX_SKIP = 4;
+
+    // Colors of the screen
+    private static final int BACKGROUND = 0x000000;
+    private static final int OUTLINE = 0xffffff;
+    private static final int GRID = 0x404040;
+    private static final int MESSAGE = 0xffffff;
+    // Text color of the stats, the same greenish as the side panel
+    private static final int TEXT = 0x80c080;
+    private static final int HUD = 0x00ff00;
+
+    // The empty cell, also what the screen holds after it was cleared
+    private static final long BLANK = cell(' ', TEXT, BACKGROUND);
+
+    private final OutputStream out;
+    // If colors are sent as one of the 256 colors of older terminals instead of 24 bit colors
+    private final boolean palette256;
+
+    // The screen being drawn and the screen the terminal shows
+    private final long[] front = new long[SCREEN_ROWS * SCREEN_COLS];
+    private final long[] back = new long[SCREEN_ROWS * SCREEN_COLS];
+    // If the terminal has to be cleared and drawn from scratch
+    private boolean invalid = true;
+    // If the controls are listed
+    private boolean controlsVisible = true;
+    // Lines shown instead of the controls, for example what a bot is doing
+    private String[] status = new String[0];
+
+    // The bytes of a frame, grown as needed and reused
+    private byte[] buffer = new byte[4096];
+    private int length;
+    // Colors the terminal draws with, -1 if unknown
+    private int penText;
+    private int penBackground;
+
+    // Colors of the pieces by index
+    private final int[] colors = new int[Piece.count()];
+
+    /**
+     * Creates a new renderer that sends 24 bit colors, or 256 colors with -Dtetris.term.colors=256
+     * @param out Where the frames are written to, usually the terminal
+     */
+    public TerminalRenderer(OutputStream out) {
+        this(out, "256".equals(System.getProperty("tetris.term.colors")));
+    }
+
+    /**
+     * Creates a new renderer
+     * @param out Where the frames are written to, usually the terminal
+     * @param palette256 If colors are sent as one of 256 colors, for terminals without 24 bit colors
+     */
+    public TerminalRenderer(OutputStream out, boolean palette256) {
+        this.out = out;
+        this.palette256 = palette256;
+        for(int i = 0; i < colors.length; i++) {
+            colors[i] = Piece.get(i).getColorPiece().getRGB() & 0xffffff;
+        }
+    }
+
+    // Packs a character and its colors into a cell
+    private static long cell(char ch, int text, int background) {
+        return (long)background << 40 | (long)text << 16 | ch;
+    }
+
+    /**
+     * Shows or hides the list of keys, hidden when nobody plays with the keyboard
+     * @param visible If the controls are listed
+     */
+    public void setControlsVisible(boolean visible) {
+        this.controlsVisible = visible;
+    }
+
+    /**
+     * Sets the lines shown where the controls are listed when they are hidden
+     * @param lines The lines, none to show nothing
+     */
+    public void setStatus(String... lines) {
+        this.status = lines;
+    }
+
+    /**
+     * Clears the terminal and draws everything on the next frame, for example
+     * after something else wrote to the terminal
+     */
+    public void invalidate() {
+        invalid = true;
+    }
+
+    /**
+     * Draws a frame and sends the cells that changed since the last frame
+     * @param view The game to draw
+     * @return The number of bytes sent, 0 if nothing changed
+     */
+    public synchronized int render(GameView view) throws IOException {
+        long start = System.nanoTime();
+        compose(view);
+        int sent = flush();
+        view.getPerformance().recordPaint(System.nanoTime() - start, sent > 0);
+        return sent;
+    }
+
+    /**
+     * Resets the colors, shows the cursor again and moves it below the screen
+     */
+    public synchronized void close() throws IOException {
+        length = 0;
+        append("\u001b[0m\u001b[?25h");
+        moveTo(SCREEN_ROWS, 0);
+        append("\r\n");
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    // Draws the game into the front screen
+    private void compose(GameView view) {
+        Arrays.fill(front, BLANK);
+
+        // Outline of the board
+        int right = Board.COLS * TILE_WIDTH + 1;
+        put(0, 0, '+', OUTLINE, BACKGROUND);
+        put(0, right, '+', OUTLINE, BACKGROUND);
+        put(SCREEN_ROWS - 1, 0, '+', OUTLINE, BACKGROUND);
+        put(SCREEN_ROWS - 1, right, '+', OUTLINE, BACKGROUND);
+        for(int x = 1; x < right; x++) {
+            put(0, x, '-', OUTLINE, BACKGROUND);
+            put(SCREEN_ROWS - 1, x, '-', OUTLINE, BACKGROUND);
+        }
+        for(int y = 1; y <= VISIBLE_ROWS; y++) {
+            put(y, 0, '|', OUTLINE, BACKGROUND);
+            put(y, right, '|', OUTLINE, BACKGROUND);
+        }
+
+        // Draw the board differently depending on the current game state
+        if(view.isPaused()) {
+            center(VISIBLE_ROWS / 2, "PAUSED");
+        } else if(view.isNewGame() || view.isGameOver()) {
+            center(6, view.isNewGame() ? "TETRIS" : "GAME OVER");
+            center(12, view.isNewGame() ? "Press Enter to Play" : "Enter to Play Again");
+        } else {
+            drawBoard(view);
+        }
+
+        drawSide(view);
+    }
+
+    // Draws the tiles, the ghost and the current piece
+    private void drawBoard(GameView view) {
+        Board board = view.getBoard();
+        for(int y = 0; y < VISIBLE_ROWS; y++) {
+            int mask = board.getRowMask(y + HIDDEN_ROWS);
+            for(int x = 0; x < Board.COLS; x++) {
+                if((mask >>> x & 1) != 0) {
+                    tile(y, x, colors[board.getTile(x, y + HIDDEN_ROWS).getIndex()]);
+                } else {
+                    // Empty tiles show a dot, like the grid of the game panel
+                    put(y + 1, x * TILE_WIDTH + 2, '.', GRID, BACKGROUND);
+                }
+            }
+        }
+
+        Piece piece = view.getPieceType();
+        int pieceCol = view.getPieceCol();
+        int pieceRow = view.getPieceRow();
+        int rotation = view.getPieceRotation();
+        int color = colors[piece.getIndex()];
+
+        // The ghost first, the piece covers it where they overlap
+        int lowest = pieceRow;
+        while(board.isValidAndEmpty(piece, pieceCol, lowest + 1, rotation)) {
+            lowest++;
+        }
+        for(int col = 0; col < piece.getDimension(); col++) {
+            for(int row = 0; row < piece.getDimension(); row++) {
+                int y = lowest + row - HIDDEN_ROWS;
+                if(y >= 0 && piece.isTile(col, row, rotation)) {
+                    int x = (pieceCol + col) * TILE_WIDTH + 1;
+                    put(y + 1, x, '[', color, BACKGROUND);
+                    put(y + 1, x + 1, ']', color, BACKGROUND);
+                }
+            }
+        }
+        for(int col = 0; col < piece.getDimension(); col++) {
+            for(int row = 0; row < piece.getDimension(); row++) {
+                int y = pieceRow + row - HIDDEN_ROWS;
+                if(y >= 0 && piece.isTile(col, row, rotation)) {
+                    tile(y, pieceCol + col, color);
+                }
+            }
+        }
+    }
+
+    // Draws the preview, the stats and the controls or the performance overlay
+    private void drawSide(GameView view) {
+        int row = 1;
+        text(row, SIDE_COL, "Next Piece:", TEXT);
+
+        Piece piece = view.getNextPieceType();
+        if(!view.isGameOver() && piece != null) {
+            int top = piece.getAboveEmpty(0);
+            int left = piece.getLeftEmpty(0);
+            // Center the piece in the preview area
+            int startRow = row + 1 + (PREVIEW_TILE_COUNT - piece.getRow()) / 2;
+            int startCol = SIDE_COL + 2 + (PREVIEW_TILE_COUNT - piece.getCol()) * TILE_WIDTH / 2;
+            int color = colors[piece.getIndex()];
+            for(int i = 0; i < piece.getDimension(); i++) {
+                for(int j = 0; j < piece.getDimension(); j++) {
+                    if(piece.isTile(i, j, 0)) {
+                        int x = startCol + (i - left) * TILE_WIDTH;
+                        put(startRow + j - top, x, ' ', color, color);
+                        put(startRow + j - top, x + 1, ' ', color, color);
+                    }
+                }
+            }
+        }
+
+        row += PREVIEW_TILE_COUNT + 2;
+        text(row, SIDE_COL, "Stats", TEXT);
+        number(row + 1, text(row + 1, SIDE_COL + 2, "Level: ", TEXT), view.getLevel());
+        number(row + 2, text(row + 2, SIDE_COL + 2, "Score: ", TEXT), view.getScore());
+        number(row + 3, text(row + 3, SIDE_COL + 2, "Best: ", TEXT), view.getBestScore());
+
+        row = CONTROLS_ROW;
+        PerformanceStats performance = view.getPerformance();
+        if(performance.isVisible()) {
+            for(String line : performance.getLines()) {
+                text(row++, SIDE_COL, line, HUD);
+            }
+        } else if(controlsVisible) {
+            text(row++, SIDE_COL, "Controls", TEXT);
+            text(row++, SIDE_COL + 2, "A - Move Left", TEXT);
+            text(row++, SIDE_COL + 2, "D - Move Right", TEXT);
+            text(row++, SIDE_COL + 2, "Q - Rotate Anticlockwise", TEXT);
+            text(row++, SIDE_COL + 2, "E - Rotate Clockwise", TEXT);
+            text(row++, SIDE_COL + 2, "S - Drop", TEXT);
+            text(row++, SIDE_COL + 2, "P - Pause Game", TEXT);
+            text(row, SIDE_COL + 2, "F - Performance, X - Quit", TEXT);
+        } else {
+            for(String line : status) {
+                text(row++, SIDE_COL, line, TEXT);
+            }
+        }
+    }
+
+    // Fills a tile of the board, row and column in tiles of the visible board
+    private void tile(int y, int x, int color) {
+        put(y + 1, x * TILE_WIDTH + 1, ' ', color, color);
+        put(y + 1, x * TILE_WIDTH + 2, ' ', color, color);
+    }
+
+    // Writes a message in the middle of a row of the board
+    private void center(int y, String message) {
+        text(y + 1, 1 + (Board.COLS * TILE_WIDTH - message.length()) / 2, message, MESSAGE);
+    }
+
+    // Writes text into the front screen, cut off at the edge, and gets the column after it
+    private int text(int row, int col, String text, int color) {
+        for(int i = 0; i < text.length(); i++) {
+            put(row, col + i, text.charAt(i), color, BACKGROUND);
+        }
+        return col + text.length();
+    }
+
+    // Writes a number into the front screen without making a string of it
+    private void number(int row, int col, int value) {
+        if(value < 0) {
+            put(row, col++, '-', TEXT, BACKGROUND);
+            value = -value;
+        }
+        int digits = 1;
+        for(int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for(int i = digits - 1; i >= 0; i--) {
+            put(row, col + i, (char)('0' + value % 10), TEXT, BACKGROUND);
+            value /= 10;
+        }
+    }
+
+    // Sets a cell of the front screen, cells off the screen are ignored
+    private void put(int row, int col, char ch, int text, int background) {
+        if(row >= 0 && row < SCREEN_ROWS && col >= 0 && col < SCREEN_COLS) {
+            front[row * SCREEN_COLS + col] = cell(ch, text, background);
+        }
+    }
+
+    // Sends the cells of the front screen that differ from the back screen, and gets the number of bytes sent
+    private int flush() throws IOException {
+        length = 0;
+        if(invalid) {
+            // Hide the cursor, clear to the background color and start from a blank screen
+            penText = -1;
+            penBackground = -1;
+            append("\u001b[?25l\u001b[0m");
+            setBackground(BACKGROUND);
+            append("\u001b[H\u001b[2J");
+            Arrays.fill(back, BLANK);
+            invalid = false;
+        }
+
+        // Where the cursor is, -1 if it has to be moved before the next cell
+        int cursor = -1;
+        for(int row = 0; row < SCREEN_ROWS; row++) {
+            int rowStart = row * SCREEN_COLS;
+            int rowEnd = rowStart + SCREEN_COLS;
+            for(int i = rowStart; i < rowEnd; i++) {
+                if(front[i] == back[i]) {
+                    continue;
+                }
+                // A few unchanged cells in the pen colors cost less to send again than a cursor move
+                if(cursor < 0 || cursor > i || i - cursor > MAX_SKIP || !canRepeat(cursor, i)) {
+                    moveTo(row, i - rowStart);
+                } else {
+                    for(int j = cursor; j < i; j++) {
+                        send(back[j]);
+                    }
+                }
+                send(front[i]);
+                back[i] = front[i];
+                cursor = i + 1;
+            }
+            // The cursor is moved again on the next row
+            cursor = -1;
+        }
+
+        if(length > 0) {
+            out.write(buffer, 0, length);
+            out.flush();
+        }
+        return length;
+    }
+
+    // Checks to see if the unchanged cells before a changed cell can be sent without changing colors
+    private boolean canRepeat(int from, int to) {
+        for(int j = from; j < to; j++) {
+            long cell = back[j];
+            if((int)(cell >>> 40) != penBackground || (char)cell != ' ' && (int)(cell >>> 16 & 0xffffff) != penText) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Appends a cell, changing the colors first if needed
+    private void send(long cell) {
+        char ch = (char)cell;
+        int background = (int)(cell >>> 40);
+        if(background != penBackground) {
+            setBackground(background);
+        }
+        // The text color doesn't matter for a space
+        int text = (int)(cell >>> 16 & 0xffffff);
+        if(ch != ' ' && text != penText) {
+            penText = text;
+            append("\u001b[38;");
+            appendColor(text);
+            append('m');
+        }
+        append(ch);
+    }
+
+    private void setBackground(int background) {
+        penBackground = background;
+        append("\u001b[48;");
+        appendColor(background);
+        append('m');
+    }
+
+    // Appends the part of a color sequence after 38; or 48;
+    private void appendColor(int rgb) {
+        int r = rgb >>> 16 & 0xff;
+        int g = rgb >>> 8 & 0xff;
+        int b = rgb & 0xff;
+        if(palette256) {
+            // The nearest color of the 6x6x6 cube
+            append("5;");
+            appendNumber(16 + 36 * ((r * 5 + 127) / 255) + 6 * ((g * 5 + 127) / 255) + (b * 5 + 127) / 255);
+        } else {
+            append("2;");
+            appendNumber(r);
+            append(';');
+            appendNumber(g);
+            append(';');
+            appendNumber(b);
+        }
+    }
+
+    // Appends a cursor move, rows and columns counted from 0
+    private void moveTo(int row, int col) {
+        append("\u001b[");
+        appendNumber(row + 1);
+        append(';');
+        appendNumber(col + 1);
+        append('H');
+    }
+
+    private void appendNumber(int value) {
+        if(value >= 100) {
+            append((char)('0' + value / 100));
+        }
+        if(value >= 10) {
+            append((char)('0' + value / 10 % 10));
+        }
+        append((char)('0' + value % 10));
+    }
+
+    private void append(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    // Appends one character, everything on the screen is ASCII
+    private void append(char ch) {
+        if(length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte)ch;
+    }
+}
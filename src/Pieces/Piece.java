@@ -1,193 +1,31 @@
 package Pieces;
 
-import java.awt.Color; 
+import java.awt.Color;
+import java.io.IOException;
 
 /**
- * Each piece is made of tiles in a specific formation
+ * Each piece is made of tiles in a specific formation.
+ *
+ * The pieces are loaded from a piece set when the class is first used. The set
+ * is chosen with the tetris.pieces property: either the name of a set that comes
+ * with the game ("tetrominoes", the default, or "pentominoes") or the path of a
+ * file in the same format. Only the spawn rotation is written down, the other
+ * three are made by turning it clockwise. Every rotation is turned into bit
+ * masks and the empty space around the tiles, so checking a position costs
+ * one AND per row.
  */
 
-public enum Piece {
-    /**
-     * Piece I
-     */
-    TypeI(new Color(35, 220, 220), 4, 4, 1, new boolean[][] {
-            {
-                    false,	false,	false,	false,
-                    true,	true,	true,	true,
-                    false,	false,	false,	false,
-                    false,	false,	false,	false,
-            },
-            {
-                    false,	false,	true,	false,
-                    false,	false,	true,	false,
-                    false,	false,	true,	false,
-                    false,	false,	true,	false,
-            },
-            {
-                    false,	false,	false,	false,
-                    false,	false,	false,	false,
-                    true,	true,	true,	true,
-                    false,	false,	false,	false,
-            },
-            {
-                    false,	true,	false,	false,
-                    false,	true,	false,	false,
-                    false,	true,	false,	false,
-                    false,	true,	false,	false,
-            }
-    }),
-
-    /**
-     * Piece J
-     */
-    TypeJ(new Color(35, 35, 220), 3, 3, 2, new boolean[][] {
-            {
-                    true,	false,	false,
-                    true,	true,	true,
-                    false,	false,	false,
-            },
-            {
-                    false,	true,	true,
-                    false,	true,	false,
-                    false,	true,	false,
-            },
-            {
-                    false,	false,	false,
-                    true,	true,	true,
-                    false,	false,	true,
-            },
-            {
-                    false,	true,	false,
-                    false,	true,	false,
-                    true,	true,	false,
-            }
-    }),
-
-    /**
-     * Piece L
-     */
-    TypeL(new Color(220, 127, 35), 3, 3, 2, new boolean[][] {
-            {
-                    false,	false,	true,
-                    true,	true,	true,
-                    false,	false,	false,
-            },
-            {
-                    false,	true,	false,
-                    false,	true,	false,
-                    false,	true,	true,
-            },
-            {
-                    false,	false,	false,
-                    true,	true,	true,
-                    true,	false,	false,
-            },
-            {
-                    true,	true,	false,
-                    false,	true,	false,
-                    false,	true,	false,
-            }
-    }),
-
-    /**
-     * Piece O
-     */
-    TypeO(new Color(220, 220, 35), 2, 2, 2, new boolean[][] {
-            {
-                    true,	true,
-                    true,	true,
-            },
-            {
-                    true,	true,
-                    true,	true,
-            },
-            {
-                    true,	true,
-                    true,	true,
-            },
-            {
-                    true,	true,
-                    true,	true,
-            }
-    }),
-
-    /**
-     * Piece S
-     */
-    TypeS(new Color(35, 220, 35), 3, 3, 2, new boolean[][] {
-            {
-                    false,	true,	true,
-                    true,	true,	false,
-                    false,	false,	false,
-            },
-            {
-                    false,	true,	false,
-                    false,	true,	true,
-                    false,	false,	true,
-            },
-            {
-                    false,	false,	false,
-                    false,	true,	true,
-                    true,	true,	false,
-            },
-            {
-                    true,	false,	false,
-                    true,	true,	false,
-                    false,	true,	false,
-            }
-    }),
+public final class Piece {
+    // Largest size of the tile matrix of a piece
+    public static final int MAX_DIMENSION = 5;
+    // Number of rotations of every piece
+    public static final int ROTATIONS = 4;
 
-    /**
-     * Piece T
-     */
-    TypeT(new Color(128, 35, 128), 3, 3, 2, new boolean[][] {
-            {
-                    false,	true,	false,
-                    true,	true,	true,
-                    false,	false,	false,
-            },
-            {
-                    false,	true,	false,
-                    false,	true,	true,
-                    false,	true,	false,
-            },
-            {
-                    false,	false,	false,
-                    true,	true,	true,
-                    false,	true,	false,
-            },
-            {
-                    false,	true,	false,
-                    true,	true,	false,
-                    false,	true,	false,
-            }
-    }),
+    // Pieces of the loaded set
+    private static final Piece[] PIECES = loadPieces(System.getProperty("tetris.pieces", "tetrominoes"));
 
-    /**
-     * Piece Z
-     */
-    TypeZ(new Color(220, 35, 35), 3, 3, 2, new boolean[][] {
-            {
-                    true,	true,	false,
-                    false,	true,	true,
-                    false,	false,	false,
-            },
-            {
-                    false,	false,	true,
-                    false,	true,	true,
-                    false,	true,	false,
-            },
-            {
-                    false,	false,	false,
-                    true,	true,	false,
-                    false,	true,	true,
-            },
-            {
-                    false,	true,	false,
-                    true,	true,	false,
-                    true,	false,	false,
-            }
-    });
+    private String name;
+    private int index;
 
     private Color colorPiece;
     private int spawnRow;
@@ -200,26 +38,115 @@ public enum Piece {
     //nr of columns that have true in tiles matrix of piece (when rotation = 0)
     private int col;
 
-    //tile matrix for this piece
-    private boolean[][] tiles;
+    //tiles of each rotation, bit y * dimension + x is set for a tile
+    private int[] tiles;
+    //tiles of each row of each rotation, bit x is set for a tile
+    private int[][] rowMasks;
+
+    //number of empty columns/rows around the tiles for each rotation
+    private int[] leftEmpty;
+    private int[] rightEmpty;
+    private int[] aboveEmpty;
+    private int[] belowEmpty;
 
     /**
      * Creates a new piece
+     * @param name The name of the piece
+     * @param index The position of the piece in its set
      * @param color The color of the piece
      * @param dimension The dimension of the piece
-     * @param cols The nr of columns that have true in tiles matrix of piece (when rotation = 0)
-     * @param rows The nr of rows that have true in tiles matrix of piece (when rotation = 0)
-     * @param tiles The tile matrix of piece
+     * @param spawnTiles The tile matrix of the spawn rotation, row by row
      */
-    private Piece(Color color, int dimension, int cols, int rows, boolean[][] tiles) {
+    Piece(String name, int index, Color color, int dimension, boolean[] spawnTiles) {
+        this.name = name;
+        this.index = index;
         this.colorPiece = color;
         this.dimension = dimension;
-        this.tiles = tiles;
-        this.col = cols;
-        this.row = rows;
 
         this.spawnCol = 5 - (dimension >> 1);
         this.spawnRow = 0;
+
+        // Turn the matrix clockwise for the other rotations: (x, y) moves to (dimension - 1 - y, x)
+        this.tiles = new int[ROTATIONS];
+        this.rowMasks = new int[ROTATIONS][dimension];
+        boolean[] matrix = spawnTiles.clone();
+        for(int rotation = 0; rotation < ROTATIONS; rotation++) {
+            boolean[] turned = new boolean[dimension * dimension];
+            for(int y = 0; y < dimension; y++) {
+                for(int x = 0; x < dimension; x++) {
+                    if(matrix[y * dimension + x]) {
+                        tiles[rotation] |= 1 << (y * dimension + x);
+                        rowMasks[rotation][y] |= 1 << x;
+                        turned[x * dimension + (dimension - 1 - y)] = true;
+                    }
+                }
+            }
+            matrix = turned;
+        }
+
+        // The empty space around the tiles is checked on every move, so calculate it once
+        this.leftEmpty = new int[ROTATIONS];
+        this.rightEmpty = new int[ROTATIONS];
+        this.aboveEmpty = new int[ROTATIONS];
+        this.belowEmpty = new int[ROTATIONS];
+        for(int rotation = 0; rotation < ROTATIONS; rotation++) {
+            leftEmpty[rotation] = findLeftEmpty(rotation);
+            rightEmpty[rotation] = findRightEmpty(rotation);
+            aboveEmpty[rotation] = findAboveEmpty(rotation);
+            belowEmpty[rotation] = findBelowEmpty(rotation);
+        }
+        this.col = dimension - rightEmpty[0] - leftEmpty[0] + 1;
+        this.row = dimension - belowEmpty[0] - aboveEmpty[0] + 1;
+    }
+
+    // Loads the piece set, the game can't run without one
+    private static Piece[] loadPieces(String name) {
+        try {
+            return PieceSet.load(name);
+        } catch(IOException e) {
+            throw new IllegalStateException("Could not load piece set " + name, e);
+        }
+    }
+
+    /**
+     * Gets the pieces of the loaded set
+     * @return A new array with the pieces, in the order of the set
+     */
+    public static Piece[] values() {
+        return PIECES.clone();
+    }
+
+    /**
+     * Gets a piece of the loaded set
+     * @param index The position of the piece in the set
+     * @return The piece
+     */
+    public static Piece get(int index) {
+        return PIECES[index];
+    }
+
+    /**
+     * Gets the number of pieces in the loaded set
+     * @return The number of pieces
+     */
+    public static int count() {
+        return PIECES.length;
+    }
+
+    /**
+     * Gets the name of the piece
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the position of the piece in its set
+     * @return index
+     */
+    public int getIndex() {
+        return index;
     }
 
     /**
@@ -278,9 +205,27 @@ public enum Piece {
      * @return true if occupied, false if not
      */
     public boolean isTile(int x, int y, int rotation) {
-        return tiles[rotation][y * dimension + x];
+        return (tiles[rotation] >>> (y * dimension + x) & 1) != 0;
     }
 
+    /**
+     * Gets the tiles of a rotation
+     * @param rotation The rotation
+     * @return Bit mask where bit y * dimension + x is set for a tile
+     */
+    public int getTileMask(int rotation) {
+        return tiles[rotation];
+    }
+
+    /**
+     * Gets the tiles of one row of the matrix
+     * @param y The row of the matrix
+     * @param rotation The rotation of the piece
+     * @return Bit mask where bit x is set if (x, y) is a tile
+     */
+    public int getRowMask(int y, int rotation) {
+        return rowMasks[rotation][y];
+    }
 
     /**
      * Returns the number of empty columns on the left of the array of tiles
@@ -288,6 +233,10 @@ public enum Piece {
      * @return Number of empty columns on the left
      */
     public int getLeftEmpty(int rotation) {
+        return leftEmpty[rotation];
+    }
+
+    private int findLeftEmpty(int rotation) {
         for (int x = 0; x < dimension; x++) {
             for (int y = 0; y < dimension; y++) {
                 if (isTile(x, y, rotation))
@@ -303,6 +252,10 @@ public enum Piece {
      * @return Number of empty columns on the right
      */
     public int getRightEmpty(int rotation) {
+        return rightEmpty[rotation];
+    }
+
+    private int findRightEmpty(int rotation) {
         for (int x = dimension - 1; x >= 0; x--) {
             for (int y = 0; y < dimension; y++) {
                 if(isTile(x, y, rotation))
@@ -318,6 +271,10 @@ public enum Piece {
      * @return Number of empty rows above
      */
     public int getAboveEmpty(int rotation) {
+        return aboveEmpty[rotation];
+    }
+
+    private int findAboveEmpty(int rotation) {
         for (int y = 0; y < dimension; y++) {
             for (int x = 0; x < dimension; x++) {
                 if(isTile(x, y, rotation))
@@ -333,6 +290,10 @@ public enum Piece {
      * @return Number of empty rows below
      */
     public int getBelowEmpty(int rotation) {
+        return belowEmpty[rotation];
+    }
+
+    private int findBelowEmpty(int rotation) {
         for (int y = dimension - 1; y >= 0; y--) {
             for (int x = 0; x < dimension; x++) {
                 if(isTile(x, y, rotation))
@@ -341,4 +302,9 @@ public enum Piece {
         }
         return -1;
     }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
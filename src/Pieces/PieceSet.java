@@ -0,0 +1,136 @@
+package Pieces;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a set of pieces from a text file. See tetrominoes.txt for the format.
+ */
+
+final class PieceSet {
+    // Character of a tile in a matrix
+    private static final char TILE = '#';
+    // Character of an empty cell in a matrix
+    private static final char EMPTY = '.';
+    // Start of a comment line
+    private static final String COMMENT = "//";
+
+    private PieceSet() {
+    }
+
+    /**
+     * Loads a piece set
+     * @param name The name of a set next to this class (like "tetrominoes"), or the path of a file
+     * @return The pieces of the set, in the order of the file
+     */
+    static Piece[] load(String name) throws IOException {
+        InputStream in = PieceSet.class.getResourceAsStream(name + ".txt");
+        if(in == null) {
+            in = Files.newInputStream(Paths.get(name));
+        }
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parse(reader, name);
+        }
+    }
+
+    /**
+     * Parses a piece set
+     * @param reader The text of the set
+     * @param source The name of the set, used in error messages
+     * @return The pieces of the set
+     */
+    static Piece[] parse(BufferedReader reader, String source) throws IOException {
+        List<Piece> pieces = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        String header = null;
+        int headerLine = 0;
+        List<String> rows = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            String text = line == null ? "" : line.trim();
+            if(text.startsWith(COMMENT)) {
+                continue;
+            }
+
+            // A blank line or the end of the file finishes the current piece
+            if(text.isEmpty()) {
+                if(header != null) {
+                    pieces.add(create(header, rows, pieces.size(), names, source, headerLine));
+                    header = null;
+                    rows.clear();
+                }
+            } else if(header == null) {
+                header = text;
+                headerLine = lineNumber;
+            } else {
+                rows.add(text);
+            }
+        } while(line != null);
+
+        if(pieces.isEmpty()) {
+            throw new IllegalArgumentException(source + ": no pieces defined");
+        }
+        return pieces.toArray(new Piece[0]);
+    }
+
+    // Makes a piece out of its header line and matrix rows
+    private static Piece create(String header, List<String> rows, int index, Set<String> names,
+                                String source, int line) {
+        String[] fields = header.split("\\s+");
+        if(fields.length != 4) {
+            throw new IllegalArgumentException(source + ":" + line + ": expected name, red, green and blue");
+        }
+        String name = fields[0];
+        if(!names.add(name)) {
+            throw new IllegalArgumentException(source + ":" + line + ": piece " + name + " is defined twice");
+        }
+
+        Color color;
+        try {
+            color = new Color(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+        } catch(IllegalArgumentException e) {
+            throw new IllegalArgumentException(source + ":" + line + ": invalid color of piece " + name);
+        }
+
+        int dimension = rows.size();
+        if(dimension == 0 || dimension > Piece.MAX_DIMENSION) {
+            throw new IllegalArgumentException(source + ":" + line + ": piece " + name + " must have 1 to "
+                    + Piece.MAX_DIMENSION + " rows");
+        }
+        boolean[] tiles = new boolean[dimension * dimension];
+        boolean any = false;
+        for(int y = 0; y < dimension; y++) {
+            String row = rows.get(y);
+            if(row.length() != dimension) {
+                throw new IllegalArgumentException(source + ":" + (line + y + 1) + ": piece " + name
+                        + " must be a square matrix");
+            }
+            for(int x = 0; x < dimension; x++) {
+                char c = row.charAt(x);
+                if(c != TILE && c != EMPTY) {
+                    throw new IllegalArgumentException(source + ":" + (line + y + 1) + ": unexpected character '" + c + "'");
+                }
+                tiles[y * dimension + x] = c == TILE;
+                any |= c == TILE;
+            }
+        }
+        if(!any) {
+            throw new IllegalArgumentException(source + ":" + line + ": piece " + name + " has no tiles");
+        }
+        return new Piece(name, index, color, dimension, tiles);
+    }
+}
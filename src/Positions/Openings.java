@@ -0,0 +1,230 @@
+package Positions;
+
+import Bots.Bot;
+import Game.Engine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Collects the opening positions of bot games in a {@link PositionDb} file:
+ * the position before each of the first --plies pieces of every game is
+ * visited with the final score of the game. Running it again with the same
+ * file adds to what earlier sessions collected; seeds that were played before
+ * only add visits, not positions. Prints the most visited positions.
+ *
+ * With --bench it fills a table in memory with made-up positions instead, to
+ * measure inserts and lookups.
+ */
+
+public class Openings {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: Openings --db FILE [--games N] [--bot heuristic|random|search] [--seed S] "
+            + "[--plies P] [--max-pieces M] [--capacity SLOTS] [--top K]\n"
+            + "       Openings --bench POSITIONS [--off-heap]";
+
+    // File of the table
+    private String db;
+    // Number of games to play
+    private int games = 1000;
+    // Name of the bot that plays the games
+    private String botName = "heuristic";
+    // Seed of the first game, game i uses seed + i
+    private long seed = 0;
+    // Number of pieces of a game whose positions are kept
+    private int plies = 8;
+    // Games are stopped after this many pieces
+    private int maxPieces = 2000;
+    // Number of slots of a new file
+    private long capacity = 1 << 20;
+    // Number of most visited positions to print
+    private int top = 5;
+    // Positions to insert in the benchmark, 0 to collect openings
+    private long benchPositions = 0;
+    // If the benchmark table lives off the heap
+    private boolean offHeap;
+
+    /**
+     * Plays the games and adds their openings to the file
+     */
+    private void collect() throws IOException {
+        try(PositionDb table = PositionDb.open(Paths.get(db), capacity)) {
+            long before = table.size();
+            Engine engine = new Engine();
+            long[] keys = new long[plies * PackedPosition.LONGS];
+            long[] key = new long[PackedPosition.LONGS];
+            long visits = 0;
+            long start = System.nanoTime();
+            for(int game = 0; game < games; game++) {
+                Bot bot = Bot.create(botName, seed + game);
+                engine.setSeed(seed + game);
+                engine.reset();
+
+                // Remember the openings until the score of the game is known
+                int kept = 0;
+                while(!engine.isGameOver() && engine.getPieces() < maxPieces) {
+                    if(kept < plies) {
+                        PackedPosition.pack(engine, key);
+                        System.arraycopy(key, 0, keys, kept * PackedPosition.LONGS, PackedPosition.LONGS);
+                        kept++;
+                    }
+                    bot.choose(engine).apply(engine);
+                }
+                for(int i = 0; i < kept; i++) {
+                    System.arraycopy(keys, i * PackedPosition.LONGS, key, 0, PackedPosition.LONGS);
+                    table.visit(key, engine.getScore());
+                }
+                visits += kept;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d games in %.1f s, %d visits, %d new positions, %d positions in %s (%d slots)%n",
+                    games, seconds, visits, table.size() - before, table.size(), db, table.capacity());
+            printTop(table);
+        }
+    }
+
+    // Prints the most visited positions
+    private void printTop(PositionDb table) {
+        if(top == 0) {
+            return;
+        }
+        long[] slots = new long[top];
+        long[] counts = new long[top];
+        int found = 0;
+        for(long slot = table.nextUsed(0); slot >= 0; slot = table.nextUsed(slot + 1)) {
+            long visits = table.getVisits(slot);
+            if(found == top && visits <= counts[top - 1]) {
+                continue;
+            }
+            // Insert into the sorted list, the last one falls off when it is full
+            int i = found < top ? found++ : top - 1;
+            while(i > 0 && counts[i - 1] < visits) {
+                slots[i] = slots[i - 1];
+                counts[i] = counts[i - 1];
+                i--;
+            }
+            slots[i] = slot;
+            counts[i] = visits;
+        }
+
+        long[] key = new long[PackedPosition.LONGS];
+        for(int i = 0; i < found; i++) {
+            table.getKey(slots[i], key);
+            System.out.printf("%n%d visits, best score %d, %s", counts[i], table.getBestScore(slots[i]),
+                    PackedPosition.toString(key));
+        }
+    }
+
+    /**
+     * Inserts made-up positions into a table in memory, then visits them again
+     */
+    private void bench() {
+        long start = System.nanoTime();
+        PositionDb table = PositionDb.inMemory(benchPositions * 4 / 3 + 1, offHeap);
+        long allocated = System.nanoTime();
+        long[] key = new long[PackedPosition.LONGS];
+
+        long inserted = 0;
+        for(long i = 0; i < benchPositions; i++) {
+            makeKey(i, key);
+            if(table.visit(key, (int)i)) {
+                inserted++;
+            }
+        }
+        long filled = System.nanoTime();
+        long found = 0;
+        for(long i = 0; i < benchPositions; i++) {
+            makeKey(i, key);
+            if(table.find(key) >= 0) {
+                found++;
+            }
+        }
+        long looked = System.nanoTime();
+
+        System.out.printf("%d slots of 48 bytes (%.0f MB %s), allocated in %.2f s%n", table.capacity(),
+                table.capacity() * 48 / 1048576.0, offHeap ? "off the heap" : "on the heap", (allocated - start) / 1e9);
+        System.out.printf("%d new positions, %.0f ns per insert; %d found, %.0f ns per lookup%n", inserted,
+                (double)(filled - allocated) / benchPositions, found, (double)(looked - filled) / benchPositions);
+    }
+
+    // Makes a distinct position from a number, spread like real boards would be after hashing
+    private static void makeKey(long i, long[] key) {
+        long z = i * 0x9E3779B97F4A7C15L;
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        key[0] = z ^ z >>> 31;
+        key[1] = i >>> 20;
+        key[2] = 0;
+        key[3] = i & 0xfffff;
+    }
+
+    /**
+     * Collects openings from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException {
+        Openings openings = new Openings();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--off-heap")) {
+                    openings.offHeap = true;
+                    continue;
+                }
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch(args[i - 1]) {
+                    case "--db":
+                        openings.db = value;
+                        break;
+                    case "--games":
+                        openings.games = Integer.parseInt(value);
+                        break;
+                    case "--bot":
+                        openings.botName = value;
+                        break;
+                    case "--seed":
+                        openings.seed = Long.parseLong(value);
+                        break;
+                    case "--plies":
+                        openings.plies = Integer.parseInt(value);
+                        break;
+                    case "--max-pieces":
+                        openings.maxPieces = Integer.parseInt(value);
+                        break;
+                    case "--capacity":
+                        openings.capacity = Long.parseLong(value);
+                        break;
+                    case "--top":
+                        openings.top = Integer.parseInt(value);
+                        break;
+                    case "--bench":
+                        openings.benchPositions = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if(openings.db == null && openings.benchPositions <= 0) {
+                throw new IllegalArgumentException("Missing --db or --bench");
+            }
+            if(openings.games < 0 || openings.plies < 1 || openings.capacity < 1 || openings.top < 0) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+            // Fail early on an unknown bot name
+            Bot.create(openings.botName, 0);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if(openings.benchPositions > 0) {
+            openings.bench();
+        } else {
+            openings.collect();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package Positions;
+
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+/**
+ * Packs a position into four longs: the occupancy of the 10x22 board and the
+ * current and next piece. The board takes six rows of ten bits per long, top
+ * row first, the same layout as the keys of the solver; the last long holds
+ * the four bottom rows in its low 40 bits, the current piece in the next 8
+ * bits and the next piece in the 8 above, each as its index + 1, 0 for none.
+ * The top bit of the last long is always clear, so a table can use it to mark
+ * used slots. The colors of the tiles aren't kept, two boards that only differ
+ * in colors are the same position.
+ */
+
+public final class PackedPosition {
+    // Number of longs of a packed position
+    public static final int LONGS = 4;
+    // Rows per long
+    private static final int ROWS_PER_LONG = 6;
+    // Bits of one row
+    private static final int ROW_MASK = (1 << Board.COLS) - 1;
+    // Shift of the current piece and the next piece in the last long
+    private static final int CURRENT_SHIFT = 40;
+    private static final int NEXT_SHIFT = 48;
+
+    private PackedPosition() {
+    }
+
+    /**
+     * Packs a board and pieces
+     * @param board The board
+     * @param current The current piece, null for none
+     * @param next The next piece, null for none
+     * @param key The four longs to fill
+     */
+    public static void pack(Board board, Piece current, Piece next, long[] key) {
+        key[0] = 0;
+        key[1] = 0;
+        key[2] = 0;
+        key[3] = 0;
+        for(int y = 0; y < Board.ROWS; y++) {
+            key[y / ROWS_PER_LONG] |= (long)board.getRowMask(y) << (y % ROWS_PER_LONG * Board.COLS);
+        }
+        key[3] |= (long)idOf(current) << CURRENT_SHIFT | (long)idOf(next) << NEXT_SHIFT;
+    }
+
+    /**
+     * Packs the position of a game, its board with the current and next piece
+     * @param engine The game
+     * @param key The four longs to fill
+     */
+    public static void pack(Engine engine, long[] key) {
+        pack(engine.getBoard(), engine.isGameOver() ? null : engine.getPieceType(), engine.getNextPieceType(), key);
+    }
+
+    // Gets the id of a piece, 0 for none
+    private static int idOf(Piece piece) {
+        return piece == null ? 0 : piece.getIndex() + 1;
+    }
+
+    /**
+     * Gets a row of a packed board
+     * @param key The packed position
+     * @param y The row, 0 is the top
+     * @return Bit mask where bit x is set if the tile in column x is occupied
+     */
+    public static int getRowMask(long[] key, int y) {
+        return (int)(key[y / ROWS_PER_LONG] >>> (y % ROWS_PER_LONG * Board.COLS)) & ROW_MASK;
+    }
+
+    /**
+     * Gets the current piece of a packed position
+     * @param key The packed position
+     * @return The piece, null for none
+     */
+    public static Piece getCurrent(long[] key) {
+        return pieceOf((int)(key[3] >>> CURRENT_SHIFT) & 0xff);
+    }
+
+    /**
+     * Gets the next piece of a packed position
+     * @param key The packed position
+     * @return The piece, null for none
+     */
+    public static Piece getNext(long[] key) {
+        return pieceOf((int)(key[3] >>> NEXT_SHIFT) & 0xff);
+    }
+
+    private static Piece pieceOf(int id) {
+        return id == 0 || id > Piece.count() ? null : Piece.get(id - 1);
+    }
+
+    /**
+     * Draws a packed position as text, the rows from the highest occupied one
+     * down, # for a tile and . for an empty tile
+     * @param key The packed position
+     * @return The pieces on the first line, then the rows
+     */
+    public static String toString(long[] key) {
+        Piece current = getCurrent(key);
+        Piece next = getNext(key);
+        StringBuilder text = new StringBuilder();
+        text.append("current ").append(current == null ? "-" : current.getName())
+                .append(", next ").append(next == null ? "-" : next.getName()).append('\n');
+        int top = 0;
+        while(top < Board.ROWS - 1 && getRowMask(key, top) == 0) {
+            top++;
+        }
+        for(int y = top; y < Board.ROWS; y++) {
+            int row = getRowMask(key, y);
+            for(int x = 0; x < Board.COLS; x++) {
+                text.append((row >>> x & 1) != 0 ? '#' : '.');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
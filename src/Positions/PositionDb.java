@@ -0,0 +1,321 @@
+package Positions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A set of packed positions (see {@link PackedPosition}) with the number of
+ * times each was visited and the best score reached from it. It is an open
+ * addressing hash table with linear probing; a slot is six longs, the four of
+ * the position followed by the visit count and the best score, and holds no
+ * references, so a table of hundreds of millions of positions is a few large
+ * buffers the garbage collector never looks into. The slots live on the heap,
+ * off the heap or in a memory-mapped file that keeps them across sessions.
+ *
+ * The number of slots is fixed when the table is made and rounded up to a
+ * power of two; a table is full at three quarters of its slots. Positions are
+ * never removed. A table is used by one thread at a time.
+ *
+ * File layout, little-endian: a header of 64 bytes (magic long, version int,
+ * longs per slot int, number of slots long, number of positions long), then
+ * the slots. The header is mapped too, so the file is up to date after every
+ * visit, as far as the operating system wrote the pages back.
+ */
+
+public class PositionDb implements Closeable {
+    // Start of every file
+    private static final long MAGIC = 0x4244534f50525445L;
+    // Version of the file layout
+    private static final int VERSION = 1;
+    // Size of the file header
+    private static final int HEADER_BYTES = 64;
+    // Longs per slot: the position, the visit count and the best score
+    private static final int SLOT_LONGS = PackedPosition.LONGS + 2;
+    private static final int SLOT_BYTES = SLOT_LONGS * 8;
+    // Slots per buffer, a buffer can't be larger than 2 GB
+    private static final int SEGMENT_BITS = 22;
+    // Smallest number of slots
+    private static final long MIN_CAPACITY = 1024;
+    // Marks a used slot in the last long of the position, which never uses its top bit
+    private static final long USED = 1L << 63;
+
+    // The slots, in buffers of 1 << segmentBits slots
+    private final LongBuffer[] segments;
+    private final int segmentBits;
+    // Number of slots - 1
+    private final long mask;
+    // Number of positions that fit before the table is full
+    private final long limit;
+    // Number of positions
+    private long size;
+
+    // The file and its mapped parts, null if the table isn't kept in a file
+    private final FileChannel channel;
+    private final MappedByteBuffer[] mapped;
+    private final MappedByteBuffer headerMap;
+    private final LongBuffer header;
+
+    private PositionDb(LongBuffer[] segments, int segmentBits, long capacity, FileChannel channel,
+                       MappedByteBuffer[] mapped, MappedByteBuffer headerMap) {
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.mask = capacity - 1;
+        this.limit = capacity / 4 * 3;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.headerMap = headerMap;
+        this.header = headerMap == null ? null : headerMap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        this.size = header == null ? 0 : header.get(3);
+    }
+
+    /**
+     * Creates an empty table that lives in memory
+     * @param capacity The number of slots, rounded up to a power of two
+     * @param offHeap If the slots live outside of the Java heap
+     * @return The table
+     */
+    public static PositionDb inMemory(long capacity, boolean offHeap) {
+        long slots = roundCapacity(capacity);
+        int segmentBits = segmentBits(slots);
+        LongBuffer[] segments = new LongBuffer[(int)(slots >>> segmentBits)];
+        for(int i = 0; i < segments.length; i++) {
+            int bytes = SLOT_BYTES << segmentBits;
+            ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+            segments[i] = buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+        return new PositionDb(segments, segmentBits, slots, null, null, null);
+    }
+
+    /**
+     * Opens a table kept in a file, or creates the file if it doesn't exist
+     * @param file The file
+     * @param capacity The number of slots of a new file, rounded up to a power of two; an existing file keeps its own
+     * @return The table
+     */
+    public static PositionDb open(Path file, long capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long slots;
+            boolean isNew = channel.size() == 0;
+            if(!isNew && channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a position database: " + file);
+            }
+            MappedByteBuffer headerMap = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            LongBuffer header = headerMap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            if(isNew) {
+                slots = roundCapacity(capacity);
+                header.put(0, MAGIC);
+                header.put(1, (long)VERSION << 32 | SLOT_LONGS);
+                header.put(2, slots);
+                header.put(3, 0);
+            } else {
+                if(header.get(0) != MAGIC) {
+                    throw new IOException("Not a position database: " + file);
+                }
+                if(header.get(1) != ((long)VERSION << 32 | SLOT_LONGS)) {
+                    throw new IOException("Unsupported position database version: " + file);
+                }
+                slots = header.get(2);
+                if(slots < MIN_CAPACITY || Long.bitCount(slots) != 1
+                        || channel.size() < HEADER_BYTES + slots * SLOT_BYTES) {
+                    throw new IOException("Position database is damaged: " + file);
+                }
+            }
+
+            int segmentBits = segmentBits(slots);
+            long segmentBytes = (long)SLOT_BYTES << segmentBits;
+            MappedByteBuffer[] mapped = new MappedByteBuffer[(int)(slots >>> segmentBits)];
+            LongBuffer[] segments = new LongBuffer[mapped.length];
+            for(int i = 0; i < mapped.length; i++) {
+                // Mapping past the end grows the file, the new pages read as zeros, which is an empty slot
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * segmentBytes, segmentBytes);
+                segments[i] = mapped[i].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+            return new PositionDb(segments, segmentBits, slots, channel, mapped, headerMap);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Rounds a number of slots up to a power of two
+    private static long roundCapacity(long capacity) {
+        if(capacity > 1L << 40) {
+            throw new IllegalArgumentException("Too many slots: " + capacity);
+        }
+        return Math.max(MIN_CAPACITY, Long.highestOneBit(capacity - 1) << 1);
+    }
+
+    // Gets the bits of the slots per buffer, smaller tables fit in one buffer
+    private static int segmentBits(long slots) {
+        return Math.min(SEGMENT_BITS, Long.numberOfTrailingZeros(slots));
+    }
+
+    /**
+     * Counts a visit of a position, adding the position if it is new
+     * @param key The packed position
+     * @param score The score reached from the position, kept if it is the best so far
+     * @return If the position is new
+     */
+    public boolean visit(long[] key, int score) {
+        long k3Used = key[3] | USED;
+        for(long slot = slotOf(key); ; slot = slot + 1 & mask) {
+            LongBuffer segment = segments[(int)(slot >>> segmentBits)];
+            int base = (int)(slot & (1 << segmentBits) - 1) * SLOT_LONGS;
+            long last = segment.get(base + 3);
+            if(last == 0) {
+                if(size >= limit) {
+                    throw new IllegalStateException("Position database is full: " + size + " positions");
+                }
+                segment.put(base, key[0]);
+                segment.put(base + 1, key[1]);
+                segment.put(base + 2, key[2]);
+                segment.put(base + 4, 1);
+                segment.put(base + 5, score);
+                // The last long marks the slot as used, so it is written last
+                segment.put(base + 3, k3Used);
+                size++;
+                if(header != null) {
+                    header.put(3, size);
+                }
+                return true;
+            }
+            if(last == k3Used && segment.get(base) == key[0] && segment.get(base + 1) == key[1]
+                    && segment.get(base + 2) == key[2]) {
+                segment.put(base + 4, segment.get(base + 4) + 1);
+                if(score > segment.get(base + 5)) {
+                    segment.put(base + 5, score);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Looks up a position
+     * @param key The packed position
+     * @return The slot of the position, -1 if it isn't in the table
+     */
+    public long find(long[] key) {
+        long k3Used = key[3] | USED;
+        for(long slot = slotOf(key); ; slot = slot + 1 & mask) {
+            LongBuffer segment = segments[(int)(slot >>> segmentBits)];
+            int base = (int)(slot & (1 << segmentBits) - 1) * SLOT_LONGS;
+            long last = segment.get(base + 3);
+            if(last == 0) {
+                return -1;
+            }
+            if(last == k3Used && segment.get(base) == key[0] && segment.get(base + 1) == key[1]
+                    && segment.get(base + 2) == key[2]) {
+                return slot;
+            }
+        }
+    }
+
+    // Spreads the bits of a position over the slots
+    private long slotOf(long[] key) {
+        long hash = key[0] * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ key[1]) * 0xC2B2AE3D27D4EB4FL;
+        hash = (hash ^ key[2]) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ key[3]) * 0xC2B2AE3D27D4EB4FL;
+        return (hash >>> 29 ^ hash) & mask;
+    }
+
+    // Gets a long of a slot
+    private long get(long slot, int index) {
+        return segments[(int)(slot >>> segmentBits)].get((int)(slot & (1 << segmentBits) - 1) * SLOT_LONGS + index);
+    }
+
+    /**
+     * Finds the next used slot, to go through all positions
+     * @param slot The first slot to look at
+     * @return The first used slot from there, -1 if there is none
+     */
+    public long nextUsed(long slot) {
+        for(; slot <= mask; slot++) {
+            if(get(slot, 3) != 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the position of a used slot
+     * @param slot The slot
+     * @param key The four longs to fill with the packed position
+     */
+    public void getKey(long slot, long[] key) {
+        key[0] = get(slot, 0);
+        key[1] = get(slot, 1);
+        key[2] = get(slot, 2);
+        key[3] = get(slot, 3) & ~USED;
+    }
+
+    /**
+     * Gets the number of visits of the position of a used slot
+     * @param slot The slot
+     * @return The number of visits
+     */
+    public long getVisits(long slot) {
+        return get(slot, 4);
+    }
+
+    /**
+     * Gets the best score reached from the position of a used slot
+     * @param slot The slot
+     * @return The best score
+     */
+    public int getBestScore(long slot) {
+        return (int)get(slot, 5);
+    }
+
+    /**
+     * Gets the number of positions
+     * @return The number of positions
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots
+     * @return The number of slots
+     */
+    public long capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Writes the changed pages of a file back to the disk, does nothing for a table in memory
+     */
+    public void flush() {
+        if(mapped == null) {
+            return;
+        }
+        for(MappedByteBuffer buffer : mapped) {
+            buffer.force();
+        }
+        headerMap.force();
+    }
+
+    /**
+     * Writes a file back to the disk and closes it. The mappings stay valid until
+     * they are garbage collected, the table must not be used anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package Rooms;
+
+import Bots.Bot;
+import Game.Engine;
+
+/**
+ * One game hosted by a {@link RoomScheduler}. The scheduler owns the gravity
+ * deadline of the room and runs {@link #tick()} on a worker thread when it is due.
+ * Every tick records how late it ran.
+ */
+
+public class Room {
+    // Most rows a piece falls in one tick, the height of the board (20G)
+    private static final int MAX_ROWS_PER_TICK = 20;
+
+    // Name of the room, used in reports
+    private final String name;
+    // The game
+    private final Engine engine;
+    // Plays the game, null if the players send their inputs
+    private final Bot bot;
+
+    // Runs the tick when the gravity deadline is reached
+    private final TimerWheel.Timeout gravity = new TimerWheel.Timeout() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    // The scheduler that hosts the room, null if not hosted
+    private RoomScheduler scheduler;
+    // Time the next tick is due
+    private long deadline;
+
+    // Lag statistics: number of ticks, sum and maximum of the lag in nanoseconds
+    private long ticks;
+    private long totalLag;
+    private long maxLag;
+
+    /**
+     * Creates a new room
+     * @param name The name of the room
+     * @param seed The seed of the game
+     * @param bot The bot that plays the game, or null
+     */
+    public Room(String name, long seed, Bot bot) {
+        this.name = name;
+        this.engine = new Engine();
+        this.bot = bot;
+        engine.setSeed(seed);
+        engine.reset();
+        if(bot != null) {
+            bot.choose(engine).move(engine);
+        }
+    }
+
+    /**
+     * Starts the gravity of the room
+     * @param scheduler The scheduler that hosts the room
+     */
+    synchronized void start(RoomScheduler scheduler) {
+        this.scheduler = scheduler;
+        this.deadline = System.nanoTime() + getRowNanos();
+        scheduler.getWheel().schedule(gravity, deadline);
+    }
+
+    /**
+     * Stops the gravity of the room
+     */
+    synchronized void stop() {
+        if(scheduler != null) {
+            scheduler.getWheel().cancel(gravity);
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Moves the piece down and schedules the next tick
+     */
+    private synchronized void tick() {
+        if(scheduler == null) {
+            return;
+        }
+
+        long lag = System.nanoTime() - deadline;
+        ticks++;
+        totalLag += lag;
+        maxLag = Math.max(maxLag, lag);
+
+        // A late tick moves the rows it missed at once, at high speeds a row is shorter than a wheel tick
+        long rowNanos = getRowNanos();
+        int rows = (int)Math.min(MAX_ROWS_PER_TICK, 1 + Math.max(0, lag) / rowNanos);
+        if(engine.fall(rows)) {
+            if(engine.isGameOver()) {
+                engine.reset();
+            }
+            if(bot != null) {
+                bot.choose(engine).move(engine);
+            }
+        }
+
+        // The next deadline follows the previous one, not the late run, so the room keeps its speed
+        deadline += rows * rowNanos;
+        scheduler.getWheel().schedule(gravity, deadline);
+    }
+
+    /**
+     * Applies an input of a player
+     * @param input One of the INPUT_ constants of {@link Engine}
+     */
+    public synchronized void input(int input) {
+        engine.applyInput(input);
+    }
+
+    // Nanoseconds per row at the current speed of the game
+    private long getRowNanos() {
+        return (long)(1e9 / engine.getGameSpeed());
+    }
+
+    /**
+     * Gets the name of the room
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of ticks that ran
+     * @return The number of ticks
+     */
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the average lag of the ticks
+     * @return The average lag in nanoseconds
+     */
+    public synchronized long getAverageLag() {
+        return ticks == 0 ? 0 : totalLag / ticks;
+    }
+
+    /**
+     * Gets the largest lag of a tick
+     * @return The largest lag in nanoseconds
+     */
+    public synchronized long getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Gets the score of the game
+     * @return The score
+     */
+    public synchronized int getScore() {
+        return engine.getScore();
+    }
+}
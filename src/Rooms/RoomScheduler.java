@@ -0,0 +1,175 @@
+package Rooms;
+
+import Bots.Bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hosts many rooms in one process. A single timer thread advances a
+ * {@link TimerWheel} that holds the gravity deadlines of every room and hands
+ * the due ticks to a small pool of workers, so the cost depends on the number of
+ * due ticks rather than on the number of rooms times the frame rate.
+ */
+
+public class RoomScheduler implements AutoCloseable {
+    // Length of one wheel tick
+    private static final long TICK_NANOS = 1000000L;
+    // Number of buckets of the wheel, one lap is about 1 second
+    private static final int BUCKETS = 1024;
+    // Maximum number of due ticks handed out per wheel tick
+    private static final int BATCH_SIZE = 4096;
+
+    // Holds the gravity deadlines of all rooms
+    private final TimerWheel wheel;
+    // Runs the due ticks
+    private final ThreadPoolExecutor workers;
+    // Advances the wheel
+    private final Thread timer;
+    // The hosted rooms
+    private final List<Room> rooms = new ArrayList<>();
+
+    // If the scheduler is running
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new scheduler and starts its threads
+     * @param workerCount The number of worker threads
+     */
+    public RoomScheduler(int workerCount) {
+        this.wheel = new TimerWheel(TICK_NANOS, BUCKETS);
+        // An array backed queue, so handing out ticks doesn't allocate. When it is full the tick goes back
+        // to the wheel for its next tick, the timer thread never runs a room itself and keeps the other deadlines
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BATCH_SIZE * 4),
+                (task, executor) -> wheel.schedule((TimerWheel.Timeout)task, System.nanoTime()));
+        this.timer = new Thread(this::runTimer, "room-timer");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    // Advances the wheel and hands out the due ticks until the scheduler is closed
+    private void runTimer() {
+        TimerWheel.Timeout[] due = new TimerWheel.Timeout[BATCH_SIZE];
+        while(running) {
+            long wait = wheel.nextTickNanos() - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            int count = wheel.advance(System.nanoTime(), due);
+            for(int i = 0; i < count; i++) {
+                workers.execute(due[i]);
+                due[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Starts hosting a room
+     * @param room The room
+     */
+    public void add(Room room) {
+        synchronized(rooms) {
+            rooms.add(room);
+        }
+        room.start(this);
+    }
+
+    /**
+     * Stops hosting a room
+     * @param room The room
+     */
+    public void remove(Room room) {
+        room.stop();
+        synchronized(rooms) {
+            rooms.remove(room);
+        }
+    }
+
+    /**
+     * Gets the timer wheel of the scheduler
+     * @return The wheel
+     */
+    TimerWheel getWheel() {
+        return wheel;
+    }
+
+    /**
+     * Prints the lag statistics of the rooms
+     * @param limit The maximum number of rooms to list, the worst first
+     */
+    public void report(int limit) {
+        List<Room> copy;
+        synchronized(rooms) {
+            copy = new ArrayList<>(rooms);
+        }
+        copy.sort((a, b) -> Long.compare(b.getMaxLag(), a.getMaxLag()));
+
+        long ticks = 0;
+        long lag = 0;
+        for(Room room : copy) {
+            ticks += room.getTicks();
+            lag += room.getAverageLag() * room.getTicks();
+        }
+        System.out.printf("%d rooms, %d ticks, average lag %.3f ms%n", copy.size(), ticks,
+                ticks == 0 ? 0.0 : lag / (double)ticks / 1e6);
+        for(int i = 0; i < Math.min(limit, copy.size()); i++) {
+            Room room = copy.get(i);
+            System.out.printf("  %s: %d ticks, average lag %.3f ms, max lag %.3f ms, score %d%n", room.getName(),
+                    room.getTicks(), room.getAverageLag() / 1e6, room.getMaxLag() / 1e6, room.getScore());
+        }
+    }
+
+    /**
+     * Stops the threads of the scheduler. If the calling thread is interrupted
+     * it stops waiting for them, and the thread stays interrupted.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            timer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Room> copy;
+        synchronized(rooms) {
+            copy = new ArrayList<>(rooms);
+        }
+        for(Room room : copy) {
+            remove(room);
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hosts rooms played by bots and prints the lag statistics
+     * @param args Number of rooms, number of seconds and number of worker threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int workerCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        try(RoomScheduler scheduler = new RoomScheduler(workerCount)) {
+            for(int i = 0; i < roomCount; i++) {
+                scheduler.add(new Room("room-" + i, i, Bot.create("heuristic", i)));
+            }
+            for(int s = 0; s < seconds; s++) {
+                Thread.sleep(1000);
+            }
+            scheduler.report(5);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package Rooms;
+
+/**
+ * Hashed timer wheel. Deadlines are rounded to ticks and hashed into a ring of
+ * buckets; every tick only the bucket of that tick is looked at, so the cost of
+ * advancing the wheel depends on the number of timeouts that are due, not on the
+ * number of timeouts that are waiting. Timeouts are intrusive list nodes that are
+ * reused, so scheduling doesn't allocate.
+ */
+
+public class TimerWheel {
+    /**
+     * Something that runs when its deadline is reached. A timeout can be
+     * scheduled again once it ran.
+     */
+    public abstract static class Timeout implements Runnable {
+        // Tick the timeout is due on
+        private long deadlineTick;
+        // Neighbours in the bucket
+        private Timeout previous;
+        private Timeout next;
+        // If the timeout is in a bucket
+        private boolean scheduled;
+    }
+
+    // Length of one tick in nanoseconds
+    private final long tickNanos;
+    // Start of tick 0
+    private final long startNanos;
+    // Heads of the buckets
+    private final Timeout[] buckets;
+    // Number of buckets - 1, used to wrap ticks
+    private final int mask;
+    // Last tick that was processed
+    private long currentTick;
+
+    /**
+     * Creates a new timer wheel
+     * @param tickNanos Length of one tick in nanoseconds
+     * @param bucketCount Number of buckets, rounded up to a power of two
+     */
+    public TimerWheel(long tickNanos, int bucketCount) {
+        int size = Integer.highestOneBit(Math.max(bucketCount, 2) - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = System.nanoTime();
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules a timeout. Deadlines in the past run on the next tick.
+     * @param timeout The timeout, must not be scheduled already
+     * @param deadlineNanos The deadline, in {@link System#nanoTime()} time
+     */
+    public synchronized void schedule(Timeout timeout, long deadlineNanos) {
+        if(timeout.scheduled) {
+            throw new IllegalStateException("Timeout is already scheduled");
+        }
+        long tick = Math.max(toTick(deadlineNanos), currentTick + 1);
+        timeout.deadlineTick = tick;
+        timeout.scheduled = true;
+
+        int bucket = (int)(tick & mask);
+        timeout.previous = null;
+        timeout.next = buckets[bucket];
+        if(buckets[bucket] != null) {
+            buckets[bucket].previous = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    /**
+     * Removes a timeout from the wheel if it is scheduled
+     * @param timeout The timeout
+     */
+    public synchronized void cancel(Timeout timeout) {
+        if(timeout.scheduled) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * Processes every tick up to the given time and collects the due timeouts
+     * @param nowNanos The current time
+     * @param due Receives the due timeouts
+     * @return The number of due timeouts
+     */
+    public synchronized int advance(long nowNanos, Timeout[] due) {
+        // Only ticks that ended before now are due
+        long target = (nowNanos - startNanos) / tickNanos;
+        int count = 0;
+        while(currentTick < target && count < due.length) {
+            long tick = currentTick + 1;
+            Timeout timeout = buckets[(int)(tick & mask)];
+            while(timeout != null && count < due.length) {
+                Timeout next = timeout.next;
+                // Timeouts more than one lap away stay in the bucket
+                if(timeout.deadlineTick <= tick) {
+                    unlink(timeout);
+                    due[count++] = timeout;
+                }
+                timeout = next;
+            }
+            // Stop in the middle of a bucket only if the array is full, the rest is picked up next time
+            if(timeout != null) {
+                break;
+            }
+            currentTick = tick;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the time the next tick starts
+     * @return The start of the next tick, in {@link System#nanoTime()} time
+     */
+    public synchronized long nextTickNanos() {
+        return startNanos + (currentTick + 1) * tickNanos;
+    }
+
+    // Removes a timeout from its bucket
+    private void unlink(Timeout timeout) {
+        if(timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[(int)(timeout.deadlineTick & mask)] = timeout.next;
+        }
+        if(timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+    }
+
+    // Converts a time to the tick it falls in, rounded up
+    private long toTick(long nanos) {
+        return Math.max(0, (nanos - startNanos + tickNanos - 1) / tickNanos);
+    }
+}
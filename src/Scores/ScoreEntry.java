@@ -0,0 +1,152 @@
+package Scores;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * One result on the leaderboard. Entries are written to disk as fixed-size
+ * records with a checksum, so a record that was only partly written can be detected.
+ */
+
+public class ScoreEntry {
+    // Number of bytes of one record
+    public static final int RECORD_SIZE = 48;
+    // Maximum number of bytes of the player's name
+    public static final int NAME_SIZE = 16;
+    // Marks the start of a record
+    private static final int MAGIC = 0x54534352;
+    // Offset of the checksum inside a record
+    private static final int CRC_OFFSET = 40;
+
+    private final String name;
+    private final int score;
+    private final int level;
+    private final int lines;
+    // The time the game ended, in milliseconds since the epoch
+    private final long timestamp;
+
+    /**
+     * Creates a new entry
+     * @param name The name of the player, cut to 16 ASCII characters
+     * @param score The score
+     * @param level The level
+     * @param lines The number of cleared lines
+     * @param timestamp The time the game ended, in milliseconds since the epoch
+     */
+    public ScoreEntry(String name, int score, int level, int lines, long timestamp) {
+        this.name = name;
+        this.score = score;
+        this.level = level;
+        this.lines = lines;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Writes the entry as a record
+     * @param buffer The buffer to write to
+     * @param offset Where the record starts
+     */
+    public void write(ByteBuffer buffer, int offset) {
+        buffer.putInt(offset, MAGIC);
+        buffer.putInt(offset + 4, score);
+        buffer.putInt(offset + 8, level);
+        buffer.putInt(offset + 12, lines);
+        buffer.putLong(offset + 16, timestamp);
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        for(int i = 0; i < NAME_SIZE; i++) {
+            buffer.put(offset + 24 + i, i < bytes.length ? bytes[i] : 0);
+        }
+        buffer.putInt(offset + CRC_OFFSET, checksum(buffer, offset));
+        buffer.putInt(offset + CRC_OFFSET + 4, 0);
+    }
+
+    /**
+     * Reads an entry from a record
+     * @param buffer The buffer to read from
+     * @param offset Where the record starts
+     * @return The entry, or null if the record is damaged
+     */
+    public static ScoreEntry read(ByteBuffer buffer, int offset) {
+        if(!isValid(buffer, offset)) {
+            return null;
+        }
+        byte[] bytes = new byte[NAME_SIZE];
+        int length = 0;
+        while(length < NAME_SIZE && buffer.get(offset + 24 + length) != 0) {
+            bytes[length] = buffer.get(offset + 24 + length);
+            length++;
+        }
+        return new ScoreEntry(new String(bytes, 0, length, StandardCharsets.US_ASCII),
+                buffer.getInt(offset + 4), buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getLong(offset + 16));
+    }
+
+    /**
+     * Checks to see if a record is complete and undamaged
+     * @param buffer The buffer to read from
+     * @param offset Where the record starts
+     * @return If the record is valid
+     */
+    public static boolean isValid(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) == MAGIC && buffer.getInt(offset + CRC_OFFSET) == checksum(buffer, offset);
+    }
+
+    /**
+     * Reads only the score of a record
+     * @param buffer The buffer to read from
+     * @param offset Where the record starts
+     * @return The score
+     */
+    public static int readScore(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + 4);
+    }
+
+    // Calculates the checksum of the fields of a record
+    private static int checksum(ByteBuffer buffer, int offset) {
+        CRC32 crc = new CRC32();
+        for(int i = 0; i < CRC_OFFSET; i++) {
+            crc.update(buffer.get(offset + i));
+        }
+        return (int)crc.getValue();
+    }
+
+    /**
+     * Gets the name of the player
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the score
+     * @return The score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the level
+     * @return The level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the number of cleared lines
+     * @return The number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the time the game ended
+     * @return Milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,279 @@
+package Scores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the results of finished games on disk.
+ *
+ * Every result is appended to a log and flushed before the call returns, so no
+ * result is lost when the machine crashes. The best results are also kept in a
+ * memory-mapped {@link TopScoreIndex}, so adding a result and asking for the best
+ * ones never reads the whole log. Several processes can share a directory: a lock
+ * file serializes them, and each process first applies log records that another
+ * process wrote but didn't index.
+ *
+ * The log keeps every result. Only torn records at its end, left by a crash in
+ * the middle of a write, are removed. A store opened with a truncation size
+ * instead keeps only the results of the index: a background thread rewrites the
+ * log down to them once it grows larger, and every other result is deleted.
+ */
+
+public class ScoreStore implements Closeable {
+    // Default number of results kept in the index
+    public static final int DEFAULT_CAPACITY = 100;
+    // Seconds between two checks of the log size
+    private static final long TRUNCATE_CHECK_SECONDS = 30;
+    // Number of records read at once when catching up with the log
+    private static final int READ_RECORDS = 1024;
+
+    // Paths of the files of the store
+    private final Path logFile;
+    private final Path tempFile;
+
+    // Appended results
+    private FileChannel log;
+    // Generation of the log file that is open
+    private long generation;
+    // Serializes the processes that use the store
+    private final FileChannel lockChannel;
+    // The best results
+    private final TopScoreIndex index;
+    // Log size that triggers a truncation to the indexed results, 0 to keep every result
+    private final long truncateBytes;
+
+    // Buffers reused between calls
+    private final ByteBuffer record = ByteBuffer.allocate(ScoreEntry.RECORD_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_RECORDS * ScoreEntry.RECORD_SIZE);
+
+    // Runs the truncations, null if every result is kept
+    private final ScheduledExecutorService truncator;
+
+    /**
+     * Opens the store in a directory with the default settings, every result is kept
+     * @param dir The directory, created if it doesn't exist
+     */
+    public ScoreStore(Path dir) throws IOException {
+        this(dir, DEFAULT_CAPACITY, 0);
+    }
+
+    /**
+     * Opens the store in a directory
+     * @param dir The directory, created if it doesn't exist
+     * @param capacity The number of best results in the index
+     * @param truncateBytes The log size that makes the store delete every result that isn't in the index,
+     *                      see {@link #truncateToTop()}; 0 to keep every result
+     */
+    public ScoreStore(Path dir, int capacity, long truncateBytes) throws IOException {
+        Files.createDirectories(dir);
+        this.logFile = dir.resolve("scores.log");
+        this.tempFile = dir.resolve("scores.log.tmp");
+        this.truncateBytes = truncateBytes;
+        this.lockChannel = FileChannel.open(dir.resolve("scores.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.index = new TopScoreIndex(dir.resolve("scores.idx"), capacity);
+
+        FileLock lock = lockChannel.lock();
+        try {
+            openLog();
+            sync();
+        } finally {
+            lock.release();
+        }
+
+        if(truncateBytes <= 0) {
+            this.truncator = null;
+            return;
+        }
+        this.truncator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "score-truncator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        truncator.scheduleWithFixedDelay(() -> {
+            try {
+                if(getLogSize() > truncateBytes) {
+                    truncateToTop();
+                }
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }, TRUNCATE_CHECK_SECONDS, TRUNCATE_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds a result
+     * @param entry The result
+     * @return The rank of the result, 0 is the best, or -1 if it isn't among the best
+     */
+    public synchronized int add(ScoreEntry entry) throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            sync();
+
+            // The log comes first, the index can always be rebuilt from it
+            long end = index.getCoveredLength();
+            entry.write(record, 0);
+            record.clear();
+            while(record.hasRemaining()) {
+                log.write(record, end + record.position());
+            }
+            log.force(false);
+
+            index.setDirty(true);
+            int rank = index.insert(record, 0);
+            index.setCoveredLength(end + ScoreEntry.RECORD_SIZE);
+            index.setDirty(false);
+            return rank;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Gets the best results
+     * @param count The maximum number of results
+     * @return The results, best first
+     */
+    public synchronized List<ScoreEntry> top(int count) throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            sync();
+            int n = Math.min(count, index.getCount());
+            List<ScoreEntry> entries = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                entries.add(index.get(i));
+            }
+            return entries;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Gets the best score
+     * @return The best score, 0 if there are no results
+     */
+    public int getBestScore() throws IOException {
+        List<ScoreEntry> best = top(1);
+        return best.isEmpty() ? 0 : best.get(0).getScore();
+    }
+
+    /**
+     * Rewrites the log so that it only contains the results of the index.
+     * Every other result is deleted for good.
+     */
+    public synchronized void truncateToTop() throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            sync();
+
+            ByteBuffer kept = ByteBuffer.allocate(index.getCount() * ScoreEntry.RECORD_SIZE);
+            index.copyTo(kept);
+            kept.flip();
+            try(FileChannel temp = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while(kept.hasRemaining()) {
+                    temp.write(kept);
+                }
+                temp.force(true);
+            }
+            Files.move(tempFile, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            // Other processes notice the new generation and reopen the log
+            index.setDirty(true);
+            index.setCoveredLength(kept.limit());
+            index.setGeneration(index.getGeneration() + 1);
+            index.setDirty(false);
+            index.force();
+            openLog();
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Opens the current log file
+    private void openLog() throws IOException {
+        if(log != null) {
+            log.close();
+        }
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        generation = index.getGeneration();
+    }
+
+    // Gets the size of the log
+    private synchronized long getLogSize() throws IOException {
+        return log.size();
+    }
+
+    /**
+     * Brings the index up to date with the log. Must be called with the lock held.
+     */
+    private void sync() throws IOException {
+        // Another process truncated the log
+        if(generation != index.getGeneration()) {
+            openLog();
+        }
+
+        // A crash in the middle of an update, or a log that shrank: rebuild from the start
+        if(index.isDirty() || log.size() < index.getCoveredLength()) {
+            index.clear();
+        }
+
+        long position = index.getCoveredLength();
+        long size = log.size();
+        if(position == size) {
+            return;
+        }
+
+        // Apply the records that were appended but not indexed yet
+        index.setDirty(true);
+        while(position + ScoreEntry.RECORD_SIZE <= size) {
+            readBuffer.clear();
+            readBuffer.limit((int)Math.min(readBuffer.capacity(), (size - position) / ScoreEntry.RECORD_SIZE * ScoreEntry.RECORD_SIZE));
+            while(readBuffer.hasRemaining() && log.read(readBuffer, position + readBuffer.position()) > 0) {
+                // keep reading
+            }
+
+            int records = readBuffer.position() / ScoreEntry.RECORD_SIZE;
+            int valid = 0;
+            while(valid < records && ScoreEntry.isValid(readBuffer, valid * ScoreEntry.RECORD_SIZE)) {
+                index.insert(readBuffer, valid * ScoreEntry.RECORD_SIZE);
+                valid++;
+            }
+            position += (long)valid * ScoreEntry.RECORD_SIZE;
+            if(valid < records || records == 0) {
+                break;
+            }
+        }
+
+        // Anything after the last valid record is a write that was cut off by a crash
+        if(position < size) {
+            log.truncate(position);
+            log.force(false);
+        }
+        index.setCoveredLength(position);
+        index.setDirty(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(truncator != null) {
+            truncator.shutdownNow();
+        }
+        index.close();
+        log.close();
+        lockChannel.close();
+    }
+}
@@ -0,0 +1,180 @@
+package Scores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped file that keeps the best K records of the score log, sorted
+ * from the highest to the lowest score. Finding the place of a new score is a
+ * binary search; the lower records are then moved down one slot with a single
+ * block copy. The index can always be rebuilt from the log.
+ *
+ * Header: magic, capacity, count, dirty flag, the length of the log that the
+ * index covers and the generation of the log (increased by every truncation).
+ */
+
+class TopScoreIndex implements Closeable {
+    // Marks a valid index file
+    private static final int MAGIC = 0x54534958;
+    // Number of bytes of the header
+    private static final int HEADER_SIZE = 32;
+    // Offsets of the header fields
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int DIRTY_OFFSET = 12;
+    private static final int COVERED_OFFSET = 16;
+    private static final int GENERATION_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // Maximum number of records in the index
+    private final int capacity;
+    // Used to move records down
+    private final byte[] scratch;
+
+    /**
+     * Opens or creates an index. An index with a different capacity or a
+     * damaged header is cleared.
+     * @param file The index file
+     * @param capacity The maximum number of records
+     */
+    TopScoreIndex(Path file, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.scratch = new byte[capacity * ScoreEntry.RECORD_SIZE];
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)capacity * ScoreEntry.RECORD_SIZE);
+
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(CAPACITY_OFFSET) != capacity) {
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(GENERATION_OFFSET, 0);
+            clear();
+            buffer.putInt(0, MAGIC);
+        }
+    }
+
+    /**
+     * Removes every record and marks the whole log as not covered
+     */
+    void clear() {
+        buffer.putInt(COUNT_OFFSET, 0);
+        buffer.putLong(COVERED_OFFSET, 0);
+        buffer.putInt(DIRTY_OFFSET, 0);
+    }
+
+    /**
+     * Inserts a record if its score is among the best
+     * @param record The buffer with the record
+     * @param offset Where the record starts
+     * @return The position of the record in the index, or -1 if it didn't make it
+     */
+    int insert(ByteBuffer record, int offset) {
+        int score = ScoreEntry.readScore(record, offset);
+        int count = getCount();
+
+        // Find the first record with a lower score, equal scores keep their order
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(ScoreEntry.readScore(buffer, slot(mid)) >= score) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if(low >= capacity) {
+            return -1;
+        }
+
+        // Move the lower records down one slot, the last one falls off when full
+        int moved = Math.min(count, capacity - 1) - low;
+        if(moved > 0) {
+            int length = moved * ScoreEntry.RECORD_SIZE;
+            buffer.position(slot(low));
+            buffer.get(scratch, 0, length);
+            buffer.position(slot(low + 1));
+            buffer.put(scratch, 0, length);
+        }
+
+        for(int i = 0; i < ScoreEntry.RECORD_SIZE; i++) {
+            buffer.put(slot(low) + i, record.get(offset + i));
+        }
+        buffer.putInt(COUNT_OFFSET, Math.min(count + 1, capacity));
+        return low;
+    }
+
+    /**
+     * Gets a record
+     * @param position The position in the index, 0 is the best score
+     * @return The entry
+     */
+    ScoreEntry get(int position) {
+        return ScoreEntry.read(buffer, slot(position));
+    }
+
+    /**
+     * Copies the records into a buffer, best first
+     * @param out The buffer, must have room for getCount() records
+     */
+    void copyTo(ByteBuffer out) {
+        int length = getCount() * ScoreEntry.RECORD_SIZE;
+        buffer.position(HEADER_SIZE);
+        buffer.get(scratch, 0, length);
+        out.put(scratch, 0, length);
+    }
+
+    // Gets the offset of a slot
+    private static int slot(int position) {
+        return HEADER_SIZE + position * ScoreEntry.RECORD_SIZE;
+    }
+
+    int getCount() {
+        return buffer.getInt(COUNT_OFFSET);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isDirty() {
+        return buffer.getInt(DIRTY_OFFSET) != 0;
+    }
+
+    void setDirty(boolean dirty) {
+        buffer.putInt(DIRTY_OFFSET, dirty ? 1 : 0);
+    }
+
+    long getCoveredLength() {
+        return buffer.getLong(COVERED_OFFSET);
+    }
+
+    void setCoveredLength(long length) {
+        buffer.putLong(COVERED_OFFSET, length);
+    }
+
+    long getGeneration() {
+        return buffer.getLong(GENERATION_OFFSET);
+    }
+
+    void setGeneration(long generation) {
+        buffer.putLong(GENERATION_OFFSET, generation);
+    }
+
+    /**
+     * Writes the index to disk
+     */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,666 @@
+package Solver;
+
+import Bots.HeuristicBot;
+import Bots.Pathfinder;
+import Bots.Placement;
+import Game.Board;
+import Game.Engine;
+import Pieces.Piece;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the best placements for a known sequence of pieces: the highest score
+ * after a number of pieces, or the fewest pieces that clear a number of lines.
+ * The placements are the ones the {@link Pathfinder} finds and the board is a
+ * {@link Board}, so the solution follows the rules of the game exactly; it is
+ * replayed on an {@link Engine} to make sure.
+ *
+ * The search is a depth first branch and bound. A position can't gain more
+ * than its filled tiles and the tiles of the remaining pieces can clear, so
+ * subtrees that can't beat the best line found so far are skipped. Placements
+ * that clear more lines and leave a lower stack are tried first, and the
+ * heuristic bot's line is the first line to beat. Positions reached through
+ * different orders are looked up in a {@link TranspositionTable}. The first
+ * levels of the tree are split into fork/join tasks; the first child of a
+ * split is searched before the others are forked, so they start with a bound.
+ */
+
+public class Solver {
+    // Usage message of the command line
+    private static final String USAGE = "Usage: Solver [--seed S] [--pieces N | --lines L] [--threads T] "
+            + "[--split D] [--table-mb M]";
+    // Bytes of one table slot: four key longs and the bounds
+    private static final int SLOT_BYTES = 40;
+
+    // The pieces, in the order they spawn
+    private final Piece[] pieces;
+    // If the gain of a placement is its cleared lines instead of its points
+    private final boolean countLines;
+    // Number of tiles of the pieces from each index to the end
+    private final int[] tilesLeft;
+    // Most lines one piece can clear
+    private final int maxClear;
+    // Levels of the tree that are split into tasks
+    private final int splitDepth;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    // Scratch state of every thread
+    private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(Context::new);
+    // Number of searched positions
+    private final LongAdder nodes = new LongAdder();
+
+    // Number of pieces of the current solve
+    private volatile int count;
+    // The search stops once a line reaches this
+    private volatile int stopAt = Integer.MAX_VALUE;
+
+    /**
+     * Creates a new solver
+     * @param pieces The pieces, in the order they spawn
+     * @param countLines If lines are counted instead of points
+     * @param threads The number of threads
+     * @param splitDepth Levels of the tree that are split into tasks
+     * @param tableSlots The number of positions the table holds
+     */
+    public Solver(Piece[] pieces, boolean countLines, int threads, int splitDepth, int tableSlots) {
+        this.pieces = pieces;
+        this.countLines = countLines;
+        this.splitDepth = splitDepth;
+        this.pool = new ForkJoinPool(threads);
+        this.table = new TranspositionTable(tableSlots);
+
+        this.tilesLeft = new int[pieces.length + 1];
+        int tallest = 1;
+        for(int i = pieces.length - 1; i >= 0; i--) {
+            tilesLeft[i] = tilesLeft[i + 1] + tileCount(pieces[i]);
+            tallest = Math.max(tallest, pieces[i].getDimension());
+        }
+        this.maxClear = tallest;
+    }
+
+    /**
+     * The best line of a solve
+     */
+    public static final class Result {
+        private final int value;
+        private final List<Placement> placements;
+
+        private Result(int value, List<Placement> placements) {
+            this.value = value;
+            this.placements = placements;
+        }
+
+        /**
+         * Gets the points or lines of the line
+         * @return The value
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the placements of the line, one per piece until the game ended
+         * @return The placements
+         */
+        public List<Placement> getPlacements() {
+            return placements;
+        }
+    }
+
+    /**
+     * Finds the line with the most points or lines over the first pieces
+     * @param count The number of pieces
+     * @param floor Only lines above this are looked for
+     * @param stop The search ends at the first line that reaches this, Integer.MAX_VALUE to find the best
+     * @return The best line, or null if no line beats the floor
+     */
+    public Result solve(int count, int floor, int stop) {
+        this.count = Math.min(count, pieces.length);
+        this.stopAt = stop;
+        table.clear();
+
+        AtomicInteger best = new AtomicInteger(floor);
+        Board.Snapshot start = new Board.Snapshot();
+        new Board().saveTo(start);
+        pool.invoke(new SplitTask(start, 0, 0, best));
+        if(best.get() <= floor) {
+            return null;
+        }
+
+        // Walk down the tree again and keep the placements that can still reach the best value
+        this.stopAt = Integer.MAX_VALUE;
+        return new Result(best.get(), line(best.get()));
+    }
+
+    // Follows a line that reaches the total, searching again where the table doesn't know enough
+    private List<Placement> line(int total) {
+        Context c = new Context();
+        c.board.clear();
+        List<Placement> placements = new ArrayList<>();
+        int score = 0;
+        for(int depth = 0; depth < count; depth++) {
+            int children = c.expand(depth);
+            if(children == 0) {
+                break;
+            }
+            boolean found = false;
+            for(int k = 0; k < children && !found; k++) {
+                int child = c.order[depth][k];
+                int gain = c.gains[depth][child];
+                int need = total - score - gain;
+                c.board.restoreFrom(c.children[depth][child]);
+                found = need <= 0 || search(c, depth + 1, 0, new AtomicInteger(need - 1)) >= need;
+                if(found) {
+                    Pathfinder finder = c.finders[depth];
+                    int index = c.placements[depth][child];
+                    placements.add(new Placement(finder.getCol(index), finder.getRotation(index), finder.getPath(index)));
+                    c.board.restoreFrom(c.children[depth][child]);
+                    score += gain;
+                }
+            }
+            if(!found) {
+                throw new IllegalStateException("No line reaches " + total + " after " + depth + " pieces");
+            }
+        }
+        return placements;
+    }
+
+    /**
+     * Searches one position, the board of the context
+     * @param c The context of the thread
+     * @param depth The number of placed pieces
+     * @param score The points or lines of the pieces placed so far
+     * @param best The best total found so far, only lines above it are looked for
+     * @return The most points or lines the remaining pieces were found to get, always reachable
+     */
+    private int search(Context c, int depth, int score, AtomicInteger best) {
+        if(depth == count || best.get() >= stopAt) {
+            return 0;
+        }
+        nodes.increment();
+
+        c.pack(depth);
+        int bound = bound(c, depth);
+        int need = best.get() - score;
+        if(bound <= need) {
+            return 0;
+        }
+        long k0 = c.k0;
+        long k1 = c.k1;
+        long k2 = c.k2;
+        long k3 = c.k3;
+        int lower = 0;
+        long entry = table.get(k0, k1, k2, k3);
+        if(entry >= 0) {
+            lower = (int)(entry >>> 32);
+            int upper = (int)entry;
+            if(lower == upper || upper <= need) {
+                return lower;
+            }
+            bound = Math.min(bound, upper);
+            raise(best, score + lower);
+        }
+
+        int children = c.expand(depth);
+        int bestGain = lower;
+        for(int k = 0; k < children; k++) {
+            int child = c.order[depth][k];
+            int gain = c.gains[depth][child];
+            c.board.restoreFrom(c.children[depth][child]);
+            int value = gain + search(c, depth + 1, score + gain, best);
+            if(value > bestGain) {
+                bestGain = value;
+                raise(best, score + value);
+            }
+        }
+
+        // A line worth nothing more is still a line, it beats a floor below it
+        raise(best, score + bestGain);
+        store(k0, k1, k2, k3, depth, bestGain, bound, best, score);
+        return bestGain;
+    }
+
+    // Remembers what a search found out about a position
+    private void store(long k0, long k1, long k2, long k3, int depth, int found, int bound, AtomicInteger best, int score) {
+        int total = best.get();
+        // After an early stop the skipped children aren't bounded by anything
+        if(total >= stopAt) {
+            return;
+        }
+        // What was skipped couldn't beat the best line, so nothing above the best is reachable
+        table.put(k0, k1, k2, k3, depth, found, Math.min(bound, Math.max(found, total - score)));
+    }
+
+    // Raises the best total
+    private static void raise(AtomicInteger best, int total) {
+        int current = best.get();
+        while(total > current && !best.compareAndSet(current, total)) {
+            current = best.get();
+        }
+    }
+
+    // Most points or lines the remaining pieces can get, from the packed board of the context
+    private int bound(Context c, int depth) {
+        // Fill the fullest rows first until the tiles of the remaining pieces run out
+        int tiles = tilesLeft[depth] - tilesLeft[count];
+        int lines = 0;
+        for(int need = 0; need <= Board.COLS && tiles >= need; need++) {
+            int rows = need == 0 ? c.missing[0] : Math.min(c.missing[need], tiles / need);
+            lines += rows;
+            tiles -= rows * need;
+        }
+        if(countLines) {
+            return lines;
+        }
+        // Points grow with the lines cleared at once, so the most points come from the biggest clears
+        long points = (long)(lines / maxClear) * Engine.scoreFor(maxClear);
+        if(lines % maxClear != 0) {
+            points += Engine.scoreFor(lines % maxClear);
+        }
+        return (int)Math.min(Integer.MAX_VALUE, points);
+    }
+
+    /**
+     * Searches the first levels of the tree, every child is its own task
+     */
+    @SuppressWarnings("serial")
+    private final class SplitTask extends RecursiveTask<Integer> {
+        private final Board.Snapshot position;
+        private final int depth;
+        private final int score;
+        private final AtomicInteger best;
+
+        private SplitTask(Board.Snapshot position, int depth, int score, AtomicInteger best) {
+            this.position = position;
+            this.depth = depth;
+            this.score = score;
+            this.best = best;
+        }
+
+        @Override
+        protected Integer compute() {
+            Context c = contexts.get();
+            c.board.restoreFrom(position);
+            if(depth >= splitDepth || depth == count) {
+                return search(c, depth, score, best);
+            }
+            nodes.increment();
+
+            c.pack(depth);
+            long k0 = c.k0;
+            long k1 = c.k1;
+            long k2 = c.k2;
+            long k3 = c.k3;
+            int bound = bound(c, depth);
+
+            // The children are copied out, as this thread may run other tasks while it waits
+            int children = c.expand(depth);
+            SplitTask[] tasks = new SplitTask[children];
+            int[] gains = new int[children];
+            for(int k = 0; k < children; k++) {
+                int child = c.order[depth][k];
+                Board.Snapshot snapshot = new Board.Snapshot();
+                c.board.restoreFrom(c.children[depth][child]);
+                c.board.saveTo(snapshot);
+                gains[k] = c.gains[depth][child];
+                tasks[k] = new SplitTask(snapshot, depth + 1, score + gains[k], best);
+            }
+
+            int bestGain = 0;
+            for(int k = 0; k < children; k++) {
+                if(k == 0) {
+                    bestGain = gains[0] + tasks[0].compute();
+                    raise(best, score + bestGain);
+                } else {
+                    tasks[k].fork();
+                }
+            }
+            for(int k = children - 1; k > 0; k--) {
+                int value = gains[k] + tasks[k].join();
+                if(value > bestGain) {
+                    bestGain = value;
+                    raise(best, score + value);
+                }
+            }
+
+            raise(best, score + bestGain);
+            store(k0, k1, k2, k3, depth, bestGain, bound, best, score);
+            return bestGain;
+        }
+    }
+
+    /**
+     * Scratch state of one thread: a board and, for every level, the pathfinder
+     * and the children of the position on that level
+     */
+    private final class Context {
+        private final Board board = new Board();
+        private final Pathfinder[] finders = new Pathfinder[pieces.length];
+        private final Board.Snapshot parent = new Board.Snapshot();
+        private final Board.Snapshot[][] children = new Board.Snapshot[pieces.length][];
+        private final int[][] gains = new int[pieces.length][];
+        private final int[][] heights = new int[pieces.length][];
+        private final int[][] placements = new int[pieces.length][];
+        private final int[][] order = new int[pieces.length][];
+        // Keys of the children, to skip placements that make the same board
+        private long[] childKeys = new long[0];
+
+        // The packed board, set by pack
+        private final long[] keys = new long[4];
+        // Number of rows missing each number of tiles, set by pack
+        private final int[] missing = new int[Board.COLS + 1];
+        // Height of the stack, set by pack
+        private int height;
+        private long k0;
+        private long k1;
+        private long k2;
+        private long k3;
+
+        /**
+         * Packs the board and the number of placed pieces into the key fields, and
+         * counts the empty tiles of the rows and the height of the stack
+         */
+        private void pack(int depth) {
+            long[] key = keys;
+            key[0] = 0;
+            key[1] = 0;
+            key[2] = 0;
+            key[3] = 0;
+            Arrays.fill(missing, 0);
+            height = 0;
+            for(int y = 0; y < Board.ROWS; y++) {
+                int row = board.getRowMask(y);
+                key[y / 6] |= (long)row << (y % 6 * 10);
+                missing[Board.COLS - Integer.bitCount(row)]++;
+                if(row != 0 && height == 0) {
+                    height = Board.ROWS - y;
+                }
+            }
+            k0 = key[0];
+            k1 = key[1];
+            k2 = key[2];
+            k3 = key[3] | (long)depth << 40;
+        }
+
+        /**
+         * Finds the placements of the next piece on the board and the boards they
+         * make, dropping placements that make the same board, best first
+         * @return The number of children, 0 if the piece can't spawn
+         */
+        private int expand(int depth) {
+            if(finders[depth] == null) {
+                finders[depth] = new Pathfinder();
+            }
+            Pathfinder finder = finders[depth];
+            Piece piece = pieces[depth];
+            int found = finder.search(board, piece, piece.getSpawnColumn(), piece.getSpawnRow(), 0);
+            if(children[depth] == null || children[depth].length < found) {
+                int size = Math.max(found, 16);
+                Board.Snapshot[] snapshots = new Board.Snapshot[size];
+                for(int i = 0; i < size; i++) {
+                    snapshots[i] = new Board.Snapshot();
+                }
+                children[depth] = snapshots;
+                gains[depth] = new int[size];
+                heights[depth] = new int[size];
+                placements[depth] = new int[size];
+                order[depth] = new int[size];
+            }
+            if(childKeys.length < found * 4) {
+                childKeys = new long[found * 4];
+            }
+
+            board.saveTo(parent);
+            int count = 0;
+            for(int i = 0; i < found; i++) {
+                board.restoreFrom(parent);
+                board.addPiece(piece, finder.getCol(i), finder.getRow(i), finder.getRotation(i));
+                int cleared = board.checkLines();
+                pack(0);
+                if(isDuplicate(count)) {
+                    continue;
+                }
+                childKeys[count * 4] = k0;
+                childKeys[count * 4 + 1] = k1;
+                childKeys[count * 4 + 2] = k2;
+                childKeys[count * 4 + 3] = k3;
+
+                board.saveTo(children[depth][count]);
+                gains[depth][count] = cleared == 0 ? 0 : countLines ? cleared : Engine.scoreFor(cleared);
+                heights[depth][count] = height;
+                placements[depth][count] = i;
+                order[depth][count] = count;
+                count++;
+            }
+            board.restoreFrom(parent);
+
+            // Insertion sort: more gain first, then the lower stack
+            int[] sorted = order[depth];
+            int[] gain = gains[depth];
+            int[] height = heights[depth];
+            for(int i = 1; i < count; i++) {
+                int child = sorted[i];
+                int j = i - 1;
+                while(j >= 0 && (gain[sorted[j]] < gain[child]
+                        || gain[sorted[j]] == gain[child] && height[sorted[j]] > height[child])) {
+                    sorted[j + 1] = sorted[j];
+                    j--;
+                }
+                sorted[j + 1] = child;
+            }
+            return count;
+        }
+
+        // Checks to see if an earlier child made the board in the key fields
+        private boolean isDuplicate(int count) {
+            for(int i = 0; i < count; i++) {
+                if(childKeys[i * 4] == k0 && childKeys[i * 4 + 1] == k1
+                        && childKeys[i * 4 + 2] == k2 && childKeys[i * 4 + 3] == k3) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of placed pieces of a packed position
+     * @param k3 The last long of the position
+     * @return The number of pieces
+     */
+    static int depthOf(long k3) {
+        return (int)(k3 >>> 40 & 0xffff);
+    }
+
+    // Number of tiles of a piece
+    private static int tileCount(Piece piece) {
+        int tiles = 0;
+        for(int x = 0; x < piece.getDimension(); x++) {
+            for(int y = 0; y < piece.getDimension(); y++) {
+                if(piece.isTile(x, y, 0)) {
+                    tiles++;
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Gets the number of searched positions
+     * @return The number of positions
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * Gets the number of positions the table was asked for
+     * @return The number of lookups
+     */
+    public long getProbes() {
+        return table.getProbes();
+    }
+
+    /**
+     * Gets the number of positions the table knew
+     * @return The number of hits
+     */
+    public long getHits() {
+        return table.getHits();
+    }
+
+    /**
+     * Stops the threads of the solver
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Plays the heuristic bot until it placed the pieces or cleared the lines
+    private static Engine playHeuristic(long seed, int pieces, int lines) {
+        Engine engine = new Engine();
+        engine.setSeed(seed);
+        engine.reset();
+        HeuristicBot bot = new HeuristicBot();
+        while(!engine.isGameOver() && engine.getPieces() < pieces && engine.getLines() < lines) {
+            bot.choose(engine).apply(engine);
+        }
+        return engine;
+    }
+
+    // Replays placements on a new game
+    private static Engine replay(long seed, List<Placement> placements) {
+        Engine engine = new Engine();
+        engine.setSeed(seed);
+        engine.reset();
+        for(Placement placement : placements) {
+            placement.apply(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Solves a piece sequence from the command line
+     * @param args The options, see {@link #USAGE}
+     */
+    public static void main(String[] args) {
+        long seed = 0;
+        int pieces = -1;
+        int lines = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int splitDepth = 2;
+        int tableMb = 256;
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--pieces":
+                        pieces = Integer.parseInt(value);
+                        break;
+                    case "--lines":
+                        lines = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--split":
+                        splitDepth = Integer.parseInt(value);
+                        break;
+                    case "--table-mb":
+                        tableMb = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(pieces == 0 || pieces > 0xffff || lines < 0 || threads < 1 || splitDepth < 0 || tableMb < 1) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        boolean countLines = lines > 0;
+        if(pieces < 0) {
+            // Without a target only short sequences can be solved, with one the limit is only a cap
+            pieces = countLines ? 100 : 10;
+        }
+
+        Piece[] sequence = Engine.pieceSequence(seed, pieces);
+        int slots = (int)Math.min(Integer.MAX_VALUE, ((long)tableMb << 20) / SLOT_BYTES);
+        Solver solver = new Solver(sequence, countLines, threads, splitDepth, slots);
+        long start = System.nanoTime();
+        Result result;
+        Engine heuristic;
+        if(countLines) {
+            heuristic = playHeuristic(seed, pieces, lines);
+            // Every line takes a row of tiles, so fewer pieces can't clear them
+            int most = 1;
+            for(Piece piece : sequence) {
+                most = Math.max(most, tileCount(piece));
+            }
+            result = null;
+            for(int n = (lines * Board.COLS + most - 1) / most; n <= pieces && result == null; n++) {
+                result = solver.solve(n, lines - 1, lines);
+            }
+            if(result == null) {
+                System.out.printf("seed %d: no line clears %d lines in %d pieces%n", seed, lines, pieces);
+            } else {
+                System.out.printf("seed %d: %d lines in %d pieces (heuristic bot: %s)%n", seed, lines,
+                        result.getPlacements().size(), heuristic.getLines() >= lines
+                                ? heuristic.getPieces() + " pieces" : "not within " + pieces + " pieces");
+            }
+        } else {
+            heuristic = playHeuristic(seed, pieces, Integer.MAX_VALUE);
+            result = solver.solve(pieces, heuristic.getScore() - 1, Integer.MAX_VALUE);
+            if(result == null) {
+                System.out.printf("seed %d: no line beats the heuristic bot's %d after %d pieces%n", seed,
+                        heuristic.getScore(), pieces);
+            } else {
+                System.out.printf("seed %d: best score %d after %d pieces (heuristic bot: %d)%n", seed,
+                        result.getValue(), pieces, heuristic.getScore());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        solver.shutdown();
+
+        long probes = Math.max(solver.getProbes(), 1);
+        System.out.printf("%d positions in %.3f s, %.1f positions/sec, table hits %.1f%%%n", solver.getNodes(), seconds,
+                solver.getNodes() / seconds, solver.getHits() * 100.0 / probes);
+        if(result == null) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < result.getPlacements().size(); i++) {
+            Placement placement = result.getPlacements().get(i);
+            line.append(i == 0 ? "" : " ").append(sequence[i].getName()).append('@').append(placement.getCol())
+                    .append('/').append(placement.getRotation());
+        }
+        System.out.println(line);
+
+        // The line is only as good as the engine says
+        Engine check = replay(seed, result.getPlacements());
+        int value = countLines ? check.getLines() : check.getScore();
+        if(countLines ? value < lines : value != result.getValue()) {
+            System.err.println("Replay on the engine got " + value + " instead of " + result.getValue());
+            System.exit(1);
+        }
+        System.out.println("Replayed on the engine: score " + check.getScore() + ", " + check.getLines() + " lines");
+    }
+}
@@ -0,0 +1,156 @@
+package Solver;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers bounds on the best future score of positions the solver has
+ * already searched. A position is the board and the number of placed pieces,
+ * packed into four longs, and is stored whole, so two positions never share an
+ * entry by accident. Entries live in buckets of four slots; each group of
+ * buckets has its own lock, so threads rarely wait for each other. A full
+ * bucket replaces its deepest position, as deep positions are the cheapest to
+ * search again.
+ */
+
+final class TranspositionTable {
+    // Slots per bucket
+    private static final int BUCKET_SIZE = 4;
+    // Number of locks, buckets share locks round robin
+    private static final int STRIPES = 1024;
+    // Marks a used slot in the last key long, which only uses its low 56 bits
+    private static final long USED = 1L << 63;
+
+    // Keys of the slots, four longs per slot
+    private final long[] keys;
+    // Bounds of the slots: lower bound in the high int, upper bound in the low int
+    private final long[] bounds;
+    // Number of buckets - 1
+    private final int mask;
+    private final Object[] locks = new Object[STRIPES];
+
+    // Statistics
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Creates a new table
+     * @param slots The number of positions it holds, rounded up to a power of two
+     */
+    TranspositionTable(int slots) {
+        int buckets = Integer.highestOneBit(Math.max(slots / BUCKET_SIZE, 2) - 1) << 1;
+        this.keys = new long[buckets * BUCKET_SIZE * 4];
+        this.bounds = new long[buckets * BUCKET_SIZE];
+        this.mask = buckets - 1;
+        for(int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Looks up a position
+     * @return The lower bound in the high int and the upper bound in the low int, or -1 if unknown
+     */
+    long get(long k0, long k1, long k2, long k3) {
+        probes.increment();
+        int bucket = bucketOf(k0, k1, k2, k3);
+        synchronized(locks[bucket & (STRIPES - 1)]) {
+            int slot = find(bucket, k0, k1, k2, k3 | USED);
+            if(slot < 0) {
+                return -1L;
+            }
+            hits.increment();
+            return bounds[slot];
+        }
+    }
+
+    /**
+     * Stores the bounds of a position, replacing what was known about it
+     * @param depth The number of placed pieces of the position, used to pick the slot to replace
+     * @param lower A score that can be reached from the position
+     * @param upper No score above this can be reached from the position
+     */
+    void put(long k0, long k1, long k2, long k3, int depth, int lower, int upper) {
+        int bucket = bucketOf(k0, k1, k2, k3);
+        long k3Used = k3 | USED;
+        synchronized(locks[bucket & (STRIPES - 1)]) {
+            int slot = find(bucket, k0, k1, k2, k3Used);
+            if(slot < 0) {
+                // Take an empty slot, else the deepest position
+                int first = bucket * BUCKET_SIZE;
+                int deepest = -1;
+                slot = first;
+                for(int i = first; i < first + BUCKET_SIZE; i++) {
+                    long last = keys[i * 4 + 3];
+                    if(last == 0) {
+                        slot = i;
+                        break;
+                    }
+                    int slotDepth = Solver.depthOf(last);
+                    if(slotDepth > deepest) {
+                        deepest = slotDepth;
+                        slot = i;
+                    }
+                }
+                if(keys[slot * 4 + 3] != 0 && deepest < depth) {
+                    // Every slot holds a shallower position, which saves more work
+                    return;
+                }
+                keys[slot * 4] = k0;
+                keys[slot * 4 + 1] = k1;
+                keys[slot * 4 + 2] = k2;
+                keys[slot * 4 + 3] = k3Used;
+            }
+            bounds[slot] = (long)lower << 32 | (upper & 0xffffffffL);
+        }
+    }
+
+    // Finds the slot of a position in a bucket, -1 if it isn't there
+    private int find(int bucket, long k0, long k1, long k2, long k3Used) {
+        for(int i = bucket * BUCKET_SIZE; i < (bucket + 1) * BUCKET_SIZE; i++) {
+            if(keys[i * 4 + 3] == k3Used && keys[i * 4] == k0 && keys[i * 4 + 1] == k1 && keys[i * 4 + 2] == k2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Spreads the bits of a position over the buckets
+    private int bucketOf(long k0, long k1, long k2, long k3) {
+        long hash = k0 * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ k1) * 0xC2B2AE3D27D4EB4FL;
+        hash = (hash ^ k2) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ k3) * 0xC2B2AE3D27D4EB4FL;
+        return (int)(hash >>> 32 ^ hash) & mask;
+    }
+
+    /**
+     * Empties the table
+     */
+    void clear() {
+        for(int i = 0; i < STRIPES; i++) {
+            synchronized(locks[i]) {
+                for(int bucket = i; bucket <= mask; bucket += STRIPES) {
+                    for(int slot = bucket * BUCKET_SIZE; slot < (bucket + 1) * BUCKET_SIZE; slot++) {
+                        keys[slot * 4 + 3] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of lookups
+     * @return The number of lookups
+     */
+    long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found their position
+     * @return The number of hits
+     */
+    long getHits() {
+        return hits.sum();
+    }
+}